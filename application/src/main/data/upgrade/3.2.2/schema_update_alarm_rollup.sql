@@ -0,0 +1,48 @@
+--
+-- Copyright © 2016-2021 The Thingsboard Authors
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+CREATE TABLE IF NOT EXISTS alarm_severity_rollup (
+    entity_id uuid NOT NULL,
+    status varchar(255) NOT NULL,
+    critical_count bigint DEFAULT 0 NOT NULL,
+    major_count bigint DEFAULT 0 NOT NULL,
+    minor_count bigint DEFAULT 0 NOT NULL,
+    warning_count bigint DEFAULT 0 NOT NULL,
+    indeterminate_count bigint DEFAULT 0 NOT NULL,
+    CONSTRAINT alarm_severity_rollup_pkey PRIMARY KEY (entity_id, status)
+);
+
+-- Alarms are counted for their originator and for every entity they are propagated to
+INSERT INTO alarm_severity_rollup (entity_id, status, critical_count, major_count, minor_count, warning_count, indeterminate_count)
+SELECT affected.entity_id,
+       a.status,
+       count(*) FILTER (WHERE a.severity = 'CRITICAL'),
+       count(*) FILTER (WHERE a.severity = 'MAJOR'),
+       count(*) FILTER (WHERE a.severity = 'MINOR'),
+       count(*) FILTER (WHERE a.severity = 'WARNING'),
+       count(*) FILTER (WHERE a.severity = 'INDETERMINATE')
+FROM (SELECT id AS alarm_id, originator_id AS entity_id
+      FROM alarm
+      UNION
+      SELECT to_id AS alarm_id, from_id AS entity_id
+      FROM relation
+      WHERE relation_type_group = 'ALARM'
+        AND to_type = 'ALARM') affected
+         JOIN alarm a ON a.id = affected.alarm_id
+WHERE a.status IS NOT NULL
+  AND affected.entity_id IS NOT NULL
+GROUP BY affected.entity_id, a.status
+ON CONFLICT (entity_id, status) DO NOTHING;
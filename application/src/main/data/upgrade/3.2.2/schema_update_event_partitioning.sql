@@ -0,0 +1,130 @@
+--
+-- Copyright © 2016-2021 The Thingsboard Authors
+--
+-- Licensed under the Apache License, Version 2.0 (the "License");
+-- you may not use this file except in compliance with the License.
+-- You may obtain a copy of the License at
+--
+--     http://www.apache.org/licenses/LICENSE-2.0
+--
+-- Unless required by applicable law or agreed to in writing, software
+-- distributed under the License is distributed on an "AS IS" BASIS,
+-- WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+-- See the License for the specific language governing permissions and
+-- limitations under the License.
+--
+
+-- Converts the event table into a table partitioned by event type (debug/other) and by created_time.
+-- Requires PostgreSQL 11 or newer (default partitions and procedures).
+--
+-- This script only swaps the tables, so it holds its locks for a moment regardless of the amount of events.
+-- The existing events stay in event_legacy and are moved into daily partitions (matching the default
+-- sql.events.partition_size_hours) by SqlDatabaseUpgradeService afterwards, one day per transaction,
+-- newest first. An interrupted upgrade resumes moving the remaining events when it is started again.
+-- Legacy events without event_type can not be stored in the partitioned table (and were not returned
+-- by any event query), they are counted in the upgrade log and dropped together with event_legacy.
+
+DO
+$$
+BEGIN
+    IF current_setting('server_version_num')::int < 110000 THEN
+        RAISE EXCEPTION 'Partitioning of the event table requires PostgreSQL 11 or newer, current version is %', current_setting('server_version');
+    END IF;
+    IF NOT EXISTS(SELECT 1 FROM pg_partitioned_table pt JOIN pg_class c ON c.oid = pt.partrelid WHERE c.relname = 'event') THEN
+        ALTER TABLE event RENAME TO event_legacy;
+        ALTER TABLE event_legacy RENAME CONSTRAINT event_pkey TO event_legacy_pkey;
+        ALTER TABLE event_legacy RENAME CONSTRAINT event_unq_key TO event_legacy_unq_key;
+        DROP INDEX IF EXISTS idx_event_ts;
+        DROP INDEX IF EXISTS idx_event_tenant_entity_type_entity_event_type_created_time_des;
+
+        CREATE TABLE event (
+            id uuid NOT NULL,
+            created_time bigint NOT NULL,
+            body varchar(10000000),
+            entity_id uuid,
+            entity_type varchar(255),
+            event_type varchar(255) NOT NULL,
+            event_uid varchar(255),
+            tenant_id uuid,
+            ts bigint NOT NULL,
+            CONSTRAINT event_pkey PRIMARY KEY (id, event_type, created_time),
+            CONSTRAINT event_unq_key UNIQUE (tenant_id, created_time, entity_type, entity_id, event_type, event_uid)
+        ) PARTITION BY LIST (event_type);
+
+        CREATE TABLE event_debug PARTITION OF event
+            FOR VALUES IN ('DEBUG_RULE_NODE', 'DEBUG_RULE_CHAIN', 'DEBUG_CONVERTER', 'DEBUG_INTEGRATION') PARTITION BY RANGE (created_time);
+
+        CREATE TABLE event_other PARTITION OF event DEFAULT PARTITION BY RANGE (created_time);
+    END IF;
+END
+$$;
+
+CREATE TABLE IF NOT EXISTS event_uid_lookup (
+    tenant_id uuid NOT NULL,
+    entity_type varchar(255) NOT NULL,
+    entity_id uuid NOT NULL,
+    event_type varchar(255) NOT NULL,
+    event_uid varchar(255) NOT NULL,
+    created_time bigint NOT NULL,
+    CONSTRAINT event_uid_lookup_pkey PRIMARY KEY (tenant_id, entity_type, entity_id, event_type, event_uid)
+);
+
+CREATE INDEX IF NOT EXISTS idx_event_tenant_entity_type_entity_event_type_created_time_des
+    ON event
+    (tenant_id ASC, entity_type ASC, entity_id ASC, event_type ASC, created_time DESC NULLS LAST)
+    WITH (FILLFACTOR=95);
+
+CREATE OR REPLACE FUNCTION drop_event_partitions_by_ttl(IN partition_table varchar, IN ttl_ts bigint) RETURNS bigint
+    LANGUAGE plpgsql AS
+$$
+DECLARE
+    partition_record record;
+    partition_end_ts bigint;
+    dropped_end_ts bigint DEFAULT 0;
+    dropped bigint DEFAULT 0;
+BEGIN
+    FOR partition_record IN
+        SELECT c.relname AS partition_name, pg_get_expr(c.relpartbound, c.oid) AS partition_bound
+        FROM pg_inherits i
+                 JOIN pg_class c ON c.oid = i.inhrelid
+                 JOIN pg_class p ON p.oid = i.inhparent
+        WHERE p.relname = partition_table
+        LOOP
+            partition_end_ts := substring(partition_record.partition_bound FROM 'TO \(''?(\d+)''?\)')::bigint;
+            IF partition_end_ts IS NOT NULL AND partition_end_ts <= ttl_ts THEN
+                EXECUTE format('DROP TABLE IF EXISTS %I', partition_record.partition_name);
+                RAISE NOTICE 'Event partition % dropped by ttl', partition_record.partition_name;
+                dropped := dropped + 1;
+                dropped_end_ts := greatest(dropped_end_ts, partition_end_ts);
+            END IF;
+        END LOOP;
+    IF dropped > 0 THEN
+        DELETE FROM event_uid_lookup WHERE created_time < dropped_end_ts
+            AND (event_type IN ('DEBUG_RULE_NODE', 'DEBUG_RULE_CHAIN', 'DEBUG_CONVERTER', 'DEBUG_INTEGRATION')) = (partition_table = 'event_debug');
+    END IF;
+    RETURN dropped;
+END
+$$;
+
+CREATE OR REPLACE PROCEDURE cleanup_events_by_ttl(IN ttl bigint, IN debug_ttl bigint, INOUT deleted bigint)
+    LANGUAGE plpgsql AS
+$$
+DECLARE
+    ttl_ts bigint;
+    debug_ttl_ts bigint;
+    ttl_deleted_count bigint DEFAULT 0;
+    debug_ttl_deleted_count bigint DEFAULT 0;
+BEGIN
+    IF ttl > 0 THEN
+        ttl_ts := (EXTRACT(EPOCH FROM current_timestamp) * 1000 - ttl::bigint * 1000)::bigint;
+        ttl_deleted_count := drop_event_partitions_by_ttl('event_other', ttl_ts);
+    END IF;
+    IF debug_ttl > 0 THEN
+        debug_ttl_ts := (EXTRACT(EPOCH FROM current_timestamp) * 1000 - debug_ttl::bigint * 1000)::bigint;
+        debug_ttl_deleted_count := drop_event_partitions_by_ttl('event_debug', debug_ttl_ts);
+    END IF;
+    RAISE NOTICE 'Event partitions removed by ttl: %', ttl_deleted_count;
+    RAISE NOTICE 'Debug event partitions removed by ttl: %', debug_ttl_deleted_count;
+    deleted := ttl_deleted_count + debug_ttl_deleted_count;
+END
+$$;
@@ -65,6 +65,7 @@ import org.thingsboard.server.dao.relation.RelationService;
 import org.thingsboard.server.dao.resource.ResourceService;
 import org.thingsboard.server.dao.rule.RuleChainService;
 import org.thingsboard.server.dao.rule.RuleNodeStateService;
+import org.thingsboard.server.dao.sql.TbSqlQueueOverflowException;
 import org.thingsboard.server.dao.tenant.TbTenantProfileCache;
 import org.thingsboard.server.dao.tenant.TenantProfileService;
 import org.thingsboard.server.dao.tenant.TenantService;
@@ -83,6 +84,7 @@ import org.thingsboard.server.service.mail.MailExecutorService;
 import org.thingsboard.server.service.profile.TbDeviceProfileCache;
 import org.thingsboard.server.service.queue.TbClusterService;
 import org.thingsboard.server.service.rpc.TbCoreDeviceRpcService;
+import org.thingsboard.server.service.rpc.TbQueuedRpcLoader;
 import org.thingsboard.server.service.rpc.TbRpcService;
 import org.thingsboard.server.service.rpc.TbRuleEngineDeviceRpcService;
 import org.thingsboard.server.service.script.JsExecutorService;
@@ -332,6 +334,11 @@ public class ActorSystemContext {
     @Getter
     private TbRpcService tbRpcService;
 
+    @Lazy
+    @Autowired(required = false)
+    @Getter
+    private TbQueuedRpcLoader queuedRpcLoader;
+
     @Value("${actors.session.max_concurrent_sessions_per_device:1}")
     @Getter
     private long maxConcurrentSessionsPerDevice;
@@ -445,7 +452,26 @@ public class ActorSystemContext {
     }
 
     private void persistEvent(Event event) {
-        eventService.save(event);
+        persistEventAsync(event, "Could not save lifecycle or error Event");
+    }
+
+    private void persistEventAsync(Event event, String failureMessage) {
+        ListenableFuture<Event> future = eventService.saveAsync(event);
+        Futures.addCallback(future, new FutureCallback<Event>() {
+            @Override
+            public void onSuccess(@Nullable Event event) {
+
+            }
+
+            @Override
+            public void onFailure(Throwable th) {
+                if (th instanceof TbSqlQueueOverflowException) {
+                    log.debug("{}: {}", failureMessage, th.getMessage());
+                } else {
+                    log.error(failureMessage, th);
+                }
+            }
+        }, MoreExecutors.directExecutor());
     }
 
     private String toString(Throwable e) {
@@ -525,18 +551,7 @@ public class ActorSystemContext {
                 }
 
                 event.setBody(node);
-                ListenableFuture<Event> future = eventService.saveAsync(event);
-                Futures.addCallback(future, new FutureCallback<Event>() {
-                    @Override
-                    public void onSuccess(@Nullable Event event) {
-
-                    }
-
-                    @Override
-                    public void onFailure(Throwable th) {
-                        log.error("Could not save debug Event for Node", th);
-                    }
-                }, MoreExecutors.directExecutor());
+                persistEventAsync(event, "Could not save debug Event for Node");
             } catch (IOException ex) {
                 log.warn("Failed to persist rule node debug message", ex);
             }
@@ -578,18 +593,7 @@ public class ActorSystemContext {
         }
 
         event.setBody(node);
-        ListenableFuture<Event> future = eventService.saveAsync(event);
-        Futures.addCallback(future, new FutureCallback<Event>() {
-            @Override
-            public void onSuccess(@Nullable Event event) {
-
-            }
-
-            @Override
-            public void onFailure(Throwable th) {
-                log.error("Could not save debug Event for Rule Chain", th);
-            }
-        }, MoreExecutors.directExecutor());
+        persistEventAsync(event, "Could not save debug Event for Rule Chain");
     }
 
     public static Exception toException(Throwable error) {
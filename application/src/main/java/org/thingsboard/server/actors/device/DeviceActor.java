@@ -25,16 +25,22 @@ import org.thingsboard.server.actors.TbActorException;
 import org.thingsboard.server.actors.service.ContextAwareActor;
 import org.thingsboard.server.common.data.id.DeviceId;
 import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.MsgType;
 import org.thingsboard.server.common.msg.TbActorMsg;
 import org.thingsboard.server.common.msg.timeout.DeviceActorServerSideRpcTimeoutMsg;
 import org.thingsboard.server.service.rpc.FromDeviceRpcResponseActorMsg;
 import org.thingsboard.server.service.rpc.ToDeviceRpcRequestActorMsg;
 import org.thingsboard.server.service.transport.msg.TransportToDeviceActorMsgWrapper;
 
+import java.util.ArrayList;
+import java.util.List;
+
 @Slf4j
 public class DeviceActor extends ContextAwareActor {
 
     private final DeviceActorMessageProcessor processor;
+    private final List<TbActorMsg> pendingMsgs = new ArrayList<>();
+    private boolean queuedRpcsLoaded;
 
     DeviceActor(ActorSystemContext systemContext, TenantId tenantId, DeviceId deviceId) {
         super(systemContext);
@@ -56,6 +62,36 @@ public class DeviceActor extends ContextAwareActor {
 
     @Override
     protected boolean doProcess(TbActorMsg msg) {
+        if (msg.getMsgType() == MsgType.DEVICE_ACTOR_QUEUED_RPC_LOADED_MSG) {
+            onQueuedRpcsLoaded((DeviceActorQueuedRpcLoadedMsg) msg);
+            return true;
+        } else if (!queuedRpcsLoaded && msg.getMsgType() != MsgType.SESSION_TIMEOUT_MSG) {
+            // keep the order of RPC requests and transport messages until the actor is fully initialized
+            pendingMsgs.add(msg);
+            return true;
+        } else {
+            return processMsg(msg);
+        }
+    }
+
+    private void onQueuedRpcsLoaded(DeviceActorQueuedRpcLoadedMsg msg) {
+        if (queuedRpcsLoaded) {
+            return;
+        }
+        processor.restoreQueuedRpcs(ctx, msg);
+        queuedRpcsLoaded = true;
+        if (!pendingMsgs.isEmpty()) {
+            log.debug("[{}][{}] Processing {} messages received during initialization", processor.tenantId, processor.deviceId, pendingMsgs.size());
+            pendingMsgs.forEach(pendingMsg -> {
+                if (!processMsg(pendingMsg)) {
+                    log.warn("Unprocessed message: {}!", pendingMsg);
+                }
+            });
+            pendingMsgs.clear();
+        }
+    }
+
+    private boolean processMsg(TbActorMsg msg) {
         switch (msg.getMsgType()) {
             case TRANSPORT_TO_DEVICE_ACTOR_MSG:
                 processor.process(ctx, (TransportToDeviceActorMsgWrapper) msg);
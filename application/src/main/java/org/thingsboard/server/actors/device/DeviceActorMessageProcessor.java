@@ -45,8 +45,6 @@ import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.kv.AttributeKey;
 import org.thingsboard.server.common.data.kv.AttributeKvEntry;
 import org.thingsboard.server.common.data.kv.KvEntry;
-import org.thingsboard.server.common.data.page.PageData;
-import org.thingsboard.server.common.data.page.PageLink;
 import org.thingsboard.server.common.data.relation.EntityRelation;
 import org.thingsboard.server.common.data.relation.RelationTypeGroup;
 import org.thingsboard.server.common.data.rpc.Rpc;
@@ -825,24 +823,32 @@ class DeviceActorMessageProcessor extends AbstractContextAwareMsgProcessor {
 
     void init(TbActorCtx ctx) {
         schedulePeriodicMsgWithDelay(ctx, SessionTimeoutCheckMsg.instance(), systemContext.getSessionReportTimeout(), systemContext.getSessionReportTimeout());
-        PageLink pageLink = new PageLink(1024);
-        PageData<Rpc> pageData;
-        do {
-            pageData = systemContext.getTbRpcService().findAllByDeviceIdAndStatus(tenantId, deviceId, RpcStatus.QUEUED, pageLink);
-            pageData.getData().forEach(rpc -> {
-                ToDeviceRpcRequest msg = JacksonUtil.convertValue(rpc.getRequest(), ToDeviceRpcRequest.class);
-                long timeout = rpc.getExpirationTime() - System.currentTimeMillis();
-                if (timeout <= 0) {
-                    rpc.setStatus(RpcStatus.TIMEOUT);
-                    systemContext.getTbRpcService().save(tenantId, rpc);
-                } else {
-                    registerPendingRpcRequest(ctx, new ToDeviceRpcRequestActorMsg(systemContext.getServiceId(), msg), false, creteToDeviceRpcRequestMsg(msg), timeout);
-                }
-            });
-            if (pageData.hasNext()) {
-                pageLink = pageLink.nextPageLink();
+        ListenableFuture<List<Rpc>> queuedRpcsFuture = systemContext.getQueuedRpcLoader().findQueuedRpcs(tenantId, deviceId);
+        Futures.addCallback(queuedRpcsFuture, new FutureCallback<>() {
+            @Override
+            public void onSuccess(List<Rpc> rpcs) {
+                ctx.tellWithHighPriority(new DeviceActorQueuedRpcLoadedMsg(rpcs));
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                log.warn("[{}][{}] Failed to load queued RPC requests", tenantId, deviceId, t);
+                ctx.tellWithHighPriority(new DeviceActorQueuedRpcLoadedMsg(Collections.emptyList()));
+            }
+        }, MoreExecutors.directExecutor());
+    }
+
+    void restoreQueuedRpcs(TbActorCtx ctx, DeviceActorQueuedRpcLoadedMsg msg) {
+        msg.getRpcs().forEach(rpc -> {
+            ToDeviceRpcRequest request = JacksonUtil.convertValue(rpc.getRequest(), ToDeviceRpcRequest.class);
+            long timeout = rpc.getExpirationTime() - System.currentTimeMillis();
+            if (timeout <= 0) {
+                rpc.setStatus(RpcStatus.TIMEOUT);
+                systemContext.getTbRpcService().save(tenantId, rpc);
+            } else {
+                registerPendingRpcRequest(ctx, new ToDeviceRpcRequestActorMsg(systemContext.getServiceId(), request), false, creteToDeviceRpcRequestMsg(request), timeout);
             }
-        } while (pageData.hasNext());
+        });
     }
 
     void checkSessionsTimeout() {
@@ -33,6 +33,7 @@ import org.thingsboard.rule.engine.api.TbRelationTypes;
 import org.thingsboard.rule.engine.api.sms.SmsSenderFactory;
 import org.thingsboard.server.actors.ActorSystemContext;
 import org.thingsboard.server.actors.TbActorRef;
+import org.thingsboard.server.common.data.ApiUsageRecordKey;
 import org.thingsboard.server.common.data.Customer;
 import org.thingsboard.server.common.data.DataConstants;
 import org.thingsboard.server.common.data.Device;
@@ -397,6 +398,16 @@ class DefaultTbContext implements TbContext {
         return new RuleNodeJsScriptEngine(getTenantId(), mainCtx.getJsSandbox(), nodeCtx.getSelf().getId(), script, argNames);
     }
 
+    @Override
+    public boolean isJsExecEnabled() {
+        return mainCtx.getApiUsageStateService().getApiUsageState(getTenantId()).isJsExecEnabled();
+    }
+
+    @Override
+    public void reportJsExec(CustomerId customerId) {
+        mainCtx.getApiUsageClient().report(getTenantId(), customerId, ApiUsageRecordKey.JS_EXEC_COUNT, 1);
+    }
+
     @Override
     public void logJsEvalRequest() {
         if (mainCtx.isStatisticsEnabled()) {
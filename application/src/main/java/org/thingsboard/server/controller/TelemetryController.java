@@ -15,7 +15,9 @@
  */
 package org.thingsboard.server.controller;
 
+import com.fasterxml.jackson.core.JsonGenerator;
 import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.core.io.SerializedString;
 import com.fasterxml.jackson.databind.JsonNode;
 import com.fasterxml.jackson.databind.ObjectMapper;
 import com.google.common.base.Function;
@@ -30,6 +32,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.security.access.prepost.PreAuthorize;
 import org.springframework.util.StringUtils;
@@ -41,12 +44,14 @@ import org.springframework.web.bind.annotation.RequestParam;
 import org.springframework.web.bind.annotation.ResponseBody;
 import org.springframework.web.bind.annotation.RestController;
 import org.springframework.web.context.request.async.DeferredResult;
+import org.springframework.web.servlet.mvc.method.annotation.StreamingResponseBody;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.rule.engine.api.msg.DeviceAttributesEventNotificationMsg;
 import org.thingsboard.server.common.data.DataConstants;
 import org.thingsboard.server.common.data.EntityType;
 import org.thingsboard.server.common.data.TenantProfile;
 import org.thingsboard.server.common.data.audit.ActionType;
+import org.thingsboard.server.common.data.exception.ThingsboardErrorCode;
 import org.thingsboard.server.common.data.exception.ThingsboardException;
 import org.thingsboard.server.common.data.id.CustomerId;
 import org.thingsboard.server.common.data.id.DeviceId;
@@ -80,13 +85,19 @@ import org.thingsboard.server.service.security.model.SecurityUser;
 import org.thingsboard.server.service.security.permission.Operation;
 import org.thingsboard.server.service.telemetry.AttributeData;
 import org.thingsboard.server.service.telemetry.TsData;
+import org.thingsboard.server.service.telemetry.TsKvExportCursor;
 import org.thingsboard.server.service.telemetry.exception.InvalidParametersException;
 import org.thingsboard.server.service.telemetry.exception.UncheckedApiException;
 
 import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.io.BufferedWriter;
 import java.io.IOException;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.HashSet;
@@ -94,6 +105,7 @@ import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.TimeUnit;
@@ -117,9 +129,13 @@ public class TelemetryController extends BaseController {
     @Value("${transport.json.max_string_value_length:0}")
     private int maxStringValueLength;
 
+    @Value("${server.rest.telemetry_export.page_size:10000}")
+    private int exportPageSize;
+
     private ExecutorService executor;
 
     private static final ObjectMapper mapper = new ObjectMapper();
+    private static final String CSV_FORMULA_PREFIXES = "=+-@\t\r";
 
     @PostConstruct
     public void initExecutor() {
@@ -222,6 +238,100 @@ public class TelemetryController extends BaseController {
                 });
     }
 
+    @PreAuthorize("hasAnyAuthority('SYS_ADMIN', 'TENANT_ADMIN', 'CUSTOMER_USER')")
+    @RequestMapping(value = "/{entityType}/{entityId}/values/timeseries/export", method = RequestMethod.GET, params = {"keys", "startTs", "endTs"})
+    @ResponseBody
+    public ResponseEntity<StreamingResponseBody> exportTimeseries(
+            @PathVariable("entityType") String entityType,
+            @PathVariable("entityId") String entityIdStr,
+            @RequestParam(name = "keys") String keys,
+            @RequestParam(name = "startTs") Long startTs,
+            @RequestParam(name = "endTs") Long endTs,
+            @RequestParam(name = "format", defaultValue = "ndjson") String format) throws ThingsboardException {
+        EntityId entityId = EntityIdFactory.getByTypeAndId(entityType, entityIdStr);
+        checkEntityId(entityId, Operation.READ_TELEMETRY);
+        List<String> keyList = toKeysList(keys);
+        if (keyList == null || keyList.isEmpty()) {
+            throw new ThingsboardException("Keys can't be empty!", ThingsboardErrorCode.BAD_REQUEST_PARAMS);
+        }
+        boolean csv;
+        if ("csv".equalsIgnoreCase(format)) {
+            csv = true;
+        } else if ("ndjson".equalsIgnoreCase(format)) {
+            csv = false;
+        } else {
+            throw new ThingsboardException("Unsupported export format: " + format + "!", ThingsboardErrorCode.BAD_REQUEST_PARAMS);
+        }
+        TenantId tenantId = getCurrentUser().getTenantId();
+        TsKvExportCursor cursor = new TsKvExportCursor(tsService, tenantId, entityId, keyList, startTs, endTs, exportPageSize);
+        StreamingResponseBody body = out -> {
+            try {
+                if (csv) {
+                    writeCsv(cursor, out);
+                } else {
+                    writeNdJson(cursor, out);
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                log.warn("[{}][{}] Failed to export timeseries", tenantId, entityId, e);
+                throw new IOException("Failed to export timeseries", e);
+            }
+        };
+        return ResponseEntity.ok()
+                .contentType(csv ? new MediaType("text", "csv", StandardCharsets.UTF_8) : new MediaType("application", "x-ndjson", StandardCharsets.UTF_8))
+                .body(body);
+    }
+
+    private void writeNdJson(TsKvExportCursor cursor, OutputStream out) throws IOException, ExecutionException, InterruptedException {
+        JsonGenerator generator = mapper.getFactory().createGenerator(out);
+        generator.setRootValueSeparator(new SerializedString("\n"));
+        while (cursor.hasNext()) {
+            for (TsKvEntry entry : cursor.next()) {
+                generator.writeStartObject();
+                generator.writeNumberField("ts", entry.getTs());
+                generator.writeStringField("key", entry.getKey());
+                generator.writeObjectField("value", getKvValue(entry));
+                generator.writeEndObject();
+            }
+            generator.flush();
+        }
+        generator.writeRaw('\n');
+        generator.flush();
+    }
+
+    private void writeCsv(TsKvExportCursor cursor, OutputStream out) throws IOException, ExecutionException, InterruptedException {
+        Writer writer = new BufferedWriter(new OutputStreamWriter(out, StandardCharsets.UTF_8));
+        writer.write("ts,key,value\n");
+        while (cursor.hasNext()) {
+            for (TsKvEntry entry : cursor.next()) {
+                writer.write(Long.toString(entry.getTs()));
+                writer.write(',');
+                writer.write(toCsvValue(entry.getKey(), true));
+                writer.write(',');
+                writer.write(toCsvValue(entry.getValueAsString(), entry.getDataType() == DataType.STRING || entry.getDataType() == DataType.JSON));
+                writer.write('\n');
+            }
+            writer.flush();
+        }
+        writer.flush();
+    }
+
+    /**
+     * Text cells that a spreadsheet would treat as a formula are prefixed with a single quote (CSV injection).
+     * Numbers are written as is, so negative values stay numeric.
+     */
+    private static String toCsvValue(String value, boolean text) {
+        if (value == null) {
+            return "";
+        }
+        if (text && !value.isEmpty() && CSV_FORMULA_PREFIXES.indexOf(value.charAt(0)) >= 0) {
+            value = "'" + value;
+        }
+        if (value.indexOf(',') >= 0 || value.indexOf('"') >= 0 || value.indexOf('\n') >= 0 || value.indexOf('\r') >= 0) {
+            return '"' + value.replace("\"", "\"\"") + '"';
+        }
+        return value;
+    }
+
     @PreAuthorize("hasAnyAuthority('SYS_ADMIN', 'TENANT_ADMIN', 'CUSTOMER_USER')")
     @RequestMapping(value = "/{deviceId}/{scope}", method = RequestMethod.POST)
     @ResponseBody
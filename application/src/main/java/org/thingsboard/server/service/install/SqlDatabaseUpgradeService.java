@@ -29,6 +29,7 @@ import org.thingsboard.server.dao.device.DeviceProfileService;
 import org.thingsboard.server.dao.device.DeviceService;
 import org.thingsboard.server.dao.tenant.TenantService;
 import org.thingsboard.server.dao.usagerecord.ApiUsageStateService;
+import org.thingsboard.server.service.install.sql.PsqlEventPartitioningHelper;
 import org.thingsboard.server.service.install.sql.SqlDbHelper;
 
 import java.nio.charset.Charset;
@@ -462,6 +463,14 @@ public class SqlDatabaseUpgradeService implements DatabaseEntitiesUpgradeService
                     log.info("Updating indexes and TTL procedure for event table...");
                     schemaUpdateFile = Paths.get(installScripts.getDataDir(), "upgrade", "3.2.2", "schema_update_event.sql");
                     loadSql(schemaUpdateFile, conn);
+                    log.info("Partitioning event table...");
+                    schemaUpdateFile = Paths.get(installScripts.getDataDir(), "upgrade", "3.2.2", "schema_update_event_partitioning.sql");
+                    loadSql(schemaUpdateFile, conn);
+                    log.info("Moving existing events into the partitioned event table...");
+                    PsqlEventPartitioningHelper.moveLegacyEvents(conn);
+                    log.info("Building alarm severity rollup...");
+                    schemaUpdateFile = Paths.get(installScripts.getDataDir(), "upgrade", "3.2.2", "schema_update_alarm_rollup.sql");
+                    loadSql(schemaUpdateFile, conn);
                     log.info("Updating schema settings...");
                     conn.createStatement().execute("UPDATE tb_schema_settings SET schema_version = 3003000;");
                     log.info("Schema updated.");
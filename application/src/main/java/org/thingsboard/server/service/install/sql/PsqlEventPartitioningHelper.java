@@ -0,0 +1,110 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.install.sql;
+
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.dao.timeseries.PsqlPartition;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Moves the events left in event_legacy by the 3.2.2 partitioning script into the partitioned event table.
+ */
+@Slf4j
+public class PsqlEventPartitioningHelper {
+
+    static final String LEGACY_TABLE_EXISTS = "SELECT to_regclass('event_legacy') IS NOT NULL";
+    static final String CREATE_LEGACY_INDEX = "CREATE INDEX IF NOT EXISTS idx_event_legacy_created_time ON event_legacy(created_time)";
+    static final String FIND_LAST_CREATED_TIME = "SELECT max(created_time) FROM event_legacy WHERE created_time < ? AND event_type IS NOT NULL";
+    static final String MOVE_EVENTS =
+            "WITH moved AS (DELETE FROM event_legacy WHERE created_time >= ? AND created_time < ? AND event_type IS NOT NULL RETURNING *), " +
+                    "uids AS (INSERT INTO event_uid_lookup (tenant_id, entity_type, entity_id, event_type, event_uid, created_time) " +
+                    "SELECT tenant_id, entity_type, entity_id, event_type, event_uid, created_time FROM moved " +
+                    "WHERE event_uid <> id::text AND tenant_id IS NOT NULL AND entity_type IS NOT NULL AND entity_id IS NOT NULL " +
+                    "ON CONFLICT DO NOTHING) " +
+                    "INSERT INTO event (id, created_time, body, entity_id, entity_type, event_type, event_uid, tenant_id, ts) " +
+                    "SELECT id, created_time, body, entity_id, entity_type, event_type, event_uid, tenant_id, ts FROM moved " +
+                    "ON CONFLICT DO NOTHING";
+    static final String COUNT_LEGACY_EVENTS = "SELECT count(*) FROM event_legacy";
+    static final String DROP_LEGACY_TABLE = "DROP TABLE event_legacy";
+
+    static final long PARTITION_SIZE_MS = TimeUnit.DAYS.toMillis(1);
+    private static final String[] PARTITIONED_TABLES = {"event_debug", "event_other"};
+    private static final DateTimeFormatter PARTITION_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy_MM_dd_HH").withZone(ZoneOffset.UTC);
+
+    /**
+     * Moves the legacy events day by day, newest first. The connection is expected to be in auto-commit mode,
+     * so every day is moved in its own short transaction and an interrupted upgrade continues where it stopped.
+     */
+    public static void moveLegacyEvents(Connection conn) throws SQLException {
+        try (Statement statement = conn.createStatement()) {
+            try (ResultSet rs = statement.executeQuery(LEGACY_TABLE_EXISTS)) {
+                if (!rs.next() || !rs.getBoolean(1)) {
+                    return;
+                }
+            }
+            statement.execute(CREATE_LEGACY_INDEX);
+
+            long movedTotal = 0;
+            Long partitionStart = Long.MAX_VALUE;
+            while ((partitionStart = findPreviousPartitionStart(conn, partitionStart)) != null) {
+                for (String table : PARTITIONED_TABLES) {
+                    String partitionDate = PARTITION_DATE_FORMAT.format(Instant.ofEpochMilli(partitionStart));
+                    statement.execute(new PsqlPartition(table, partitionStart, partitionStart + PARTITION_SIZE_MS, partitionDate).getQuery());
+                }
+                try (PreparedStatement move = conn.prepareStatement(MOVE_EVENTS)) {
+                    move.setLong(1, partitionStart);
+                    move.setLong(2, partitionStart + PARTITION_SIZE_MS);
+                    int moved = move.executeUpdate();
+                    movedTotal += moved;
+                    log.info("Moved {} events created on {} into the partitioned event table", moved, Instant.ofEpochMilli(partitionStart));
+                }
+            }
+
+            try (ResultSet rs = statement.executeQuery(COUNT_LEGACY_EVENTS)) {
+                long dropped = rs.next() ? rs.getLong(1) : 0;
+                if (dropped > 0) {
+                    log.warn("Dropping {} legacy events without event type", dropped);
+                }
+            }
+            statement.execute(DROP_LEGACY_TABLE);
+            log.info("Moved {} legacy events in total", movedTotal);
+        }
+    }
+
+    private static Long findPreviousPartitionStart(Connection conn, long before) throws SQLException {
+        try (PreparedStatement find = conn.prepareStatement(FIND_LAST_CREATED_TIME)) {
+            find.setLong(1, before);
+            try (ResultSet rs = find.executeQuery()) {
+                if (rs.next()) {
+                    long createdTime = rs.getLong(1);
+                    if (!rs.wasNull()) {
+                        return createdTime - Math.floorMod(createdTime, PARTITION_SIZE_MS);
+                    }
+                }
+            }
+        }
+        return null;
+    }
+}
@@ -387,7 +387,11 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
 
     private void forwardToRuleEngineActor(String queueName, TenantId tenantId, ToRuleEngineMsg toRuleEngineMsg, TbMsgCallback callback) {
         TbMsg tbMsg = TbMsg.fromBytes(queueName, toRuleEngineMsg.getTbMsg().toByteArray(), callback);
-        QueueToRuleEngineMsg msg;
+        QueueToRuleEngineMsg msg = new QueueToRuleEngineMsg(tenantId, tbMsg, getRelationTypes(toRuleEngineMsg), toRuleEngineMsg.getFailureMessage());
+        actorContext.tell(msg);
+    }
+
+    private Set<String> getRelationTypes(ToRuleEngineMsg toRuleEngineMsg) {
         ProtocolStringList relationTypesList = toRuleEngineMsg.getRelationTypesList();
         Set<String> relationTypes = null;
         if (relationTypesList != null) {
@@ -397,8 +401,7 @@ public class DefaultTbRuleEngineConsumerService extends AbstractConsumerService<
                 relationTypes = new HashSet<>(relationTypesList);
             }
         }
-        msg = new QueueToRuleEngineMsg(tenantId, tbMsg, relationTypes, toRuleEngineMsg.getFailureMessage());
-        actorContext.tell(msg);
+        return relationTypes;
     }
 
     @Scheduled(fixedDelayString = "${queue.rule-engine.stats.print-interval-ms}")
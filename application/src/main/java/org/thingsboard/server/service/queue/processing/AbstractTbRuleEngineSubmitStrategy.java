@@ -23,6 +23,7 @@ import java.util.List;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentMap;
 import java.util.stream.Collectors;
+import java.util.stream.Stream;
 
 public abstract class AbstractTbRuleEngineSubmitStrategy implements TbRuleEngineSubmitStrategy {
 
@@ -38,7 +39,21 @@ public abstract class AbstractTbRuleEngineSubmitStrategy implements TbRuleEngine
 
     @Override
     public void init(List<TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> msgs) {
-        orderedMsgList = msgs.stream().map(msg -> new IdMsgPair<>(UUID.randomUUID(), msg)).collect(Collectors.toList());
+        orderedMsgList = msgs.stream().flatMap(AbstractTbRuleEngineSubmitStrategy::unpackBatch)
+                .map(msg -> new IdMsgPair<>(UUID.randomUUID(), msg)).collect(Collectors.toList());
+    }
+
+    /**
+     * Splits a gateway telemetry batch into one message per TbMsg, so every submit and processing strategy
+     * orders, acknowledges and retries the messages of each originator separately.
+     */
+    static Stream<TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg>> unpackBatch(TbProtoQueueMsg<TransportProtos.ToRuleEngineMsg> msg) {
+        TransportProtos.ToRuleEngineMsg value = msg.getValue();
+        if (value.getTbMsgBatchCount() == 0) {
+            return Stream.of(msg);
+        }
+        return value.getTbMsgBatchList().stream().map(tbMsg -> new TbProtoQueueMsg<>(msg.getKey(),
+                value.toBuilder().clearTbMsgBatch().setTbMsg(tbMsg).build(), msg.getHeaders()));
     }
 
     @Override
@@ -0,0 +1,139 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.rpc;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import org.thingsboard.common.util.ThingsBoardThreadFactory;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.rpc.Rpc;
+import org.thingsboard.server.common.data.rpc.RpcStatus;
+import org.thingsboard.server.dao.rpc.RpcService;
+import org.thingsboard.server.queue.util.TbCoreComponent;
+import org.thingsboard.server.service.executors.DbCallbackExecutorService;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.stream.Collectors;
+
+/**
+ * Groups the queued RPC lookups of the device actors that are created at the same time (e.g. after the partition rebalance)
+ * into a single query per tenant instead of one blocking query per device actor.
+ */
+@Slf4j
+@TbCoreComponent
+@Service
+@RequiredArgsConstructor
+public class TbQueuedRpcLoader {
+
+    private final RpcService rpcService;
+    private final DbCallbackExecutorService dbCallbackExecutor;
+
+    @Value("${actors.rpc.queued_load_batch_size:1000}")
+    private int batchSize;
+
+    @Value("${actors.rpc.queued_load_max_delay_ms:20}")
+    private long maxDelayMs;
+
+    private final Map<TenantId, Batch> pendingBatches = new HashMap<>();
+    private ScheduledExecutorService scheduler;
+
+    @PostConstruct
+    public void init() {
+        scheduler = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("queued-rpc-loader"));
+    }
+
+    @PreDestroy
+    public void destroy() {
+        if (scheduler != null) {
+            scheduler.shutdownNow();
+        }
+    }
+
+    public ListenableFuture<List<Rpc>> findQueuedRpcs(TenantId tenantId, DeviceId deviceId) {
+        SettableFuture<List<Rpc>> future = SettableFuture.create();
+        Batch fullBatch = null;
+        synchronized (pendingBatches) {
+            Batch batch = pendingBatches.get(tenantId);
+            if (batch == null) {
+                Batch newBatch = new Batch(tenantId);
+                pendingBatches.put(tenantId, newBatch);
+                scheduler.schedule(() -> flush(newBatch), maxDelayMs, TimeUnit.MILLISECONDS);
+                batch = newBatch;
+            }
+            batch.futures.computeIfAbsent(deviceId, id -> new ArrayList<>()).add(future);
+            if (batch.futures.size() >= batchSize) {
+                pendingBatches.remove(tenantId);
+                fullBatch = batch;
+            }
+        }
+        if (fullBatch != null) {
+            submit(fullBatch);
+        }
+        return future;
+    }
+
+    private void flush(Batch batch) {
+        synchronized (pendingBatches) {
+            if (pendingBatches.get(batch.tenantId) != batch) {
+                // was already submitted because of the size limit
+                return;
+            }
+            pendingBatches.remove(batch.tenantId);
+        }
+        submit(batch);
+    }
+
+    private void submit(Batch batch) {
+        dbCallbackExecutor.execute(() -> {
+            try {
+                List<DeviceId> deviceIds = new ArrayList<>(batch.futures.keySet());
+                List<Rpc> rpcs = rpcService.findAllByDeviceIdsAndStatus(batch.tenantId, deviceIds, RpcStatus.QUEUED);
+                log.trace("[{}] Loaded {} queued RPCs for {} devices", batch.tenantId, rpcs.size(), deviceIds.size());
+                Map<DeviceId, List<Rpc>> rpcsByDevice = rpcs.stream().collect(Collectors.groupingBy(Rpc::getDeviceId));
+                batch.futures.forEach((deviceId, futures) -> {
+                    List<Rpc> deviceRpcs = rpcsByDevice.getOrDefault(deviceId, Collections.emptyList());
+                    futures.forEach(future -> future.set(deviceRpcs));
+                });
+            } catch (Throwable t) {
+                log.warn("[{}] Failed to load queued RPCs for {} devices", batch.tenantId, batch.futures.size(), t);
+                batch.futures.values().forEach(futures -> futures.forEach(future -> future.setException(t)));
+            }
+        });
+    }
+
+    private static class Batch {
+        private final TenantId tenantId;
+        private final Map<DeviceId, List<SettableFuture<List<Rpc>>>> futures = new HashMap<>();
+
+        private Batch(TenantId tenantId) {
+            this.tenantId = tenantId;
+        }
+    }
+}
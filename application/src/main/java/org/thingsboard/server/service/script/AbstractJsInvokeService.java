@@ -127,7 +127,7 @@ public abstract class AbstractJsInvokeService implements JsInvokeService {
         disableListInfo.incrementAndGet();
     }
 
-    private String generateJsScript(JsScriptType scriptType, String functionName, String scriptBody, String... argNames) {
+    protected String generateJsScript(JsScriptType scriptType, String functionName, String scriptBody, String... argNames) {
         if (scriptType == JsScriptType.RULE_NODE_SCRIPT) {
             return RuleNodeScriptFactory.generateRuleNodeScript(functionName, scriptBody, argNames);
         }
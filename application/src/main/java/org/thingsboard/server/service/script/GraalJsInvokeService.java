@@ -0,0 +1,452 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.script;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+import com.google.common.util.concurrent.FutureCallback;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import lombok.Getter;
+import lombok.extern.slf4j.Slf4j;
+import org.graalvm.polyglot.Context;
+import org.graalvm.polyglot.Engine;
+import org.graalvm.polyglot.PolyglotException;
+import org.graalvm.polyglot.ResourceLimits;
+import org.graalvm.polyglot.Source;
+import org.graalvm.polyglot.proxy.ProxyArray;
+import org.graalvm.polyglot.proxy.ProxyObject;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.scheduling.annotation.Scheduled;
+import org.springframework.stereotype.Service;
+import org.thingsboard.server.queue.usagestats.TbApiUsageClient;
+import org.thingsboard.server.service.apiusage.TbApiUsageStateService;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.function.Supplier;
+
+/**
+ * Local JS evaluator backed by a pool of pre-warmed GraalJS contexts.
+ * <p>
+ * Every context compiles a script at most once and keeps the resulting function. Message data and metadata are
+ * passed into the script as proxy objects and the result is converted straight to {@link JsonNode}, so no JSON
+ * strings are produced or parsed inside the script engine. The number of statements a single invocation may execute
+ * is limited by the engine itself; a context that exceeded the limit is cancelled and replaced with a fresh one.
+ */
+@Slf4j
+@ConditionalOnProperty(prefix = "js", value = "evaluator", havingValue = "graal")
+@Service
+public class GraalJsInvokeService extends AbstractJsInvokeService {
+
+    private static final String JS = "js";
+    private static final String INTERPRETED_IMPLEMENTATION = "Interpreted";
+    private static final ObjectMapper mapper = new ObjectMapper();
+
+    private final AtomicInteger jsPushedMsgs = new AtomicInteger(0);
+    private final AtomicInteger jsInvokeMsgs = new AtomicInteger(0);
+    private final AtomicInteger jsEvalMsgs = new AtomicInteger(0);
+    private final AtomicInteger jsFailedMsgs = new AtomicInteger(0);
+    private final AtomicInteger jsTimeoutMsgs = new AtomicInteger(0);
+    private final FutureCallback<UUID> evalCallback = new JsStatCallback<>(jsEvalMsgs, jsTimeoutMsgs, jsFailedMsgs);
+    private final FutureCallback<Object> invokeCallback = new JsStatCallback<>(jsInvokeMsgs, jsTimeoutMsgs, jsFailedMsgs);
+
+    private final Map<UUID, Source> scriptSources = new ConcurrentHashMap<>();
+    private final Set<JsContext> contexts = ConcurrentHashMap.newKeySet();
+    private BlockingQueue<JsContext> idleContexts;
+    private Engine engine;
+
+    @Getter
+    private final JsExecutorService jsExecutor;
+
+    @Value("${js.graal.contexts_pool_size:0}")
+    private int contextsPoolSize;
+
+    @Value("${js.graal.max_statements:1000000}")
+    private long maxStatements;
+
+    @Value("${js.graal.max_errors:3}")
+    private int maxErrors;
+
+    @Value("${js.graal.max_requests_timeout:0}")
+    private long maxRequestsTimeout;
+
+    @Value("${js.graal.max_black_list_duration_sec:60}")
+    private int maxBlackListDurationSec;
+
+    @Value("${js.graal.stats.enabled:false}")
+    private boolean statsEnabled;
+
+    public GraalJsInvokeService(TbApiUsageStateService apiUsageStateService, TbApiUsageClient apiUsageClient, JsExecutorService jsExecutor) {
+        super(apiUsageStateService, apiUsageClient);
+        this.jsExecutor = jsExecutor;
+    }
+
+    @Scheduled(fixedDelayString = "${js.graal.stats.print_interval_ms:10000}")
+    public void printStats() {
+        if (statsEnabled) {
+            int pushedMsgs = jsPushedMsgs.getAndSet(0);
+            int invokeMsgs = jsInvokeMsgs.getAndSet(0);
+            int evalMsgs = jsEvalMsgs.getAndSet(0);
+            int failed = jsFailedMsgs.getAndSet(0);
+            int timedOut = jsTimeoutMsgs.getAndSet(0);
+            if (pushedMsgs > 0 || invokeMsgs > 0 || evalMsgs > 0 || failed > 0 || timedOut > 0) {
+                log.info("Graal JS Invoke Stats: pushed [{}] received [{}] invoke [{}] eval [{}] failed [{}] timedOut [{}]",
+                        pushedMsgs, invokeMsgs + evalMsgs, invokeMsgs, evalMsgs, failed, timedOut);
+            }
+        }
+    }
+
+    @PostConstruct
+    public void init() {
+        super.init(maxRequestsTimeout);
+        int poolSize = contextsPoolSize > 0 ? contextsPoolSize : Runtime.getRuntime().availableProcessors();
+        engine = Engine.create();
+        if (INTERPRETED_IMPLEMENTATION.equals(engine.getImplementationName())) {
+            log.warn("GraalJS runs in interpreter-only mode, scripts are not compiled to machine code. " +
+                    "Run on GraalVM or enable the Graal compiler with -XX:+EnableJVMCI to get the optimized runtime.");
+        } else {
+            log.info("GraalJS runs on the optimized runtime: {}", engine.getImplementationName());
+        }
+        idleContexts = new ArrayBlockingQueue<>(poolSize);
+        for (int i = 0; i < poolSize; i++) {
+            idleContexts.add(createContext());
+        }
+        log.info("Initialized {} GraalJS contexts", poolSize);
+    }
+
+    @PreDestroy
+    public void stop() {
+        super.stop();
+        contexts.forEach(JsContext::close);
+        contexts.clear();
+        if (engine != null) {
+            engine.close();
+        }
+    }
+
+    @Override
+    public boolean isHostObjectArgsSupported() {
+        return true;
+    }
+
+    @Override
+    protected String generateJsScript(JsScriptType scriptType, String functionName, String scriptBody, String... argNames) {
+        if (scriptType == JsScriptType.RULE_NODE_SCRIPT) {
+            return RuleNodeScriptFactory.generateRuleNodeFunctionExpression(scriptBody, argNames);
+        }
+        throw new RuntimeException("No script factory implemented for scriptType: " + scriptType);
+    }
+
+    @Override
+    protected ListenableFuture<UUID> doEval(UUID scriptId, String functionName, String jsScript) {
+        jsPushedMsgs.incrementAndGet();
+        ListenableFuture<UUID> result = executeInContext(jsContext -> {
+            try {
+                Source source = Source.newBuilder(JS, jsScript, functionName).cached(true).build();
+                jsContext.getFunction(scriptId, source);
+                scriptSources.put(scriptId, source);
+                scriptIdToNameMap.put(scriptId, functionName);
+                return scriptId;
+            } catch (Exception e) {
+                log.debug("Failed to compile JS script: {}", e.getMessage(), e);
+                throw new ExecutionException(e);
+            }
+        });
+        Futures.addCallback(result, evalCallback, MoreExecutors.directExecutor());
+        return result;
+    }
+
+    @Override
+    protected ListenableFuture<Object> doInvokeFunction(UUID scriptId, String functionName, Object[] args) {
+        jsPushedMsgs.incrementAndGet();
+        ListenableFuture<Object> result = executeInContext(jsContext -> {
+            try {
+                Source source = scriptSources.get(scriptId);
+                if (source == null) {
+                    throw new RuntimeException("No compiled script found for scriptId: [" + scriptId + "]!");
+                }
+                return jsContext.invoke(scriptId, source, toJsArgs(args));
+            } catch (Exception e) {
+                onScriptExecutionError(scriptId, e, functionName);
+                throw new ExecutionException(e);
+            }
+        });
+        Futures.addCallback(result, invokeCallback, MoreExecutors.directExecutor());
+        return result;
+    }
+
+    /**
+     * Runs the task in an idle context. When the request timeout expires first, the context is cancelled,
+     * so the script does not keep running after the caller gave up, and it is replaced with a fresh one.
+     */
+    private <T> ListenableFuture<T> executeInContext(JsContextTask<T> task) {
+        AtomicReference<JsContext> runningContext = new AtomicReference<>();
+        AtomicBoolean timedOut = new AtomicBoolean();
+        ListenableFuture<T> result = jsExecutor.executeAsync(() -> {
+            JsContext jsContext = idleContexts.take();
+            runningContext.set(jsContext);
+            try {
+                if (timedOut.get()) {
+                    throw new TimeoutException("JS request timed out before execution!");
+                }
+                return task.execute(jsContext);
+            } finally {
+                if (!runningContext.compareAndSet(jsContext, null)) {
+                    // cancelled by the timeout
+                    jsContext.markCancelled();
+                }
+                releaseContext(jsContext);
+            }
+        });
+        if (maxRequestsTimeout > 0) {
+            result = Futures.withTimeout(result, maxRequestsTimeout, TimeUnit.MILLISECONDS, timeoutExecutorService);
+            Futures.addCallback(result, new FutureCallback<T>() {
+                @Override
+                public void onSuccess(T value) {
+                }
+
+                @Override
+                public void onFailure(Throwable t) {
+                    if (t instanceof TimeoutException) {
+                        timedOut.set(true);
+                        JsContext jsContext = runningContext.getAndSet(null);
+                        if (jsContext != null) {
+                            log.debug("Cancelling timed out JS execution");
+                            jsContext.cancel();
+                        }
+                    }
+                }
+            }, MoreExecutors.directExecutor());
+        }
+        return result;
+    }
+
+    @Override
+    protected void doRelease(UUID scriptId, String functionName) {
+        scriptSources.remove(scriptId);
+        contexts.forEach(jsContext -> jsContext.removeFunction(scriptId));
+    }
+
+    @Override
+    protected int getMaxErrors() {
+        return maxErrors;
+    }
+
+    @Override
+    protected long getMaxBlacklistDuration() {
+        return TimeUnit.SECONDS.toMillis(maxBlackListDurationSec);
+    }
+
+    private JsContext createContext() {
+        ResourceLimits limits = ResourceLimits.newBuilder()
+                .statementLimit(maxStatements, null)
+                .build();
+        Context context = Context.newBuilder(JS)
+                .engine(engine)
+                .option("js.foreign-object-prototype", "true")
+                .resourceLimits(limits)
+                .build();
+        // Warm up the context so the first script does not pay for the JS realm initialization
+        context.eval(JS, "JSON.stringify({warmup: [1, 'a', true]});");
+        JsContext jsContext = new JsContext(context);
+        contexts.add(jsContext);
+        return jsContext;
+    }
+
+    private void releaseContext(JsContext jsContext) {
+        if (jsContext.isCancelled()) {
+            contexts.remove(jsContext);
+            jsContext.close();
+            jsContext = createContext();
+        }
+        idleContexts.add(jsContext);
+    }
+
+    @SuppressWarnings("unchecked")
+    private static Object[] toJsArgs(Object[] args) throws IOException {
+        // Rule node scripts are invoked with the message data JSON, the metadata map and the message type
+        Object[] jsArgs = Arrays.copyOf(args, args.length);
+        if (jsArgs.length > 0 && jsArgs[0] instanceof String) {
+            jsArgs[0] = toProxy(mapper.readTree((String) jsArgs[0]));
+        }
+        if (jsArgs.length > 1 && jsArgs[1] instanceof Map) {
+            jsArgs[1] = ProxyObject.fromMap(new HashMap<>((Map<String, Object>) jsArgs[1]));
+        }
+        return jsArgs;
+    }
+
+    private static Object toProxy(JsonNode node) {
+        if (node == null || node.isNull() || node.isMissingNode()) {
+            return null;
+        } else if (node.isObject()) {
+            Map<String, Object> map = new LinkedHashMap<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = node.fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                map.put(field.getKey(), toProxy(field.getValue()));
+            }
+            return ProxyObject.fromMap(map);
+        } else if (node.isArray()) {
+            List<Object> list = new ArrayList<>(node.size());
+            node.forEach(element -> list.add(toProxy(element)));
+            return ProxyArray.fromList(list);
+        } else if (node.isBoolean()) {
+            return node.booleanValue();
+        } else if (node.isIntegralNumber() && node.canConvertToLong()) {
+            return node.longValue();
+        } else if (node.isNumber()) {
+            return node.doubleValue();
+        } else {
+            return node.asText();
+        }
+    }
+
+    private static JsonNode toJson(org.graalvm.polyglot.Value value) {
+        if (value == null || value.isNull()) {
+            return JsonNodeFactory.instance.nullNode();
+        } else if (value.isBoolean()) {
+            return JsonNodeFactory.instance.booleanNode(value.asBoolean());
+        } else if (value.isNumber()) {
+            if (value.fitsInInt()) {
+                return JsonNodeFactory.instance.numberNode(value.asInt());
+            } else if (value.fitsInLong()) {
+                return JsonNodeFactory.instance.numberNode(value.asLong());
+            } else {
+                return JsonNodeFactory.instance.numberNode(value.asDouble());
+            }
+        } else if (value.isString()) {
+            return JsonNodeFactory.instance.textNode(value.asString());
+        } else if (value.isInstant()) {
+            return JsonNodeFactory.instance.textNode(value.asInstant().toString());
+        } else if (value.hasArrayElements()) {
+            ArrayNode arrayNode = JsonNodeFactory.instance.arrayNode();
+            for (long i = 0; i < value.getArraySize(); i++) {
+                org.graalvm.polyglot.Value element = value.getArrayElement(i);
+                arrayNode.add(element.canExecute() ? JsonNodeFactory.instance.nullNode() : toJson(element));
+            }
+            return arrayNode;
+        } else if (value.hasMembers()) {
+            ObjectNode objectNode = JsonNodeFactory.instance.objectNode();
+            for (String key : value.getMemberKeys()) {
+                org.graalvm.polyglot.Value member = value.getMember(key);
+                if (member != null && !member.canExecute()) {
+                    objectNode.set(key, toJson(member));
+                }
+            }
+            return objectNode;
+        } else {
+            return JsonNodeFactory.instance.textNode(value.toString());
+        }
+    }
+
+    @FunctionalInterface
+    private interface JsContextTask<T> {
+        T execute(JsContext jsContext) throws Exception;
+    }
+
+    private static class JsContext {
+
+        private final Context context;
+        private final Map<UUID, org.graalvm.polyglot.Value> functions = new ConcurrentHashMap<>();
+        private volatile boolean cancelled;
+
+        private JsContext(Context context) {
+            this.context = context;
+        }
+
+        private org.graalvm.polyglot.Value getFunction(UUID scriptId, Source source) {
+            org.graalvm.polyglot.Value function = functions.get(scriptId);
+            if (function == null) {
+                function = execute(() -> context.eval(source));
+                if (!function.canExecute()) {
+                    throw new IllegalArgumentException("Script does not evaluate to a function!");
+                }
+                functions.put(scriptId, function);
+            }
+            return function;
+        }
+
+        private JsonNode invoke(UUID scriptId, Source source, Object[] args) {
+            context.resetLimits();
+            org.graalvm.polyglot.Value function = getFunction(scriptId, source);
+            return execute(() -> toJson(function.execute(args)));
+        }
+
+        private void removeFunction(UUID scriptId) {
+            functions.remove(scriptId);
+        }
+
+        private boolean isCancelled() {
+            return cancelled;
+        }
+
+        private void markCancelled() {
+            cancelled = true;
+        }
+
+        /**
+         * Stops the script that is running in the context from another thread. The context can't be used afterwards.
+         */
+        private void cancel() {
+            cancelled = true;
+            close();
+        }
+
+        private <T> T execute(Supplier<T> action) {
+            try {
+                return action.get();
+            } catch (PolyglotException e) {
+                if (e.isCancelled() || e.isResourceExhausted()) {
+                    cancelled = true;
+                }
+                throw e;
+            }
+        }
+
+        private void close() {
+            try {
+                context.close(true);
+            } catch (Exception e) {
+                log.debug("Failed to close GraalJS context", e);
+            }
+        }
+    }
+}
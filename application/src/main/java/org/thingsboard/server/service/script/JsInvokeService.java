@@ -29,4 +29,12 @@ public interface JsInvokeService {
 
     ListenableFuture<Void> release(UUID scriptId);
 
+    /**
+     * Whether the rule node script arguments may be passed as is (message data string, metadata map and message type)
+     * instead of being serialized to JSON strings, and the result is returned as {@link com.fasterxml.jackson.databind.JsonNode}.
+     */
+    default boolean isHostObjectArgsSupported() {
+        return false;
+    }
+
 }
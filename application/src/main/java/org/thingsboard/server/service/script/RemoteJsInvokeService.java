@@ -18,6 +18,7 @@ package org.thingsboard.server.service.script;
 import com.google.common.util.concurrent.FutureCallback;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -37,11 +38,15 @@ import org.thingsboard.server.service.apiusage.TbApiUsageStateService;
 import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.ArrayList;
+import java.util.List;
 import java.util.Map;
 import java.util.UUID;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 import java.util.concurrent.atomic.AtomicInteger;
@@ -64,6 +69,15 @@ public class RemoteJsInvokeService extends AbstractJsInvokeService {
     @Value("${js.remote.max_black_list_duration_sec:60}")
     private int maxBlackListDurationSec;
 
+    @Value("${js.remote.batch.enabled:false}")
+    private boolean batchEnabled;
+
+    @Value("${js.remote.batch.max_size:100}")
+    private int batchMaxSize;
+
+    @Value("${js.remote.batch.linger_ms:5}")
+    private long batchLingerMs;
+
     @Value("${js.remote.stats.enabled:false}")
     private boolean statsEnabled;
 
@@ -98,16 +112,24 @@ public class RemoteJsInvokeService extends AbstractJsInvokeService {
     private TbQueueRequestTemplate<TbProtoJsQueueMsg<JsInvokeProtos.RemoteJsRequest>, TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>> requestTemplate;
 
     private Map<UUID, String> scriptIdToBodysMap = new ConcurrentHashMap<>();
+    private final ConcurrentMap<UUID, JsInvokeBatch> invokeBatches = new ConcurrentHashMap<>();
+    private ScheduledExecutorService batchExecutor;
 
     @PostConstruct
     public void init() {
         super.init(maxRequestsTimeout);
         requestTemplate.init();
+        if (batchEnabled) {
+            batchExecutor = Executors.newSingleThreadScheduledExecutor(ThingsBoardThreadFactory.forName("js-executor-remote-batch"));
+        }
     }
 
     @PreDestroy
     public void destroy() {
         super.stop();
+        if (batchExecutor != null) {
+            batchExecutor.shutdownNow();
+        }
         if (requestTemplate != null) {
             requestTemplate.stop();
         }
@@ -166,6 +188,9 @@ public class RemoteJsInvokeService extends AbstractJsInvokeService {
         if (scriptBody == null) {
             return Futures.immediateFailedFuture(new RuntimeException("No script body found for scriptId: [" + scriptId + "]!"));
         }
+        if (batchEnabled) {
+            return addToBatch(scriptId, functionName, scriptBody, args);
+        }
         JsInvokeProtos.JsInvokeRequest.Builder jsRequestBuilder = JsInvokeProtos.JsInvokeRequest.newBuilder()
                 .setScriptIdMSB(scriptId.getMostSignificantBits())
                 .setScriptIdLSB(scriptId.getLeastSignificantBits())
@@ -219,6 +244,97 @@ public class RemoteJsInvokeService extends AbstractJsInvokeService {
         }, callbackExecutor);
     }
 
+    private ListenableFuture<Object> addToBatch(UUID scriptId, String functionName, String scriptBody, Object[] args) {
+        JsInvokeProtos.JsInvokeArgs.Builder argsBuilder = JsInvokeProtos.JsInvokeArgs.newBuilder();
+        for (Object arg : args) {
+            argsBuilder.addArgs(arg.toString());
+        }
+        PendingInvoke invoke = new PendingInvoke(argsBuilder.build());
+        JsInvokeBatch[] fullBatch = new JsInvokeBatch[1];
+        invokeBatches.compute(scriptId, (id, batch) -> {
+            if (batch == null) {
+                batch = new JsInvokeBatch(scriptId, functionName, scriptBody);
+                JsInvokeBatch lingeringBatch = batch;
+                batchExecutor.schedule(() -> {
+                    if (invokeBatches.remove(scriptId, lingeringBatch)) {
+                        sendBatch(lingeringBatch);
+                    }
+                }, batchLingerMs, TimeUnit.MILLISECONDS);
+            }
+            batch.invokes.add(invoke);
+            if (batch.invokes.size() >= batchMaxSize) {
+                fullBatch[0] = batch;
+                return null;
+            }
+            return batch;
+        });
+        if (fullBatch[0] != null) {
+            sendBatch(fullBatch[0]);
+        }
+        return invoke.future;
+    }
+
+    private void sendBatch(JsInvokeBatch batch) {
+        UUID scriptId = batch.scriptId;
+        List<PendingInvoke> invokes = batch.invokes;
+        JsInvokeProtos.JsInvokeBatchRequest.Builder jsRequestBuilder = JsInvokeProtos.JsInvokeBatchRequest.newBuilder()
+                .setScriptIdMSB(scriptId.getMostSignificantBits())
+                .setScriptIdLSB(scriptId.getLeastSignificantBits())
+                .setFunctionName(batch.functionName)
+                .setTimeout((int) maxRequestsTimeout)
+                .setScriptBody(batch.scriptBody);
+        for (PendingInvoke invoke : invokes) {
+            jsRequestBuilder.addInvokeArgs(invoke.args);
+        }
+
+        JsInvokeProtos.RemoteJsRequest jsRequestWrapper = JsInvokeProtos.RemoteJsRequest.newBuilder()
+                .setInvokeBatchRequest(jsRequestBuilder.build())
+                .build();
+
+        log.trace("Post invoke batch request for scriptId [{}] with [{}] invokes", scriptId, invokes.size());
+        ListenableFuture<TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>> future = requestTemplate.send(new TbProtoJsQueueMsg<>(UUID.randomUUID(), jsRequestWrapper));
+        if (maxRequestsTimeout > 0) {
+            future = Futures.withTimeout(future, maxRequestsTimeout, TimeUnit.MILLISECONDS, timeoutExecutorService);
+        }
+        queuePushedMsgs.addAndGet(invokes.size());
+        Futures.addCallback(future, new FutureCallback<TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>>() {
+            @Override
+            public void onSuccess(@Nullable TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse> response) {
+                queueInvokeMsgs.addAndGet(invokes.size());
+                List<JsInvokeProtos.JsInvokeResponse> invokeResults = response.getValue().getInvokeBatchResponse().getInvokeResponsesList();
+                for (int i = 0; i < invokes.size(); i++) {
+                    SettableFuture<Object> invokeFuture = invokes.get(i).future;
+                    if (i >= invokeResults.size()) {
+                        RuntimeException e = new RuntimeException("No invoke response received for the batched request!");
+                        onScriptExecutionError(scriptId, e, batch.scriptBody);
+                        invokeFuture.setException(e);
+                        continue;
+                    }
+                    JsInvokeProtos.JsInvokeResponse invokeResult = invokeResults.get(i);
+                    if (invokeResult.getSuccess()) {
+                        invokeFuture.set(invokeResult.getResult());
+                    } else {
+                        // Every failed invocation counts, the same way as with the single invoke requests
+                        RuntimeException e = new RuntimeException(invokeResult.getErrorDetails());
+                        onScriptExecutionError(scriptId, e, batch.scriptBody);
+                        log.debug("[{}] Failed to invoke script due to [{}]: {}", scriptId, invokeResult.getErrorCode().name(), invokeResult.getErrorDetails());
+                        invokeFuture.setException(e);
+                    }
+                }
+            }
+
+            @Override
+            public void onFailure(Throwable t) {
+                invokes.forEach(invoke -> onScriptExecutionError(scriptId, t, batch.scriptBody));
+                if (t instanceof TimeoutException || (t.getCause() != null && t.getCause() instanceof TimeoutException)) {
+                    queueTimeoutMsgs.addAndGet(invokes.size());
+                }
+                queueFailedMsgs.addAndGet(invokes.size());
+                invokes.forEach(invoke -> invoke.future.setException(t));
+            }
+        }, callbackExecutor);
+    }
+
     @Override
     protected void doRelease(UUID scriptId, String functionName) throws Exception {
         JsInvokeProtos.JsReleaseRequest jsRequest = JsInvokeProtos.JsReleaseRequest.newBuilder()
@@ -250,4 +366,26 @@ public class RemoteJsInvokeService extends AbstractJsInvokeService {
         return TimeUnit.SECONDS.toMillis(maxBlackListDurationSec);
     }
 
+    private static class JsInvokeBatch {
+        private final UUID scriptId;
+        private final String functionName;
+        private final String scriptBody;
+        private final List<PendingInvoke> invokes = new ArrayList<>();
+
+        private JsInvokeBatch(UUID scriptId, String functionName, String scriptBody) {
+            this.scriptId = scriptId;
+            this.functionName = functionName;
+            this.scriptBody = scriptBody;
+        }
+    }
+
+    private static class PendingInvoke {
+        private final JsInvokeProtos.JsInvokeArgs args;
+        private final SettableFuture<Object> future = SettableFuture.create();
+
+        private PendingInvoke(JsInvokeProtos.JsInvokeArgs args) {
+            this.args = args;
+        }
+    }
+
 }
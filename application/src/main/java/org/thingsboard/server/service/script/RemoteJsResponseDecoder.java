@@ -29,10 +29,15 @@ import java.nio.charset.StandardCharsets;
  */
 public class RemoteJsResponseDecoder implements TbKafkaDecoder<TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>> {
 
+    private static final JsonFormat.Parser parser = JsonFormat.parser().ignoringUnknownFields();
+
+    /**
+     * Decodes single and batched (see {@link JsInvokeProtos.JsInvokeBatchResponse}) responses of the JS executors.
+     */
     @Override
     public TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse> decode(TbQueueMsg msg) throws IOException {
         JsInvokeProtos.RemoteJsResponse.Builder builder = JsInvokeProtos.RemoteJsResponse.newBuilder();
-        JsonFormat.parser().ignoringUnknownFields().merge(new String(msg.getData(), StandardCharsets.UTF_8), builder);
+        parser.merge(new String(msg.getData(), StandardCharsets.UTF_8), builder);
         return new TbProtoQueueMsg<>(msg.getKey(), builder.build(), msg.getHeaders());
     }
 }
@@ -65,7 +65,10 @@ public class RuleNodeJsScriptEngine implements org.thingsboard.rule.engine.api.S
         }
     }
 
-    private static String[] prepareArgs(TbMsg msg) {
+    private Object[] prepareArgs(TbMsg msg) {
+        if (sandboxService.isHostObjectArgsSupported()) {
+            return new Object[]{msg.getData() != null ? msg.getData() : "", msg.getMetaData().getData(), msg.getType()};
+        }
         try {
             String[] args = new String[3];
             if (msg.getData() != null) {
@@ -206,13 +209,16 @@ public class RuleNodeJsScriptEngine implements org.thingsboard.rule.engine.api.S
 
     ListenableFuture<JsonNode> executeScriptAsync(TbMsg msg) {
         log.trace("execute script async, msg {}", msg);
-        String[] inArgs = prepareArgs(msg);
+        Object[] inArgs = prepareArgs(msg);
         return executeScriptAsync(msg.getCustomerId(), inArgs[0], inArgs[1], inArgs[2]);
     }
 
     ListenableFuture<JsonNode> executeScriptAsync(CustomerId customerId, Object... args) {
         return Futures.transformAsync(sandboxService.invokeFunction(tenantId, customerId, this.scriptId, args),
                 o -> {
+                    if (o instanceof JsonNode) {
+                        return Futures.immediateFuture((JsonNode) o);
+                    }
                     try {
                         return Futures.immediateFuture(mapper.readTree(o.toString()));
                     } catch (Exception e) {
@@ -30,6 +30,12 @@ public class RuleNodeScriptFactory {
     private static final String JS_WRAPPER_SUFFIX = "\n}" +
             "\n}";
 
+    private static final String JS_FUNCTION_WRAPPER_PREFIX_TEMPLATE = "(function (msg, metadata, msgType) { " +
+            "    return %s(msg, metadata, msgType);" +
+            "    function %s(%s, %s, %s) {";
+    private static final String JS_FUNCTION_WRAPPER_SUFFIX = "\n}" +
+            "\n})";
+
 
     public static String generateRuleNodeScript(String functionName, String scriptBody, String... argNames) {
         String msgArg;
@@ -49,4 +55,26 @@ public class RuleNodeScriptFactory {
         return jsWrapperPrefix + scriptBody + JS_WRAPPER_SUFFIX;
     }
 
+    /**
+     * Generates an anonymous function expression that takes message, metadata and message type as objects
+     * and returns the raw result of the script, without JSON (de)serialization inside the script engine.
+     */
+    public static String generateRuleNodeFunctionExpression(String scriptBody, String... argNames) {
+        String msgArg;
+        String metadataArg;
+        String msgTypeArg;
+        if (argNames != null && argNames.length == 3) {
+            msgArg = argNames[0];
+            metadataArg = argNames[1];
+            msgTypeArg = argNames[2];
+        } else {
+            msgArg = MSG;
+            metadataArg = METADATA;
+            msgTypeArg = MSG_TYPE;
+        }
+        String jsWrapperPrefix = String.format(JS_FUNCTION_WRAPPER_PREFIX_TEMPLATE,
+                RULE_NODE_FUNCTION_NAME, RULE_NODE_FUNCTION_NAME, msgArg, metadataArg, msgTypeArg);
+        return jsWrapperPrefix + scriptBody + JS_FUNCTION_WRAPPER_SUFFIX;
+    }
+
 }
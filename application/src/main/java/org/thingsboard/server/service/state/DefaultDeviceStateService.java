@@ -23,6 +23,7 @@ import com.google.common.util.concurrent.ListenableFuture;
 import com.google.common.util.concurrent.ListeningScheduledExecutorService;
 import com.google.common.util.concurrent.MoreExecutors;
 import com.google.common.util.concurrent.SettableFuture;
+import lombok.Data;
 import lombok.Getter;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
@@ -69,8 +70,10 @@ import javax.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.Queue;
 import java.util.Random;
@@ -133,11 +136,26 @@ public class DefaultDeviceStateService extends TbApplicationEventListener<Partit
     @Getter
     private int initFetchPackSize;
 
+    @Value("${state.handoff.enabled:false}")
+    @Getter
+    private boolean handoffEnabled;
+
+    @Value("${state.handoff.snapshot_pack_size:1000}")
+    private int handoffSnapshotPackSize;
+
+    @Value("${state.handoff.wait_ms:1000}")
+    private long handoffWaitMs;
+
+    @Value("${state.handoff.ttl_sec:60}")
+    private long handoffTtlSec;
+
     private ListeningScheduledExecutorService scheduledExecutor;
     private ExecutorService deviceStateExecutor;
-    private final ConcurrentMap<TopicPartitionInfo, Set<DeviceId>> partitionedDevices = new ConcurrentHashMap<>();
+    final ConcurrentMap<TopicPartitionInfo, Set<DeviceId>> partitionedDevices = new ConcurrentHashMap<>();
     final ConcurrentMap<DeviceId, DeviceStateData> deviceStates = new ConcurrentHashMap<>();
     private final ConcurrentMap<DeviceId, Long> deviceLastSavedActivity = new ConcurrentHashMap<>();
+    // States received from the previous owners of the partitions, compared with the DB state on partitions init
+    final ConcurrentMap<DeviceId, HandoffDeviceState> handoffStates = new ConcurrentHashMap<>();
 
     final Queue<Set<TopicPartitionInfo>> subscribeQueue = new ConcurrentLinkedQueue<>();
 
@@ -168,6 +186,14 @@ public class DefaultDeviceStateService extends TbApplicationEventListener<Partit
 
     @PreDestroy
     public void stop() {
+        if (handoffEnabled && !deviceStates.isEmpty()) {
+            // the partitions of this node are taken over by the remaining nodes
+            try {
+                sendStateSnapshot(new ArrayList<>(deviceStates.values()));
+            } catch (Exception e) {
+                log.warn("Failed to send device states snapshot on shutdown", e);
+            }
+        }
         if (deviceStateExecutor != null) {
             deviceStateExecutor.shutdownNow();
         }
@@ -301,6 +327,37 @@ public class DefaultDeviceStateService extends TbApplicationEventListener<Partit
         }
     }
 
+    /**
+     * The snapshot is pushed to the core partition of the devices, so it is consumed by their new owner only.
+     * It usually arrives before this node has processed its own partition change event,
+     * so the states are buffered and the unused ones expire after state.handoff.ttl_sec.
+     */
+    @Override
+    public void onDeviceStateSnapshot(TransportProtos.DeviceStateSnapshotMsgProto proto, TbCallback callback) {
+        if (handoffEnabled) {
+            long ts = System.currentTimeMillis();
+            int accepted = 0;
+            for (TransportProtos.DeviceStateProto stateProto : proto.getStatesList()) {
+                TenantId tenantId = new TenantId(new UUID(stateProto.getTenantIdMSB(), stateProto.getTenantIdLSB()));
+                DeviceId deviceId = new DeviceId(new UUID(stateProto.getDeviceIdMSB(), stateProto.getDeviceIdLSB()));
+                if (!partitionService.resolve(ServiceType.TB_CORE, tenantId, deviceId).isMyPartition()) {
+                    continue;
+                }
+                DeviceState state = toDeviceState(stateProto);
+                DeviceStateData stateData = deviceStates.get(deviceId);
+                if (stateData == null) {
+                    handoffStates.put(deviceId, new HandoffDeviceState(state, ts));
+                    accepted++;
+                } else if (!isFresher(stateData.getState(), state)) {
+                    deviceStates.put(deviceId, withState(stateData, state));
+                    accepted++;
+                }
+            }
+            log.debug("Accepted {} of {} device states from the snapshot", accepted, proto.getStatesCount());
+        }
+        callback.onSuccess();
+    }
+
     /**
      * DiscoveryService will call this event from the single thread (one-by-one).
      * Events order is guaranteed by DiscoveryService.
@@ -354,17 +411,30 @@ public class DefaultDeviceStateService extends TbApplicationEventListener<Partit
             log.info("REMOVED PARTITIONS: {}", removedPartitions);
 
             // We no longer manage current partition of devices;
+            List<DeviceStateData> removedStates = new ArrayList<>();
             removedPartitions.forEach(partition -> {
                 Set<DeviceId> devices = partitionedDevices.remove(partition);
                 devices.forEach(deviceId -> {
-                    deviceStates.remove(deviceId);
+                    DeviceStateData stateData = deviceStates.remove(deviceId);
+                    if (handoffEnabled && stateData != null) {
+                        removedStates.add(stateData);
+                    }
                     deviceLastSavedActivity.remove(deviceId);
                 });
             });
 
+            if (!removedStates.isEmpty()) {
+                sendStateSnapshot(removedStates);
+            }
+
             addedPartitions.forEach(tpi -> partitionedDevices.computeIfAbsent(tpi, key -> ConcurrentHashMap.newKeySet()));
 
-            initPartitions(addedPartitions);
+            if (handoffEnabled && !addedPartitions.isEmpty()) {
+                // give the previous owners some time to send the snapshots of the states
+                scheduledExecutor.schedule(() -> initPartitions(addedPartitions), handoffWaitMs, TimeUnit.MILLISECONDS);
+            } else {
+                initPartitions(addedPartitions);
+            }
 
             log.info("Managing following partitions:");
             partitionedDevices.forEach((tpi, devices) -> {
@@ -400,13 +470,12 @@ public class DefaultDeviceStateService extends TbApplicationEventListener<Partit
             TopicPartitionInfo tpi = partitionService.resolve(ServiceType.TB_CORE, tenant.getId(), device.getId());
             if (addedPartitions.contains(tpi)) {
                 log.debug("[{}][{}] Device belong to current partition. tpi [{}]. Fetching state from DB", device.getName(), device.getId(), tpi);
-                ListenableFuture<Void> future = Futures.transform(fetchDeviceState(device), new Function<DeviceStateData, Void>() {
+                ListenableFuture<Void> future = Futures.transform(fetchOrHandoffDeviceState(device), new Function<DeviceStateData, Void>() {
                     @Nullable
                     @Override
                     public Void apply(@Nullable DeviceStateData state) {
                         if (state != null) {
-                            addDeviceUsingState(tpi, state);
-                            checkAndUpdateState(device.getId(), state);
+                            checkAndUpdateState(device.getId(), addDeviceUsingState(tpi, state));
                         } else {
                             log.warn("{}][{}] Fetched null state from DB", device.getName(), device.getId());
                         }
@@ -450,19 +519,29 @@ public class DefaultDeviceStateService extends TbApplicationEventListener<Partit
         }
     }
 
-    private void addDeviceUsingState(TopicPartitionInfo tpi, DeviceStateData state) {
+    /**
+     * The fetch may complete after the state was already added by an activity update or a snapshot,
+     * so the fresher of both states is kept.
+     */
+    DeviceStateData addDeviceUsingState(TopicPartitionInfo tpi, DeviceStateData state) {
         Set<DeviceId> deviceIds = partitionedDevices.get(tpi);
         if (deviceIds != null) {
             deviceIds.add(state.getDeviceId());
-            deviceStates.put(state.getDeviceId(), state);
+            return deviceStates.merge(state.getDeviceId(), state,
+                    (current, fetched) -> isFresher(current.getState(), fetched.getState()) ? current : fetched);
         } else {
             log.warn("Device belongs to external partition {}" + tpi.getFullTopicName());
             new RuntimeException("Device belongs to external partition " + tpi.getFullTopicName() + "!");
+            return state;
         }
     }
 
     void updateInactivityStateIfExpired() {
         final long ts = System.currentTimeMillis();
+        if (!handoffStates.isEmpty()) {
+            long expirationTs = ts - TimeUnit.SECONDS.toMillis(handoffTtlSec);
+            handoffStates.values().removeIf(handoffState -> handoffState.getReceivedTs() < expirationTs);
+        }
         log.debug("Calculating state updates for {} devices", deviceStates.size());
         Set<DeviceId> deviceIds = new HashSet<>(deviceStates.keySet());
         for (DeviceId deviceId : deviceIds) {
@@ -543,6 +622,68 @@ public class DefaultDeviceStateService extends TbApplicationEventListener<Partit
         deviceIdSet.remove(deviceId);
     }
 
+    private void sendStateSnapshot(List<DeviceStateData> states) {
+        Map<TopicPartitionInfo, List<DeviceStateData>> statesByPartition = new HashMap<>();
+        for (DeviceStateData stateData : states) {
+            TopicPartitionInfo tpi = partitionService.resolve(ServiceType.TB_CORE, stateData.getTenantId(), stateData.getDeviceId());
+            statesByPartition.computeIfAbsent(tpi, key -> new ArrayList<>()).add(stateData);
+        }
+        statesByPartition.forEach((tpi, partitionStates) -> {
+            TransportProtos.DeviceStateSnapshotMsgProto.Builder snapshot = TransportProtos.DeviceStateSnapshotMsgProto.newBuilder();
+            for (DeviceStateData stateData : partitionStates) {
+                snapshot.addStates(toDeviceStateProto(stateData));
+                if (snapshot.getStatesCount() >= handoffSnapshotPackSize) {
+                    pushStateSnapshot(tpi, snapshot);
+                    snapshot.clearStates();
+                }
+            }
+            if (snapshot.getStatesCount() > 0) {
+                pushStateSnapshot(tpi, snapshot);
+            }
+        });
+        log.info("Sent snapshot of {} device states to {} partitions", states.size(), statesByPartition.size());
+    }
+
+    private void pushStateSnapshot(TopicPartitionInfo tpi, TransportProtos.DeviceStateSnapshotMsgProto.Builder snapshot) {
+        TransportProtos.ToCoreMsg msg = TransportProtos.ToCoreMsg.newBuilder().setDeviceStateSnapshotMsg(snapshot).build();
+        clusterService.pushMsgToCore(tpi, UUID.randomUUID(), msg, null);
+    }
+
+    ListenableFuture<DeviceStateData> fetchOrHandoffDeviceState(Device device) {
+        HandoffDeviceState handoffState = handoffStates.remove(device.getId());
+        if (handoffState == null) {
+            return fetchDeviceState(device);
+        }
+        // the previous owner persists the state asynchronously, so the DB may be behind the snapshot or ahead of it
+        return Futures.transform(fetchDeviceState(device), fetched -> {
+            if (fetched == null || isFresher(handoffState.getState(), fetched.getState())) {
+                log.debug("[{}] Using device state from the previous partition owner {}", device.getId(), handoffState.getState());
+                return toDeviceStateData(device, handoffState.getState());
+            }
+            return fetched;
+        }, deviceStateExecutor);
+    }
+
+    private static boolean isFresher(DeviceState state, DeviceState other) {
+        return getLastUpdateTime(state) >= getLastUpdateTime(other);
+    }
+
+    private static long getLastUpdateTime(DeviceState state) {
+        return Math.max(Math.max(state.getLastConnectTime(), state.getLastDisconnectTime()),
+                Math.max(state.getLastActivityTime(), state.getLastInactivityAlarmTime()));
+    }
+
+    private static DeviceStateData withState(DeviceStateData stateData, DeviceState state) {
+        return DeviceStateData.builder()
+                .tenantId(stateData.getTenantId())
+                .customerId(stateData.getCustomerId())
+                .deviceId(stateData.getDeviceId())
+                .deviceCreationTime(stateData.getDeviceCreationTime())
+                .metaData(stateData.getMetaData())
+                .state(state)
+                .build();
+    }
+
     private ListenableFuture<DeviceStateData> fetchDeviceState(Device device) {
         ListenableFuture<DeviceStateData> future;
         if (persistToTelemetry) {
@@ -591,16 +732,7 @@ public class DefaultDeviceStateService extends TbApplicationEventListener<Partit
                             .lastInactivityAlarmTime(inactivityAlarmTime)
                             .inactivityTimeout(inactivityTimeout)
                             .build();
-                    TbMsgMetaData md = new TbMsgMetaData();
-                    md.putValue("deviceName", device.getName());
-                    md.putValue("deviceType", device.getType());
-                    DeviceStateData deviceStateData = DeviceStateData.builder()
-                            .customerId(device.getCustomerId())
-                            .tenantId(device.getTenantId())
-                            .deviceId(device.getId())
-                            .deviceCreationTime(device.getCreatedTime())
-                            .metaData(md)
-                            .state(deviceState).build();
+                    DeviceStateData deviceStateData = toDeviceStateData(device, deviceState);
                     log.debug("[{}] Fetched device state from the DB {}", device.getId(), deviceStateData);
                     return deviceStateData;
                 } catch (Exception e) {
@@ -611,6 +743,46 @@ public class DefaultDeviceStateService extends TbApplicationEventListener<Partit
         };
     }
 
+    private DeviceStateData toDeviceStateData(Device device, DeviceState deviceState) {
+        TbMsgMetaData md = new TbMsgMetaData();
+        md.putValue("deviceName", device.getName());
+        md.putValue("deviceType", device.getType());
+        return DeviceStateData.builder()
+                .customerId(device.getCustomerId())
+                .tenantId(device.getTenantId())
+                .deviceId(device.getId())
+                .deviceCreationTime(device.getCreatedTime())
+                .metaData(md)
+                .state(deviceState).build();
+    }
+
+    private static TransportProtos.DeviceStateProto toDeviceStateProto(DeviceStateData stateData) {
+        DeviceState state = stateData.getState();
+        return TransportProtos.DeviceStateProto.newBuilder()
+                .setTenantIdMSB(stateData.getTenantId().getId().getMostSignificantBits())
+                .setTenantIdLSB(stateData.getTenantId().getId().getLeastSignificantBits())
+                .setDeviceIdMSB(stateData.getDeviceId().getId().getMostSignificantBits())
+                .setDeviceIdLSB(stateData.getDeviceId().getId().getLeastSignificantBits())
+                .setActive(state.isActive())
+                .setLastConnectTime(state.getLastConnectTime())
+                .setLastActivityTime(state.getLastActivityTime())
+                .setLastDisconnectTime(state.getLastDisconnectTime())
+                .setLastInactivityAlarmTime(state.getLastInactivityAlarmTime())
+                .setInactivityTimeout(state.getInactivityTimeout())
+                .build();
+    }
+
+    private static DeviceState toDeviceState(TransportProtos.DeviceStateProto proto) {
+        return DeviceState.builder()
+                .active(proto.getActive())
+                .lastConnectTime(proto.getLastConnectTime())
+                .lastActivityTime(proto.getLastActivityTime())
+                .lastDisconnectTime(proto.getLastDisconnectTime())
+                .lastInactivityAlarmTime(proto.getLastInactivityAlarmTime())
+                .inactivityTimeout(proto.getInactivityTimeout())
+                .build();
+    }
+
     private long getEntryValue(List<? extends KvEntry> kvEntries, String attributeName, long defaultValue) {
         if (kvEntries != null) {
             for (KvEntry entry : kvEntries) {
@@ -698,4 +870,11 @@ public class DefaultDeviceStateService extends TbApplicationEventListener<Partit
             log.warn("[{}] Failed to update attribute [{}] with value [{}]", deviceId, key, value, t);
         }
     }
+
+    @Data
+    static class HandoffDeviceState {
+        private final DeviceState state;
+        private final long receivedTs;
+    }
+
 }
@@ -43,4 +43,6 @@ public interface DeviceStateService extends ApplicationListener<PartitionChangeE
 
     void onQueueMsg(TransportProtos.DeviceStateServiceMsgProto proto, TbCallback bytes);
 
+    void onDeviceStateSnapshot(TransportProtos.DeviceStateSnapshotMsgProto proto, TbCallback callback);
+
 }
@@ -61,6 +61,7 @@ import org.thingsboard.server.service.telemetry.sub.TelemetrySubscriptionUpdate;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.util.ArrayList;
+import java.util.HashMap;
 import java.util.HashSet;
 import java.util.List;
 import java.util.Map;
@@ -71,6 +72,7 @@ import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
+import java.util.concurrent.atomic.AtomicBoolean;
 import java.util.function.Function;
 import java.util.function.Predicate;
 
@@ -103,7 +105,7 @@ public class DefaultSubscriptionManagerService extends TbApplicationEventListene
     @Autowired
     private TbClusterService clusterService;
 
-    private final Map<EntityId, Set<TbSubscription>> subscriptionsByEntityId = new ConcurrentHashMap<>();
+    private final Map<EntityId, TbEntitySubscriptions> subscriptionsByEntityId = new ConcurrentHashMap<>();
     private final Map<String, Map<Integer, TbSubscription>> subscriptionsByWsSessionId = new ConcurrentHashMap<>();
     private final ConcurrentMap<TopicPartitionInfo, Set<TbSubscription>> partitionedSubscriptions = new ConcurrentHashMap<>();
     private final Set<TopicPartitionInfo> currentPartitions = ConcurrentHashMap.newKeySet();
@@ -139,8 +141,14 @@ public class DefaultSubscriptionManagerService extends TbApplicationEventListene
                     , subscription.getTenantId(), subscription.getEntityId(), tpi.getFullTopicName());
             callback.onFailure(new RuntimeException("Entity belongs to external partition " + tpi.getFullTopicName() + "!"));
         }
-        boolean newSubscription = subscriptionsByEntityId
-                .computeIfAbsent(subscription.getEntityId(), k -> ConcurrentHashMap.newKeySet()).add(subscription);
+        AtomicBoolean newSubscriptionHolder = new AtomicBoolean();
+        subscriptionsByEntityId.compute(subscription.getEntityId(), (entityId, current) -> {
+            TbEntitySubscriptions subscriptions = current != null ? current : TbEntitySubscriptions.EMPTY;
+            TbEntitySubscriptions updated = subscriptions.add(subscription);
+            newSubscriptionHolder.set(updated != subscriptions);
+            return updated;
+        });
+        boolean newSubscription = newSubscriptionHolder.get();
         subscriptionsByWsSessionId.computeIfAbsent(subscription.getSessionId(), k -> new ConcurrentHashMap<>()).put(subscription.getSubscriptionId(), subscription);
         if (newSubscription) {
             switch (subscription.getType()) {
@@ -203,25 +211,7 @@ public class DefaultSubscriptionManagerService extends TbApplicationEventListene
 
     @Override
     public void onTimeSeriesUpdate(TenantId tenantId, EntityId entityId, List<TsKvEntry> ts, TbCallback callback) {
-        onLocalTelemetrySubUpdate(entityId,
-                s -> {
-                    if (TbSubscriptionType.TIMESERIES.equals(s.getType())) {
-                        return (TbTimeseriesSubscription) s;
-                    } else {
-                        return null;
-                    }
-                }, s -> true, s -> {
-                    List<TsKvEntry> subscriptionUpdate = null;
-                    for (TsKvEntry kv : ts) {
-                        if ((s.isAllKeys() || s.getKeyStates().containsKey((kv.getKey())))) {
-                            if (subscriptionUpdate == null) {
-                                subscriptionUpdate = new ArrayList<>();
-                            }
-                            subscriptionUpdate.add(kv);
-                        }
-                    }
-                    return subscriptionUpdate;
-                });
+        onLocalTelemetrySubUpdate(entityId, TbSubscriptionType.TIMESERIES, s -> true, ts);
         callback.onSuccess();
     }
 
@@ -232,27 +222,11 @@ public class DefaultSubscriptionManagerService extends TbApplicationEventListene
 
     @Override
     public void onAttributesUpdate(TenantId tenantId, EntityId entityId, String scope, List<AttributeKvEntry> attributes, boolean notifyDevice, TbCallback callback) {
-        onLocalTelemetrySubUpdate(entityId,
-                s -> {
-                    if (TbSubscriptionType.ATTRIBUTES.equals(s.getType())) {
-                        return (TbAttributeSubscription) s;
-                    } else {
-                        return null;
-                    }
-                },
-                s -> (TbAttributeSubscriptionScope.ANY_SCOPE.equals(s.getScope()) || scope.equals(s.getScope().name())),
-                s -> {
-                    List<TsKvEntry> subscriptionUpdate = null;
-                    for (AttributeKvEntry kv : attributes) {
-                        if (s.isAllKeys() || s.getKeyStates().containsKey(kv.getKey())) {
-                            if (subscriptionUpdate == null) {
-                                subscriptionUpdate = new ArrayList<>();
-                            }
-                            subscriptionUpdate.add(new BasicTsKvEntry(kv.getLastUpdateTs(), kv));
-                        }
-                    }
-                    return subscriptionUpdate;
-                });
+        List<TsKvEntry> updates = new ArrayList<>(attributes.size());
+        for (AttributeKvEntry kv : attributes) {
+            updates.add(new BasicTsKvEntry(kv.getLastUpdateTs(), kv));
+        }
+        onLocalTelemetrySubUpdate(entityId, TbSubscriptionType.ATTRIBUTES, s -> isScopeMatch((TbAttributeSubscription) s, scope), updates);
         if (entityId.getEntityType() == EntityType.DEVICE) {
             if (TbAttributeSubscriptionScope.SERVER_SCOPE.name().equalsIgnoreCase(scope)) {
                 for (AttributeKvEntry attribute : attributes) {
@@ -305,50 +279,48 @@ public class DefaultSubscriptionManagerService extends TbApplicationEventListene
 
     @Override
     public void onAttributesDelete(TenantId tenantId, EntityId entityId, String scope, List<String> keys, TbCallback callback) {
-        onLocalTelemetrySubUpdate(entityId,
-                s -> {
-                    if (TbSubscriptionType.ATTRIBUTES.equals(s.getType())) {
-                        return (TbAttributeSubscription) s;
-                    } else {
-                        return null;
-                    }
-                },
-                s -> (TbAttributeSubscriptionScope.ANY_SCOPE.equals(s.getScope()) || scope.equals(s.getScope().name())),
-                s -> {
-                    List<TsKvEntry> subscriptionUpdate = null;
-                    for (String key : keys) {
-                        if (s.isAllKeys() || s.getKeyStates().containsKey(key)) {
-                            if (subscriptionUpdate == null) {
-                                subscriptionUpdate = new ArrayList<>();
-                            }
-                            subscriptionUpdate.add(new BasicTsKvEntry(0, new StringDataEntry(key, null)));
-                        }
-                    }
-                    return subscriptionUpdate;
-                });
+        List<TsKvEntry> updates = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            updates.add(new BasicTsKvEntry(0, new StringDataEntry(key, null)));
+        }
+        onLocalTelemetrySubUpdate(entityId, TbSubscriptionType.ATTRIBUTES, s -> isScopeMatch((TbAttributeSubscription) s, scope), updates);
         callback.onSuccess();
     }
 
-    private <T extends TbSubscription> void onLocalTelemetrySubUpdate(EntityId entityId,
-                                                                      Function<TbSubscription, T> castFunction,
-                                                                      Predicate<T> filterFunction,
-                                                                      Function<T, List<TsKvEntry>> processFunction) {
-        Set<TbSubscription> entitySubscriptions = subscriptionsByEntityId.get(entityId);
-        if (entitySubscriptions != null) {
-            entitySubscriptions.stream().map(castFunction).filter(Objects::nonNull).filter(filterFunction).forEach(s -> {
-                List<TsKvEntry> subscriptionUpdate = processFunction.apply(s);
-                if (subscriptionUpdate != null && !subscriptionUpdate.isEmpty()) {
-                    if (serviceId.equals(s.getServiceId())) {
-                        TelemetrySubscriptionUpdate update = new TelemetrySubscriptionUpdate(s.getSubscriptionId(), subscriptionUpdate);
-                        localSubscriptionService.onSubscriptionUpdate(s.getSessionId(), update, TbCallback.EMPTY);
-                    } else {
-                        TopicPartitionInfo tpi = partitionService.getNotificationsTopic(ServiceType.TB_CORE, s.getServiceId());
-                        toCoreNotificationsProducer.send(tpi, toProto(s, subscriptionUpdate), null);
-                    }
+    private static boolean isScopeMatch(TbAttributeSubscription subscription, String scope) {
+        return TbAttributeSubscriptionScope.ANY_SCOPE.equals(subscription.getScope()) || scope.equals(subscription.getScope().name());
+    }
+
+    private void onLocalTelemetrySubUpdate(EntityId entityId, TbSubscriptionType type,
+                                           Predicate<TbSubscription> filterFunction, List<TsKvEntry> updates) {
+        TbEntitySubscriptions entitySubscriptions = subscriptionsByEntityId.get(entityId);
+        if (entitySubscriptions == null) {
+            log.debug("[{}] No device subscriptions to process!", entityId);
+            return;
+        }
+        Map<String, List<TbSubscriptionUpdateProto>> remoteUpdates = null;
+        for (Map.Entry<TbSubscription, List<TsKvEntry>> entry : entitySubscriptions.findMatching(type, updates).entrySet()) {
+            TbSubscription s = entry.getKey();
+            if (!filterFunction.test(s)) {
+                continue;
+            }
+            List<TsKvEntry> subscriptionUpdate = entry.getValue();
+            if (serviceId.equals(s.getServiceId())) {
+                TelemetrySubscriptionUpdate update = new TelemetrySubscriptionUpdate(s.getSubscriptionId(), subscriptionUpdate);
+                localSubscriptionService.onSubscriptionUpdate(s.getSessionId(), update, TbCallback.EMPTY);
+            } else {
+                if (remoteUpdates == null) {
+                    remoteUpdates = new HashMap<>();
                 }
+                remoteUpdates.computeIfAbsent(s.getServiceId(), id -> new ArrayList<>()).add(toSubscriptionUpdateProto(s, subscriptionUpdate));
+            }
+        }
+        if (remoteUpdates != null) {
+            // one notification per target core node instead of one per subscription
+            remoteUpdates.forEach((targetServiceId, subUpdates) -> {
+                TopicPartitionInfo tpi = partitionService.getNotificationsTopic(ServiceType.TB_CORE, targetServiceId);
+                toCoreNotificationsProducer.send(tpi, toProto(entityId, subUpdates), null);
             });
-        } else {
-            log.debug("[{}] No device subscriptions to process!", entityId);
         }
     }
 
@@ -356,9 +328,9 @@ public class DefaultSubscriptionManagerService extends TbApplicationEventListene
                                        Function<TbSubscription, TbAlarmsSubscription> castFunction,
                                        Predicate<TbAlarmsSubscription> filterFunction,
                                        Function<TbAlarmsSubscription, Alarm> processFunction, boolean deleted) {
-        Set<TbSubscription> entitySubscriptions = subscriptionsByEntityId.get(entityId);
+        TbEntitySubscriptions entitySubscriptions = subscriptionsByEntityId.get(entityId);
         if (entitySubscriptions != null) {
-            entitySubscriptions.stream().map(castFunction).filter(Objects::nonNull).filter(filterFunction).forEach(s -> {
+            entitySubscriptions.getByType(TbSubscriptionType.ALARMS).stream().map(castFunction).filter(Objects::nonNull).filter(filterFunction).forEach(s -> {
                 Alarm alarm = processFunction.apply(s);
                 if (alarm != null) {
                     if (serviceId.equals(s.getServiceId())) {
@@ -376,13 +348,10 @@ public class DefaultSubscriptionManagerService extends TbApplicationEventListene
     }
 
     private void removeSubscriptionFromEntityMap(TbSubscription sub) {
-        Set<TbSubscription> entitySubSet = subscriptionsByEntityId.get(sub.getEntityId());
-        if (entitySubSet != null) {
-            entitySubSet.remove(sub);
-            if (entitySubSet.isEmpty()) {
-                subscriptionsByEntityId.remove(sub.getEntityId());
-            }
-        }
+        subscriptionsByEntityId.computeIfPresent(sub.getEntityId(), (entityId, current) -> {
+            TbEntitySubscriptions updated = current.remove(sub);
+            return updated.isEmpty() ? null : updated;
+        });
     }
 
     private void removeSubscriptionFromPartitionMap(TbSubscription sub) {
@@ -459,6 +428,24 @@ public class DefaultSubscriptionManagerService extends TbApplicationEventListene
     }
 
     private TbProtoQueueMsg<ToCoreNotificationMsg> toProto(TbSubscription subscription, List<TsKvEntry> updates) {
+        ToCoreNotificationMsg toCoreMsg = ToCoreNotificationMsg.newBuilder().setToLocalSubscriptionServiceMsg(
+                LocalSubscriptionServiceMsgProto.newBuilder().setSubUpdate(toSubscriptionUpdateProto(subscription, updates)).build())
+                .build();
+        return new TbProtoQueueMsg<>(subscription.getEntityId().getId(), toCoreMsg);
+    }
+
+    private TbProtoQueueMsg<ToCoreNotificationMsg> toProto(EntityId entityId, List<TbSubscriptionUpdateProto> subUpdates) {
+        LocalSubscriptionServiceMsgProto.Builder builder = LocalSubscriptionServiceMsgProto.newBuilder();
+        if (subUpdates.size() == 1) {
+            builder.setSubUpdate(subUpdates.get(0));
+        } else {
+            builder.addAllSubUpdates(subUpdates);
+        }
+        ToCoreNotificationMsg toCoreMsg = ToCoreNotificationMsg.newBuilder().setToLocalSubscriptionServiceMsg(builder.build()).build();
+        return new TbProtoQueueMsg<>(entityId.getId(), toCoreMsg);
+    }
+
+    private TbSubscriptionUpdateProto toSubscriptionUpdateProto(TbSubscription subscription, List<TsKvEntry> updates) {
         TbSubscriptionUpdateProto.Builder builder = TbSubscriptionUpdateProto.newBuilder();
 
         builder.setSessionId(subscription.getSessionId());
@@ -490,11 +477,7 @@ public class DefaultSubscriptionManagerService extends TbApplicationEventListene
                 builder.addData(dataBuilder.build());
             }
         });
-
-        ToCoreNotificationMsg toCoreMsg = ToCoreNotificationMsg.newBuilder().setToLocalSubscriptionServiceMsg(
-                LocalSubscriptionServiceMsgProto.newBuilder().setSubUpdate(builder.build()).build())
-                .build();
-        return new TbProtoQueueMsg<>(subscription.getEntityId().getId(), toCoreMsg);
+        return builder.build();
     }
 
     private TbProtoQueueMsg<ToCoreNotificationMsg> toProto(TbSubscription subscription, Alarm alarm, boolean deleted) {
@@ -29,6 +29,7 @@ import org.springframework.scheduling.annotation.Scheduled;
 import org.springframework.stereotype.Service;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
 import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.kv.BaseReadTsKvQuery;
 import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
@@ -68,7 +69,6 @@ import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.util.ArrayList;
 import java.util.Arrays;
-import java.util.Collections;
 import java.util.HashMap;
 import java.util.LinkedHashMap;
 import java.util.LinkedHashSet;
@@ -76,7 +76,6 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
-import java.util.concurrent.ExecutionException;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
@@ -376,7 +375,7 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
         List<String> keys = cmd.getKeys();
         List<ReadTsKvQuery> finalTsKvQueryList;
         List<ReadTsKvQuery> tsKvQueryList = cmd.getKeys().stream().map(key -> new BaseReadTsKvQuery(
-                key, cmd.getStartTs(), cmd.getEndTs(), cmd.getInterval(), getLimit(cmd.getLimit()), cmd.getAgg()
+                key, cmd.getStartTs(), cmd.getEndTs(), cmd.getInterval(), getLimit(cmd.getLimit()), cmd.getAgg(), "DESC", cmd.getMaxDataPoints()
         )).collect(Collectors.toList());
         if (cmd.isFetchLatestPreviousPoint()) {
             finalTsKvQueryList = new ArrayList<>(tsKvQueryList);
@@ -386,28 +385,31 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
         } else {
             finalTsKvQueryList = tsKvQueryList;
         }
-        Map<EntityData, ListenableFuture<List<TsKvEntry>>> fetchResultMap = new HashMap<>();
-        ctx.getData().getData().forEach(entityData -> fetchResultMap.put(entityData,
-                tsService.findAll(ctx.getTenantId(), entityData.getEntityId(), finalTsKvQueryList)));
-        return Futures.transform(Futures.allAsList(fetchResultMap.values()), f -> {
-            fetchResultMap.forEach((entityData, future) -> {
-                Map<String, List<TsValue>> keyData = new LinkedHashMap<>();
-                cmd.getKeys().forEach(key -> keyData.put(key, new ArrayList<>()));
-                try {
-                    List<TsKvEntry> entityTsData = future.get();
-                    if (entityTsData != null) {
-                        entityTsData.forEach(entry -> keyData.get(entry.getKey()).add(new TsValue(entry.getTs(), entry.getValueAsString())));
-                    }
-                    keyData.forEach((k, v) -> entityData.getTimeseries().put(k, v.toArray(new TsValue[v.size()])));
-                    if (cmd.isFetchLatestPreviousPoint()) {
-                        entityData.getTimeseries().values().forEach(dataArray -> {
-                            Arrays.sort(dataArray, (o1, o2) -> Long.compare(o2.getTs(), o1.getTs()));
-                        });
-                    }
-                } catch (InterruptedException | ExecutionException e) {
-                    log.warn("[{}][{}][{}] Failed to fetch historical data", ctx.getSessionId(), ctx.getCmdId(), entityData.getEntityId(), e);
+        List<EntityId> entityIds = ctx.getData().getData().stream().map(EntityData::getEntityId).collect(Collectors.toList());
+        ListenableFuture<Map<EntityId, List<TsKvEntry>>> fetchFuture = Futures.catching(
+                tsService.findAll(ctx.getTenantId(), entityIds, finalTsKvQueryList), Exception.class, e -> {
+                    log.warn("[{}][{}] Failed to fetch historical data", ctx.getSessionId(), ctx.getCmdId(), e);
                     wsService.sendWsMsg(ctx.getSessionId(),
                             new EntityDataUpdate(ctx.getCmdId(), SubscriptionErrorCode.INTERNAL_ERROR.getCode(), "Failed to fetch historical data!"));
+                    return null;
+                }, wsCallBackExecutor);
+        return Futures.transform(fetchFuture, tsData -> {
+            if (tsData == null) {
+                // The error is already sent to the client, so neither data is sent nor subscriptions are created
+                return ctx;
+            }
+            ctx.getData().getData().forEach(entityData -> {
+                Map<String, List<TsValue>> keyData = new LinkedHashMap<>();
+                cmd.getKeys().forEach(key -> keyData.put(key, new ArrayList<>()));
+                List<TsKvEntry> entityTsData = tsData.get(entityData.getEntityId());
+                if (entityTsData != null) {
+                    entityTsData.forEach(entry -> keyData.get(entry.getKey()).add(new TsValue(entry.getTs(), entry.getValueAsString())));
+                }
+                keyData.forEach((k, v) -> entityData.getTimeseries().put(k, v.toArray(new TsValue[v.size()])));
+                if (cmd.isFetchLatestPreviousPoint()) {
+                    entityData.getTimeseries().values().forEach(dataArray -> {
+                        Arrays.sort(dataArray, (o1, o2) -> Long.compare(o2.getTs(), o1.getTs()));
+                    });
                 }
             });
             EntityDataUpdate update;
@@ -435,7 +437,7 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
                     .filter(key -> key.getType().equals(EntityKeyType.TIME_SERIES))
                     .map(EntityKey::getKey).collect(Collectors.toList());
 
-            Map<EntityData, ListenableFuture<Map<String, TsValue>>> missingTelemetryFutures = new HashMap<>();
+            Map<Set<String>, List<EntityData>> entitiesByMissingKeys = new HashMap<>();
             for (EntityData entityData : ctx.getData().getData()) {
                 Map<EntityKeyType, Map<String, TsValue>> latestEntityData = entityData.getLatest();
                 Map<String, TsValue> tsEntityData = latestEntityData.get(EntityKeyType.TIME_SERIES);
@@ -443,21 +445,29 @@ public class DefaultTbEntityDataSubscriptionService implements TbEntityDataSubsc
                 if (tsEntityData != null) {
                     missingTsKeys.removeAll(tsEntityData.keySet());
                 } else {
-                    tsEntityData = new HashMap<>();
-                    latestEntityData.put(EntityKeyType.TIME_SERIES, tsEntityData);
+                    latestEntityData.put(EntityKeyType.TIME_SERIES, new HashMap<>());
                 }
-
-                ListenableFuture<List<TsKvEntry>> missingTsData = tsService.findLatest(ctx.getTenantId(), entityData.getEntityId(), missingTsKeys);
-                missingTelemetryFutures.put(entityData, Futures.transform(missingTsData, this::toTsValue, MoreExecutors.directExecutor()));
+                entitiesByMissingKeys.computeIfAbsent(missingTsKeys, k -> new ArrayList<>()).add(entityData);
             }
-            Futures.addCallback(Futures.allAsList(missingTelemetryFutures.values()), new FutureCallback<List<Map<String, TsValue>>>() {
+
+            List<ListenableFuture<Map<EntityId, List<TsKvEntry>>>> missingTelemetryFutures = new ArrayList<>();
+            entitiesByMissingKeys.forEach((missingTsKeys, entitiesData) -> {
+                if (!missingTsKeys.isEmpty()) {
+                    List<EntityId> entityIds = entitiesData.stream().map(EntityData::getEntityId).collect(Collectors.toList());
+                    missingTelemetryFutures.add(tsService.findLatest(ctx.getTenantId(), entityIds, missingTsKeys));
+                }
+            });
+            Futures.addCallback(Futures.allAsList(missingTelemetryFutures), new FutureCallback<List<Map<EntityId, List<TsKvEntry>>>>() {
                 @Override
-                public void onSuccess(@Nullable List<Map<String, TsValue>> result) {
-                    missingTelemetryFutures.forEach((key, value) -> {
-                        try {
-                            key.getLatest().get(EntityKeyType.TIME_SERIES).putAll(value.get());
-                        } catch (InterruptedException | ExecutionException e) {
-                            log.warn("[{}][{}] Failed to lookup latest telemetry: {}:{}", ctx.getSessionId(), ctx.getCmdId(), key.getEntityId(), allTsKeys, e);
+                public void onSuccess(@Nullable List<Map<EntityId, List<TsKvEntry>>> result) {
+                    Map<EntityId, List<TsKvEntry>> missingTsData = new HashMap<>();
+                    if (result != null) {
+                        result.forEach(missingTsData::putAll);
+                    }
+                    ctx.getData().getData().forEach(entityData -> {
+                        List<TsKvEntry> entityTsData = missingTsData.get(entityData.getEntityId());
+                        if (entityTsData != null) {
+                            entityData.getLatest().get(EntityKeyType.TIME_SERIES).putAll(toTsValue(entityTsData));
                         }
                     });
                     EntityDataUpdate update;
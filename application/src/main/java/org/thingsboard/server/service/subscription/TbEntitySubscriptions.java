@@ -0,0 +1,151 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.subscription;
+
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.EnumMap;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Immutable snapshot of the subscriptions to a single entity, indexed by subscription type and key.
+ * Every modification builds a new snapshot (copy-on-write), so the update path reads it without locks
+ * and only visits the subscriptions that match the updated keys.
+ */
+final class TbEntitySubscriptions {
+
+    static final TbEntitySubscriptions EMPTY = new TbEntitySubscriptions(Collections.emptySet());
+
+    private final Set<TbSubscription> subscriptions;
+    private final Map<TbSubscriptionType, List<TbSubscription>> subscriptionsByType;
+    private final Map<TbSubscriptionType, List<TbSubscription>> allKeysSubscriptionsByType;
+    private final Map<TbSubscriptionType, Map<String, List<TbSubscription>>> subscriptionsByTypeAndKey;
+
+    private TbEntitySubscriptions(Set<TbSubscription> subscriptions) {
+        this.subscriptions = subscriptions;
+        this.subscriptionsByType = new EnumMap<>(TbSubscriptionType.class);
+        this.allKeysSubscriptionsByType = new EnumMap<>(TbSubscriptionType.class);
+        this.subscriptionsByTypeAndKey = new EnumMap<>(TbSubscriptionType.class);
+        for (TbSubscription subscription : subscriptions) {
+            TbSubscriptionType type = subscription.getType();
+            subscriptionsByType.computeIfAbsent(type, t -> new ArrayList<>()).add(subscription);
+            if (isAllKeys(subscription)) {
+                allKeysSubscriptionsByType.computeIfAbsent(type, t -> new ArrayList<>()).add(subscription);
+            } else {
+                Map<String, List<TbSubscription>> byKey = subscriptionsByTypeAndKey.computeIfAbsent(type, t -> new HashMap<>());
+                for (String key : getKeys(subscription)) {
+                    byKey.computeIfAbsent(key, k -> new ArrayList<>()).add(subscription);
+                }
+            }
+        }
+    }
+
+    boolean contains(TbSubscription subscription) {
+        return subscriptions.contains(subscription);
+    }
+
+    boolean isEmpty() {
+        return subscriptions.isEmpty();
+    }
+
+    Collection<TbSubscription> getAll() {
+        return subscriptions;
+    }
+
+    List<TbSubscription> getByType(TbSubscriptionType type) {
+        return subscriptionsByType.getOrDefault(type, Collections.emptyList());
+    }
+
+    TbEntitySubscriptions add(TbSubscription subscription) {
+        if (subscriptions.contains(subscription)) {
+            return this;
+        }
+        Set<TbSubscription> newSubscriptions = new LinkedHashSet<>(subscriptions);
+        newSubscriptions.add(subscription);
+        return new TbEntitySubscriptions(newSubscriptions);
+    }
+
+    TbEntitySubscriptions remove(TbSubscription subscription) {
+        if (!subscriptions.contains(subscription)) {
+            return this;
+        }
+        Set<TbSubscription> newSubscriptions = new LinkedHashSet<>(subscriptions);
+        newSubscriptions.remove(subscription);
+        return newSubscriptions.isEmpty() ? EMPTY : new TbEntitySubscriptions(newSubscriptions);
+    }
+
+    /**
+     * Returns the subscriptions of the given type that are interested in at least one of the entries, each with the list of matching entries.
+     * Cost is proportional to the number of entries and matched subscriptions rather than to the total number of subscriptions.
+     */
+    Map<TbSubscription, List<TsKvEntry>> findMatching(TbSubscriptionType type, List<TsKvEntry> entries) {
+        Map<TbSubscription, List<TsKvEntry>> result = null;
+        Map<String, List<TbSubscription>> byKey = subscriptionsByTypeAndKey.get(type);
+        if (byKey != null) {
+            for (TsKvEntry entry : entries) {
+                List<TbSubscription> keySubscriptions = byKey.get(entry.getKey());
+                if (keySubscriptions != null) {
+                    if (result == null) {
+                        result = new LinkedHashMap<>();
+                    }
+                    for (TbSubscription subscription : keySubscriptions) {
+                        result.computeIfAbsent(subscription, s -> new ArrayList<>()).add(entry);
+                    }
+                }
+            }
+        }
+        List<TbSubscription> allKeysSubscriptions = allKeysSubscriptionsByType.get(type);
+        if (allKeysSubscriptions != null && !entries.isEmpty()) {
+            if (result == null) {
+                result = new LinkedHashMap<>();
+            }
+            for (TbSubscription subscription : allKeysSubscriptions) {
+                result.put(subscription, entries);
+            }
+        }
+        return result != null ? result : Collections.emptyMap();
+    }
+
+    private static boolean isAllKeys(TbSubscription subscription) {
+        switch (subscription.getType()) {
+            case TIMESERIES:
+                return ((TbTimeseriesSubscription) subscription).isAllKeys();
+            case ATTRIBUTES:
+                return ((TbAttributeSubscription) subscription).isAllKeys();
+            default:
+                return true;
+        }
+    }
+
+    private static Collection<String> getKeys(TbSubscription subscription) {
+        switch (subscription.getType()) {
+            case TIMESERIES:
+                return ((TbTimeseriesSubscription) subscription).getKeyStates().keySet();
+            case ATTRIBUTES:
+                return ((TbAttributeSubscription) subscription).getKeyStates().keySet();
+            default:
+                return Collections.emptyList();
+        }
+    }
+}
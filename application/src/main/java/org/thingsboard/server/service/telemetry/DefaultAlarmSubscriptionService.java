@@ -46,6 +46,7 @@ import org.thingsboard.server.gen.transport.TransportProtos;
 import org.thingsboard.server.queue.discovery.PartitionService;
 import org.thingsboard.server.queue.usagestats.TbApiUsageClient;
 import org.thingsboard.server.service.apiusage.TbApiUsageStateService;
+import org.thingsboard.server.service.executors.DbCallbackExecutorService;
 import org.thingsboard.server.service.queue.TbClusterService;
 import org.thingsboard.server.service.subscription.SubscriptionManagerService;
 import org.thingsboard.server.service.subscription.TbSubscriptionUtils;
@@ -63,16 +64,19 @@ public class DefaultAlarmSubscriptionService extends AbstractSubscriptionService
     private final AlarmService alarmService;
     private final TbApiUsageClient apiUsageClient;
     private final TbApiUsageStateService apiUsageStateService;
+    private final DbCallbackExecutorService dbCallbackExecutorService;
 
     public DefaultAlarmSubscriptionService(TbClusterService clusterService,
                                            PartitionService partitionService,
                                            AlarmService alarmService,
                                            TbApiUsageClient apiUsageClient,
-                                           TbApiUsageStateService apiUsageStateService) {
+                                           TbApiUsageStateService apiUsageStateService,
+                                           DbCallbackExecutorService dbCallbackExecutorService) {
         super(clusterService, partitionService);
         this.alarmService = alarmService;
         this.apiUsageClient = apiUsageClient;
         this.apiUsageStateService = apiUsageStateService;
+        this.dbCallbackExecutorService = dbCallbackExecutorService;
     }
 
     @Autowired(required = false)
@@ -88,11 +92,21 @@ public class DefaultAlarmSubscriptionService extends AbstractSubscriptionService
     @Override
     public Alarm createOrUpdateAlarm(Alarm alarm) {
         AlarmOperationResult result = alarmService.createOrUpdateAlarm(alarm, apiUsageStateService.getApiUsageState(alarm.getTenantId()).isAlarmCreationEnabled());
+        return onAlarmCreatedOrUpdated(alarm.getTenantId(), result);
+    }
+
+    @Override
+    public ListenableFuture<Alarm> createOrUpdateAlarmAsync(Alarm alarm) {
+        ListenableFuture<AlarmOperationResult> result = alarmService.createOrUpdateAlarmAsync(alarm, apiUsageStateService.getApiUsageState(alarm.getTenantId()).isAlarmCreationEnabled(), dbCallbackExecutorService);
+        return Futures.transform(result, r -> onAlarmCreatedOrUpdated(alarm.getTenantId(), r), wsCallBackExecutor);
+    }
+
+    private Alarm onAlarmCreatedOrUpdated(TenantId tenantId, AlarmOperationResult result) {
         if (result.isSuccessful()) {
             onAlarmUpdated(result);
         }
         if (result.isCreated()) {
-            apiUsageClient.report(alarm.getTenantId(), null, ApiUsageRecordKey.CREATED_ALARMS_COUNT);
+            apiUsageClient.report(tenantId, null, ApiUsageRecordKey.CREATED_ALARMS_COUNT);
         }
         return result.getAlarm();
     }
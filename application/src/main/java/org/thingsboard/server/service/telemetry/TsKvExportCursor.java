@@ -0,0 +1,83 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.telemetry;
+
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.BaseReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.dao.timeseries.TimeseriesService;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.concurrent.ExecutionException;
+
+/**
+ * Iterates over the raw time-series of the given keys in pages of fixed size, ordered by timestamp.
+ * Every page is a separate keyset query (ts greater than the last returned one), so memory usage does not depend
+ * on the size of the exported range, and the same cursor works for both SQL and Cassandra storage.
+ */
+public class TsKvExportCursor {
+
+    private final TimeseriesService tsService;
+    private final TenantId tenantId;
+    private final EntityId entityId;
+    private final List<String> keys;
+    private final long endTs;
+    private final int pageSize;
+
+    private final long startTs;
+    private int keyIdx;
+    private long nextStartTs;
+
+    public TsKvExportCursor(TimeseriesService tsService, TenantId tenantId, EntityId entityId, List<String> keys,
+                            long startTs, long endTs, int pageSize) {
+        this.tsService = tsService;
+        this.tenantId = tenantId;
+        this.entityId = entityId;
+        this.keys = keys;
+        this.startTs = startTs;
+        this.endTs = endTs;
+        this.pageSize = pageSize;
+        this.nextStartTs = startTs;
+    }
+
+    public boolean hasNext() {
+        return keyIdx < keys.size();
+    }
+
+    public List<TsKvEntry> next() throws ExecutionException, InterruptedException {
+        if (!hasNext()) {
+            throw new NoSuchElementException();
+        }
+        String key = keys.get(keyIdx);
+        List<TsKvEntry> page = Collections.emptyList();
+        if (nextStartTs < endTs) {
+            ReadTsKvQuery query = new BaseReadTsKvQuery(key, nextStartTs, endTs, endTs - nextStartTs, pageSize, Aggregation.NONE, "ASC");
+            page = tsService.findAll(tenantId, entityId, Collections.singletonList(query)).get();
+        }
+        if (page.size() < pageSize) {
+            keyIdx++;
+            nextStartTs = startTs;
+        } else {
+            nextStartTs = page.get(page.size() - 1).getTs() + 1;
+        }
+        return page;
+    }
+}
@@ -36,5 +36,6 @@ public class GetHistoryCmd implements TelemetryPluginCmd {
     private long interval;
     private int limit;
     private String agg;
+    private int maxDataPoints;
 
 }
@@ -30,5 +30,6 @@ public class EntityHistoryCmd implements GetTsCmd {
     private int limit;
     private Aggregation agg;
     private boolean fetchLatestPreviousPoint;
+    private int maxDataPoints;
 
 }
@@ -35,4 +35,6 @@ public interface GetTsCmd {
 
     boolean isFetchLatestPreviousPoint();
 
+    int getMaxDataPoints();
+
 }
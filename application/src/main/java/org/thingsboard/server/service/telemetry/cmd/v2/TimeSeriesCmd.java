@@ -31,6 +31,7 @@ public class TimeSeriesCmd implements GetTsCmd {
     private int limit;
     private Aggregation agg;
     private boolean fetchLatestPreviousPoint;
+    private int maxDataPoints;
 
     @JsonIgnore
     @Override
@@ -0,0 +1,125 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.controller;
+
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.test.util.AopTestUtils;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.Device;
+import org.thingsboard.server.common.data.Tenant;
+import org.thingsboard.server.common.data.User;
+import org.thingsboard.server.common.data.security.Authority;
+
+import static org.hamcrest.Matchers.containsString;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.content;
+import static org.springframework.test.web.servlet.result.MockMvcResultMatchers.status;
+
+public abstract class BaseTelemetryControllerTest extends AbstractControllerTest {
+
+    @Autowired
+    private TelemetryController telemetryController;
+
+    private Tenant savedTenant;
+    private Device savedDevice;
+    private int exportPageSize;
+
+    @Before
+    public void beforeTest() throws Exception {
+        loginSysAdmin();
+
+        Tenant tenant = new Tenant();
+        tenant.setTitle("My tenant");
+        savedTenant = doPost("/api/tenant", tenant, Tenant.class);
+        Assert.assertNotNull(savedTenant);
+
+        User tenantAdmin = new User();
+        tenantAdmin.setAuthority(Authority.TENANT_ADMIN);
+        tenantAdmin.setTenantId(savedTenant.getId());
+        tenantAdmin.setEmail("tenant2@thingsboard.org");
+        tenantAdmin.setFirstName("Joe");
+        tenantAdmin.setLastName("Downs");
+        createUserAndLogin(tenantAdmin, "testPassword1");
+
+        Device device = new Device();
+        device.setName("My device");
+        device.setType("default");
+        savedDevice = doPost("/api/device", device, Device.class);
+
+        doPostAsync(getTelemetryUrl() + "/timeseries/ANY",
+                "[{\"ts\": 1000, \"values\": {\"temperature\": -5.5, \"note\": \"=HYPERLINK(\\\"http://example.com\\\")\"}}," +
+                        "{\"ts\": 2000, \"values\": {\"temperature\": 21, \"note\": \"plain, text\"}}," +
+                        "{\"ts\": 3000, \"values\": {\"temperature\": 22, \"note\": \"@SUM(A1)\"}}]",
+                String.class, status().isOk());
+
+        // Export one row per page to go through the pagination of every key
+        Object controller = AopTestUtils.getUltimateTargetObject(telemetryController);
+        exportPageSize = (int) ReflectionTestUtils.getField(controller, "exportPageSize");
+        ReflectionTestUtils.setField(controller, "exportPageSize", 1);
+    }
+
+    @After
+    public void afterTest() throws Exception {
+        Object controller = AopTestUtils.getUltimateTargetObject(telemetryController);
+        ReflectionTestUtils.setField(controller, "exportPageSize", exportPageSize);
+        loginSysAdmin();
+
+        doDelete("/api/tenant/" + savedTenant.getId().getId().toString())
+                .andExpect(status().isOk());
+    }
+
+    @Test
+    public void testExportTimeseriesAsCsv() throws Exception {
+        String csv = doGetAsync(getTelemetryUrl() + "/values/timeseries/export?keys=temperature,note&startTs=0&endTs=10000&format=csv")
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("text/csv"))
+                .andReturn().getResponse().getContentAsString();
+
+        Assert.assertEquals("ts,key,value\n" +
+                "1000,temperature,-5.5\n" +
+                "2000,temperature,21\n" +
+                "3000,temperature,22\n" +
+                "1000,note,\"'=HYPERLINK(\"\"http://example.com\"\")\"\n" +
+                "2000,note,\"plain, text\"\n" +
+                "3000,note,'@SUM(A1)\n", csv);
+    }
+
+    @Test
+    public void testExportTimeseriesAsNdJson() throws Exception {
+        String ndjson = doGetAsync(getTelemetryUrl() + "/values/timeseries/export?keys=temperature&startTs=1500&endTs=10000")
+                .andExpect(status().isOk())
+                .andExpect(content().contentTypeCompatibleWith("application/x-ndjson"))
+                .andReturn().getResponse().getContentAsString();
+
+        Assert.assertEquals("{\"ts\":2000,\"key\":\"temperature\",\"value\":21}\n" +
+                "{\"ts\":3000,\"key\":\"temperature\",\"value\":22}\n", ndjson);
+    }
+
+    @Test
+    public void testExportTimeseriesWithUnsupportedFormat() throws Exception {
+        doGet(getTelemetryUrl() + "/values/timeseries/export?keys=temperature&startTs=0&endTs=10000&format=xml")
+                .andExpect(status().isBadRequest())
+                .andExpect(statusReason(containsString("Unsupported export format")));
+    }
+
+    private String getTelemetryUrl() {
+        return "/api/plugins/telemetry/DEVICE/" + savedDevice.getId().getId().toString();
+    }
+
+}
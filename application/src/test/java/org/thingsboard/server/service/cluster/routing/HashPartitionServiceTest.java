@@ -27,6 +27,7 @@ import org.springframework.test.util.ReflectionTestUtils;
 import org.thingsboard.server.common.data.id.DeviceId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.queue.discovery.HashPartitionService;
+import org.thingsboard.server.common.msg.queue.ServiceQueue;
 import org.thingsboard.server.common.msg.queue.ServiceType;
 import org.thingsboard.server.queue.discovery.TbServiceInfoProvider;
 import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
@@ -76,6 +77,7 @@ public class HashPartitionServiceTest {
         ReflectionTestUtils.setField(clusterRoutingService, "coreTopic", "tb.core");
         ReflectionTestUtils.setField(clusterRoutingService, "corePartitions", 10);
         ReflectionTestUtils.setField(clusterRoutingService, "hashFunctionName", hashFunctionName);
+        ReflectionTestUtils.setField(clusterRoutingService, "assignmentStrategy", "round_robin");
         TransportProtos.ServiceInfo currentServer = TransportProtos.ServiceInfo.newBuilder()
                 .setServiceId("tb-core-0")
                 .setTenantIdMSB(TenantId.NULL_UUID.getMostSignificantBits())
@@ -105,6 +107,38 @@ public class HashPartitionServiceTest {
         testDevicesDispersion(devices);
     }
 
+    @Test
+    public void testRendezvousAssignmentMovesFewPartitions() {
+        ReflectionTestUtils.setField(clusterRoutingService, "assignmentStrategy", "rendezvous");
+        clusterRoutingService.init();
+        int partitions = 100;
+        ServiceQueue serviceQueue = new ServiceQueue(ServiceType.TB_CORE);
+        List<TransportProtos.ServiceInfo> servers = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            servers.add(TransportProtos.ServiceInfo.newBuilder().setServiceId("tb-core-" + i).build());
+        }
+        TransportProtos.ServiceInfo[] before = assignPartitions(serviceQueue, servers, partitions);
+        servers.add(TransportProtos.ServiceInfo.newBuilder().setServiceId("tb-core-5").build());
+        TransportProtos.ServiceInfo[] after = assignPartitions(serviceQueue, servers, partitions);
+
+        Map<String, Integer> partitionsPerServer = new HashMap<>();
+        int moved = 0;
+        for (int i = 0; i < partitions; i++) {
+            partitionsPerServer.merge(after[i].getServiceId(), 1, Integer::sum);
+            if (!before[i].equals(after[i])) {
+                moved++;
+            }
+        }
+        Assert.assertEquals(servers.size(), partitionsPerServer.size());
+        partitionsPerServer.values().forEach(count -> Assert.assertTrue(count <= 17));
+        Assert.assertTrue("Moved partitions: " + moved, moved < 35);
+        Assert.assertArrayEquals(after, assignPartitions(serviceQueue, servers, partitions));
+    }
+
+    private TransportProtos.ServiceInfo[] assignPartitions(ServiceQueue serviceQueue, List<TransportProtos.ServiceInfo> servers, int partitions) {
+        return ReflectionTestUtils.invokeMethod(clusterRoutingService, "assignPartitions", serviceQueue, servers, partitions);
+    }
+
     private void testDevicesDispersion(List<DeviceId> devices) {
         long start = System.currentTimeMillis();
         Map<Integer, Integer> map = new HashMap<>();
@@ -0,0 +1,142 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.install.sql;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.InOrder;
+
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.Statement;
+import java.util.ArrayDeque;
+import java.util.Arrays;
+import java.util.Deque;
+
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.inOrder;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+import static org.thingsboard.server.service.install.sql.PsqlEventPartitioningHelper.PARTITION_SIZE_MS;
+
+public class PsqlEventPartitioningHelperTest {
+
+    private static final long DAY_1 = 1609459200000L; // 2021-01-01
+    private static final long DAY_2 = DAY_1 + PARTITION_SIZE_MS;
+
+    private Connection connection;
+    private Statement statement;
+    private PreparedStatement find;
+    private PreparedStatement move;
+
+    @Before
+    public void setUp() throws Exception {
+        connection = mock(Connection.class);
+        statement = mock(Statement.class);
+        find = mock(PreparedStatement.class);
+        move = mock(PreparedStatement.class);
+        when(connection.createStatement()).thenReturn(statement);
+        when(connection.prepareStatement(PsqlEventPartitioningHelper.FIND_LAST_CREATED_TIME)).thenReturn(find);
+        when(connection.prepareStatement(PsqlEventPartitioningHelper.MOVE_EVENTS)).thenReturn(move);
+        when(move.executeUpdate()).thenReturn(10);
+    }
+
+    @Test
+    public void givenLegacyEvents_whenMove_thenEveryDayIsMovedSeparatelyNewestFirst() throws Exception {
+        ResultSet legacyExists = booleanResult(true);
+        ResultSet remaining = longResult(0L);
+        when(statement.executeQuery(PsqlEventPartitioningHelper.LEGACY_TABLE_EXISTS)).thenReturn(legacyExists);
+        when(statement.executeQuery(PsqlEventPartitioningHelper.COUNT_LEGACY_EVENTS)).thenReturn(remaining);
+        mockLastCreatedTimes(DAY_2 + 1000, DAY_1 + 5000, null);
+
+        PsqlEventPartitioningHelper.moveLegacyEvents(connection);
+
+        InOrder inOrder = inOrder(statement, find, move);
+        inOrder.verify(statement).execute(PsqlEventPartitioningHelper.CREATE_LEGACY_INDEX);
+        inOrder.verify(find).setLong(1, Long.MAX_VALUE);
+        inOrder.verify(statement).execute("CREATE TABLE IF NOT EXISTS event_debug_2021_01_02_00 PARTITION OF event_debug FOR VALUES FROM (" + DAY_2 + ") TO (" + (DAY_2 + PARTITION_SIZE_MS) + ")");
+        inOrder.verify(statement).execute("CREATE TABLE IF NOT EXISTS event_other_2021_01_02_00 PARTITION OF event_other FOR VALUES FROM (" + DAY_2 + ") TO (" + (DAY_2 + PARTITION_SIZE_MS) + ")");
+        inOrder.verify(move).setLong(1, DAY_2);
+        inOrder.verify(move).setLong(2, DAY_2 + PARTITION_SIZE_MS);
+        inOrder.verify(move).executeUpdate();
+        inOrder.verify(find).setLong(1, DAY_2);
+        inOrder.verify(statement).execute("CREATE TABLE IF NOT EXISTS event_debug_2021_01_01_00 PARTITION OF event_debug FOR VALUES FROM (" + DAY_1 + ") TO (" + DAY_2 + ")");
+        inOrder.verify(statement).execute("CREATE TABLE IF NOT EXISTS event_other_2021_01_01_00 PARTITION OF event_other FOR VALUES FROM (" + DAY_1 + ") TO (" + DAY_2 + ")");
+        inOrder.verify(move).setLong(1, DAY_1);
+        inOrder.verify(move).setLong(2, DAY_2);
+        inOrder.verify(move).executeUpdate();
+        inOrder.verify(find).setLong(1, DAY_1);
+        inOrder.verify(statement).execute(PsqlEventPartitioningHelper.DROP_LEGACY_TABLE);
+    }
+
+    @Test
+    public void givenEventsWithoutType_whenMove_thenLegacyTableIsDroppedAfterCounting() throws Exception {
+        ResultSet legacyExists = booleanResult(true);
+        ResultSet remaining = longResult(3L);
+        when(statement.executeQuery(PsqlEventPartitioningHelper.LEGACY_TABLE_EXISTS)).thenReturn(legacyExists);
+        when(statement.executeQuery(PsqlEventPartitioningHelper.COUNT_LEGACY_EVENTS)).thenReturn(remaining);
+        mockLastCreatedTimes((Long) null);
+
+        PsqlEventPartitioningHelper.moveLegacyEvents(connection);
+
+        InOrder inOrder = inOrder(statement);
+        inOrder.verify(statement).executeQuery(PsqlEventPartitioningHelper.COUNT_LEGACY_EVENTS);
+        inOrder.verify(statement).execute(PsqlEventPartitioningHelper.DROP_LEGACY_TABLE);
+        verify(move, never()).executeUpdate();
+    }
+
+    @Test
+    public void givenAlreadyMigratedTable_whenMove_thenNothingIsExecuted() throws Exception {
+        ResultSet legacyExists = booleanResult(false);
+        when(statement.executeQuery(PsqlEventPartitioningHelper.LEGACY_TABLE_EXISTS)).thenReturn(legacyExists);
+
+        PsqlEventPartitioningHelper.moveLegacyEvents(connection);
+
+        verify(statement, never()).execute(anyString());
+        verify(connection, never()).prepareStatement(anyString());
+    }
+
+    private void mockLastCreatedTimes(Long... createdTimes) throws Exception {
+        Deque<Long> values = new ArrayDeque<>();
+        Deque<Boolean> nulls = new ArrayDeque<>();
+        for (Long createdTime : Arrays.asList(createdTimes)) {
+            values.add(createdTime != null ? createdTime : 0L);
+            nulls.add(createdTime == null);
+        }
+        ResultSet rs = mock(ResultSet.class);
+        when(find.executeQuery()).thenReturn(rs);
+        when(rs.next()).thenReturn(true);
+        when(rs.getLong(1)).thenAnswer(invocation -> values.poll());
+        when(rs.wasNull()).thenAnswer(invocation -> nulls.poll());
+    }
+
+    private static ResultSet booleanResult(boolean value) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.next()).thenReturn(true);
+        when(rs.getBoolean(1)).thenReturn(value);
+        return rs;
+    }
+
+    private static ResultSet longResult(long value) throws Exception {
+        ResultSet rs = mock(ResultSet.class);
+        when(rs.next()).thenReturn(true);
+        when(rs.getLong(1)).thenReturn(value);
+        return rs;
+    }
+}
@@ -0,0 +1,147 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.queue.processing;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+import org.thingsboard.server.common.msg.queue.TbMsgCallback;
+import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineMsg;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+public class SequentialByOriginatorIdTbRuleEngineSubmitStrategyTest {
+
+    private static final String QUEUE_NAME = "Main";
+
+    private final TenantId tenantId = new TenantId(UUID.randomUUID());
+    private final DeviceId device1 = new DeviceId(UUID.randomUUID());
+    private final DeviceId device2 = new DeviceId(UUID.randomUUID());
+    private final DeviceId device3 = new DeviceId(UUID.randomUUID());
+
+    private SequentialByOriginatorIdTbRuleEngineSubmitStrategy strategy;
+    private List<UUID> submittedIds;
+    private List<TbMsg> submittedMsgs;
+
+    @Before
+    public void setUp() {
+        strategy = new SequentialByOriginatorIdTbRuleEngineSubmitStrategy(QUEUE_NAME);
+        submittedIds = new ArrayList<>();
+        submittedMsgs = new ArrayList<>();
+    }
+
+    @Test
+    public void testMixedOriginatorBatchesAreSubmittedPerOriginator() {
+        strategy.init(Arrays.asList(
+                batch(newMsg(device1, "1-1"), newMsg(device2, "2-1")),
+                single(newMsg(device1, "1-2")),
+                batch(newMsg(device2, "2-2"), newMsg(device3, "3-1"))));
+
+        assertEquals(5, strategy.getPendingMap().size());
+        assertTrue(strategy.getPendingMap().values().stream().allMatch(msg -> msg.getValue().getTbMsgBatchCount() == 0));
+
+        strategy.submitAttempt(this::onSubmit);
+        assertEquals(3, submittedMsgs.size());
+        assertEquals(new HashSet<>(Arrays.asList("1-1", "2-1", "3-1")), submittedData());
+
+        int first = indexOf("1-1");
+        strategy.onSuccess(submittedIds.get(first));
+        assertEquals(4, submittedMsgs.size());
+        assertEquals("1-2", submittedMsgs.get(3).getData());
+
+        strategy.onSuccess(submittedIds.get(indexOf("2-1")));
+        assertEquals(5, submittedMsgs.size());
+        assertEquals("2-2", submittedMsgs.get(4).getData());
+    }
+
+    @Test
+    public void testReprocessKeepsOnlyFailedOriginatorsOfBatch() {
+        strategy.init(Arrays.asList(
+                batch(newMsg(device1, "1-1"), newMsg(device2, "2-1")),
+                batch(newMsg(device1, "1-2"), newMsg(device2, "2-2"))));
+
+        strategy.submitAttempt(this::onSubmit);
+        assertEquals(2, submittedMsgs.size());
+
+        strategy.update(strategy.getPendingMap().entrySet().stream()
+                .filter(e -> toTbMsg(e.getValue()).getOriginator().equals(device2))
+                .collect(Collectors.toConcurrentMap(e -> e.getKey(), e -> e.getValue())));
+        submittedIds.clear();
+        submittedMsgs.clear();
+
+        strategy.submitAttempt(this::onSubmit);
+        assertEquals(1, submittedMsgs.size());
+        assertEquals("2-1", submittedMsgs.get(0).getData());
+        strategy.onSuccess(submittedIds.get(0));
+        assertEquals(2, submittedMsgs.size());
+        assertEquals("2-2", submittedMsgs.get(1).getData());
+    }
+
+    private void onSubmit(UUID id, TbProtoQueueMsg<ToRuleEngineMsg> msg) {
+        submittedIds.add(id);
+        submittedMsgs.add(toTbMsg(msg));
+    }
+
+    private int indexOf(String data) {
+        for (int i = 0; i < submittedMsgs.size(); i++) {
+            if (submittedMsgs.get(i).getData().equals(data)) {
+                return i;
+            }
+        }
+        throw new IllegalArgumentException(data);
+    }
+
+    private HashSet<String> submittedData() {
+        return submittedMsgs.stream().map(TbMsg::getData).collect(Collectors.toCollection(HashSet::new));
+    }
+
+    private TbProtoQueueMsg<ToRuleEngineMsg> single(TbMsg msg) {
+        return new TbProtoQueueMsg<>(UUID.randomUUID(), newToRuleEngineMsg().setTbMsg(TbMsg.toByteString(msg)).build());
+    }
+
+    private TbProtoQueueMsg<ToRuleEngineMsg> batch(TbMsg... msgs) {
+        ToRuleEngineMsg.Builder builder = newToRuleEngineMsg();
+        Arrays.stream(msgs).map(TbMsg::toByteString).forEach(builder::addTbMsgBatch);
+        return new TbProtoQueueMsg<>(UUID.randomUUID(), builder.build());
+    }
+
+    private ToRuleEngineMsg.Builder newToRuleEngineMsg() {
+        return ToRuleEngineMsg.newBuilder()
+                .setTenantIdMSB(tenantId.getId().getMostSignificantBits())
+                .setTenantIdLSB(tenantId.getId().getLeastSignificantBits());
+    }
+
+    private static TbMsg newMsg(EntityId originator, String data) {
+        return TbMsg.newMsg(QUEUE_NAME, "POST_TELEMETRY_REQUEST", originator, new TbMsgMetaData(), data);
+    }
+
+    private static TbMsg toTbMsg(TbProtoQueueMsg<ToRuleEngineMsg> msg) {
+        return TbMsg.fromBytes(QUEUE_NAME, msg.getValue().getTbMsg().toByteArray(), TbMsgCallback.EMPTY);
+    }
+}
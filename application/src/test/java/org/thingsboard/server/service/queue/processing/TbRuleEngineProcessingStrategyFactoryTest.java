@@ -0,0 +1,131 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.queue.processing;
+
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+import org.thingsboard.server.common.msg.queue.RuleEngineException;
+import org.thingsboard.server.common.msg.queue.TbMsgCallback;
+import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineMsg;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+import org.thingsboard.server.queue.settings.TbRuleEngineQueueAckStrategyConfiguration;
+import org.thingsboard.server.service.queue.TbMsgPackProcessingContext;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class TbRuleEngineProcessingStrategyFactoryTest {
+
+    private static final String QUEUE_NAME = "Main";
+
+    private final TbRuleEngineProcessingStrategyFactory factory = new TbRuleEngineProcessingStrategyFactory();
+    private final TenantId tenantId = new TenantId(UUID.randomUUID());
+    private final DeviceId device1 = new DeviceId(UUID.randomUUID());
+    private final DeviceId device2 = new DeviceId(UUID.randomUUID());
+
+    @Test
+    public void testRetryFailedReprocessesOnlyFailedOriginatorsOfMixedBatch() {
+        TbRuleEngineProcessingStrategy ackStrategy = factory.newInstance(QUEUE_NAME, newConfiguration("RETRY_FAILED"));
+        TbRuleEngineSubmitStrategy submitStrategy = newSubmitStrategy();
+
+        TbRuleEngineProcessingResult result = processFailing(submitStrategy, device2);
+        assertFalse(result.isSuccess());
+        assertEquals(2, result.getSuccessMap().size());
+        assertEquals(2, result.getFailedMap().size());
+
+        TbRuleEngineProcessingDecision decision = ackStrategy.analyze(result);
+        assertFalse(decision.isCommit());
+        assertEquals(new HashSet<>(Arrays.asList("2-1", "2-2")), toData(decision.getReprocessMap().values()));
+
+        submitStrategy.update(decision.getReprocessMap());
+        assertEquals(new HashSet<>(Arrays.asList("2-1", "2-2")), toData(submitStrategy.getPendingMap().values()));
+
+        decision = ackStrategy.analyze(processFailing(submitStrategy, null));
+        assertTrue(decision.isCommit());
+    }
+
+    @Test
+    public void testSkipAllFailuresCommitsMixedBatch() {
+        TbRuleEngineProcessingStrategy ackStrategy = factory.newInstance(QUEUE_NAME, newConfiguration("SKIP_ALL_FAILURES"));
+        TbRuleEngineSubmitStrategy submitStrategy = newSubmitStrategy();
+
+        TbRuleEngineProcessingResult result = processFailing(submitStrategy, device1);
+        assertEquals(new HashSet<>(Arrays.asList("1-1", "1-2")), toData(result.getFailedMap().values()));
+
+        TbRuleEngineProcessingDecision decision = ackStrategy.analyze(result);
+        assertTrue(decision.isCommit());
+        assertNull(decision.getReprocessMap());
+    }
+
+    private TbRuleEngineSubmitStrategy newSubmitStrategy() {
+        TbRuleEngineSubmitStrategy submitStrategy = new BurstTbRuleEngineSubmitStrategy(QUEUE_NAME);
+        submitStrategy.init(Arrays.asList(
+                batch(newMsg(device1, "1-1"), newMsg(device2, "2-1")),
+                batch(newMsg(device2, "2-2"), newMsg(device1, "1-2"))));
+        return submitStrategy;
+    }
+
+    private TbRuleEngineProcessingResult processFailing(TbRuleEngineSubmitStrategy submitStrategy, EntityId failingOriginator) {
+        TbMsgPackProcessingContext ctx = new TbMsgPackProcessingContext(QUEUE_NAME, submitStrategy);
+        submitStrategy.submitAttempt((id, msg) -> {
+            if (toTbMsg(msg).getOriginator().equals(failingOriginator)) {
+                ctx.onFailure(tenantId, id, new RuleEngineException("Failed to process " + failingOriginator));
+            } else {
+                ctx.onSuccess(id);
+            }
+        });
+        return new TbRuleEngineProcessingResult(QUEUE_NAME, false, ctx);
+    }
+
+    private TbRuleEngineQueueAckStrategyConfiguration newConfiguration(String type) {
+        TbRuleEngineQueueAckStrategyConfiguration configuration = new TbRuleEngineQueueAckStrategyConfiguration();
+        configuration.setType(type);
+        configuration.setRetries(3);
+        return configuration;
+    }
+
+    private TbProtoQueueMsg<ToRuleEngineMsg> batch(TbMsg... msgs) {
+        ToRuleEngineMsg.Builder builder = ToRuleEngineMsg.newBuilder()
+                .setTenantIdMSB(tenantId.getId().getMostSignificantBits())
+                .setTenantIdLSB(tenantId.getId().getLeastSignificantBits());
+        Arrays.stream(msgs).map(TbMsg::toByteString).forEach(builder::addTbMsgBatch);
+        return new TbProtoQueueMsg<>(UUID.randomUUID(), builder.build());
+    }
+
+    private static HashSet<String> toData(Collection<TbProtoQueueMsg<ToRuleEngineMsg>> msgs) {
+        return msgs.stream().map(msg -> toTbMsg(msg).getData()).collect(Collectors.toCollection(HashSet::new));
+    }
+
+    private static TbMsg newMsg(EntityId originator, String data) {
+        return TbMsg.newMsg(QUEUE_NAME, "POST_TELEMETRY_REQUEST", originator, new TbMsgMetaData(), data);
+    }
+
+    private static TbMsg toTbMsg(TbProtoQueueMsg<ToRuleEngineMsg> msg) {
+        return TbMsg.fromBytes(QUEUE_NAME, msg.getValue().getTbMsg().toByteArray(), TbMsgCallback.EMPTY);
+    }
+}
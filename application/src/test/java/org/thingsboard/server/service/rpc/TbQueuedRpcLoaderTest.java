@@ -0,0 +1,92 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.rpc;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.rpc.Rpc;
+import org.thingsboard.server.common.data.rpc.RpcStatus;
+import org.thingsboard.server.dao.rpc.RpcService;
+import org.thingsboard.server.service.executors.DbCallbackExecutorService;
+
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.MatcherAssert.assertThat;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.BDDMockito.willAnswer;
+import static org.mockito.BDDMockito.willReturn;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TbQueuedRpcLoaderTest {
+
+    @Mock
+    RpcService rpcService;
+    @Mock
+    DbCallbackExecutorService dbCallbackExecutor;
+
+    TenantId tenantId = new TenantId(UUID.randomUUID());
+    DeviceId firstDeviceId = new DeviceId(UUID.randomUUID());
+    DeviceId secondDeviceId = new DeviceId(UUID.randomUUID());
+
+    TbQueuedRpcLoader loader;
+
+    @Before
+    public void setUp() {
+        willAnswer(invocation -> {
+            ((Runnable) invocation.getArgument(0)).run();
+            return null;
+        }).given(dbCallbackExecutor).execute(any(Runnable.class));
+        loader = new TbQueuedRpcLoader(rpcService, dbCallbackExecutor);
+        ReflectionTestUtils.setField(loader, "batchSize", 2);
+        ReflectionTestUtils.setField(loader, "maxDelayMs", TimeUnit.MINUTES.toMillis(1));
+        loader.init();
+    }
+
+    @After
+    public void tearDown() {
+        loader.destroy();
+    }
+
+    @Test
+    public void givenTwoDevices_whenFindQueuedRpcs_thenSingleQueryIsExecuted() throws Exception {
+        Rpc rpc = new Rpc();
+        rpc.setDeviceId(secondDeviceId);
+        willReturn(Collections.singletonList(rpc)).given(rpcService).findAllByDeviceIdsAndStatus(eq(tenantId), anyList(), eq(RpcStatus.QUEUED));
+
+        ListenableFuture<List<Rpc>> first = loader.findQueuedRpcs(tenantId, firstDeviceId);
+        ListenableFuture<List<Rpc>> second = loader.findQueuedRpcs(tenantId, secondDeviceId);
+
+        assertThat(first.get(1, TimeUnit.SECONDS).isEmpty(), is(true));
+        assertThat(second.get(1, TimeUnit.SECONDS), is(Collections.singletonList(rpc)));
+        verify(rpcService, times(1)).findAllByDeviceIdsAndStatus(eq(tenantId), anyList(), eq(RpcStatus.QUEUED));
+    }
+}
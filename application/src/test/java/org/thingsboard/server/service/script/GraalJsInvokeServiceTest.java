@@ -0,0 +1,139 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.script;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.ApiUsageState;
+import org.thingsboard.server.common.data.ApiUsageStateValue;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.queue.usagestats.TbApiUsageClient;
+import org.thingsboard.server.service.apiusage.TbApiUsageStateService;
+
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class GraalJsInvokeServiceTest {
+
+    private static final String MSG_TYPE = "POST_TELEMETRY_REQUEST";
+
+    private final TenantId tenantId = new TenantId(UUID.randomUUID());
+    private TbApiUsageStateService apiUsageStateService;
+    private JsExecutorService jsExecutor;
+    private GraalJsInvokeService service;
+
+    @Before
+    public void setUp() {
+        apiUsageStateService = mock(TbApiUsageStateService.class);
+        when(apiUsageStateService.getApiUsageState(any())).thenReturn(new ApiUsageState());
+        jsExecutor = new JsExecutorService();
+        ReflectionTestUtils.setField(jsExecutor, "jsExecutorThreadPoolSize", 2);
+        jsExecutor.init();
+    }
+
+    @After
+    public void tearDown() {
+        if (service != null) {
+            service.stop();
+        }
+        jsExecutor.destroy();
+    }
+
+    @Test
+    public void testTimedOutScriptIsCancelledAndContextReplaced() throws Exception {
+        initService(Long.MAX_VALUE, 500);
+        UUID loopScriptId = eval("while (true) {} return true;");
+        UUID scriptId = eval("return msg.temperature > 20;");
+
+        try {
+            invoke(loopScriptId);
+            fail("Timeout expected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TimeoutException);
+        }
+
+        // The only context of the pool must be released and usable again
+        assertEquals(true, toBoolean(invoke(scriptId)));
+    }
+
+    @Test
+    public void testStatementLimitCancelsScriptAndContextIsReplaced() throws Exception {
+        initService(10000, 0);
+        UUID loopScriptId = eval("var i = 0; while (i < 1000000) { i++; } return true;");
+        UUID scriptId = eval("return msg.temperature > 20;");
+
+        try {
+            invoke(loopScriptId);
+            fail("Statement limit expected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getMessage(), e.getMessage().contains("Statement count limit"));
+        }
+
+        assertEquals(true, toBoolean(invoke(scriptId)));
+    }
+
+    @Test
+    public void testScriptIsNotEvaluatedWhenJsExecutionIsDisabled() throws Exception {
+        initService(10000, 0);
+        ApiUsageState apiUsageState = new ApiUsageState();
+        apiUsageState.setJsExecState(ApiUsageStateValue.DISABLED);
+        when(apiUsageStateService.getApiUsageState(tenantId)).thenReturn(apiUsageState);
+
+        try {
+            eval("return true;");
+            fail("JS execution must be disabled");
+        } catch (ExecutionException e) {
+            assertEquals("JS Execution is disabled due to API limits!", e.getCause().getMessage());
+        }
+    }
+
+    private void initService(long maxStatements, long maxRequestsTimeout) {
+        service = new GraalJsInvokeService(apiUsageStateService, mock(TbApiUsageClient.class), jsExecutor);
+        ReflectionTestUtils.setField(service, "contextsPoolSize", 1);
+        ReflectionTestUtils.setField(service, "maxStatements", maxStatements);
+        ReflectionTestUtils.setField(service, "maxErrors", 3);
+        ReflectionTestUtils.setField(service, "maxRequestsTimeout", maxRequestsTimeout);
+        ReflectionTestUtils.setField(service, "maxBlackListDurationSec", 60);
+        service.init();
+    }
+
+    private UUID eval(String script) throws Exception {
+        return service.eval(tenantId, JsScriptType.RULE_NODE_SCRIPT, script, "msg", "metadata", "msgType")
+                .get(10, TimeUnit.SECONDS);
+    }
+
+    private Object invoke(UUID scriptId) throws Exception {
+        return service.invokeFunction(tenantId, null, scriptId, "{\"temperature\": 42}", Collections.emptyMap(), MSG_TYPE)
+                .get(10, TimeUnit.SECONDS);
+    }
+
+    private static boolean toBoolean(Object result) {
+        return Boolean.parseBoolean(result.toString());
+    }
+
+}
@@ -0,0 +1,199 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.script;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.SettableFuture;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.ApiUsageState;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.gen.js.JsInvokeProtos;
+import org.thingsboard.server.queue.TbQueueMsg;
+import org.thingsboard.server.queue.TbQueueRequestTemplate;
+import org.thingsboard.server.queue.common.DefaultTbQueueMsgHeaders;
+import org.thingsboard.server.queue.common.TbProtoJsQueueMsg;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+import org.thingsboard.server.queue.usagestats.TbApiUsageClient;
+import org.thingsboard.server.service.apiusage.TbApiUsageStateService;
+
+import java.nio.charset.StandardCharsets;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class RemoteJsInvokeServiceTest {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final String MSG_TYPE = "POST_TELEMETRY_REQUEST";
+
+    private final TenantId tenantId = new TenantId(UUID.randomUUID());
+    private final List<JsInvokeProtos.RemoteJsRequest> invokeRequests = new CopyOnWriteArrayList<>();
+    private final List<SettableFuture<TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>>> invokeResponses = new CopyOnWriteArrayList<>();
+    private RemoteJsInvokeService service;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        TbApiUsageStateService apiUsageStateService = mock(TbApiUsageStateService.class);
+        when(apiUsageStateService.getApiUsageState(any())).thenReturn(new ApiUsageState());
+        TbQueueRequestTemplate<TbProtoJsQueueMsg<JsInvokeProtos.RemoteJsRequest>, TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>> requestTemplate =
+                mock(TbQueueRequestTemplate.class);
+        when(requestTemplate.send(any())).thenAnswer(invocation -> send(invocation.getArgument(0)));
+
+        service = new RemoteJsInvokeService(apiUsageStateService, mock(TbApiUsageClient.class));
+        ReflectionTestUtils.setField(service, "requestTemplate", requestTemplate);
+        ReflectionTestUtils.setField(service, "maxEvalRequestsTimeout", 0L);
+        ReflectionTestUtils.setField(service, "maxRequestsTimeout", 500L);
+        ReflectionTestUtils.setField(service, "maxErrors", 3);
+        ReflectionTestUtils.setField(service, "maxBlackListDurationSec", 60);
+        ReflectionTestUtils.setField(service, "batchEnabled", true);
+        ReflectionTestUtils.setField(service, "batchMaxSize", 2);
+        ReflectionTestUtils.setField(service, "batchLingerMs", 10000L);
+        service.init();
+    }
+
+    @After
+    public void tearDown() {
+        service.destroy();
+    }
+
+    @Test
+    public void testBatchRequestIsEncodedAndResponseDecoded() throws Exception {
+        UUID scriptId = eval();
+        ListenableFuture<Object> first = invoke(scriptId, "{\"temperature\":21}");
+        ListenableFuture<Object> second = invoke(scriptId, "{\"temperature\":19}");
+
+        assertEquals(1, invokeRequests.size());
+        JsonNode request = mapper.readTree(new RemoteJsRequestEncoder().encode(
+                new TbProtoQueueMsg<>(UUID.randomUUID(), invokeRequests.get(0))));
+        JsonNode batchRequest = request.get("invokeBatchRequest");
+        assertEquals(String.valueOf(scriptId.getMostSignificantBits()), batchRequest.get("scriptIdMSB").asText());
+        assertEquals(String.valueOf(scriptId.getLeastSignificantBits()), batchRequest.get("scriptIdLSB").asText());
+        assertEquals(500, batchRequest.get("timeout").asInt());
+        assertEquals(2, batchRequest.get("invokeArgs").size());
+        assertEquals("{\"temperature\":21}", batchRequest.get("invokeArgs").get(0).get("args").get(0).asText());
+        assertEquals("{\"temperature\":19}", batchRequest.get("invokeArgs").get(1).get("args").get(0).asText());
+        assertEquals(MSG_TYPE, batchRequest.get("invokeArgs").get(1).get("args").get(2).asText());
+
+        // The same format the JS executor produces: 64 bit ids as strings, error codes as numbers
+        respond(0, "{\"requestIdMSB\":\"1\",\"requestIdLSB\":\"2\",\"invokeBatchResponse\":{\"invokeResponses\":[" +
+                "{\"success\":true,\"errorDetails\":\"\",\"result\":\"true\"}," +
+                "{\"success\":true,\"errorDetails\":\"\",\"result\":\"false\"}]}}");
+
+        assertEquals("true", first.get(5, TimeUnit.SECONDS));
+        assertEquals("false", second.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testPartialFailureFailsOnlyFailedInvokesAndCountsEachError() throws Exception {
+        UUID scriptId = eval();
+        ListenableFuture<Object> first = invoke(scriptId, "{\"temperature\":21}");
+        ListenableFuture<Object> second = invoke(scriptId, "{}");
+        respond(0, "{\"invokeBatchResponse\":{\"invokeResponses\":[" +
+                "{\"success\":true,\"result\":\"true\"}," +
+                "{\"success\":false,\"errorCode\":1,\"errorDetails\":\"TypeError: Cannot read property\"}]}}");
+
+        assertEquals("true", first.get(5, TimeUnit.SECONDS));
+        assertFailure(second, RuntimeException.class, "TypeError: Cannot read property");
+
+        ListenableFuture<Object> third = invoke(scriptId, "{}");
+        ListenableFuture<Object> fourth = invoke(scriptId, "{}");
+        respond(1, "{\"invokeBatchResponse\":{\"invokeResponses\":[" +
+                "{\"success\":false,\"errorCode\":1,\"errorDetails\":\"TypeError: Cannot read property\"}]}}");
+        assertFailure(third, RuntimeException.class, "TypeError: Cannot read property");
+        assertFailure(fourth, RuntimeException.class, "No invoke response received for the batched request!");
+
+        // 3 failed invocations reach the limit of 3 errors
+        assertFailure(invoke(scriptId, "{}"), RuntimeException.class, "Script invocation is blocked due to maximum error count 3");
+    }
+
+    @Test
+    public void testBatchTimeoutFailsAllInvokesAndCountsEachError() throws Exception {
+        ReflectionTestUtils.setField(service, "maxErrors", 2);
+        UUID scriptId = eval();
+        ListenableFuture<Object> first = invoke(scriptId, "{\"temperature\":21}");
+        ListenableFuture<Object> second = invoke(scriptId, "{\"temperature\":19}");
+
+        assertFailure(first, TimeoutException.class, null);
+        assertFailure(second, TimeoutException.class, null);
+
+        assertFailure(invoke(scriptId, "{}"), RuntimeException.class, "Script invocation is blocked due to maximum error count 2");
+    }
+
+    private ListenableFuture<TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>> send(TbProtoJsQueueMsg<JsInvokeProtos.RemoteJsRequest> msg) {
+        JsInvokeProtos.RemoteJsRequest request = msg.getValue();
+        if (request.hasCompileRequest()) {
+            JsInvokeProtos.JsCompileRequest compileRequest = request.getCompileRequest();
+            JsInvokeProtos.RemoteJsResponse response = JsInvokeProtos.RemoteJsResponse.newBuilder()
+                    .setCompileResponse(JsInvokeProtos.JsCompileResponse.newBuilder()
+                            .setSuccess(true)
+                            .setScriptIdMSB(compileRequest.getScriptIdMSB())
+                            .setScriptIdLSB(compileRequest.getScriptIdLSB()))
+                    .build();
+            return Futures.immediateFuture(new TbProtoQueueMsg<>(msg.getKey(), response));
+        }
+        invokeRequests.add(request);
+        SettableFuture<TbProtoQueueMsg<JsInvokeProtos.RemoteJsResponse>> future = SettableFuture.create();
+        invokeResponses.add(future);
+        return future;
+    }
+
+    private void respond(int requestIdx, String json) throws Exception {
+        TbQueueMsg msg = mock(TbQueueMsg.class);
+        when(msg.getKey()).thenReturn(UUID.randomUUID());
+        when(msg.getHeaders()).thenReturn(new DefaultTbQueueMsgHeaders());
+        when(msg.getData()).thenReturn(json.getBytes(StandardCharsets.UTF_8));
+        invokeResponses.get(requestIdx).set(new RemoteJsResponseDecoder().decode(msg));
+    }
+
+    private UUID eval() throws Exception {
+        return service.eval(tenantId, JsScriptType.RULE_NODE_SCRIPT, "return msg.temperature > 20;", "msg", "metadata", "msgType")
+                .get(5, TimeUnit.SECONDS);
+    }
+
+    private ListenableFuture<Object> invoke(UUID scriptId, String data) {
+        return service.invokeFunction(tenantId, null, scriptId, data, "{}", MSG_TYPE);
+    }
+
+    private static void assertFailure(ListenableFuture<Object> future, Class<? extends Throwable> causeClass, String message) throws Exception {
+        try {
+            future.get(5, TimeUnit.SECONDS);
+            fail("Failure expected");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause().toString(), causeClass.isInstance(e.getCause()));
+            if (message != null) {
+                assertTrue(e.getCause().getMessage(), e.getCause().getMessage().startsWith(message));
+            }
+        }
+    }
+
+}
@@ -0,0 +1,161 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.script;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.junit.runners.Parameterized;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.ApiUsageState;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.RuleNodeId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+import org.thingsboard.server.queue.usagestats.TbApiUsageClient;
+import org.thingsboard.server.service.apiusage.TbApiUsageStateService;
+
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+/**
+ * Runs the same rule node scripts against every local JS evaluator ("js.evaluator" = local or graal).
+ */
+@RunWith(Parameterized.class)
+public class RuleNodeJsScriptEngineTest {
+
+    @Parameterized.Parameters(name = "js.evaluator={0}")
+    public static Collection<Object[]> evaluators() {
+        return Arrays.asList(new Object[][]{{"local"}, {"graal"}});
+    }
+
+    private final String evaluator;
+    private final TenantId tenantId = new TenantId(UUID.randomUUID());
+    private JsExecutorService jsExecutor;
+    private AbstractJsInvokeService jsInvokeService;
+    private RuleNodeJsScriptEngine scriptEngine;
+
+    public RuleNodeJsScriptEngineTest(String evaluator) {
+        this.evaluator = evaluator;
+    }
+
+    @Before
+    public void setUp() {
+        TbApiUsageStateService apiUsageStateService = mock(TbApiUsageStateService.class);
+        when(apiUsageStateService.getApiUsageState(any())).thenReturn(new ApiUsageState());
+        TbApiUsageClient apiUsageClient = mock(TbApiUsageClient.class);
+        jsExecutor = new JsExecutorService();
+        ReflectionTestUtils.setField(jsExecutor, "jsExecutorThreadPoolSize", 2);
+        jsExecutor.init();
+        if ("graal".equals(evaluator)) {
+            GraalJsInvokeService graalService = new GraalJsInvokeService(apiUsageStateService, apiUsageClient, jsExecutor);
+            ReflectionTestUtils.setField(graalService, "contextsPoolSize", 2);
+            ReflectionTestUtils.setField(graalService, "maxStatements", 1000000L);
+            ReflectionTestUtils.setField(graalService, "maxErrors", 3);
+            ReflectionTestUtils.setField(graalService, "maxRequestsTimeout", 5000L);
+            ReflectionTestUtils.setField(graalService, "maxBlackListDurationSec", 60);
+            graalService.init();
+            jsInvokeService = graalService;
+        } else {
+            NashornJsInvokeService nashornService = new NashornJsInvokeService(apiUsageStateService, apiUsageClient, jsExecutor);
+            ReflectionTestUtils.setField(nashornService, "useJsSandbox", true);
+            ReflectionTestUtils.setField(nashornService, "monitorThreadPoolSize", 1);
+            ReflectionTestUtils.setField(nashornService, "maxCpuTime", 5000L);
+            ReflectionTestUtils.setField(nashornService, "maxErrors", 3);
+            ReflectionTestUtils.setField(nashornService, "maxBlackListDurationSec", 60);
+            nashornService.init();
+            jsInvokeService = nashornService;
+        }
+    }
+
+    @After
+    public void tearDown() {
+        if (scriptEngine != null) {
+            scriptEngine.destroy();
+        }
+        jsInvokeService.stop();
+        jsExecutor.destroy();
+    }
+
+    @Test
+    public void testFilter() throws Exception {
+        scriptEngine = createScriptEngine("return msg.temperature > 20 && metadata.deviceType === 'thermostat';");
+
+        assertTrue(scriptEngine.executeFilterAsync(createMsg("{\"temperature\": 21}")).get(10, TimeUnit.SECONDS));
+        assertFalse(scriptEngine.executeFilterAsync(createMsg("{\"temperature\": 19}")).get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testSwitch() throws Exception {
+        scriptEngine = createScriptEngine("var relations = ['Always'];\n" +
+                "if (msg.temperature > 20) { relations.push('Hot'); }\n" +
+                "if (msgType === 'POST_TELEMETRY_REQUEST') { relations.push('Telemetry'); }\n" +
+                "return relations;");
+
+        assertEquals(new HashSet<>(Arrays.asList("Always", "Hot", "Telemetry")),
+                scriptEngine.executeSwitchAsync(createMsg("{\"temperature\": 21}")).get(10, TimeUnit.SECONDS));
+    }
+
+    @Test
+    public void testUpdate() throws Exception {
+        scriptEngine = createScriptEngine("var newMsg = {temperatureF: msg.temperature * 9 / 5 + 32, tags: msg.tags};\n" +
+                "metadata.converted = 'true';\n" +
+                "return {msg: newMsg, metadata: metadata, msgType: 'CONVERTED'};");
+
+        List<TbMsg> result = scriptEngine.executeUpdateAsync(createMsg("{\"temperature\": 25, \"tags\": [\"a\", \"b\"]}"))
+                .get(10, TimeUnit.SECONDS);
+
+        assertEquals(1, result.size());
+        TbMsg msg = result.get(0);
+        assertEquals("CONVERTED", msg.getType());
+        assertEquals("{\"temperatureF\":77,\"tags\":[\"a\",\"b\"]}", msg.getData());
+        assertEquals("true", msg.getMetaData().getValue("converted"));
+        assertEquals("thermostat", msg.getMetaData().getValue("deviceType"));
+    }
+
+    @Test
+    public void testToString() throws Exception {
+        scriptEngine = createScriptEngine("return 'Temperature is ' + msg.temperature + ' on ' + metadata.deviceType;");
+
+        assertEquals("Temperature is 21 on thermostat",
+                scriptEngine.executeToStringAsync(createMsg("{\"temperature\": 21}")).get(10, TimeUnit.SECONDS));
+    }
+
+    private RuleNodeJsScriptEngine createScriptEngine(String script) {
+        return new RuleNodeJsScriptEngine(tenantId, jsInvokeService, new RuleNodeId(UUID.randomUUID()), script,
+                "msg", "metadata", "msgType");
+    }
+
+    private static TbMsg createMsg(String data) {
+        TbMsgMetaData metaData = new TbMsgMetaData();
+        metaData.putValue("deviceType", "thermostat");
+        return TbMsg.newMsg("POST_TELEMETRY_REQUEST", new DeviceId(UUID.randomUUID()), metaData, data);
+    }
+
+}
@@ -15,20 +15,35 @@
  */
 package org.thingsboard.server.service.state;
 
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.junit.Before;
 import org.junit.Test;
 import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
 import org.mockito.Mock;
 import org.mockito.Mockito;
 import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.Device;
 import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.BaseAttributeKvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.msg.queue.ServiceType;
+import org.thingsboard.server.common.msg.queue.TbCallback;
+import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
 import org.thingsboard.server.dao.attributes.AttributesService;
 import org.thingsboard.server.dao.device.DeviceService;
 import org.thingsboard.server.dao.tenant.TenantService;
 import org.thingsboard.server.dao.timeseries.TimeseriesService;
+import org.thingsboard.server.gen.transport.TransportProtos;
 import org.thingsboard.server.queue.discovery.PartitionService;
 import org.thingsboard.server.service.queue.TbClusterService;
 
+import java.util.Collections;
+import java.util.concurrent.ConcurrentHashMap;
+
 import static org.hamcrest.CoreMatchers.is;
 import static org.hamcrest.MatcherAssert.assertThat;
 import static org.mockito.BDDMockito.willReturn;
@@ -80,4 +95,143 @@ public class DefaultDeviceStateServiceTest {
         Mockito.verify(service, times(1)).fetchDeviceStateData(deviceId);
     }
 
+    @Test
+    public void givenDeviceStateSnapshot_whenOnDeviceStateSnapshot_thenBufferStatesOfNotManagedDevicesOfMyPartitions() {
+        ReflectionTestUtils.setField(service, "handoffEnabled", true);
+        DeviceId otherDeviceId = DeviceId.fromString("c8b3f2a4-8d1e-4a8e-9b5f-3f1d2c4e5a6b");
+        DeviceId foreignDeviceId = DeviceId.fromString("2f6c1d8e-3b4a-4f5e-8c7d-6e5f4a3b2c1d");
+        mockPartition(deviceId, true);
+        mockPartition(otherDeviceId, true);
+        mockPartition(foreignDeviceId, false);
+        TbCallback callback = Mockito.mock(TbCallback.class);
+
+        service.onDeviceStateSnapshot(TransportProtos.DeviceStateSnapshotMsgProto.newBuilder()
+                .addStates(toStateProto(deviceId, 1000L))
+                .addStates(toStateProto(otherDeviceId, 2000L))
+                .addStates(toStateProto(foreignDeviceId, 3000L))
+                .build(), callback);
+
+        assertThat(service.handoffStates.size(), is(2));
+        DeviceState state = service.handoffStates.get(deviceId).getState();
+        assertThat(state.isActive(), is(true));
+        assertThat(state.getLastActivityTime(), is(1000L));
+        assertThat(state.getInactivityTimeout(), is(60000L));
+        assertThat(service.handoffStates.get(otherDeviceId).getState().getLastActivityTime(), is(2000L));
+        assertThat(service.handoffStates.containsKey(foreignDeviceId), is(false));
+        Mockito.verify(callback).onSuccess();
+    }
+
+    @Test
+    public void givenDeviceStateSnapshot_whenOnDeviceStateSnapshot_thenManagedStatesAreReplacedByFresherOnly() {
+        ReflectionTestUtils.setField(service, "handoffEnabled", true);
+        DeviceId staleDeviceId = DeviceId.fromString("5b0d3e9c-6a1f-4c2d-8e7b-9a0c1d2e3f4a");
+        mockPartition(deviceId, true);
+        mockPartition(staleDeviceId, true);
+        service.deviceStates.put(deviceId, toStateData(deviceId, 1000L));
+        service.deviceStates.put(staleDeviceId, toStateData(staleDeviceId, 5000L));
+
+        service.onDeviceStateSnapshot(TransportProtos.DeviceStateSnapshotMsgProto.newBuilder()
+                .addStates(toStateProto(deviceId, 2000L))
+                .addStates(toStateProto(staleDeviceId, 3000L))
+                .build(), Mockito.mock(TbCallback.class));
+
+        assertThat(service.deviceStates.get(deviceId).getState().getLastActivityTime(), is(2000L));
+        assertThat(service.deviceStates.get(staleDeviceId).getState().getLastActivityTime(), is(5000L));
+        assertThat(service.handoffStates.isEmpty(), is(true));
+    }
+
+    @Test
+    public void givenHandoffStateOlderThanDbState_whenFetchOrHandoffDeviceState_thenDbStateIsUsed() throws Exception {
+        Device device = mockDbState(3000L);
+        service.handoffStates.put(deviceId, new DefaultDeviceStateService.HandoffDeviceState(
+                DeviceState.builder().lastActivityTime(2000L).build(), System.currentTimeMillis()));
+
+        DeviceStateData state = service.fetchOrHandoffDeviceState(device).get();
+
+        assertThat(state.getState().getLastActivityTime(), is(3000L));
+        assertThat(service.handoffStates.isEmpty(), is(true));
+    }
+
+    @Test
+    public void givenHandoffStateFresherThanDbState_whenFetchOrHandoffDeviceState_thenHandoffStateIsUsed() throws Exception {
+        Device device = mockDbState(1000L);
+        service.handoffStates.put(deviceId, new DefaultDeviceStateService.HandoffDeviceState(
+                DeviceState.builder().active(true).lastActivityTime(2000L).build(), System.currentTimeMillis()));
+
+        DeviceStateData state = service.fetchOrHandoffDeviceState(device).get();
+
+        assertThat(state.getState().getLastActivityTime(), is(2000L));
+        assertThat(state.getState().isActive(), is(true));
+    }
+
+    @Test
+    public void givenStateUpdatedBeforeDeferredInit_whenAddDeviceUsingState_thenFresherStateIsKept() {
+        TopicPartitionInfo tpi = new TopicPartitionInfo("tb_core", null, 1, true);
+        service.partitionedDevices.put(tpi, ConcurrentHashMap.newKeySet());
+        DeviceStateData current = toStateData(deviceId, 2000L);
+        service.deviceStates.put(deviceId, current);
+
+        DeviceStateData added = service.addDeviceUsingState(tpi, toStateData(deviceId, 1000L));
+
+        assertThat(added, is(current));
+        assertThat(service.deviceStates.get(deviceId), is(current));
+        assertThat(service.partitionedDevices.get(tpi).contains(deviceId), is(true));
+
+        DeviceStateData fresher = toStateData(deviceId, 3000L);
+        assertThat(service.addDeviceUsingState(tpi, fresher), is(fresher));
+    }
+
+    @Test
+    public void givenManagedDevices_whenStop_thenSendStateSnapshotToDevicePartition() {
+        ReflectionTestUtils.setField(service, "handoffEnabled", true);
+        ReflectionTestUtils.setField(service, "handoffSnapshotPackSize", 1000);
+        TopicPartitionInfo tpi = mockPartition(deviceId, true);
+        service.deviceStates.put(deviceId, toStateData(deviceId, 1000L));
+
+        service.stop();
+
+        ArgumentCaptor<TransportProtos.ToCoreMsg> msgCaptor = ArgumentCaptor.forClass(TransportProtos.ToCoreMsg.class);
+        Mockito.verify(clusterService).pushMsgToCore(Mockito.eq(tpi), Mockito.any(), msgCaptor.capture(), Mockito.any());
+        TransportProtos.DeviceStateSnapshotMsgProto snapshot = msgCaptor.getValue().getDeviceStateSnapshotMsg();
+        assertThat(snapshot.getStatesCount(), is(1));
+        assertThat(snapshot.getStates(0).getLastActivityTime(), is(1000L));
+    }
+
+    private TopicPartitionInfo mockPartition(DeviceId deviceId, boolean myPartition) {
+        TopicPartitionInfo tpi = new TopicPartitionInfo("tb_core", null, deviceId.hashCode(), myPartition);
+        willReturn(tpi).given(partitionService).resolve(ServiceType.TB_CORE, TenantId.SYS_TENANT_ID, deviceId);
+        return tpi;
+    }
+
+    private Device mockDbState(long lastActivityTime) {
+        ReflectionTestUtils.setField(service, "deviceStateExecutor", MoreExecutors.newDirectExecutorService());
+        ReflectionTestUtils.setField(service, "defaultInactivityTimeoutInSec", 60L);
+        Device device = new Device(deviceId);
+        device.setTenantId(TenantId.SYS_TENANT_ID);
+        willReturn(Futures.immediateFuture(Collections.singletonList(
+                new BaseAttributeKvEntry(new LongDataEntry(DefaultDeviceStateService.LAST_ACTIVITY_TIME, lastActivityTime), 0L))))
+                .given(attributesService).find(Mockito.any(), Mockito.eq(deviceId), Mockito.anyString(), Mockito.anyCollection());
+        return device;
+    }
+
+    private DeviceStateData toStateData(DeviceId deviceId, long lastActivityTime) {
+        return DeviceStateData.builder()
+                .tenantId(TenantId.SYS_TENANT_ID)
+                .deviceId(deviceId)
+                .state(DeviceState.builder().active(true).lastActivityTime(lastActivityTime).inactivityTimeout(60000L).build())
+                .build();
+    }
+
+    private TransportProtos.DeviceStateProto toStateProto(DeviceId deviceId, long lastActivityTime) {
+        return TransportProtos.DeviceStateProto.newBuilder()
+                .setTenantIdMSB(TenantId.SYS_TENANT_ID.getId().getMostSignificantBits())
+                .setTenantIdLSB(TenantId.SYS_TENANT_ID.getId().getLeastSignificantBits())
+                .setDeviceIdMSB(deviceId.getId().getMostSignificantBits())
+                .setDeviceIdLSB(deviceId.getId().getLeastSignificantBits())
+                .setActive(true)
+                .setLastActivityTime(lastActivityTime)
+                .setInactivityTimeout(60000L)
+                .build();
+    }
+
 }
\ No newline at end of file
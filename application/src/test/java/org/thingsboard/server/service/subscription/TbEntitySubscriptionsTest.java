@@ -0,0 +1,86 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.subscription;
+
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.hamcrest.CoreMatchers.is;
+import static org.hamcrest.CoreMatchers.sameInstance;
+import static org.hamcrest.MatcherAssert.assertThat;
+
+public class TbEntitySubscriptionsTest {
+
+    TenantId tenantId = new TenantId(UUID.randomUUID());
+    DeviceId deviceId = new DeviceId(UUID.randomUUID());
+
+    @Test
+    public void givenKeySubscriptions_whenFindMatching_thenOnlyMatchingKeysReturned() {
+        TbTimeseriesSubscription temperature = tsSubscription(1, false, "temperature");
+        TbTimeseriesSubscription humidity = tsSubscription(2, false, "humidity");
+        TbTimeseriesSubscription all = tsSubscription(3, true);
+        TbEntitySubscriptions subscriptions = TbEntitySubscriptions.EMPTY.add(temperature).add(humidity).add(all);
+
+        TsKvEntry temperatureEntry = new BasicTsKvEntry(1L, new LongDataEntry("temperature", 42L));
+        TsKvEntry pressureEntry = new BasicTsKvEntry(1L, new LongDataEntry("pressure", 1L));
+        List<TsKvEntry> entries = Arrays.asList(temperatureEntry, pressureEntry);
+
+        Map<TbSubscription, List<TsKvEntry>> result = subscriptions.findMatching(TbSubscriptionType.TIMESERIES, entries);
+
+        assertThat(result.size(), is(2));
+        assertThat(result.get(temperature), is(Collections.singletonList(temperatureEntry)));
+        assertThat(result.get(all), is(entries));
+        assertThat(subscriptions.findMatching(TbSubscriptionType.ATTRIBUTES, entries).isEmpty(), is(true));
+    }
+
+    @Test
+    public void givenSubscriptions_whenAddAndRemove_thenSnapshotsAreImmutable() {
+        TbTimeseriesSubscription temperature = tsSubscription(1, false, "temperature");
+        TbEntitySubscriptions one = TbEntitySubscriptions.EMPTY.add(temperature);
+
+        assertThat(one.add(temperature), sameInstance(one));
+        assertThat(TbEntitySubscriptions.EMPTY.isEmpty(), is(true));
+        assertThat(one.remove(temperature).isEmpty(), is(true));
+        assertThat(one.contains(temperature), is(true));
+    }
+
+    private TbTimeseriesSubscription tsSubscription(int subscriptionId, boolean allKeys, String... keys) {
+        Map<String, Long> keyStates = new HashMap<>();
+        for (String key : keys) {
+            keyStates.put(key, 0L);
+        }
+        return TbTimeseriesSubscription.builder()
+                .serviceId("tb-core-0")
+                .sessionId("session")
+                .subscriptionId(subscriptionId)
+                .tenantId(tenantId)
+                .entityId(deviceId)
+                .allKeys(allKeys)
+                .keyStates(keyStates)
+                .build();
+    }
+}
@@ -0,0 +1,115 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.service.telemetry;
+
+import com.google.common.util.concurrent.Futures;
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.dao.timeseries.TimeseriesService;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.NoSuchElementException;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.when;
+
+public class TsKvExportCursorTest {
+
+    private final TenantId tenantId = new TenantId(UUID.randomUUID());
+    private final DeviceId deviceId = new DeviceId(UUID.randomUUID());
+    private final List<ReadTsKvQuery> queries = new ArrayList<>();
+    private TimeseriesService tsService;
+
+    @Before
+    @SuppressWarnings("unchecked")
+    public void setUp() {
+        List<TsKvEntry> storage = Arrays.asList(
+                entry("temperature", 100), entry("temperature", 200), entry("temperature", 300),
+                entry("temperature", 400), entry("temperature", 500),
+                entry("humidity", 150), entry("humidity", 250));
+        tsService = mock(TimeseriesService.class);
+        when(tsService.findAll(eq(tenantId), eq(deviceId), anyList())).thenAnswer(invocation -> {
+            ReadTsKvQuery query = ((List<ReadTsKvQuery>) invocation.getArgument(2)).get(0);
+            queries.add(query);
+            return Futures.immediateFuture(storage.stream()
+                    .filter(entry -> entry.getKey().equals(query.getKey()))
+                    .filter(entry -> entry.getTs() >= query.getStartTs() && entry.getTs() < query.getEndTs())
+                    .limit(query.getLimit())
+                    .collect(Collectors.toList()));
+        });
+    }
+
+    @Test
+    public void testPagesAreFetchedFromLastTimestampForEveryKey() throws Exception {
+        TsKvExportCursor cursor = new TsKvExportCursor(tsService, tenantId, deviceId, Arrays.asList("temperature", "humidity"), 0, 1000, 2);
+
+        List<List<Long>> pages = new ArrayList<>();
+        while (cursor.hasNext()) {
+            pages.add(cursor.next().stream().map(TsKvEntry::getTs).collect(Collectors.toList()));
+        }
+
+        assertEquals(Arrays.asList(
+                Arrays.asList(100L, 200L), Arrays.asList(300L, 400L), Collections.singletonList(500L),
+                Arrays.asList(150L, 250L), Collections.emptyList()), pages);
+        assertEquals(Arrays.asList(0L, 201L, 401L, 0L, 251L),
+                queries.stream().map(ReadTsKvQuery::getStartTs).collect(Collectors.toList()));
+        queries.forEach(query -> {
+            assertEquals(1000L, query.getEndTs());
+            assertEquals(2, query.getLimit());
+            assertEquals("ASC", query.getOrder());
+        });
+    }
+
+    @Test
+    public void testEmptyRangeIsNotQueried() throws Exception {
+        TsKvExportCursor cursor = new TsKvExportCursor(tsService, tenantId, deviceId, Collections.singletonList("temperature"), 1000, 1000, 2);
+
+        assertTrue(cursor.hasNext());
+        assertTrue(cursor.next().isEmpty());
+        assertFalse(cursor.hasNext());
+        assertTrue(queries.isEmpty());
+    }
+
+    @Test(expected = NoSuchElementException.class)
+    public void testNextAfterLastPageFails() throws Exception {
+        TsKvExportCursor cursor = new TsKvExportCursor(tsService, tenantId, deviceId, Collections.singletonList("humidity"), 0, 200, 2);
+
+        assertEquals(1, cursor.next().size());
+        assertFalse(cursor.hasNext());
+        cursor.next();
+    }
+
+    private static TsKvEntry entry(String key, long ts) {
+        return new BasicTsKvEntry(ts, new LongDataEntry(key, ts));
+    }
+
+}
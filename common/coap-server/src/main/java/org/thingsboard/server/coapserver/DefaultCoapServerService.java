@@ -22,6 +22,7 @@ import org.eclipse.californium.core.network.config.NetworkConfig;
 import org.eclipse.californium.core.server.resources.Resource;
 import org.eclipse.californium.scandium.DTLSConnector;
 import org.eclipse.californium.scandium.config.DtlsConnectorConfig;
+import org.eclipse.californium.scandium.dtls.SessionCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Component;
 
@@ -31,7 +32,6 @@ import java.net.InetAddress;
 import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.util.Random;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.Executors;
 import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.TimeUnit;
@@ -77,8 +77,8 @@ public class DefaultCoapServerService implements CoapServerService {
     }
 
     @Override
-    public ConcurrentMap<String, TbCoapDtlsSessionInfo> getDtlsSessionsMap() {
-        return tbDtlsCertificateVerifier != null ? tbDtlsCertificateVerifier.getTbCoapDtlsSessionIdsMap() : null;
+    public TbCoapDtlsSessionInfo getDtlsSessionInfo(String dtlsSessionId) {
+        return tbDtlsCertificateVerifier != null ? tbDtlsCertificateVerifier.getTbCoapDtlsSessionInfo(dtlsSessionId) : null;
     }
 
     @Override
@@ -113,7 +113,9 @@ public class DefaultCoapServerService implements CoapServerService {
             DtlsConnectorConfig dtlsConnectorConfig = dtlsSettings.dtlsConnectorConfig();
             networkConfig.setInt(NetworkConfig.Keys.COAP_SECURE_PORT, dtlsConnectorConfig.getAddress().getPort());
             dtlsCoapEndpointBuilder.setNetworkConfig(networkConfig);
-            DTLSConnector connector = new DTLSConnector(dtlsConnectorConfig);
+            SessionCache sessionCache = dtlsSettings.sessionCache();
+            DTLSConnector connector = sessionCache != null ?
+                    new DTLSConnector(dtlsConnectorConfig, sessionCache) : new DTLSConnector(dtlsConnectorConfig);
             dtlsCoapEndpointBuilder.setConnector(connector);
             CoapEndpoint dtlsCoapEndpoint = dtlsCoapEndpointBuilder.build();
             server.addEndpoint(dtlsCoapEndpoint);
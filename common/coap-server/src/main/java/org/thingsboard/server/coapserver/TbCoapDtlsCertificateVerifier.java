@@ -49,7 +49,6 @@ import java.security.cert.X509Certificate;
 import java.util.Collections;
 import java.util.List;
 import java.util.UUID;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.CountDownLatch;
 import java.util.concurrent.TimeUnit;
 
@@ -63,11 +62,11 @@ public class TbCoapDtlsCertificateVerifier implements NewAdvancedCertificateVeri
     private TbServiceInfoProvider serviceInfoProvider;
     private boolean skipValidityCheckForClientCert;
 
-    public TbCoapDtlsCertificateVerifier(TransportService transportService, TbServiceInfoProvider serviceInfoProvider, long dtlsSessionInactivityTimeout, long dtlsSessionReportTimeout, boolean skipValidityCheckForClientCert) {
+    public TbCoapDtlsCertificateVerifier(TransportService transportService, TbServiceInfoProvider serviceInfoProvider, TbCoapDtlsSessionInMemoryStorage tbCoapDtlsSessionInMemoryStorage, boolean skipValidityCheckForClientCert) {
         this.transportService = transportService;
         this.serviceInfoProvider = serviceInfoProvider;
         this.skipValidityCheckForClientCert = skipValidityCheckForClientCert;
-        this.tbCoapDtlsSessionInMemoryStorage = new TbCoapDtlsSessionInMemoryStorage(dtlsSessionInactivityTimeout, dtlsSessionReportTimeout);
+        this.tbCoapDtlsSessionInMemoryStorage = tbCoapDtlsSessionInMemoryStorage;
     }
 
     @Override
@@ -142,8 +141,8 @@ public class TbCoapDtlsCertificateVerifier implements NewAdvancedCertificateVeri
     public void setResultHandler(HandshakeResultHandler resultHandler) {
     }
 
-    public ConcurrentMap<String, TbCoapDtlsSessionInfo> getTbCoapDtlsSessionIdsMap() {
-        return tbCoapDtlsSessionInMemoryStorage.getDtlsSessionIdMap();
+    public TbCoapDtlsSessionInfo getTbCoapDtlsSessionInfo(String dtlsSessionId) {
+        return tbCoapDtlsSessionInMemoryStorage.get(dtlsSessionId);
     }
 
     public void evictTimeoutSessions() {
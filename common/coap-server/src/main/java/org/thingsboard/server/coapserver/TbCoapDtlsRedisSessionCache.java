@@ -0,0 +1,87 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.coapserver;
+
+import lombok.extern.slf4j.Slf4j;
+import org.eclipse.californium.elements.util.DatagramReader;
+import org.eclipse.californium.elements.util.DatagramWriter;
+import org.eclipse.californium.scandium.dtls.DTLSSession;
+import org.eclipse.californium.scandium.dtls.SessionCache;
+import org.eclipse.californium.scandium.dtls.SessionId;
+import org.eclipse.californium.scandium.dtls.SessionTicket;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import java.nio.charset.StandardCharsets;
+
+/**
+ * Keeps DTLS session tickets in Redis so that devices may resume their sessions
+ * with an abbreviated handshake after the transport is restarted or rescheduled.
+ */
+@Slf4j
+public class TbCoapDtlsRedisSessionCache implements SessionCache {
+
+    private static final String SESSION_TICKET = "COAP#DTLS#TICKET#";
+    private final RedisConnectionFactory connectionFactory;
+    private final long ttlMs;
+
+    public TbCoapDtlsRedisSessionCache(RedisConnectionFactory redisConnectionFactory, long ttlMs) {
+        this.connectionFactory = redisConnectionFactory;
+        this.ttlMs = ttlMs;
+    }
+
+    @Override
+    public void put(DTLSSession session) {
+        SessionTicket ticket = session.getSessionTicket();
+        if (ticket == null) {
+            return;
+        }
+        DatagramWriter writer = new DatagramWriter();
+        ticket.encode(writer);
+        try (var c = connectionFactory.getConnection()) {
+            c.pSetEx(getKey(session.getSessionIdentifier()), ttlMs, writer.toByteArray());
+        } catch (Exception e) {
+            log.warn("[{}] Failed to store DTLS session ticket", session.getSessionIdentifier(), e);
+        }
+    }
+
+    @Override
+    public SessionTicket get(SessionId id) {
+        try (var c = connectionFactory.getConnection()) {
+            byte[] data = c.get(getKey(id));
+            return data != null ? SessionTicket.decode(new DatagramReader(data)) : null;
+        } catch (Exception e) {
+            log.warn("[{}] Failed to load DTLS session ticket", id, e);
+            return null;
+        }
+    }
+
+    @Override
+    public void remove(SessionId id) {
+        try (var c = connectionFactory.getConnection()) {
+            c.del(getKey(id));
+        } catch (Exception e) {
+            log.warn("[{}] Failed to remove DTLS session ticket", id, e);
+        }
+    }
+
+    private static byte[] getKey(SessionId id) {
+        return getKey(id.getAsString());
+    }
+
+    static byte[] getKey(String dtlsSessionId) {
+        return (SESSION_TICKET + dtlsSessionId).getBytes(StandardCharsets.UTF_8);
+    }
+}
@@ -18,8 +18,13 @@ package org.thingsboard.server.coapserver;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Data
@@ -28,28 +33,127 @@ public class TbCoapDtlsSessionInMemoryStorage {
     private final ConcurrentMap<String, TbCoapDtlsSessionInfo> dtlsSessionIdMap = new ConcurrentHashMap<>();
     private long dtlsSessionInactivityTimeout;
     private long dtlsSessionReportTimeout;
+    private int dtlsSessionCacheMaxSize;
+    private TbCoapDtlsSessionRedisStore redisStore;
 
-
-    public TbCoapDtlsSessionInMemoryStorage(long dtlsSessionInactivityTimeout, long dtlsSessionReportTimeout) {
+    public TbCoapDtlsSessionInMemoryStorage(long dtlsSessionInactivityTimeout, long dtlsSessionReportTimeout,
+                                            int dtlsSessionCacheMaxSize, TbCoapDtlsSessionRedisStore redisStore) {
         this.dtlsSessionInactivityTimeout = dtlsSessionInactivityTimeout;
         this.dtlsSessionReportTimeout = dtlsSessionReportTimeout;
+        this.dtlsSessionCacheMaxSize = dtlsSessionCacheMaxSize;
+        this.redisStore = redisStore;
     }
 
     public void put(String dtlsSessionId, TbCoapDtlsSessionInfo dtlsSessionInfo) {
         log.trace("DTLS session added to in-memory store: [{}] timestamp: [{}]", dtlsSessionId, dtlsSessionInfo.getLastActivityTime());
         dtlsSessionIdMap.putIfAbsent(dtlsSessionId, dtlsSessionInfo);
+        if (redisStore != null) {
+            try {
+                redisStore.put(dtlsSessionId, dtlsSessionInfo, dtlsSessionInactivityTimeout);
+                dtlsSessionInfo.setLastPersistTime(dtlsSessionInfo.getLastActivityTime());
+            } catch (Exception e) {
+                log.warn("[{}] Failed to persist DTLS session", dtlsSessionId, e);
+            }
+        }
+        evictOverflowSessions();
+    }
+
+    public TbCoapDtlsSessionInfo get(String dtlsSessionId) {
+        TbCoapDtlsSessionInfo dtlsSessionInfo = dtlsSessionIdMap.computeIfPresent(dtlsSessionId, (id, info) -> {
+            info.setLastActivityTime(System.currentTimeMillis());
+            return info;
+        });
+        if (dtlsSessionInfo != null) {
+            refreshPersistedSession(dtlsSessionId, dtlsSessionInfo);
+        } else if (redisStore != null) {
+            try {
+                dtlsSessionInfo = redisStore.get(dtlsSessionId);
+            } catch (Exception e) {
+                log.warn("[{}] Failed to load DTLS session", dtlsSessionId, e);
+            }
+            if (dtlsSessionInfo != null) {
+                log.trace("DTLS session restored from persistent store: [{}]", dtlsSessionId);
+                dtlsSessionInfo.setLastActivityTime(System.currentTimeMillis());
+                dtlsSessionInfo.setLastPersistTime(0L);
+                refreshPersistedSession(dtlsSessionId, dtlsSessionInfo);
+                TbCoapDtlsSessionInfo existing = dtlsSessionIdMap.putIfAbsent(dtlsSessionId, dtlsSessionInfo);
+                if (existing != null) {
+                    dtlsSessionInfo = existing;
+                }
+                evictOverflowSessions();
+            }
+        }
+        return dtlsSessionInfo;
     }
 
     public void evictTimeoutSessions() {
         long expTime = System.currentTimeMillis() - dtlsSessionInactivityTimeout;
+        List<String> expiredSessionIds = new ArrayList<>();
         dtlsSessionIdMap.entrySet().removeIf(entry -> {
             if (entry.getValue().getLastActivityTime() < expTime) {
                 log.trace("DTLS session was removed from in-memory store: [{}]", entry.getKey());
+                expiredSessionIds.add(entry.getKey());
                 return true;
             } else {
                 return false;
             }
         });
+        if (redisStore != null) {
+            for (String dtlsSessionId : expiredSessionIds) {
+                try {
+                    redisStore.remove(dtlsSessionId);
+                } catch (Exception e) {
+                    log.warn("[{}] Failed to remove persisted DTLS session", dtlsSessionId, e);
+                }
+            }
+        }
+    }
+
+    /**
+     * Extends the TTL of the persisted copy at most once per report timeout,
+     * so that an active session does not expire in Redis without a round trip on every request.
+     */
+    private void refreshPersistedSession(String dtlsSessionId, TbCoapDtlsSessionInfo dtlsSessionInfo) {
+        if (redisStore == null) {
+            return;
+        }
+        long now = dtlsSessionInfo.getLastActivityTime();
+        if (now - dtlsSessionInfo.getLastPersistTime() < dtlsSessionReportTimeout) {
+            return;
+        }
+        dtlsSessionInfo.setLastPersistTime(now);
+        try {
+            redisStore.touch(dtlsSessionId, dtlsSessionInactivityTimeout);
+        } catch (Exception e) {
+            log.warn("[{}] Failed to refresh persisted DTLS session", dtlsSessionId, e);
+        }
+    }
+
+    private void evictOverflowSessions() {
+        if (dtlsSessionCacheMaxSize <= 0 || dtlsSessionIdMap.size() <= dtlsSessionCacheMaxSize) {
+            return;
+        }
+        synchronized (dtlsSessionIdMap) {
+            if (dtlsSessionIdMap.size() <= dtlsSessionCacheMaxSize) {
+                return;
+            }
+            evictTimeoutSessions();
+            if (dtlsSessionIdMap.size() <= dtlsSessionCacheMaxSize) {
+                return;
+            }
+            // The persisted copies of evicted active sessions are kept, so they are restored on the next request.
+            // Trim an extra tenth of the capacity so that the sort below does not run on every new handshake.
+            int toRemove = dtlsSessionIdMap.size() - dtlsSessionCacheMaxSize + dtlsSessionCacheMaxSize / 10;
+            dtlsSessionIdMap.entrySet().stream()
+                    .sorted(Comparator.comparingLong(entry -> entry.getValue().getLastActivityTime()))
+                    .limit(toRemove)
+                    .map(Map.Entry::getKey)
+                    .collect(Collectors.toList())
+                    .forEach(dtlsSessionId -> {
+                        log.trace("DTLS session was evicted from in-memory store: [{}]", dtlsSessionId);
+                        dtlsSessionIdMap.remove(dtlsSessionId);
+                    });
+        }
     }
 
-}
\ No newline at end of file
+}
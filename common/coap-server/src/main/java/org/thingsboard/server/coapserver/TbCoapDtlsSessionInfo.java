@@ -19,12 +19,15 @@ import lombok.Data;
 import org.thingsboard.server.common.data.DeviceProfile;
 import org.thingsboard.server.gen.transport.TransportProtos;
 
+import java.io.Serializable;
+
 @Data
-public class TbCoapDtlsSessionInfo {
+public class TbCoapDtlsSessionInfo implements Serializable {
 
     private TransportProtos.SessionInfoProto sessionInfoProto;
     private DeviceProfile deviceProfile;
     private long lastActivityTime;
+    private transient long lastPersistTime;
 
 
     public TbCoapDtlsSessionInfo(TransportProtos.SessionInfoProto sessionInfoProto, DeviceProfile deviceProfile) {
@@ -0,0 +1,72 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.coapserver;
+
+import org.nustaq.serialization.FSTConfiguration;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
+
+import java.nio.charset.StandardCharsets;
+
+public class TbCoapDtlsSessionRedisStore {
+
+    private static final String SESSION_ID = "COAP#DTLS#SESSION#";
+    private final RedisConnectionFactory connectionFactory;
+    private final FSTConfiguration serializer;
+
+    public TbCoapDtlsSessionRedisStore(RedisConnectionFactory redisConnectionFactory) {
+        this.connectionFactory = redisConnectionFactory;
+        this.serializer = FSTConfiguration.createDefaultConfiguration();
+    }
+
+    public void put(String dtlsSessionId, TbCoapDtlsSessionInfo dtlsSessionInfo, long ttlMs) {
+        try (var c = connectionFactory.getConnection()) {
+            var serializedMsg = serializer.asByteArray(dtlsSessionInfo);
+            if (serializedMsg != null) {
+                c.pSetEx(getKey(dtlsSessionId), ttlMs, serializedMsg);
+            } else {
+                throw new RuntimeException("Problem with serialization of DTLS session: " + dtlsSessionId);
+            }
+        }
+    }
+
+    public TbCoapDtlsSessionInfo get(String dtlsSessionId) {
+        try (var c = connectionFactory.getConnection()) {
+            var data = c.get(getKey(dtlsSessionId));
+            if (data != null) {
+                return (TbCoapDtlsSessionInfo) serializer.asObject(data);
+            } else {
+                return null;
+            }
+        }
+    }
+
+    public void touch(String dtlsSessionId, long ttlMs) {
+        try (var c = connectionFactory.getConnection()) {
+            c.pExpire(getKey(dtlsSessionId), ttlMs);
+            c.pExpire(TbCoapDtlsRedisSessionCache.getKey(dtlsSessionId), ttlMs);
+        }
+    }
+
+    public void remove(String dtlsSessionId) {
+        try (var c = connectionFactory.getConnection()) {
+            c.del(getKey(dtlsSessionId), TbCoapDtlsRedisSessionCache.getKey(dtlsSessionId));
+        }
+    }
+
+    private byte[] getKey(String dtlsSessionId) {
+        return (SESSION_ID + dtlsSessionId).getBytes(StandardCharsets.UTF_8);
+    }
+}
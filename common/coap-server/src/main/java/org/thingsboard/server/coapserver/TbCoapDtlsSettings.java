@@ -19,10 +19,13 @@ import lombok.extern.slf4j.Slf4j;
 import org.eclipse.californium.elements.util.SslContextUtil;
 import org.eclipse.californium.scandium.config.DtlsConnectorConfig;
 import org.eclipse.californium.scandium.dtls.CertificateType;
+import org.eclipse.californium.scandium.dtls.SessionCache;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.data.redis.connection.RedisConnectionFactory;
 import org.springframework.stereotype.Component;
+import org.thingsboard.server.cache.TBRedisCacheConfiguration;
 import org.thingsboard.server.common.data.ResourceUtils;
 import org.thingsboard.server.common.transport.TransportService;
 import org.thingsboard.server.queue.discovery.TbServiceInfoProvider;
@@ -33,6 +36,7 @@ import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
 import java.security.GeneralSecurityException;
 import java.util.Collections;
+import java.util.Optional;
 
 @Slf4j
 @ConditionalOnProperty(prefix = "transport.coap.dtls", value = "enabled", havingValue = "true", matchIfMissing = false)
@@ -66,6 +70,21 @@ public class TbCoapDtlsSettings {
     @Value("${transport.coap.dtls.x509.dtls_session_report_timeout:1800000}")
     private long dtlsSessionReportTimeout;
 
+    @Value("${transport.coap.dtls.x509.dtls_session_cache_max_size:100000}")
+    private int dtlsSessionCacheMaxSize;
+
+    @Value("${transport.coap.dtls.max_connections:150000}")
+    private int maxConnections;
+
+    @Value("${transport.coap.dtls.stale_connection_threshold:1800}")
+    private long staleConnectionThreshold;
+
+    @Value("${transport.coap.dtls.redis.enabled:false}")
+    private boolean useRedis;
+
+    @Autowired(required = false)
+    private Optional<TBRedisCacheConfiguration> redisConfiguration;
+
     @Autowired
     private TransportService transportService;
 
@@ -80,12 +99,18 @@ public class TbCoapDtlsSettings {
         configBuilder.setServerOnly(true);
         configBuilder.setClientAuthenticationRequired(false);
         configBuilder.setClientAuthenticationWanted(true);
+        configBuilder.setMaxConnections(maxConnections);
+        configBuilder.setStaleConnectionThreshold(staleConnectionThreshold);
         configBuilder.setAdvancedCertificateVerifier(
                 new TbCoapDtlsCertificateVerifier(
                         transportService,
                         serviceInfoProvider,
-                        dtlsSessionInactivityTimeout,
-                        dtlsSessionReportTimeout,
+                        new TbCoapDtlsSessionInMemoryStorage(
+                                dtlsSessionInactivityTimeout,
+                                dtlsSessionReportTimeout,
+                                dtlsSessionCacheMaxSize,
+                                isRedis() ? new TbCoapDtlsSessionRedisStore(getConnectionFactory()) : null
+                        ),
                         skipValidityCheckForClientCert
                 )
         );
@@ -94,6 +119,18 @@ public class TbCoapDtlsSettings {
         return configBuilder.build();
     }
 
+    public SessionCache sessionCache() {
+        return isRedis() ? new TbCoapDtlsRedisSessionCache(getConnectionFactory(), dtlsSessionInactivityTimeout) : null;
+    }
+
+    private RedisConnectionFactory getConnectionFactory() {
+        return redisConfiguration.get().redisConnectionFactory();
+    }
+
+    private boolean isRedis() {
+        return redisConfiguration.isPresent() && useRedis;
+    }
+
     private SslContextUtil.Credentials loadServerCredentials(String keyStoreFilePath) {
         try {
             return SslContextUtil.loadCredentials(keyStoreFilePath, keyAlias, keyStorePassword.toCharArray(),
@@ -0,0 +1,144 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.coapserver;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.server.gen.transport.TransportProtos;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class TbCoapDtlsSessionInMemoryStorageTest {
+
+    private static final long INACTIVITY_TIMEOUT = 60000;
+    private static final long REPORT_TIMEOUT = 10000;
+
+    private TbCoapDtlsSessionRedisStore redisStore;
+
+    @Before
+    public void setUp() {
+        redisStore = mock(TbCoapDtlsSessionRedisStore.class);
+    }
+
+    @Test
+    public void givenFullCache_whenPut_thenExpiredSessionsAreEvictedFirst() {
+        TbCoapDtlsSessionInMemoryStorage storage = new TbCoapDtlsSessionInMemoryStorage(INACTIVITY_TIMEOUT, REPORT_TIMEOUT, 3, null);
+        long now = System.currentTimeMillis();
+        storage.put("expired", newSessionInfo(now - INACTIVITY_TIMEOUT - 1));
+        storage.put("old", newSessionInfo(now - 3000));
+        storage.put("recent", newSessionInfo(now - 1000));
+
+        storage.put("new", newSessionInfo(now));
+
+        assertFalse(storage.getDtlsSessionIdMap().containsKey("expired"));
+        assertTrue(storage.getDtlsSessionIdMap().containsKey("old"));
+        assertTrue(storage.getDtlsSessionIdMap().containsKey("recent"));
+        assertTrue(storage.getDtlsSessionIdMap().containsKey("new"));
+    }
+
+    @Test
+    public void givenFullCacheWithoutExpiredSessions_whenPut_thenLeastRecentlyActiveSessionsAreEvicted() {
+        TbCoapDtlsSessionInMemoryStorage storage = new TbCoapDtlsSessionInMemoryStorage(INACTIVITY_TIMEOUT, REPORT_TIMEOUT, 3, redisStore);
+        long now = System.currentTimeMillis();
+        storage.put("oldest", newSessionInfo(now - 5000));
+        storage.put("old", newSessionInfo(now - 3000));
+        storage.put("recent", newSessionInfo(now - 1000));
+        storage.get("oldest");
+
+        storage.put("new", newSessionInfo(now));
+
+        assertEquals(3, storage.getDtlsSessionIdMap().size());
+        assertFalse(storage.getDtlsSessionIdMap().containsKey("old"));
+        assertTrue(storage.getDtlsSessionIdMap().containsKey("oldest"));
+        verify(redisStore, never()).remove(anyString());
+    }
+
+    @Test
+    public void givenTimedOutSession_whenEvictTimeoutSessions_thenPersistedCopyIsRemoved() {
+        TbCoapDtlsSessionInMemoryStorage storage = new TbCoapDtlsSessionInMemoryStorage(INACTIVITY_TIMEOUT, REPORT_TIMEOUT, 0, redisStore);
+        long now = System.currentTimeMillis();
+        storage.put("expired", newSessionInfo(now - INACTIVITY_TIMEOUT - 1));
+        storage.put("active", newSessionInfo(now));
+
+        storage.evictTimeoutSessions();
+
+        assertEquals(1, storage.getDtlsSessionIdMap().size());
+        verify(redisStore).remove("expired");
+        verify(redisStore, never()).remove("active");
+    }
+
+    @Test
+    public void givenSessionMissingInMemory_whenGet_thenSessionIsRestoredFromPersistentStore() {
+        TbCoapDtlsSessionInMemoryStorage storage = new TbCoapDtlsSessionInMemoryStorage(INACTIVITY_TIMEOUT, REPORT_TIMEOUT, 0, redisStore);
+        TbCoapDtlsSessionInfo persisted = newSessionInfo(System.currentTimeMillis() - 30000);
+        when(redisStore.get("restored")).thenReturn(persisted);
+
+        TbCoapDtlsSessionInfo restored = storage.get("restored");
+
+        assertSame(persisted, restored);
+        assertSame(persisted, storage.getDtlsSessionIdMap().get("restored"));
+        assertTrue(restored.getLastActivityTime() > System.currentTimeMillis() - 1000);
+        verify(redisStore).touch("restored", INACTIVITY_TIMEOUT);
+        assertNull(storage.get("unknown"));
+    }
+
+    @Test
+    public void givenActiveSession_whenGet_thenPersistedTtlIsRefreshedOncePerReportTimeout() {
+        TbCoapDtlsSessionInMemoryStorage storage = new TbCoapDtlsSessionInMemoryStorage(INACTIVITY_TIMEOUT, REPORT_TIMEOUT, 0, redisStore);
+        TbCoapDtlsSessionInfo sessionInfo = newSessionInfo(System.currentTimeMillis());
+        storage.put("session", sessionInfo);
+        verify(redisStore).put("session", sessionInfo, INACTIVITY_TIMEOUT);
+
+        assertNotNull(storage.get("session"));
+        verify(redisStore, never()).touch(anyString(), anyLong());
+
+        sessionInfo.setLastPersistTime(System.currentTimeMillis() - REPORT_TIMEOUT);
+        storage.get("session");
+        storage.get("session");
+        verify(redisStore).touch("session", INACTIVITY_TIMEOUT);
+    }
+
+    @Test
+    public void givenUnavailablePersistentStore_whenGet_thenInMemorySessionIsStillReturned() {
+        TbCoapDtlsSessionInMemoryStorage storage = new TbCoapDtlsSessionInMemoryStorage(INACTIVITY_TIMEOUT, REPORT_TIMEOUT, 0, redisStore);
+        TbCoapDtlsSessionInfo sessionInfo = newSessionInfo(System.currentTimeMillis());
+        doThrow(new RuntimeException("Redis is down")).when(redisStore).put(anyString(), any(), anyLong());
+        doThrow(new RuntimeException("Redis is down")).when(redisStore).touch(anyString(), anyLong());
+
+        storage.put("session", sessionInfo);
+
+        assertSame(sessionInfo, storage.get("session"));
+    }
+
+    private static TbCoapDtlsSessionInfo newSessionInfo(long lastActivityTime) {
+        TbCoapDtlsSessionInfo sessionInfo = new TbCoapDtlsSessionInfo(TransportProtos.SessionInfoProto.getDefaultInstance(), null);
+        sessionInfo.setLastActivityTime(lastActivityTime);
+        return sessionInfo;
+    }
+}
@@ -32,6 +32,7 @@ import org.thingsboard.server.common.data.query.AlarmData;
 import org.thingsboard.server.common.data.query.AlarmDataQuery;
 
 import java.util.Collection;
+import java.util.concurrent.Executor;
 
 /**
  * Created by ashvayka on 11.05.17.
@@ -42,8 +43,15 @@ public interface AlarmService {
 
     AlarmOperationResult createOrUpdateAlarm(Alarm alarm, boolean alarmCreationEnabled);
 
+    ListenableFuture<AlarmOperationResult> createOrUpdateAlarmAsync(Alarm alarm, boolean alarmCreationEnabled, Executor executor);
+
     AlarmOperationResult deleteAlarm(TenantId tenantId, AlarmId alarmId);
 
+    /**
+     * Removes the alarm data that is kept for an entity, such as its alarm severity rollup, once the entity is deleted.
+     */
+    void onEntityDeleted(TenantId tenantId, EntityId entityId);
+
     ListenableFuture<AlarmOperationResult> ackAlarm(TenantId tenantId, AlarmId alarmId, long ackTs);
 
     ListenableFuture<AlarmOperationResult> clearAlarm(TenantId tenantId, AlarmId alarmId, JsonNode details, long clearTs);
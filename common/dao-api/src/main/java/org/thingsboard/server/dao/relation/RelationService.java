@@ -40,6 +40,8 @@ public interface RelationService {
 
     ListenableFuture<Boolean> saveRelationAsync(TenantId tenantId, EntityRelation relation);
 
+    ListenableFuture<Void> saveRelationsAsync(TenantId tenantId, List<EntityRelation> relations);
+
     boolean deleteRelation(TenantId tenantId, EntityRelation relation);
 
     ListenableFuture<Boolean> deleteRelationAsync(TenantId tenantId, EntityRelation relation);
@@ -66,6 +68,8 @@ public interface RelationService {
 
     ListenableFuture<List<EntityRelation>> findByToAsync(TenantId tenantId, EntityId to, RelationTypeGroup typeGroup);
 
+    ListenableFuture<List<EntityRelation>> findByToRecursivelyAsync(TenantId tenantId, EntityId to, RelationTypeGroup typeGroup);
+
     ListenableFuture<List<EntityRelationInfo>> findInfoByTo(TenantId tenantId, EntityId to, RelationTypeGroup typeGroup);
 
     List<EntityRelation> findByToAndType(TenantId tenantId, EntityId to, String relationType, RelationTypeGroup typeGroup);
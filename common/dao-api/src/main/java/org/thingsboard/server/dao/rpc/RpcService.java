@@ -24,6 +24,8 @@ import org.thingsboard.server.common.data.page.PageLink;
 import org.thingsboard.server.common.data.rpc.Rpc;
 import org.thingsboard.server.common.data.rpc.RpcStatus;
 
+import java.util.List;
+
 public interface RpcService {
     Rpc save(Rpc rpc);
 
@@ -36,4 +38,6 @@ public interface RpcService {
     ListenableFuture<Rpc> findRpcByIdAsync(TenantId tenantId, RpcId id);
 
     PageData<Rpc> findAllByDeviceIdAndStatus(TenantId tenantId, DeviceId deviceId, RpcStatus rpcStatus, PageLink pageLink);
+
+    List<Rpc> findAllByDeviceIdsAndStatus(TenantId tenantId, List<DeviceId> deviceIds, RpcStatus rpcStatus);
 }
@@ -24,6 +24,7 @@ public class BaseReadTsKvQuery extends BaseTsKvQuery implements ReadTsKvQuery {
     private final int limit;
     private final Aggregation aggregation;
     private final String order;
+    private final int maxDataPoints;
 
     public BaseReadTsKvQuery(String key, long startTs, long endTs, long interval, int limit, Aggregation aggregation) {
         this(key, startTs, endTs, interval, limit, aggregation, "DESC");
@@ -31,11 +32,17 @@ public class BaseReadTsKvQuery extends BaseTsKvQuery implements ReadTsKvQuery {
 
     public BaseReadTsKvQuery(String key, long startTs, long endTs, long interval, int limit, Aggregation aggregation,
                              String order) {
+        this(key, startTs, endTs, interval, limit, aggregation, order, 0);
+    }
+
+    public BaseReadTsKvQuery(String key, long startTs, long endTs, long interval, int limit, Aggregation aggregation,
+                             String order, int maxDataPoints) {
         super(key, startTs, endTs);
         this.interval = interval;
         this.limit = limit;
         this.aggregation = aggregation;
         this.order = order;
+        this.maxDataPoints = maxDataPoints;
     }
 
     public BaseReadTsKvQuery(String key, long startTs, long endTs) {
@@ -25,4 +25,9 @@ public interface ReadTsKvQuery extends TsKvQuery {
 
     String getOrder();
 
+    /**
+     * Maximum number of points to return for the raw (not aggregated) data. Zero means no downsampling.
+     */
+    int getMaxDataPoints();
+
 }
@@ -92,6 +92,11 @@ public enum MsgType {
 
     DEVICE_ACTOR_SERVER_SIDE_RPC_TIMEOUT_MSG,
 
+    /**
+     * Message that is sent by Device Actor to itself once the queued RPC requests of the device are loaded from the database.
+     */
+    DEVICE_ACTOR_QUEUED_RPC_LOADED_MSG,
+
     /**
      * Message that is sent from the Device Actor to Rule Engine. Requires acknowledgement
      */
@@ -15,43 +15,115 @@
  */
 package org.thingsboard.server.common.msg.tools;
 
-import io.github.bucket4j.Bandwidth;
-import io.github.bucket4j.Bucket4j;
-import io.github.bucket4j.local.LocalBucket;
-import io.github.bucket4j.local.LocalBucketBuilder;
-
-import java.time.Duration;
+import java.lang.invoke.MethodHandles;
+import java.lang.invoke.VarHandle;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
 
 /**
  * Created by ashvayka on 22.10.18.
+ * <p>
+ * Multi-bandwidth token bucket with greedy refill. Each bandwidth is tracked by a single "theoretical arrival time"
+ * (GCRA): the moment when the bandwidth becomes full again. Consuming tokens moves this time forward and is applied
+ * with CAS, so {@link #tryConsume()} is lock-free and does not allocate. Parsed configurations are shared between
+ * all the instances created with the same configuration string.
  */
 public class TbRateLimits {
-    private final LocalBucket bucket;
 
-    public TbRateLimits(String limitsConfiguration) {
-        LocalBucketBuilder builder = Bucket4j.builder();
-        boolean initialized = false;
-        for (String limitSrc : limitsConfiguration.split(",")) {
-            long capacity = Long.parseLong(limitSrc.split(":")[0]);
-            long duration = Long.parseLong(limitSrc.split(":")[1]);
-            builder.addLimit(Bandwidth.simple(capacity, Duration.ofSeconds(duration)));
-            initialized = true;
-        }
-        if (initialized) {
-            bucket = builder.build();
-        } else {
-            throw new IllegalArgumentException("Failed to parse rate limits configuration: " + limitsConfiguration);
-        }
+    private static final ConcurrentMap<String, Config> configs = new ConcurrentHashMap<>();
+    private static final VarHandle STATE = MethodHandles.arrayElementVarHandle(long[].class);
 
+    private final Config config;
+    private final long[] state;
 
+    public TbRateLimits(String limitsConfiguration) {
+        this(limitsConfiguration, System.nanoTime());
+    }
+
+    TbRateLimits(String limitsConfiguration, long nowNanos) {
+        this.config = configs.computeIfAbsent(limitsConfiguration, Config::parse);
+        this.state = new long[config.capacities.length];
+        Arrays.fill(state, nowNanos);
     }
 
     public boolean tryConsume() {
-        return bucket.tryConsume(1);
+        return tryConsume(1, System.nanoTime());
     }
 
     public boolean tryConsume(long number) {
-        return bucket.tryConsume(number);
+        return tryConsume(number, System.nanoTime());
+    }
+
+    boolean tryConsume(long number, long nowNanos) {
+        if (number <= 0) {
+            throw new IllegalArgumentException("Number of tokens to consume should be positive: " + number);
+        }
+        for (int i = 0; i < state.length; i++) {
+            if (!tryConsume(i, number, nowNanos)) {
+                for (int j = 0; j < i; j++) {
+                    STATE.getAndAdd(state, j, -number * config.intervals[j]);
+                }
+                return false;
+            }
+        }
+        return true;
+    }
+
+    private boolean tryConsume(int bandwidth, long number, long nowNanos) {
+        if (number > config.capacities[bandwidth]) {
+            return false;
+        }
+        long increment = number * config.intervals[bandwidth];
+        long tolerance = config.tolerances[bandwidth];
+        while (true) {
+            long arrivalTime = (long) STATE.getVolatile(state, bandwidth);
+            long newArrivalTime = (arrivalTime - nowNanos > 0 ? arrivalTime : nowNanos) + increment;
+            if (newArrivalTime - nowNanos > tolerance) {
+                return false;
+            }
+            if (STATE.compareAndSet(state, bandwidth, arrivalTime, newArrivalTime)) {
+                return true;
+            }
+        }
+    }
+
+    private static class Config {
+        private final long[] capacities;
+        /**
+         * Nanoseconds needed to refill a single token.
+         */
+        private final long[] intervals;
+        /**
+         * Nanoseconds needed to refill the whole bandwidth.
+         */
+        private final long[] tolerances;
+
+        private Config(long[] capacities, long[] intervals, long[] tolerances) {
+            this.capacities = capacities;
+            this.intervals = intervals;
+            this.tolerances = tolerances;
+        }
+
+        private static Config parse(String limitsConfiguration) {
+            String[] limits = limitsConfiguration.split(",");
+            long[] capacities = new long[limits.length];
+            long[] intervals = new long[limits.length];
+            long[] tolerances = new long[limits.length];
+            for (int i = 0; i < limits.length; i++) {
+                String[] limit = limits[i].split(":");
+                long capacity = Long.parseLong(limit[0]);
+                long duration = TimeUnit.SECONDS.toNanos(Long.parseLong(limit[1]));
+                if (capacity <= 0 || duration <= 0) {
+                    throw new IllegalArgumentException("Failed to parse rate limits configuration: " + limitsConfiguration);
+                }
+                capacities[i] = capacity;
+                intervals[i] = Math.max(1, (duration + capacity - 1) / capacity);
+                tolerances[i] = intervals[i] * capacity;
+            }
+            return new Config(capacities, intervals, tolerances);
+        }
     }
 
 }
@@ -0,0 +1,121 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.msg.tools;
+
+import io.github.bucket4j.Bandwidth;
+import io.github.bucket4j.Bucket4j;
+import io.github.bucket4j.local.LocalBucket;
+import io.github.bucket4j.local.LocalBucketBuilder;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Threads;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+import java.time.Duration;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Compares {@link TbRateLimits} with the Bucket4j {@link LocalBucket} it replaces.
+ * Not executed by the unit tests; run with the {@link #main} method from the test classpath.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 1)
+@Measurement(iterations = 5, time = 1)
+@Fork(1)
+public class TbRateLimitsBenchmark {
+
+    private static final int SESSIONS = 1024;
+
+    @Param({"100:1,3000:60", "1000000000:1"})
+    private String limitsConfiguration;
+
+    private TbRateLimits[] rateLimits;
+    private LocalBucket[] buckets;
+    private int index;
+
+    @Setup
+    public void setup() {
+        rateLimits = new TbRateLimits[SESSIONS];
+        buckets = new LocalBucket[SESSIONS];
+        for (int i = 0; i < SESSIONS; i++) {
+            rateLimits[i] = new TbRateLimits(limitsConfiguration);
+            buckets[i] = buildBucket(limitsConfiguration);
+        }
+    }
+
+    @Benchmark
+    public boolean tbRateLimits() {
+        return rateLimits[next()].tryConsume();
+    }
+
+    @Benchmark
+    public boolean bucket4j() {
+        return buckets[next()].tryConsume(1);
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean tbRateLimitsContended() {
+        return rateLimits[0].tryConsume();
+    }
+
+    @Benchmark
+    @Threads(4)
+    public boolean bucket4jContended() {
+        return buckets[0].tryConsume(1);
+    }
+
+    @Benchmark
+    public TbRateLimits tbRateLimitsCreate() {
+        return new TbRateLimits(limitsConfiguration);
+    }
+
+    @Benchmark
+    public LocalBucket bucket4jCreate() {
+        return buildBucket(limitsConfiguration);
+    }
+
+    private int next() {
+        return index = (index + 1) & (SESSIONS - 1);
+    }
+
+    private static LocalBucket buildBucket(String limitsConfiguration) {
+        LocalBucketBuilder builder = Bucket4j.builder();
+        for (String limitSrc : limitsConfiguration.split(",")) {
+            long capacity = Long.parseLong(limitSrc.split(":")[0]);
+            long duration = Long.parseLong(limitSrc.split(":")[1]);
+            builder.addLimit(Bandwidth.simple(capacity, Duration.ofSeconds(duration)));
+        }
+        return builder.build();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        new Runner(new OptionsBuilder().include(TbRateLimitsBenchmark.class.getSimpleName()).build()).run();
+    }
+}
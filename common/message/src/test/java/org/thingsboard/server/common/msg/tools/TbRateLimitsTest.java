@@ -0,0 +1,87 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.msg.tools;
+
+import org.junit.Test;
+
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+public class TbRateLimitsTest {
+
+    private static final long SECOND = TimeUnit.SECONDS.toNanos(1);
+
+    @Test
+    public void givenFullBucket_whenConsume_thenCapacityIsAvailableAtOnce() {
+        TbRateLimits rateLimits = new TbRateLimits("10:1", 0);
+        assertEquals(10, consume(rateLimits, 20, 0));
+    }
+
+    @Test
+    public void givenEmptyBucket_whenTimePasses_thenTokensAreRefilledGreedily() {
+        TbRateLimits rateLimits = new TbRateLimits("10:1", 0);
+        consume(rateLimits, 10, 0);
+
+        assertFalse(rateLimits.tryConsume(1, SECOND / 20));
+        assertTrue(rateLimits.tryConsume(1, SECOND / 10));
+        assertFalse(rateLimits.tryConsume(1, SECOND / 10));
+        assertEquals(5, consume(rateLimits, 20, SECOND / 10 + SECOND / 2));
+        assertEquals(10, consume(rateLimits, 20, 10 * SECOND));
+    }
+
+    @Test
+    public void givenMultipleBandwidths_whenConsume_thenAllLimitsAreApplied() {
+        TbRateLimits rateLimits = new TbRateLimits("10:1,15:60", 0);
+        assertEquals(10, consume(rateLimits, 20, 0));
+        // the first bandwidth is full again, the second one has 5 tokens plus 1.25 refilled
+        assertEquals(6, consume(rateLimits, 20, 5 * SECOND));
+        assertEquals(0, consume(rateLimits, 20, 5 * SECOND + SECOND));
+    }
+
+    @Test
+    public void givenRejectedByLaterBandwidth_whenConsume_thenEarlierBandwidthsAreNotCharged() {
+        TbRateLimits rateLimits = new TbRateLimits("10:1,5:1", 0);
+        assertFalse(rateLimits.tryConsume(8, 0));
+        // the first bandwidth still has all 10 tokens
+        assertTrue(rateLimits.tryConsume(5, 0));
+        assertEquals(0, consume(rateLimits, 5, 0));
+    }
+
+    @Test
+    public void givenNumberAboveCapacity_whenConsume_thenRejected() {
+        TbRateLimits rateLimits = new TbRateLimits("3:1", 0);
+        assertFalse(rateLimits.tryConsume(4, 10 * SECOND));
+        assertTrue(rateLimits.tryConsume(3, 10 * SECOND));
+    }
+
+    @Test(expected = IllegalArgumentException.class)
+    public void givenWrongConfiguration_whenCreate_thenException() {
+        new TbRateLimits("10:0");
+    }
+
+    private static int consume(TbRateLimits rateLimits, int attempts, long nowNanos) {
+        int consumed = 0;
+        for (int i = 0; i < attempts; i++) {
+            if (rateLimits.tryConsume(1, nowNanos)) {
+                consumed++;
+            }
+        }
+        return consumed;
+    }
+}
@@ -36,6 +36,7 @@ import org.thingsboard.server.queue.discovery.event.ServiceListChangedEvent;
 import org.thingsboard.server.queue.settings.TbQueueRuleEngineSettings;
 
 import javax.annotation.PostConstruct;
+import java.nio.charset.StandardCharsets;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Comparator;
@@ -59,6 +60,8 @@ public class HashPartitionService implements PartitionService {
     private Integer corePartitions;
     @Value("${queue.partitions.hash_function_name:murmur3_128}")
     private String hashFunctionName;
+    @Value("${queue.partitions.assignment_strategy:round_robin}")
+    private String assignmentStrategy;
 
     private final ApplicationEventPublisher applicationEventPublisher;
     private final TbServiceInfoProvider serviceInfoProvider;
@@ -76,6 +79,7 @@ public class HashPartitionService implements PartitionService {
     private List<ServiceInfo> currentOtherServices;
 
     private HashFunction hashFunction;
+    private boolean stickyAssignment;
 
     public HashPartitionService(TbServiceInfoProvider serviceInfoProvider,
                                 TenantRoutingInfoService tenantRoutingInfoService,
@@ -90,6 +94,7 @@ public class HashPartitionService implements PartitionService {
     @PostConstruct
     public void init() {
         this.hashFunction = forName(hashFunctionName);
+        this.stickyAssignment = isStickyAssignment(assignmentStrategy);
         partitionSizes.put(new ServiceQueue(ServiceType.TB_CORE), corePartitions);
         partitionTopics.put(new ServiceQueue(ServiceType.TB_CORE), coreTopic);
         tbQueueRuleEngineSettings.getQueues().forEach(queueConfiguration -> {
@@ -141,8 +146,9 @@ public class HashPartitionService implements PartitionService {
         myPartitions = new ConcurrentHashMap<>();
         partitionSizes.forEach((serviceQueue, size) -> {
             ServiceQueueKey myServiceQueueKey = new ServiceQueueKey(serviceQueue, myIsolatedOrSystemTenantId);
+            ServiceInfo[] assignment = assignPartitions(serviceQueue, queueServicesMap.get(myServiceQueueKey), size);
             for (int i = 0; i < size; i++) {
-                ServiceInfo serviceInfo = resolveByPartitionIdx(queueServicesMap.get(myServiceQueueKey), i);
+                ServiceInfo serviceInfo = assignment[i];
                 if (currentService.equals(serviceInfo)) {
                     ServiceQueueKey serviceQueueKey = new ServiceQueueKey(serviceQueue, getSystemOrIsolatedTenantId(serviceInfo));
                     myPartitions.computeIfAbsent(serviceQueueKey, key -> new ArrayList<>()).add(i);
@@ -334,11 +340,62 @@ public class HashPartitionService implements PartitionService {
         }
     }
 
-    private ServiceInfo resolveByPartitionIdx(List<ServiceInfo> servers, Integer partitionIdx) {
+    /**
+     * Assigns the partitions of the queue to the servers, which are sorted by service id.
+     * The round robin strategy moves almost every partition when a server joins or leaves the cluster.
+     * The rendezvous strategy assigns each partition to the server with the highest hash of (queue, partition, server)
+     * that still has less than ceil(partitions / servers) partitions, so a server joining or leaving the cluster
+     * moves a small share of the partitions instead of almost all of them.
+     */
+    private ServiceInfo[] assignPartitions(ServiceQueue serviceQueue, List<ServiceInfo> servers, int partitions) {
+        ServiceInfo[] result = new ServiceInfo[partitions];
         if (servers == null || servers.isEmpty()) {
-            return null;
+            return result;
+        }
+        if (!stickyAssignment) {
+            for (int i = 0; i < partitions; i++) {
+                result[i] = servers.get(i % servers.size());
+            }
+            return result;
+        }
+        int capacity = (partitions + servers.size() - 1) / servers.size();
+        int[] assigned = new int[servers.size()];
+        for (int i = 0; i < partitions; i++) {
+            int best = -1;
+            long bestScore = 0;
+            for (int s = 0; s < servers.size(); s++) {
+                if (assigned[s] < capacity) {
+                    long score = rendezvousScore(serviceQueue, i, servers.get(s));
+                    if (best < 0 || Long.compareUnsigned(score, bestScore) > 0) {
+                        best = s;
+                        bestScore = score;
+                    }
+                }
+            }
+            assigned[best]++;
+            result[i] = servers.get(best);
+        }
+        return result;
+    }
+
+    private long rendezvousScore(ServiceQueue serviceQueue, int partition, ServiceInfo server) {
+        return hashFunction.newHasher()
+                .putString(serviceQueue.getType().name(), StandardCharsets.UTF_8)
+                .putString(serviceQueue.getQueue(), StandardCharsets.UTF_8)
+                .putInt(partition)
+                .putString(server.getServiceId(), StandardCharsets.UTF_8)
+                .hash().padToLong();
+    }
+
+    private static boolean isStickyAssignment(String name) {
+        switch (name) {
+            case "round_robin":
+                return false;
+            case "rendezvous":
+                return true;
+            default:
+                throw new IllegalArgumentException("Can't find partition assignment strategy with name " + name);
         }
-        return servers.get(partitionIdx % servers.size());
     }
 
     public static HashFunction forName(String name) {
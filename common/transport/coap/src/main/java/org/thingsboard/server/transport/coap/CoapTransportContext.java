@@ -43,6 +43,9 @@ public class CoapTransportContext extends TransportContext {
     @Value("${transport.sessions.report_timeout}")
     private long sessionReportTimeout;
 
+    @Value("${transport.coap.notification_batch_interval:0}")
+    private long notificationBatchInterval;
+
     @Autowired
     private JsonCoapAdaptor jsonCoapAdaptor;
 
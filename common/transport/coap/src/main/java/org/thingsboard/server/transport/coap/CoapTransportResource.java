@@ -58,6 +58,8 @@ import org.thingsboard.server.transport.coap.callback.CoapDeviceAuthCallback;
 import org.thingsboard.server.transport.coap.callback.CoapNoOpCallback;
 import org.thingsboard.server.transport.coap.callback.CoapOkCallback;
 
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -85,14 +87,14 @@ public class CoapTransportResource extends AbstractCoapTransportResource {
     private final Set<UUID> rpcSubscriptions = ConcurrentHashMap.newKeySet();
     private final Set<UUID> attributeSubscriptions = ConcurrentHashMap.newKeySet();
 
-    private final ConcurrentMap<String, TbCoapDtlsSessionInfo> dtlsSessionIdMap;
+    private final CoapServerService coapServerService;
     private final long timeout;
 
     public CoapTransportResource(CoapTransportContext ctx, CoapServerService coapServerService, String name) {
         super(ctx, name);
         this.setObservable(true); // enable observing
         this.addObserver(new CoapResourceObserver());
-        this.dtlsSessionIdMap = coapServerService.getDtlsSessionsMap();
+        this.coapServerService = coapServerService;
         this.timeout = coapServerService.getTimeout();
         long sessionReportTimeout = ctx.getSessionReportTimeout();
         ctx.getScheduler().scheduleAtFixedRate(() -> {
@@ -225,12 +227,8 @@ public class CoapTransportResource extends AbstractCoapTransportResource {
         Request request = advanced.getRequest();
 
         String dtlsSessionIdStr = request.getSourceContext().get(DTLS_SESSION_ID_KEY);
-        if (dtlsSessionIdMap != null && StringUtils.isNotEmpty(dtlsSessionIdStr)) {
-            TbCoapDtlsSessionInfo tbCoapDtlsSessionInfo = dtlsSessionIdMap
-                    .computeIfPresent(dtlsSessionIdStr, (dtlsSessionId, dtlsSessionInfo) -> {
-                        dtlsSessionInfo.setLastActivityTime(System.currentTimeMillis());
-                        return dtlsSessionInfo;
-                    });
+        if (StringUtils.isNotEmpty(dtlsSessionIdStr)) {
+            TbCoapDtlsSessionInfo tbCoapDtlsSessionInfo = coapServerService.getDtlsSessionInfo(dtlsSessionIdStr);
             if (tbCoapDtlsSessionInfo != null) {
                 processRequest(exchange, type, request, tbCoapDtlsSessionInfo.getSessionInfoProto(), tbCoapDtlsSessionInfo.getDeviceProfile());
             } else {
@@ -452,6 +450,26 @@ public class CoapTransportResource extends AbstractCoapTransportResource {
         }
     }
 
+    static TransportProtos.AttributeUpdateNotificationMsg mergeAttributeUpdates(TransportProtos.AttributeUpdateNotificationMsg previous,
+                                                                                TransportProtos.AttributeUpdateNotificationMsg next) {
+        Map<String, TransportProtos.TsKvProto> updated = new LinkedHashMap<>();
+        Set<String> deleted = new LinkedHashSet<>();
+        for (TransportProtos.AttributeUpdateNotificationMsg msg : List.of(previous, next)) {
+            for (String key : msg.getSharedDeletedList()) {
+                updated.remove(key);
+                deleted.add(key);
+            }
+            for (TransportProtos.TsKvProto tsKv : msg.getSharedUpdatedList()) {
+                deleted.remove(tsKv.getKv().getKey());
+                updated.put(tsKv.getKv().getKey(), tsKv);
+            }
+        }
+        return TransportProtos.AttributeUpdateNotificationMsg.newBuilder()
+                .addAllSharedUpdated(updated.values())
+                .addAllSharedDeleted(deleted)
+                .build();
+    }
+
     @RequiredArgsConstructor
     private class CoapSessionListener implements SessionMsgListener {
 
@@ -460,6 +478,8 @@ public class CoapTransportResource extends AbstractCoapTransportResource {
         private final DynamicMessage.Builder rpcRequestDynamicMessageBuilder;
         private final TransportProtos.SessionInfoProto sessionInfo;
 
+        private TransportProtos.AttributeUpdateNotificationMsg pendingAttributeUpdate;
+
         @Override
         public void onGetAttributesResponse(TransportProtos.GetAttributeResponseMsg msg) {
             try {
@@ -473,6 +493,33 @@ public class CoapTransportResource extends AbstractCoapTransportResource {
         @Override
         public void onAttributeUpdate(UUID sessionId, TransportProtos.AttributeUpdateNotificationMsg msg) {
             log.trace("[{}] Received attributes update notification to device", sessionId);
+            long batchInterval = transportContext.getNotificationBatchInterval();
+            if (batchInterval <= 0) {
+                sendAttributeUpdate(sessionId, msg);
+                return;
+            }
+            boolean scheduleFlush;
+            synchronized (this) {
+                scheduleFlush = pendingAttributeUpdate == null;
+                pendingAttributeUpdate = scheduleFlush ? msg : mergeAttributeUpdates(pendingAttributeUpdate, msg);
+            }
+            if (scheduleFlush) {
+                transportContext.getScheduler().schedule(() -> flushAttributeUpdate(sessionId), batchInterval, TimeUnit.MILLISECONDS);
+            }
+        }
+
+        private void flushAttributeUpdate(UUID sessionId) {
+            TransportProtos.AttributeUpdateNotificationMsg msg;
+            synchronized (this) {
+                msg = pendingAttributeUpdate;
+                pendingAttributeUpdate = null;
+            }
+            if (msg != null) {
+                sendAttributeUpdate(sessionId, msg);
+            }
+        }
+
+        private void sendAttributeUpdate(UUID sessionId, TransportProtos.AttributeUpdateNotificationMsg msg) {
             try {
                 exchange.respond(coapTransportAdaptor.convertToPublish(isConRequest(), msg));
             } catch (AdaptorException e) {
@@ -0,0 +1,86 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.coap;
+
+import org.junit.Test;
+import org.thingsboard.server.gen.transport.TransportProtos;
+
+import java.util.List;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+
+public class CoapTransportResourceTest {
+
+    @Test
+    public void givenUpdatesOfSameKey_whenMergeAttributeUpdates_thenLatestValueIsKept() {
+        TransportProtos.AttributeUpdateNotificationMsg merged = CoapTransportResource.mergeAttributeUpdates(
+                updated(attr("a", "1", 1), attr("b", "1", 1)),
+                updated(attr("a", "2", 2)));
+
+        assertEquals(List.of("a", "b"), updatedKeys(merged));
+        assertEquals("2", merged.getSharedUpdated(0).getKv().getStringV());
+        assertEquals(0, merged.getSharedDeletedCount());
+    }
+
+    @Test
+    public void givenDeleteAfterUpdate_whenMergeAttributeUpdates_thenKeyIsOnlyDeleted() {
+        TransportProtos.AttributeUpdateNotificationMsg merged = CoapTransportResource.mergeAttributeUpdates(
+                updated(attr("a", "1", 1), attr("b", "1", 1)),
+                deleted("a"));
+
+        assertEquals(List.of("b"), updatedKeys(merged));
+        assertEquals(List.of("a"), merged.getSharedDeletedList());
+    }
+
+    @Test
+    public void givenUpdateAfterDelete_whenMergeAttributeUpdates_thenKeyIsOnlyUpdated() {
+        TransportProtos.AttributeUpdateNotificationMsg merged = CoapTransportResource.mergeAttributeUpdates(
+                deleted("a", "b"),
+                updated(attr("a", "3", 3)));
+
+        assertEquals(List.of("a"), updatedKeys(merged));
+        assertEquals(List.of("b"), merged.getSharedDeletedList());
+    }
+
+    @Test
+    public void givenMergedUpdate_whenMergedAgain_thenAllNotificationsAreCombined() {
+        TransportProtos.AttributeUpdateNotificationMsg merged = CoapTransportResource.mergeAttributeUpdates(
+                CoapTransportResource.mergeAttributeUpdates(updated(attr("a", "1", 1)), deleted("a", "c")),
+                updated(attr("b", "2", 2)));
+
+        assertEquals(List.of("b"), updatedKeys(merged));
+        assertEquals(List.of("a", "c"), merged.getSharedDeletedList());
+    }
+
+    private static TransportProtos.AttributeUpdateNotificationMsg updated(TransportProtos.TsKvProto... attributes) {
+        return TransportProtos.AttributeUpdateNotificationMsg.newBuilder().addAllSharedUpdated(List.of(attributes)).build();
+    }
+
+    private static TransportProtos.AttributeUpdateNotificationMsg deleted(String... keys) {
+        return TransportProtos.AttributeUpdateNotificationMsg.newBuilder().addAllSharedDeleted(List.of(keys)).build();
+    }
+
+    private static TransportProtos.TsKvProto attr(String key, String value, long ts) {
+        return TransportProtos.TsKvProto.newBuilder().setTs(ts)
+                .setKv(TransportProtos.KeyValueProto.newBuilder().setKey(key).setType(TransportProtos.KeyValueType.STRING_V).setStringV(value))
+                .build();
+    }
+
+    private static List<String> updatedKeys(TransportProtos.AttributeUpdateNotificationMsg msg) {
+        return msg.getSharedUpdatedList().stream().map(tsKv -> tsKv.getKv().getKey()).collect(Collectors.toList());
+    }
+}
@@ -0,0 +1,57 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.http;
+
+import org.springframework.core.io.ByteArrayResource;
+import org.springframework.http.HttpHeaders;
+import org.springframework.http.HttpStatus;
+import org.springframework.http.MediaType;
+import org.springframework.http.ResponseEntity;
+import org.springframework.web.context.request.async.DeferredResult;
+import org.thingsboard.server.transport.http.callback.HttpResponseWriter;
+
+class DeferredResultResponseWriter extends DeferredResult<ResponseEntity> implements HttpResponseWriter {
+
+    @Override
+    public void setResult(HttpStatus status) {
+        setResult(new ResponseEntity<>(status));
+    }
+
+    @Override
+    public void setJsonResult(String json) {
+        setResult(new ResponseEntity<>(json, HttpStatus.OK));
+    }
+
+    @Override
+    public void setOtaPackageResult(String fileName, String contentType, byte[] data) {
+        ByteArrayResource resource = new ByteArrayResource(data);
+        setResult(ResponseEntity.ok()
+                .header(HttpHeaders.CONTENT_DISPOSITION, "attachment;filename=" + fileName)
+                .header("x-filename", fileName)
+                .contentLength(resource.contentLength())
+                .contentType(parseMediaType(contentType))
+                .body(resource));
+    }
+
+    private static MediaType parseMediaType(String contentType) {
+        try {
+            return MediaType.parseMediaType(contentType);
+        } catch (Exception e) {
+            return MediaType.APPLICATION_OCTET_STREAM;
+        }
+    }
+
+}
@@ -17,14 +17,9 @@ package org.thingsboard.server.transport.http;
 
 import com.google.gson.JsonObject;
 import com.google.gson.JsonParser;
-import lombok.RequiredArgsConstructor;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
-import org.springframework.core.io.ByteArrayResource;
-import org.springframework.http.HttpHeaders;
-import org.springframework.http.HttpStatus;
-import org.springframework.http.MediaType;
 import org.springframework.http.ResponseEntity;
 import org.springframework.util.StringUtils;
 import org.springframework.web.bind.annotation.PathVariable;
@@ -39,33 +34,28 @@ import org.thingsboard.server.common.data.TbTransportService;
 import org.thingsboard.server.common.data.id.DeviceId;
 import org.thingsboard.server.common.data.ota.OtaPackageType;
 import org.thingsboard.server.common.data.rpc.RpcStatus;
-import org.thingsboard.server.common.transport.SessionMsgListener;
-import org.thingsboard.server.common.transport.TransportContext;
 import org.thingsboard.server.common.transport.TransportService;
 import org.thingsboard.server.common.transport.TransportServiceCallback;
 import org.thingsboard.server.common.transport.adaptor.JsonConverter;
-import org.thingsboard.server.common.transport.auth.SessionInfoCreator;
-import org.thingsboard.server.common.transport.auth.ValidateDeviceCredentialsResponse;
 import org.thingsboard.server.gen.transport.TransportProtos;
-import org.thingsboard.server.gen.transport.TransportProtos.AttributeUpdateNotificationMsg;
 import org.thingsboard.server.gen.transport.TransportProtos.GetAttributeRequestMsg;
-import org.thingsboard.server.gen.transport.TransportProtos.GetAttributeResponseMsg;
-import org.thingsboard.server.gen.transport.TransportProtos.ProvisionDeviceResponseMsg;
-import org.thingsboard.server.gen.transport.TransportProtos.SessionCloseNotificationProto;
 import org.thingsboard.server.gen.transport.TransportProtos.SessionInfoProto;
 import org.thingsboard.server.gen.transport.TransportProtos.SubscribeToAttributeUpdatesMsg;
 import org.thingsboard.server.gen.transport.TransportProtos.SubscribeToRPCMsg;
-import org.thingsboard.server.gen.transport.TransportProtos.ToDeviceRpcRequestMsg;
 import org.thingsboard.server.gen.transport.TransportProtos.ToDeviceRpcResponseMsg;
 import org.thingsboard.server.gen.transport.TransportProtos.ToServerRpcRequestMsg;
-import org.thingsboard.server.gen.transport.TransportProtos.ToServerRpcResponseMsg;
 import org.thingsboard.server.gen.transport.TransportProtos.ValidateDeviceTokenRequestMsg;
+import org.thingsboard.server.transport.http.callback.HttpDeviceAuthCallback;
+import org.thingsboard.server.transport.http.callback.HttpDeviceProvisionCallback;
+import org.thingsboard.server.transport.http.callback.HttpGetOtaPackageCallback;
+import org.thingsboard.server.transport.http.callback.HttpOkCallback;
+import org.thingsboard.server.transport.http.callback.HttpSessionCloseOnErrorCallback;
+import org.thingsboard.server.transport.http.callback.HttpSessionListener;
 
 import javax.servlet.http.HttpServletRequest;
 import java.util.Arrays;
 import java.util.List;
 import java.util.UUID;
-import java.util.function.Consumer;
 
 /**
  * @author Andrew Shvayka
@@ -84,9 +74,9 @@ public class DeviceApiController implements TbTransportService {
                                                               @RequestParam(value = "clientKeys", required = false, defaultValue = "") String clientKeys,
                                                               @RequestParam(value = "sharedKeys", required = false, defaultValue = "") String sharedKeys,
                                                               HttpServletRequest httpRequest) {
-        DeferredResult<ResponseEntity> responseWriter = new DeferredResult<>();
+        DeferredResultResponseWriter responseWriter = new DeferredResultResponseWriter();
         transportContext.getTransportService().process(DeviceTransportType.DEFAULT, ValidateDeviceTokenRequestMsg.newBuilder().setToken(deviceToken).build(),
-                new DeviceAuthCallback(transportContext, responseWriter, sessionInfo -> {
+                new HttpDeviceAuthCallback(transportContext, responseWriter, sessionInfo -> {
                     GetAttributeRequestMsg.Builder request = GetAttributeRequestMsg.newBuilder().setRequestId(0);
                     List<String> clientKeySet = !StringUtils.isEmpty(clientKeys) ? Arrays.asList(clientKeys.split(",")) : null;
                     List<String> sharedKeySet = !StringUtils.isEmpty(sharedKeys) ? Arrays.asList(sharedKeys.split(",")) : null;
@@ -100,7 +90,7 @@ public class DeviceApiController implements TbTransportService {
                     transportService.registerSyncSession(sessionInfo,
                             new HttpSessionListener(responseWriter, transportContext.getTransportService(), sessionInfo),
                             transportContext.getDefaultTimeout());
-                    transportService.process(sessionInfo, request.build(), new SessionCloseOnErrorCallback(transportService, sessionInfo));
+                    transportService.process(sessionInfo, request.build(), new HttpSessionCloseOnErrorCallback(responseWriter, transportService, sessionInfo));
                 }));
         return responseWriter;
     }
@@ -108,9 +98,9 @@ public class DeviceApiController implements TbTransportService {
     @RequestMapping(value = "/{deviceToken}/attributes", method = RequestMethod.POST)
     public DeferredResult<ResponseEntity> postDeviceAttributes(@PathVariable("deviceToken") String deviceToken,
                                                                @RequestBody String json, HttpServletRequest request) {
-        DeferredResult<ResponseEntity> responseWriter = new DeferredResult<>();
+        DeferredResultResponseWriter responseWriter = new DeferredResultResponseWriter();
         transportContext.getTransportService().process(DeviceTransportType.DEFAULT, ValidateDeviceTokenRequestMsg.newBuilder().setToken(deviceToken).build(),
-                new DeviceAuthCallback(transportContext, responseWriter, sessionInfo -> {
+                new HttpDeviceAuthCallback(transportContext, responseWriter, sessionInfo -> {
                     TransportService transportService = transportContext.getTransportService();
                     transportService.process(sessionInfo, JsonConverter.convertToAttributesProto(new JsonParser().parse(json)),
                             new HttpOkCallback(responseWriter));
@@ -122,9 +112,9 @@ public class DeviceApiController implements TbTransportService {
     @RequestMapping(value = "/{deviceToken}/telemetry", method = RequestMethod.POST)
     public DeferredResult<ResponseEntity> postTelemetry(@PathVariable("deviceToken") String deviceToken,
                                                         @RequestBody String json, HttpServletRequest request) {
-        DeferredResult<ResponseEntity> responseWriter = new DeferredResult<ResponseEntity>();
+        DeferredResultResponseWriter responseWriter = new DeferredResultResponseWriter();
         transportContext.getTransportService().process(DeviceTransportType.DEFAULT, ValidateDeviceTokenRequestMsg.newBuilder().setToken(deviceToken).build(),
-                new DeviceAuthCallback(transportContext, responseWriter, sessionInfo -> {
+                new HttpDeviceAuthCallback(transportContext, responseWriter, sessionInfo -> {
                     TransportService transportService = transportContext.getTransportService();
                     transportService.process(sessionInfo, JsonConverter.convertToTelemetryProto(new JsonParser().parse(json)),
                             new HttpOkCallback(responseWriter));
@@ -136,9 +126,9 @@ public class DeviceApiController implements TbTransportService {
     @RequestMapping(value = "/{deviceToken}/claim", method = RequestMethod.POST)
     public DeferredResult<ResponseEntity> claimDevice(@PathVariable("deviceToken") String deviceToken,
                                                       @RequestBody(required = false) String json, HttpServletRequest request) {
-        DeferredResult<ResponseEntity> responseWriter = new DeferredResult<>();
+        DeferredResultResponseWriter responseWriter = new DeferredResultResponseWriter();
         transportContext.getTransportService().process(DeviceTransportType.DEFAULT, ValidateDeviceTokenRequestMsg.newBuilder().setToken(deviceToken).build(),
-                new DeviceAuthCallback(transportContext, responseWriter, sessionInfo -> {
+                new HttpDeviceAuthCallback(transportContext, responseWriter, sessionInfo -> {
                     TransportService transportService = transportContext.getTransportService();
                     DeviceId deviceId = new DeviceId(new UUID(sessionInfo.getDeviceIdMSB(), sessionInfo.getDeviceIdLSB()));
                     transportService.process(sessionInfo, JsonConverter.convertToClaimDeviceProto(deviceId, json),
@@ -151,15 +141,15 @@ public class DeviceApiController implements TbTransportService {
     public DeferredResult<ResponseEntity> subscribeToCommands(@PathVariable("deviceToken") String deviceToken,
                                                               @RequestParam(value = "timeout", required = false, defaultValue = "0") long timeout,
                                                               HttpServletRequest httpRequest) {
-        DeferredResult<ResponseEntity> responseWriter = new DeferredResult<>();
+        DeferredResultResponseWriter responseWriter = new DeferredResultResponseWriter();
         transportContext.getTransportService().process(DeviceTransportType.DEFAULT, ValidateDeviceTokenRequestMsg.newBuilder().setToken(deviceToken).build(),
-                new DeviceAuthCallback(transportContext, responseWriter, sessionInfo -> {
+                new HttpDeviceAuthCallback(transportContext, responseWriter, sessionInfo -> {
                     TransportService transportService = transportContext.getTransportService();
                     transportService.registerSyncSession(sessionInfo,
                             new HttpSessionListener(responseWriter, transportContext.getTransportService(), sessionInfo),
                             timeout == 0 ? transportContext.getDefaultTimeout() : timeout);
                     transportService.process(sessionInfo, SubscribeToRPCMsg.getDefaultInstance(),
-                            new SessionCloseOnErrorCallback(transportService, sessionInfo));
+                            new HttpSessionCloseOnErrorCallback(responseWriter, transportService, sessionInfo));
 
                 }));
         return responseWriter;
@@ -169,9 +159,9 @@ public class DeviceApiController implements TbTransportService {
     public DeferredResult<ResponseEntity> replyToCommand(@PathVariable("deviceToken") String deviceToken,
                                                          @PathVariable("requestId") Integer requestId,
                                                          @RequestBody String json, HttpServletRequest request) {
-        DeferredResult<ResponseEntity> responseWriter = new DeferredResult<ResponseEntity>();
+        DeferredResultResponseWriter responseWriter = new DeferredResultResponseWriter();
         transportContext.getTransportService().process(DeviceTransportType.DEFAULT, ValidateDeviceTokenRequestMsg.newBuilder().setToken(deviceToken).build(),
-                new DeviceAuthCallback(transportContext, responseWriter, sessionInfo -> {
+                new HttpDeviceAuthCallback(transportContext, responseWriter, sessionInfo -> {
                     TransportService transportService = transportContext.getTransportService();
                     transportService.process(sessionInfo, ToDeviceRpcResponseMsg.newBuilder().setRequestId(requestId).setPayload(json).build(), new HttpOkCallback(responseWriter));
                 }));
@@ -181,9 +171,9 @@ public class DeviceApiController implements TbTransportService {
     @RequestMapping(value = "/{deviceToken}/rpc", method = RequestMethod.POST)
     public DeferredResult<ResponseEntity> postRpcRequest(@PathVariable("deviceToken") String deviceToken,
                                                          @RequestBody String json, HttpServletRequest httpRequest) {
-        DeferredResult<ResponseEntity> responseWriter = new DeferredResult<ResponseEntity>();
+        DeferredResultResponseWriter responseWriter = new DeferredResultResponseWriter();
         transportContext.getTransportService().process(DeviceTransportType.DEFAULT, ValidateDeviceTokenRequestMsg.newBuilder().setToken(deviceToken).build(),
-                new DeviceAuthCallback(transportContext, responseWriter, sessionInfo -> {
+                new HttpDeviceAuthCallback(transportContext, responseWriter, sessionInfo -> {
                     JsonObject request = new JsonParser().parse(json).getAsJsonObject();
                     TransportService transportService = transportContext.getTransportService();
                     transportService.registerSyncSession(sessionInfo,
@@ -192,7 +182,7 @@ public class DeviceApiController implements TbTransportService {
                     transportService.process(sessionInfo, ToServerRpcRequestMsg.newBuilder().setRequestId(0)
                                     .setMethodName(request.get("method").getAsString())
                                     .setParams(request.get("params").toString()).build(),
-                            new SessionCloseOnErrorCallback(transportService, sessionInfo));
+                            new HttpSessionCloseOnErrorCallback(responseWriter, transportService, sessionInfo));
                 }));
         return responseWriter;
     }
@@ -201,15 +191,15 @@ public class DeviceApiController implements TbTransportService {
     public DeferredResult<ResponseEntity> subscribeToAttributes(@PathVariable("deviceToken") String deviceToken,
                                                                 @RequestParam(value = "timeout", required = false, defaultValue = "0") long timeout,
                                                                 HttpServletRequest httpRequest) {
-        DeferredResult<ResponseEntity> responseWriter = new DeferredResult<>();
+        DeferredResultResponseWriter responseWriter = new DeferredResultResponseWriter();
         transportContext.getTransportService().process(DeviceTransportType.DEFAULT, ValidateDeviceTokenRequestMsg.newBuilder().setToken(deviceToken).build(),
-                new DeviceAuthCallback(transportContext, responseWriter, sessionInfo -> {
+                new HttpDeviceAuthCallback(transportContext, responseWriter, sessionInfo -> {
                     TransportService transportService = transportContext.getTransportService();
                     transportService.registerSyncSession(sessionInfo,
                             new HttpSessionListener(responseWriter, transportContext.getTransportService(), sessionInfo),
                             timeout == 0 ? transportContext.getDefaultTimeout() : timeout);
                     transportService.process(sessionInfo, SubscribeToAttributeUpdatesMsg.getDefaultInstance(),
-                            new SessionCloseOnErrorCallback(transportService, sessionInfo));
+                            new HttpSessionCloseOnErrorCallback(responseWriter, transportService, sessionInfo));
 
                 }));
         return responseWriter;
@@ -235,189 +225,27 @@ public class DeviceApiController implements TbTransportService {
 
     @RequestMapping(value = "/provision", method = RequestMethod.POST)
     public DeferredResult<ResponseEntity> provisionDevice(@RequestBody String json, HttpServletRequest httpRequest) {
-        DeferredResult<ResponseEntity> responseWriter = new DeferredResult<>();
+        DeferredResultResponseWriter responseWriter = new DeferredResultResponseWriter();
         transportContext.getTransportService().process(JsonConverter.convertToProvisionRequestMsg(json),
-                new DeviceProvisionCallback(responseWriter));
+                new HttpDeviceProvisionCallback(responseWriter));
         return responseWriter;
     }
 
     private DeferredResult<ResponseEntity> getOtaPackageCallback(String deviceToken, String title, String version, int size, int chunk, OtaPackageType firmwareType) {
-        DeferredResult<ResponseEntity> responseWriter = new DeferredResult<>();
+        DeferredResultResponseWriter responseWriter = new DeferredResultResponseWriter();
         transportContext.getTransportService().process(DeviceTransportType.DEFAULT, ValidateDeviceTokenRequestMsg.newBuilder().setToken(deviceToken).build(),
-                new DeviceAuthCallback(transportContext, responseWriter, sessionInfo -> {
+                new HttpDeviceAuthCallback(transportContext, responseWriter, sessionInfo -> {
                     TransportProtos.GetOtaPackageRequestMsg requestMsg = TransportProtos.GetOtaPackageRequestMsg.newBuilder()
                             .setTenantIdMSB(sessionInfo.getTenantIdMSB())
                             .setTenantIdLSB(sessionInfo.getTenantIdLSB())
                             .setDeviceIdMSB(sessionInfo.getDeviceIdMSB())
                             .setDeviceIdLSB(sessionInfo.getDeviceIdLSB())
                             .setType(firmwareType.name()).build();
-                    transportContext.getTransportService().process(sessionInfo, requestMsg, new GetOtaPackageCallback(responseWriter, title, version, size, chunk));
+                    transportContext.getTransportService().process(sessionInfo, requestMsg, new HttpGetOtaPackageCallback(transportContext, responseWriter, title, version, size, chunk));
                 }));
         return responseWriter;
     }
 
-    private static class DeviceAuthCallback implements TransportServiceCallback<ValidateDeviceCredentialsResponse> {
-        private final TransportContext transportContext;
-        private final DeferredResult<ResponseEntity> responseWriter;
-        private final Consumer<SessionInfoProto> onSuccess;
-
-        DeviceAuthCallback(TransportContext transportContext, DeferredResult<ResponseEntity> responseWriter, Consumer<SessionInfoProto> onSuccess) {
-            this.transportContext = transportContext;
-            this.responseWriter = responseWriter;
-            this.onSuccess = onSuccess;
-        }
-
-        @Override
-        public void onSuccess(ValidateDeviceCredentialsResponse msg) {
-            if (msg.hasDeviceInfo()) {
-                onSuccess.accept(SessionInfoCreator.create(msg, transportContext, UUID.randomUUID()));
-            } else {
-                responseWriter.setResult(new ResponseEntity<>(HttpStatus.UNAUTHORIZED));
-            }
-        }
-
-        @Override
-        public void onError(Throwable e) {
-            log.warn("Failed to process request", e);
-            responseWriter.setResult(new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR));
-        }
-    }
-
-    private static class DeviceProvisionCallback implements TransportServiceCallback<ProvisionDeviceResponseMsg> {
-        private final DeferredResult<ResponseEntity> responseWriter;
-
-        DeviceProvisionCallback(DeferredResult<ResponseEntity> responseWriter) {
-            this.responseWriter = responseWriter;
-        }
-
-        @Override
-        public void onSuccess(ProvisionDeviceResponseMsg msg) {
-            responseWriter.setResult(new ResponseEntity<>(JsonConverter.toJson(msg).toString(), HttpStatus.OK));
-        }
-
-        @Override
-        public void onError(Throwable e) {
-            log.warn("Failed to process request", e);
-            responseWriter.setResult(new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR));
-        }
-    }
-
-    private class GetOtaPackageCallback implements TransportServiceCallback<TransportProtos.GetOtaPackageResponseMsg> {
-        private final DeferredResult<ResponseEntity> responseWriter;
-        private final String title;
-        private final String version;
-        private final int chuckSize;
-        private final int chuck;
-
-        GetOtaPackageCallback(DeferredResult<ResponseEntity> responseWriter, String title, String version, int chuckSize, int chuck) {
-            this.responseWriter = responseWriter;
-            this.title = title;
-            this.version = version;
-            this.chuckSize = chuckSize;
-            this.chuck = chuck;
-        }
-
-        @Override
-        public void onSuccess(TransportProtos.GetOtaPackageResponseMsg otaPackageResponseMsg) {
-            if (!TransportProtos.ResponseStatus.SUCCESS.equals(otaPackageResponseMsg.getResponseStatus())) {
-                responseWriter.setResult(new ResponseEntity<>(HttpStatus.NOT_FOUND));
-            } else if (title.equals(otaPackageResponseMsg.getTitle()) && version.equals(otaPackageResponseMsg.getVersion())) {
-                String otaPackageId = new UUID(otaPackageResponseMsg.getOtaPackageIdMSB(), otaPackageResponseMsg.getOtaPackageIdLSB()).toString();
-                ByteArrayResource resource = new ByteArrayResource(transportContext.getOtaPackageDataCache().get(otaPackageId, chuckSize, chuck));
-                ResponseEntity<ByteArrayResource> response = ResponseEntity.ok()
-                        .header(HttpHeaders.CONTENT_DISPOSITION, "attachment;filename=" + otaPackageResponseMsg.getFileName())
-                        .header("x-filename", otaPackageResponseMsg.getFileName())
-                        .contentLength(resource.contentLength())
-                        .contentType(parseMediaType(otaPackageResponseMsg.getContentType()))
-                        .body(resource);
-                responseWriter.setResult(response);
-            } else {
-                responseWriter.setResult(new ResponseEntity<>(HttpStatus.BAD_REQUEST));
-            }
-        }
-
-        @Override
-        public void onError(Throwable e) {
-            log.warn("Failed to process request", e);
-            responseWriter.setResult(new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR));
-        }
-    }
-
-    private static class SessionCloseOnErrorCallback implements TransportServiceCallback<Void> {
-        private final TransportService transportService;
-        private final SessionInfoProto sessionInfo;
-
-        SessionCloseOnErrorCallback(TransportService transportService, SessionInfoProto sessionInfo) {
-            this.transportService = transportService;
-            this.sessionInfo = sessionInfo;
-        }
-
-        @Override
-        public void onSuccess(Void msg) {
-        }
-
-        @Override
-        public void onError(Throwable e) {
-            transportService.deregisterSession(sessionInfo);
-        }
-    }
-
-    private static class HttpOkCallback implements TransportServiceCallback<Void> {
-        private final DeferredResult<ResponseEntity> responseWriter;
-
-        public HttpOkCallback(DeferredResult<ResponseEntity> responseWriter) {
-            this.responseWriter = responseWriter;
-        }
-
-        @Override
-        public void onSuccess(Void msg) {
-            responseWriter.setResult(new ResponseEntity<>(HttpStatus.OK));
-        }
-
-        @Override
-        public void onError(Throwable e) {
-            responseWriter.setResult(new ResponseEntity<>(HttpStatus.INTERNAL_SERVER_ERROR));
-        }
-    }
-
-    @RequiredArgsConstructor
-    private static class HttpSessionListener implements SessionMsgListener {
-
-        private final DeferredResult<ResponseEntity> responseWriter;
-        private final TransportService transportService;
-        private final SessionInfoProto sessionInfo;
-
-        @Override
-        public void onGetAttributesResponse(GetAttributeResponseMsg msg) {
-            responseWriter.setResult(new ResponseEntity<>(JsonConverter.toJson(msg).toString(), HttpStatus.OK));
-        }
-
-        @Override
-        public void onAttributeUpdate(UUID sessionId, AttributeUpdateNotificationMsg msg) {
-            log.trace("[{}] Received attributes update notification to device", sessionId);
-            responseWriter.setResult(new ResponseEntity<>(JsonConverter.toJson(msg).toString(), HttpStatus.OK));
-        }
-
-        @Override
-        public void onRemoteSessionCloseCommand(UUID sessionId, SessionCloseNotificationProto sessionCloseNotification) {
-            log.trace("[{}] Received the remote command to close the session: {}", sessionId, sessionCloseNotification.getMessage());
-            responseWriter.setResult(new ResponseEntity<>(HttpStatus.REQUEST_TIMEOUT));
-        }
-
-        @Override
-        public void onToDeviceRpcRequest(UUID sessionId, ToDeviceRpcRequestMsg msg) {
-            log.trace("[{}] Received RPC command to device", sessionId);
-            responseWriter.setResult(new ResponseEntity<>(JsonConverter.toJson(msg, true).toString(), HttpStatus.OK));
-            transportService.process(sessionInfo, msg, false, TransportServiceCallback.EMPTY);
-        }
-
-        @Override
-        public void onToServerRpcResponse(ToServerRpcResponseMsg msg) {
-            responseWriter.setResult(new ResponseEntity<>(JsonConverter.toJson(msg).toString(), HttpStatus.OK));
-        }
-
-    }
-
     private void reportActivity(SessionInfoProto sessionInfo) {
         transportContext.getTransportService().process(sessionInfo, TransportProtos.SubscriptionInfoProto.newBuilder()
                 .setAttributeSubscription(false)
@@ -426,14 +254,6 @@ public class DeviceApiController implements TbTransportService {
                 .build(), TransportServiceCallback.EMPTY);
     }
 
-    private static MediaType parseMediaType(String contentType) {
-        try {
-            return MediaType.parseMediaType(contentType);
-        } catch (Exception e) {
-            return MediaType.APPLICATION_OCTET_STREAM;
-        }
-    }
-
     @Override
     public String getName() {
         return "HTTP";
@@ -0,0 +1,457 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.http;
+
+import com.google.gson.JsonElement;
+import com.google.gson.JsonObject;
+import com.google.gson.JsonParser;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.ByteBufInputStream;
+import io.netty.buffer.ByteBufUtil;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.handler.codec.http.DefaultFullHttpResponse;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpHeaderNames;
+import io.netty.handler.codec.http.HttpHeaderValues;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpUtil;
+import io.netty.handler.codec.http.HttpVersion;
+import io.netty.handler.codec.http.QueryStringDecoder;
+import io.netty.handler.timeout.IdleStateEvent;
+import io.netty.util.concurrent.ScheduledFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.springframework.util.StringUtils;
+import org.thingsboard.server.common.data.DeviceTransportType;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.ota.OtaPackageType;
+import org.thingsboard.server.common.transport.TransportService;
+import org.thingsboard.server.common.transport.TransportServiceCallback;
+import org.thingsboard.server.common.transport.adaptor.JsonConverter;
+import org.thingsboard.server.gen.transport.TransportProtos;
+import org.thingsboard.server.gen.transport.TransportProtos.GetAttributeRequestMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.SessionInfoProto;
+import org.thingsboard.server.gen.transport.TransportProtos.SubscribeToAttributeUpdatesMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.SubscribeToRPCMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.ToDeviceRpcResponseMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.ToServerRpcRequestMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.ValidateDeviceTokenRequestMsg;
+import org.thingsboard.server.transport.http.callback.HttpDeviceAuthCallback;
+import org.thingsboard.server.transport.http.callback.HttpDeviceProvisionCallback;
+import org.thingsboard.server.transport.http.callback.HttpGetOtaPackageCallback;
+import org.thingsboard.server.transport.http.callback.HttpOkCallback;
+import org.thingsboard.server.transport.http.callback.HttpResponseWriter;
+import org.thingsboard.server.transport.http.callback.HttpSessionCloseOnErrorCallback;
+import org.thingsboard.server.transport.http.callback.HttpSessionListener;
+
+import java.io.InputStreamReader;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.function.Consumer;
+
+/**
+ * Netty counterpart of {@link DeviceApiController}. One instance per connection.
+ * Responses are produced asynchronously by the transport service, so they are queued here
+ * and written in request order to support HTTP/1.1 pipelining. Every request is answered:
+ * a request without a reply gets 503 (408 for long polling) once its timeout expires,
+ * and reading from the connection pauses while too many requests are outstanding.
+ */
+@Slf4j
+public class HttpNettyTransportHandler extends SimpleChannelInboundHandler<FullHttpRequest> {
+
+    private static final String API_PREFIX = "/api/v1/";
+
+    private final HttpTransportContext transportContext;
+
+    // accessed from the channel event loop only
+    private final Map<Long, FullHttpResponse> pendingResponses = new HashMap<>();
+    private long nextRequestSeq;
+    private long nextResponseSeq;
+    private boolean readSuspended;
+
+    public HttpNettyTransportHandler(HttpTransportContext transportContext) {
+        this.transportContext = transportContext;
+    }
+
+    @Override
+    protected void channelRead0(ChannelHandlerContext ctx, FullHttpRequest request) {
+        ResponseWriter responseWriter = new ResponseWriter(ctx, nextRequestSeq++);
+        if (nextRequestSeq - nextResponseSeq >= transportContext.getMaxPendingRequests() && !readSuspended) {
+            readSuspended = true;
+            ctx.channel().config().setAutoRead(false);
+        }
+        try {
+            if (!request.decoderResult().isSuccess()) {
+                responseWriter.setResult(HttpResponseStatus.BAD_REQUEST);
+                return;
+            }
+            processRequest(request, responseWriter);
+        } catch (Exception e) {
+            log.debug("[{}] Failed to process request: {}", ctx.channel().remoteAddress(), request.uri(), e);
+            responseWriter.setResult(HttpResponseStatus.BAD_REQUEST);
+        }
+    }
+
+    @Override
+    public void channelInactive(ChannelHandlerContext ctx) throws Exception {
+        pendingResponses.values().forEach(FullHttpResponse::release);
+        pendingResponses.clear();
+        super.channelInactive(ctx);
+    }
+
+    @Override
+    public void userEventTriggered(ChannelHandlerContext ctx, Object evt) throws Exception {
+        if (evt instanceof IdleStateEvent) {
+            // long polling requests keep the connection silent on purpose
+            if (nextRequestSeq == nextResponseSeq) {
+                log.trace("[{}] Closing idle connection", ctx.channel().remoteAddress());
+                ctx.close();
+            }
+        } else {
+            super.userEventTriggered(ctx, evt);
+        }
+    }
+
+    @Override
+    public void exceptionCaught(ChannelHandlerContext ctx, Throwable cause) {
+        log.debug("[{}] Unexpected exception", ctx.channel().remoteAddress(), cause);
+        ctx.close();
+    }
+
+    private void processRequest(FullHttpRequest request, ResponseWriter responseWriter) {
+        QueryStringDecoder uri = new QueryStringDecoder(request.uri());
+        String path = uri.path();
+        if (!path.startsWith(API_PREFIX)) {
+            responseWriter.setResult(HttpResponseStatus.NOT_FOUND);
+            return;
+        }
+        String[] segments = path.substring(API_PREFIX.length()).split("/");
+        HttpMethod method = request.method();
+        ByteBuf body = request.content();
+        if (segments.length == 1 && "provision".equals(segments[0])) {
+            if (checkMethod(method, HttpMethod.POST, responseWriter)) {
+                provisionDevice(body.toString(StandardCharsets.UTF_8), responseWriter);
+            }
+            return;
+        }
+        if (segments.length < 2) {
+            responseWriter.setResult(HttpResponseStatus.NOT_FOUND);
+            return;
+        }
+        String deviceToken = segments[0];
+        String resource = segments.length == 2 ? segments[1] : segments[1] + "/" + segments[2];
+        if (segments.length > 3) {
+            resource = null;
+        }
+        if ("attributes".equals(resource)) {
+            if (HttpMethod.GET.equals(method)) {
+                getDeviceAttributes(deviceToken, getParam(uri, "clientKeys", ""), getParam(uri, "sharedKeys", ""), responseWriter);
+            } else if (checkMethod(method, HttpMethod.POST, responseWriter)) {
+                postDeviceAttributes(deviceToken, parseJson(body), responseWriter);
+            }
+        } else if ("telemetry".equals(resource)) {
+            if (checkMethod(method, HttpMethod.POST, responseWriter)) {
+                postTelemetry(deviceToken, parseJson(body), responseWriter);
+            }
+        } else if ("claim".equals(resource)) {
+            if (checkMethod(method, HttpMethod.POST, responseWriter)) {
+                claimDevice(deviceToken, body.isReadable() ? body.toString(StandardCharsets.UTF_8) : null, responseWriter);
+            }
+        } else if ("rpc".equals(resource)) {
+            if (HttpMethod.GET.equals(method)) {
+                subscribeToCommands(deviceToken, Long.parseLong(getParam(uri, "timeout", "0")), responseWriter);
+            } else if (checkMethod(method, HttpMethod.POST, responseWriter)) {
+                postRpcRequest(deviceToken, parseJson(body), responseWriter);
+            }
+        } else if ("attributes/updates".equals(resource)) {
+            if (checkMethod(method, HttpMethod.GET, responseWriter)) {
+                subscribeToAttributes(deviceToken, Long.parseLong(getParam(uri, "timeout", "0")), responseWriter);
+            }
+        } else if ("firmware".equals(resource) || "software".equals(resource)) {
+            if (checkMethod(method, HttpMethod.GET, responseWriter)) {
+                String title = getParam(uri, "title", null);
+                String version = getParam(uri, "version", null);
+                if (title == null || version == null) {
+                    responseWriter.setResult(HttpResponseStatus.BAD_REQUEST);
+                    return;
+                }
+                getOtaPackage(deviceToken, title, version,
+                        Integer.parseInt(getParam(uri, "size", "0")), Integer.parseInt(getParam(uri, "chunk", "0")),
+                        "firmware".equals(resource) ? OtaPackageType.FIRMWARE : OtaPackageType.SOFTWARE, responseWriter);
+            }
+        } else if (resource != null && resource.startsWith("rpc/")) {
+            if (checkMethod(method, HttpMethod.POST, responseWriter)) {
+                replyToCommand(deviceToken, Integer.parseInt(segments[2]), body.toString(StandardCharsets.UTF_8), responseWriter);
+            }
+        } else {
+            responseWriter.setResult(HttpResponseStatus.NOT_FOUND);
+        }
+    }
+
+    private void getDeviceAttributes(String deviceToken, String clientKeys, String sharedKeys, ResponseWriter responseWriter) {
+        processWithDeviceToken(deviceToken, responseWriter, sessionInfo -> {
+            GetAttributeRequestMsg.Builder request = GetAttributeRequestMsg.newBuilder().setRequestId(0);
+            List<String> clientKeySet = !StringUtils.isEmpty(clientKeys) ? Arrays.asList(clientKeys.split(",")) : null;
+            List<String> sharedKeySet = !StringUtils.isEmpty(sharedKeys) ? Arrays.asList(sharedKeys.split(",")) : null;
+            if (clientKeySet != null) {
+                request.addAllClientAttributeNames(clientKeySet);
+            }
+            if (sharedKeySet != null) {
+                request.addAllSharedAttributeNames(sharedKeySet);
+            }
+            TransportService transportService = transportContext.getTransportService();
+            transportService.registerSyncSession(sessionInfo,
+                    new HttpSessionListener(responseWriter, transportService, sessionInfo),
+                    transportContext.getDefaultTimeout());
+            transportService.process(sessionInfo, request.build(), new HttpSessionCloseOnErrorCallback(responseWriter, transportService, sessionInfo));
+        });
+    }
+
+    private void postDeviceAttributes(String deviceToken, JsonElement json, ResponseWriter responseWriter) {
+        processWithDeviceToken(deviceToken, responseWriter, sessionInfo -> {
+            transportContext.getTransportService().process(sessionInfo, JsonConverter.convertToAttributesProto(json),
+                    new HttpOkCallback(responseWriter));
+            reportActivity(sessionInfo);
+        });
+    }
+
+    private void postTelemetry(String deviceToken, JsonElement json, ResponseWriter responseWriter) {
+        processWithDeviceToken(deviceToken, responseWriter, sessionInfo -> {
+            transportContext.getTransportService().process(sessionInfo, JsonConverter.convertToTelemetryProto(json),
+                    new HttpOkCallback(responseWriter));
+            reportActivity(sessionInfo);
+        });
+    }
+
+    private void claimDevice(String deviceToken, String json, ResponseWriter responseWriter) {
+        processWithDeviceToken(deviceToken, responseWriter, sessionInfo -> {
+            DeviceId deviceId = new DeviceId(new UUID(sessionInfo.getDeviceIdMSB(), sessionInfo.getDeviceIdLSB()));
+            transportContext.getTransportService().process(sessionInfo, JsonConverter.convertToClaimDeviceProto(deviceId, json),
+                    new HttpOkCallback(responseWriter));
+        });
+    }
+
+    private void subscribeToCommands(String deviceToken, long timeout, ResponseWriter responseWriter) {
+        long pollTimeout = timeout == 0 ? transportContext.getDefaultTimeout() : timeout;
+        responseWriter.setTimeout(pollTimeout, HttpResponseStatus.REQUEST_TIMEOUT);
+        processWithDeviceToken(deviceToken, responseWriter, sessionInfo -> {
+            TransportService transportService = transportContext.getTransportService();
+            transportService.registerSyncSession(sessionInfo,
+                    new HttpSessionListener(responseWriter, transportService, sessionInfo), pollTimeout);
+            transportService.process(sessionInfo, SubscribeToRPCMsg.getDefaultInstance(),
+                    new HttpSessionCloseOnErrorCallback(responseWriter, transportService, sessionInfo));
+        });
+    }
+
+    private void replyToCommand(String deviceToken, int requestId, String json, ResponseWriter responseWriter) {
+        processWithDeviceToken(deviceToken, responseWriter, sessionInfo ->
+                transportContext.getTransportService().process(sessionInfo,
+                        ToDeviceRpcResponseMsg.newBuilder().setRequestId(requestId).setPayload(json).build(),
+                        new HttpOkCallback(responseWriter)));
+    }
+
+    private void postRpcRequest(String deviceToken, JsonElement json, ResponseWriter responseWriter) {
+        JsonObject request = json.getAsJsonObject();
+        JsonElement method = request.get("method");
+        JsonElement params = request.get("params");
+        if (method == null || params == null) {
+            responseWriter.setResult(HttpResponseStatus.BAD_REQUEST);
+            return;
+        }
+        ToServerRpcRequestMsg rpcRequest = ToServerRpcRequestMsg.newBuilder().setRequestId(0)
+                .setMethodName(method.getAsString())
+                .setParams(params.toString()).build();
+        processWithDeviceToken(deviceToken, responseWriter, sessionInfo -> {
+            TransportService transportService = transportContext.getTransportService();
+            transportService.registerSyncSession(sessionInfo,
+                    new HttpSessionListener(responseWriter, transportService, sessionInfo),
+                    transportContext.getDefaultTimeout());
+            transportService.process(sessionInfo, rpcRequest, new HttpSessionCloseOnErrorCallback(responseWriter, transportService, sessionInfo));
+        });
+    }
+
+    private void subscribeToAttributes(String deviceToken, long timeout, ResponseWriter responseWriter) {
+        long pollTimeout = timeout == 0 ? transportContext.getDefaultTimeout() : timeout;
+        responseWriter.setTimeout(pollTimeout, HttpResponseStatus.REQUEST_TIMEOUT);
+        processWithDeviceToken(deviceToken, responseWriter, sessionInfo -> {
+            TransportService transportService = transportContext.getTransportService();
+            transportService.registerSyncSession(sessionInfo,
+                    new HttpSessionListener(responseWriter, transportService, sessionInfo), pollTimeout);
+            transportService.process(sessionInfo, SubscribeToAttributeUpdatesMsg.getDefaultInstance(),
+                    new HttpSessionCloseOnErrorCallback(responseWriter, transportService, sessionInfo));
+        });
+    }
+
+    private void getOtaPackage(String deviceToken, String title, String version, int size, int chunk, OtaPackageType type, ResponseWriter responseWriter) {
+        processWithDeviceToken(deviceToken, responseWriter, sessionInfo -> {
+            TransportProtos.GetOtaPackageRequestMsg requestMsg = TransportProtos.GetOtaPackageRequestMsg.newBuilder()
+                    .setTenantIdMSB(sessionInfo.getTenantIdMSB())
+                    .setTenantIdLSB(sessionInfo.getTenantIdLSB())
+                    .setDeviceIdMSB(sessionInfo.getDeviceIdMSB())
+                    .setDeviceIdLSB(sessionInfo.getDeviceIdLSB())
+                    .setType(type.name()).build();
+            transportContext.getTransportService().process(sessionInfo, requestMsg, new HttpGetOtaPackageCallback(transportContext, responseWriter, title, version, size, chunk));
+        });
+    }
+
+    private void provisionDevice(String json, ResponseWriter responseWriter) {
+        transportContext.getTransportService().process(JsonConverter.convertToProvisionRequestMsg(json),
+                new HttpDeviceProvisionCallback(responseWriter));
+    }
+
+    private void processWithDeviceToken(String deviceToken, ResponseWriter responseWriter, Consumer<SessionInfoProto> onSuccess) {
+        transportContext.getTransportService().process(DeviceTransportType.DEFAULT, ValidateDeviceTokenRequestMsg.newBuilder().setToken(deviceToken).build(),
+                new HttpDeviceAuthCallback(transportContext, responseWriter, onSuccess));
+    }
+
+    private void reportActivity(SessionInfoProto sessionInfo) {
+        transportContext.getTransportService().process(sessionInfo, TransportProtos.SubscriptionInfoProto.newBuilder()
+                .setAttributeSubscription(false)
+                .setRpcSubscription(false)
+                .setLastActivityTime(System.currentTimeMillis())
+                .build(), TransportServiceCallback.EMPTY);
+    }
+
+    /**
+     * Parses the request body directly from the (pooled, usually direct) buffer without copying it to a String first
+     */
+    private static JsonElement parseJson(ByteBuf body) {
+        return new JsonParser().parse(new InputStreamReader(new ByteBufInputStream(body), StandardCharsets.UTF_8));
+    }
+
+    private static String getParam(QueryStringDecoder uri, String name, String defaultValue) {
+        List<String> values = uri.parameters().get(name);
+        return values != null && !values.isEmpty() ? values.get(0) : defaultValue;
+    }
+
+    private static boolean checkMethod(HttpMethod actual, HttpMethod expected, ResponseWriter responseWriter) {
+        if (expected.equals(actual)) {
+            return true;
+        }
+        responseWriter.setResult(HttpResponseStatus.METHOD_NOT_ALLOWED);
+        return false;
+    }
+
+    private void writeInOrder(ChannelHandlerContext ctx, long seq, FullHttpResponse response) {
+        if (!ctx.channel().isActive()) {
+            response.release();
+            return;
+        }
+        pendingResponses.put(seq, response);
+        boolean written = false;
+        FullHttpResponse next;
+        while ((next = pendingResponses.remove(nextResponseSeq)) != null) {
+            nextResponseSeq++;
+            ctx.write(next);
+            written = true;
+        }
+        if (written) {
+            ctx.flush();
+            if (readSuspended && nextRequestSeq - nextResponseSeq < transportContext.getMaxPendingRequests()) {
+                readSuspended = false;
+                ctx.channel().config().setAutoRead(true);
+            }
+        }
+    }
+
+    private class ResponseWriter implements HttpResponseWriter {
+        private final ChannelHandlerContext ctx;
+        private final long seq;
+        private final AtomicBoolean completed = new AtomicBoolean();
+        private volatile ScheduledFuture<?> timeoutFuture;
+
+        ResponseWriter(ChannelHandlerContext ctx, long seq) {
+            this.ctx = ctx;
+            this.seq = seq;
+            setTimeout(transportContext.getDefaultTimeout(), HttpResponseStatus.SERVICE_UNAVAILABLE);
+        }
+
+        /**
+         * Replaces the timeout of this request, called from the event loop while the request is being routed
+         */
+        void setTimeout(long timeoutMs, HttpResponseStatus status) {
+            if (timeoutFuture != null) {
+                timeoutFuture.cancel(false);
+            }
+            long timeout = Math.min(timeoutMs, transportContext.getMaxRequestTimeout());
+            timeoutFuture = ctx.executor().schedule(() -> {
+                if (!completed.get()) {
+                    log.debug("[{}] Request {} timed out after {} ms", ctx.channel().remoteAddress(), seq, timeout);
+                    setResult(status);
+                }
+            }, timeout, TimeUnit.MILLISECONDS);
+        }
+
+        @Override
+        public void setResult(HttpStatus status) {
+            setResult(HttpResponseStatus.valueOf(status.value()));
+        }
+
+        @Override
+        public void setJsonResult(String json) {
+            setResult(HttpResponseStatus.OK, ByteBufUtil.writeUtf8(ctx.alloc(), json), HttpHeaderValues.APPLICATION_JSON);
+        }
+
+        @Override
+        public void setOtaPackageResult(String fileName, String contentType, byte[] data) {
+            FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, HttpResponseStatus.OK, Unpooled.wrappedBuffer(data));
+            response.headers().set(HttpHeaderNames.CONTENT_DISPOSITION, "attachment;filename=" + fileName);
+            response.headers().set("x-filename", fileName);
+            response.headers().set(HttpHeaderNames.CONTENT_TYPE, StringUtils.isEmpty(contentType) ? HttpHeaderValues.APPLICATION_OCTET_STREAM : contentType);
+            setResult(response);
+        }
+
+        void setResult(HttpResponseStatus status) {
+            setResult(status, Unpooled.EMPTY_BUFFER, null);
+        }
+
+        void setResult(HttpResponseStatus status, ByteBuf content, CharSequence contentType) {
+            FullHttpResponse response = new DefaultFullHttpResponse(HttpVersion.HTTP_1_1, status, content);
+            if (contentType != null) {
+                response.headers().set(HttpHeaderNames.CONTENT_TYPE, contentType);
+            }
+            setResult(response);
+        }
+
+        void setResult(FullHttpResponse response) {
+            if (!completed.compareAndSet(false, true)) {
+                response.release();
+                return;
+            }
+            ScheduledFuture<?> timeoutFuture = this.timeoutFuture;
+            if (timeoutFuture != null) {
+                timeoutFuture.cancel(false);
+            }
+            HttpUtil.setContentLength(response, response.content().readableBytes());
+            if (ctx.executor().inEventLoop()) {
+                writeInOrder(ctx, seq, response);
+            } else {
+                ctx.executor().execute(() -> writeInOrder(ctx, seq, response));
+            }
+        }
+    }
+
+}
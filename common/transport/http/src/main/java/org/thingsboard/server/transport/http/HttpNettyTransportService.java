@@ -0,0 +1,87 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.http;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelOption;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnExpression;
+import org.springframework.stereotype.Service;
+
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
+
+/**
+ * Standalone Netty server for the device HTTP API. Serves the same /api/v1 endpoints as {@link DeviceApiController}
+ * without the servlet container: requests are parsed on the event loop straight from the pooled buffers,
+ * and keep-alive connections may pipeline requests.
+ */
+@Service("HttpNettyTransportService")
+@ConditionalOnExpression("('${service.type:null}'=='tb-transport' || ('${service.type:null}'=='monolith' && '${transport.api_enabled:true}'=='true' && '${transport.http.enabled}'=='true')) && '${transport.http.netty.enabled:false}'=='true'")
+@Slf4j
+public class HttpNettyTransportService {
+
+    @Value("${transport.http.netty.bind_address}")
+    private String host;
+    @Value("${transport.http.netty.bind_port}")
+    private Integer port;
+    @Value("${transport.http.netty.boss_group_thread_count}")
+    private Integer bossGroupThreadCount;
+    @Value("${transport.http.netty.worker_group_thread_count}")
+    private Integer workerGroupThreadCount;
+
+    @Autowired
+    private HttpTransportContext context;
+
+    private Channel serverChannel;
+    private EventLoopGroup bossGroup;
+    private EventLoopGroup workerGroup;
+
+    @PostConstruct
+    public void init() throws Exception {
+        log.info("Starting HTTP Netty transport...");
+        bossGroup = new NioEventLoopGroup(bossGroupThreadCount);
+        workerGroup = new NioEventLoopGroup(workerGroupThreadCount);
+        ServerBootstrap b = new ServerBootstrap();
+        b.group(bossGroup, workerGroup)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new HttpNettyTransportServerInitializer(context))
+                .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .childOption(ChannelOption.TCP_NODELAY, true);
+        serverChannel = b.bind(host, port).sync().channel();
+        log.info("HTTP Netty transport started on {}:{}!", host, port);
+    }
+
+    @PreDestroy
+    public void shutdown() throws InterruptedException {
+        log.info("Stopping HTTP Netty transport!");
+        try {
+            serverChannel.close().sync();
+        } finally {
+            workerGroup.shutdownGracefully();
+            bossGroup.shutdownGracefully();
+        }
+        log.info("HTTP Netty transport stopped!");
+    }
+}
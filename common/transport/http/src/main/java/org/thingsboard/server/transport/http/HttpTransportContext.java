@@ -45,6 +45,18 @@ public class HttpTransportContext extends TransportContext {
     @Value("${transport.http.max_request_timeout}")
     private long maxRequestTimeout;
 
+    @Getter
+    @Value("${transport.http.netty.max_payload_size:65536}")
+    private int maxPayloadSize;
+
+    @Getter
+    @Value("${transport.http.netty.idle_timeout:120000}")
+    private long idleTimeout;
+
+    @Getter
+    @Value("${transport.http.netty.max_pending_requests:64}")
+    private int maxPendingRequests;
+
     @Bean
     public TomcatConnectorCustomizer tomcatAsyncTimeoutConnectorCustomizer() {
         return connector -> {
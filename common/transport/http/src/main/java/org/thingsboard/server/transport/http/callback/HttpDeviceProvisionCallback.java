@@ -0,0 +1,42 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.http.callback;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.thingsboard.server.common.transport.TransportServiceCallback;
+import org.thingsboard.server.common.transport.adaptor.JsonConverter;
+import org.thingsboard.server.gen.transport.TransportProtos.ProvisionDeviceResponseMsg;
+
+@Slf4j
+public class HttpDeviceProvisionCallback implements TransportServiceCallback<ProvisionDeviceResponseMsg> {
+    private final HttpResponseWriter responseWriter;
+
+    public HttpDeviceProvisionCallback(HttpResponseWriter responseWriter) {
+        this.responseWriter = responseWriter;
+    }
+
+    @Override
+    public void onSuccess(ProvisionDeviceResponseMsg msg) {
+        responseWriter.setJsonResult(JsonConverter.toJson(msg).toString());
+    }
+
+    @Override
+    public void onError(Throwable e) {
+        log.warn("Failed to process request", e);
+        responseWriter.setResult(HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+}
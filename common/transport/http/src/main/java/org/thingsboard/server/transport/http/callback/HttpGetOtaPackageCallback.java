@@ -0,0 +1,62 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.http.callback;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.thingsboard.server.common.transport.TransportContext;
+import org.thingsboard.server.common.transport.TransportServiceCallback;
+import org.thingsboard.server.gen.transport.TransportProtos;
+
+import java.util.UUID;
+
+@Slf4j
+public class HttpGetOtaPackageCallback implements TransportServiceCallback<TransportProtos.GetOtaPackageResponseMsg> {
+    private final TransportContext transportContext;
+    private final HttpResponseWriter responseWriter;
+    private final String title;
+    private final String version;
+    private final int chuckSize;
+    private final int chuck;
+
+    public HttpGetOtaPackageCallback(TransportContext transportContext, HttpResponseWriter responseWriter, String title, String version, int chuckSize, int chuck) {
+        this.transportContext = transportContext;
+        this.responseWriter = responseWriter;
+        this.title = title;
+        this.version = version;
+        this.chuckSize = chuckSize;
+        this.chuck = chuck;
+    }
+
+    @Override
+    public void onSuccess(TransportProtos.GetOtaPackageResponseMsg otaPackageResponseMsg) {
+        if (!TransportProtos.ResponseStatus.SUCCESS.equals(otaPackageResponseMsg.getResponseStatus())) {
+            responseWriter.setResult(HttpStatus.NOT_FOUND);
+        } else if (title.equals(otaPackageResponseMsg.getTitle()) && version.equals(otaPackageResponseMsg.getVersion())) {
+            String otaPackageId = new UUID(otaPackageResponseMsg.getOtaPackageIdMSB(), otaPackageResponseMsg.getOtaPackageIdLSB()).toString();
+            byte[] data = transportContext.getOtaPackageDataCache().get(otaPackageId, chuckSize, chuck);
+            responseWriter.setOtaPackageResult(otaPackageResponseMsg.getFileName(), otaPackageResponseMsg.getContentType(), data != null ? data : new byte[0]);
+        } else {
+            responseWriter.setResult(HttpStatus.BAD_REQUEST);
+        }
+    }
+
+    @Override
+    public void onError(Throwable e) {
+        log.warn("Failed to process request", e);
+        responseWriter.setResult(HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+}
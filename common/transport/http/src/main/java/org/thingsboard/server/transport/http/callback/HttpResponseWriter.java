@@ -0,0 +1,33 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.http.callback;
+
+import org.springframework.http.HttpStatus;
+
+/**
+ * Writes the response of a single device API request, so that the same callbacks serve
+ * both the Spring MVC {@link org.thingsboard.server.transport.http.DeviceApiController} and the Netty based HTTP server.
+ * Only the first result is written, the following ones are ignored.
+ */
+public interface HttpResponseWriter {
+
+    void setResult(HttpStatus status);
+
+    void setJsonResult(String json);
+
+    void setOtaPackageResult(String fileName, String contentType, byte[] data);
+
+}
@@ -0,0 +1,43 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.http.callback;
+
+import org.springframework.http.HttpStatus;
+import org.thingsboard.server.common.transport.TransportService;
+import org.thingsboard.server.common.transport.TransportServiceCallback;
+import org.thingsboard.server.gen.transport.TransportProtos.SessionInfoProto;
+
+public class HttpSessionCloseOnErrorCallback implements TransportServiceCallback<Void> {
+    private final HttpResponseWriter responseWriter;
+    private final TransportService transportService;
+    private final SessionInfoProto sessionInfo;
+
+    public HttpSessionCloseOnErrorCallback(HttpResponseWriter responseWriter, TransportService transportService, SessionInfoProto sessionInfo) {
+        this.responseWriter = responseWriter;
+        this.transportService = transportService;
+        this.sessionInfo = sessionInfo;
+    }
+
+    @Override
+    public void onSuccess(Void msg) {
+    }
+
+    @Override
+    public void onError(Throwable e) {
+        transportService.deregisterSession(sessionInfo);
+        responseWriter.setResult(HttpStatus.INTERNAL_SERVER_ERROR);
+    }
+}
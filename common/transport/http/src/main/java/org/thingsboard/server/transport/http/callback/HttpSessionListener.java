@@ -0,0 +1,71 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.http.callback;
+
+import lombok.RequiredArgsConstructor;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.http.HttpStatus;
+import org.thingsboard.server.common.transport.SessionMsgListener;
+import org.thingsboard.server.common.transport.TransportService;
+import org.thingsboard.server.common.transport.TransportServiceCallback;
+import org.thingsboard.server.common.transport.adaptor.JsonConverter;
+import org.thingsboard.server.gen.transport.TransportProtos.AttributeUpdateNotificationMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.GetAttributeResponseMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.SessionCloseNotificationProto;
+import org.thingsboard.server.gen.transport.TransportProtos.SessionInfoProto;
+import org.thingsboard.server.gen.transport.TransportProtos.ToDeviceRpcRequestMsg;
+import org.thingsboard.server.gen.transport.TransportProtos.ToServerRpcResponseMsg;
+
+import java.util.UUID;
+
+@Slf4j
+@RequiredArgsConstructor
+public class HttpSessionListener implements SessionMsgListener {
+
+    private final HttpResponseWriter responseWriter;
+    private final TransportService transportService;
+    private final SessionInfoProto sessionInfo;
+
+    @Override
+    public void onGetAttributesResponse(GetAttributeResponseMsg msg) {
+        responseWriter.setJsonResult(JsonConverter.toJson(msg).toString());
+    }
+
+    @Override
+    public void onAttributeUpdate(UUID sessionId, AttributeUpdateNotificationMsg msg) {
+        log.trace("[{}] Received attributes update notification to device", sessionId);
+        responseWriter.setJsonResult(JsonConverter.toJson(msg).toString());
+    }
+
+    @Override
+    public void onRemoteSessionCloseCommand(UUID sessionId, SessionCloseNotificationProto sessionCloseNotification) {
+        log.trace("[{}] Received the remote command to close the session: {}", sessionId, sessionCloseNotification.getMessage());
+        responseWriter.setResult(HttpStatus.REQUEST_TIMEOUT);
+    }
+
+    @Override
+    public void onToDeviceRpcRequest(UUID sessionId, ToDeviceRpcRequestMsg msg) {
+        log.trace("[{}] Received RPC command to device", sessionId);
+        responseWriter.setJsonResult(JsonConverter.toJson(msg, true).toString());
+        transportService.process(sessionInfo, msg, false, TransportServiceCallback.EMPTY);
+    }
+
+    @Override
+    public void onToServerRpcResponse(ToServerRpcResponseMsg msg) {
+        responseWriter.setJsonResult(JsonConverter.toJson(msg).toString());
+    }
+
+}
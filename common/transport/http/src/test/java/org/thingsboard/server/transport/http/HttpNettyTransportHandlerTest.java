@@ -0,0 +1,233 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.http;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.embedded.EmbeddedChannel;
+import io.netty.handler.codec.http.DefaultFullHttpRequest;
+import io.netty.handler.codec.http.FullHttpRequest;
+import io.netty.handler.codec.http.FullHttpResponse;
+import io.netty.handler.codec.http.HttpMethod;
+import io.netty.handler.codec.http.HttpResponseStatus;
+import io.netty.handler.codec.http.HttpVersion;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.thingsboard.server.common.data.DeviceTransportType;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.DeviceProfileId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.transport.SessionMsgListener;
+import org.thingsboard.server.common.transport.TransportService;
+import org.thingsboard.server.common.transport.TransportServiceCallback;
+import org.thingsboard.server.common.transport.auth.TransportDeviceInfo;
+import org.thingsboard.server.common.transport.auth.ValidateDeviceCredentialsResponse;
+import org.thingsboard.server.gen.transport.TransportProtos;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class HttpNettyTransportHandlerTest {
+
+    private static final String TOKEN = "A1_TEST_TOKEN";
+
+    private HttpTransportContext transportContext;
+    private TransportService transportService;
+
+    private final List<TransportServiceCallback<ValidateDeviceCredentialsResponse>> authCallbacks = new ArrayList<>();
+    private final List<TransportServiceCallback<Void>> telemetryCallbacks = new ArrayList<>();
+    private EmbeddedChannel channel;
+
+    @Before
+    public void before() {
+        transportContext = mock(HttpTransportContext.class);
+        transportService = mock(TransportService.class);
+        when(transportContext.getTransportService()).thenReturn(transportService);
+        when(transportContext.getDefaultTimeout()).thenReturn(60000L);
+        when(transportContext.getMaxRequestTimeout()).thenReturn(300000L);
+        when(transportContext.getMaxPendingRequests()).thenReturn(64);
+        when(transportContext.getNodeId()).thenReturn("test-node");
+        doAnswer(invocation -> authCallbacks.add(invocation.getArgument(2)))
+                .when(transportService).process(eq(DeviceTransportType.DEFAULT), any(TransportProtos.ValidateDeviceTokenRequestMsg.class), any());
+        doAnswer(invocation -> telemetryCallbacks.add(invocation.getArgument(2)))
+                .when(transportService).process(any(TransportProtos.SessionInfoProto.class), any(TransportProtos.PostTelemetryMsg.class), any());
+        channel = new EmbeddedChannel(new HttpNettyTransportHandler(transportContext));
+    }
+
+    @After
+    public void after() {
+        channel.finishAndReleaseAll();
+    }
+
+    @Test
+    public void telemetryIsRoutedToTransportServiceAfterAuthentication() {
+        channel.writeInbound(request(HttpMethod.POST, "/api/v1/" + TOKEN + "/telemetry", "{\"temperature\":42}"));
+
+        ArgumentCaptor<TransportProtos.ValidateDeviceTokenRequestMsg> tokenCaptor = ArgumentCaptor.forClass(TransportProtos.ValidateDeviceTokenRequestMsg.class);
+        verify(transportService).process(eq(DeviceTransportType.DEFAULT), tokenCaptor.capture(), any());
+        assertEquals(TOKEN, tokenCaptor.getValue().getToken());
+        authCallbacks.get(0).onSuccess(deviceCredentials());
+
+        ArgumentCaptor<TransportProtos.PostTelemetryMsg> telemetryCaptor = ArgumentCaptor.forClass(TransportProtos.PostTelemetryMsg.class);
+        verify(transportService).process(any(TransportProtos.SessionInfoProto.class), telemetryCaptor.capture(), any());
+        assertEquals("temperature", telemetryCaptor.getValue().getTsKvList(0).getKv(0).getKey());
+        assertNull(channel.readOutbound());
+
+        telemetryCallbacks.get(0).onSuccess(null);
+        assertResponse(HttpResponseStatus.OK);
+    }
+
+    @Test
+    public void unknownResourcesAndMethodsAreRejected() {
+        channel.writeInbound(request(HttpMethod.GET, "/api/v2/" + TOKEN + "/telemetry", ""));
+        channel.writeInbound(request(HttpMethod.GET, "/api/v1/" + TOKEN + "/unknown", ""));
+        channel.writeInbound(request(HttpMethod.GET, "/api/v1/" + TOKEN + "/telemetry", ""));
+
+        assertResponse(HttpResponseStatus.NOT_FOUND);
+        assertResponse(HttpResponseStatus.NOT_FOUND);
+        assertResponse(HttpResponseStatus.METHOD_NOT_ALLOWED);
+    }
+
+    @Test
+    public void unauthorizedDeviceGets401() {
+        channel.writeInbound(request(HttpMethod.POST, "/api/v1/" + TOKEN + "/telemetry", "{\"temperature\":42}"));
+        authCallbacks.get(0).onSuccess(ValidateDeviceCredentialsResponse.builder().build());
+
+        assertResponse(HttpResponseStatus.UNAUTHORIZED);
+    }
+
+    @Test
+    public void pipelinedResponsesAreWrittenInRequestOrder() {
+        channel.writeInbound(request(HttpMethod.POST, "/api/v1/" + TOKEN + "/telemetry", "{\"temperature\":1}"));
+        channel.writeInbound(request(HttpMethod.POST, "/api/v1/" + TOKEN + "/telemetry", "{\"temperature\":2}"));
+        channel.writeInbound(request(HttpMethod.GET, "/api/v1/" + TOKEN + "/unknown", ""));
+        authCallbacks.get(0).onSuccess(deviceCredentials());
+        authCallbacks.get(1).onSuccess(deviceCredentials());
+
+        telemetryCallbacks.get(1).onError(new RuntimeException("second failed"));
+        assertNull(channel.readOutbound());
+
+        telemetryCallbacks.get(0).onSuccess(null);
+        assertResponse(HttpResponseStatus.OK);
+        assertResponse(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+        assertResponse(HttpResponseStatus.NOT_FOUND);
+    }
+
+    @Test
+    public void requestWithoutReplyTimesOutWith503() throws Exception {
+        when(transportContext.getDefaultTimeout()).thenReturn(10L);
+        channel.writeInbound(request(HttpMethod.POST, "/api/v1/" + TOKEN + "/telemetry", "{\"temperature\":42}"));
+
+        Thread.sleep(50);
+        channel.runScheduledPendingTasks();
+
+        assertResponse(HttpResponseStatus.SERVICE_UNAVAILABLE);
+        authCallbacks.get(0).onSuccess(deviceCredentials());
+        telemetryCallbacks.get(0).onSuccess(null);
+        assertNull(channel.readOutbound());
+    }
+
+    @Test
+    public void longPollingTimesOutWith408() throws Exception {
+        channel.writeInbound(request(HttpMethod.GET, "/api/v1/" + TOKEN + "/rpc?timeout=10", ""));
+        authCallbacks.get(0).onSuccess(deviceCredentials());
+        verify(transportService).registerSyncSession(any(), any(SessionMsgListener.class), eq(10L));
+
+        Thread.sleep(50);
+        channel.runScheduledPendingTasks();
+
+        assertResponse(HttpResponseStatus.REQUEST_TIMEOUT);
+    }
+
+    @Test
+    public void failedSubscriptionCompletesRequest() {
+        doAnswer(invocation -> {
+            TransportServiceCallback<Void> callback = invocation.getArgument(2);
+            callback.onError(new RuntimeException("failed"));
+            return null;
+        }).when(transportService).process(any(TransportProtos.SessionInfoProto.class), any(TransportProtos.SubscribeToRPCMsg.class), any());
+
+        channel.writeInbound(request(HttpMethod.GET, "/api/v1/" + TOKEN + "/rpc", ""));
+        authCallbacks.get(0).onSuccess(deviceCredentials());
+
+        verify(transportService).deregisterSession(any());
+        assertResponse(HttpResponseStatus.INTERNAL_SERVER_ERROR);
+    }
+
+    @Test
+    public void rpcRequestWithoutMethodIsRejected() {
+        channel.writeInbound(request(HttpMethod.POST, "/api/v1/" + TOKEN + "/rpc", "{\"params\":{}}"));
+
+        assertResponse(HttpResponseStatus.BAD_REQUEST);
+        verify(transportService, never()).registerSyncSession(any(), any(), anyLong());
+    }
+
+    @Test
+    public void readingIsSuspendedWhileTooManyRequestsArePending() {
+        when(transportContext.getMaxPendingRequests()).thenReturn(2);
+        channel.writeInbound(request(HttpMethod.POST, "/api/v1/" + TOKEN + "/telemetry", "{\"temperature\":1}"));
+        assertTrue(channel.config().isAutoRead());
+        channel.writeInbound(request(HttpMethod.POST, "/api/v1/" + TOKEN + "/telemetry", "{\"temperature\":2}"));
+        assertFalse(channel.config().isAutoRead());
+
+        authCallbacks.get(0).onSuccess(deviceCredentials());
+        telemetryCallbacks.get(0).onSuccess(null);
+
+        assertResponse(HttpResponseStatus.OK);
+        assertTrue(channel.config().isAutoRead());
+    }
+
+    private void assertResponse(HttpResponseStatus expected) {
+        FullHttpResponse response = channel.readOutbound();
+        try {
+            assertEquals(expected, response.status());
+        } finally {
+            response.release();
+        }
+    }
+
+    private static FullHttpRequest request(HttpMethod method, String uri, String body) {
+        return new DefaultFullHttpRequest(HttpVersion.HTTP_1_1, method, uri, Unpooled.copiedBuffer(body, StandardCharsets.UTF_8));
+    }
+
+    private static ValidateDeviceCredentialsResponse deviceCredentials() {
+        TransportDeviceInfo deviceInfo = new TransportDeviceInfo();
+        deviceInfo.setTenantId(new TenantId(UUID.randomUUID()));
+        deviceInfo.setCustomerId(new CustomerId(UUID.randomUUID()));
+        deviceInfo.setDeviceProfileId(new DeviceProfileId(UUID.randomUUID()));
+        deviceInfo.setDeviceId(new DeviceId(UUID.randomUUID()));
+        deviceInfo.setDeviceName("device");
+        deviceInfo.setDeviceType("default");
+        return ValidateDeviceCredentialsResponse.builder().deviceInfo(deviceInfo).build();
+    }
+}
@@ -41,8 +41,11 @@ import org.slf4j.LoggerFactory;
 import org.springframework.data.redis.connection.RedisClusterConnection;
 import org.springframework.data.redis.connection.RedisConnection;
 import org.springframework.data.redis.connection.RedisConnectionFactory;
+import org.springframework.data.redis.connection.ReturnType;
 import org.springframework.data.redis.core.Cursor;
 import org.springframework.data.redis.core.ScanOptions;
+import org.springframework.data.redis.core.script.DefaultRedisScript;
+import org.springframework.data.redis.core.script.RedisScript;
 import org.springframework.integration.redis.util.RedisLockRegistry;
 
 import java.net.InetSocketAddress;
@@ -59,6 +62,7 @@ import java.util.concurrent.ScheduledExecutorService;
 import java.util.concurrent.ScheduledFuture;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.locks.Lock;
+import java.util.stream.Collectors;
 
 import static java.nio.charset.StandardCharsets.UTF_8;
 
@@ -82,6 +86,128 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
     private static final byte[] EXP_EP = "EXP:EP".getBytes(UTF_8); // a sorted set used for registration expiration
     // (expiration date, Endpoint)
 
+    private static final int SCAN_BATCH_SIZE = 100;
+
+    /*
+     * On a standalone Redis every write of the registration keys and of the observations goes through the scripts
+     * below, which compare the stored registration with the one the caller read and apply all changes atomically.
+     * A conflict means another writer has made progress, so the caller simply re-reads and retries.
+     * Redis Cluster rejects scripts whose keys live in different slots, so there every writer uses the lock instead.
+     */
+
+    /*
+     * Stores the registration with its secondary indexes and expiration in one atomic step, provided the stored
+     * registration is still the one read by the caller (ARGV[1], empty if none). Returns {0} if it was changed
+     * concurrently, otherwise {1, ...} followed by the serialized observations removed with the replaced registration.
+     * KEYS: endpoint, new regId idx, new addr idx, new identity idx, expiration set,
+     *       old regId idx, old addr idx, old identity idx, old observation tokens idx
+     * ARGV: expected registration, new registration, endpoint, expiration timestamp, observation key prefix
+     */
+    private static final RedisScript<List> ADD_REGISTRATION_SCRIPT = new DefaultRedisScript<>(
+            "local current = redis.call('GET', KEYS[1])\n" +
+            "if (current or '') ~= ARGV[1] then return {0} end\n" +
+            "redis.call('SET', KEYS[1], ARGV[2])\n" +
+            "redis.call('SET', KEYS[2], ARGV[3])\n" +
+            "redis.call('SET', KEYS[3], ARGV[3])\n" +
+            "redis.call('SET', KEYS[4], ARGV[3])\n" +
+            "redis.call('ZADD', KEYS[5], ARGV[4], ARGV[3])\n" +
+            "local removed = {1}\n" +
+            "if current then\n" +
+            "  if KEYS[6] ~= KEYS[2] then redis.call('DEL', KEYS[6]) end\n" +
+            "  if KEYS[7] ~= KEYS[3] and redis.call('GET', KEYS[7]) == ARGV[3] then redis.call('DEL', KEYS[7]) end\n" +
+            "  if KEYS[8] ~= KEYS[4] and redis.call('GET', KEYS[8]) == ARGV[3] then redis.call('DEL', KEYS[8]) end\n" +
+            "  for _, token in ipairs(redis.call('LRANGE', KEYS[9], 0, -1)) do\n" +
+            "    local obs = redis.call('GET', ARGV[5] .. token)\n" +
+            "    if obs then table.insert(removed, obs) end\n" +
+            "    redis.call('DEL', ARGV[5] .. token)\n" +
+            "  end\n" +
+            "  redis.call('DEL', KEYS[9])\n" +
+            "end\n" +
+            "return removed", List.class);
+
+    /*
+     * Replaces the registration if it is still the one read by the caller and updates its expiration and address
+     * index in one atomic step. Returns 0 if the registration was changed concurrently, 1 otherwise.
+     * KEYS: endpoint, expiration set, new addr idx, old addr idx, old identity idx, new identity idx
+     * ARGV: expected registration, new registration, endpoint, expiration timestamp
+     */
+    private static final RedisScript<Long> UPDATE_REGISTRATION_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) ~= ARGV[1] then return 0 end\n" +
+            "redis.call('SET', KEYS[1], ARGV[2])\n" +
+            "redis.call('ZADD', KEYS[2], ARGV[4], ARGV[3])\n" +
+            "redis.call('SET', KEYS[3], ARGV[3])\n" +
+            "if KEYS[4] ~= KEYS[3] and redis.call('GET', KEYS[4]) == ARGV[3] then redis.call('DEL', KEYS[4]) end\n" +
+            "if KEYS[5] ~= KEYS[6] and redis.call('GET', KEYS[5]) == ARGV[3] then redis.call('DEL', KEYS[5]) end\n" +
+            "return 1", Long.class);
+
+    /*
+     * Removes the registration with its secondary indexes, expiration and observations in one atomic step, provided
+     * the stored registration is still the one read by the caller. Returns {0} if it was changed concurrently,
+     * otherwise {1, ...} followed by the serialized observations that were removed.
+     * KEYS: endpoint, regId idx, addr idx, identity idx, expiration set, observation tokens idx
+     * ARGV: expected registration, endpoint, observation key prefix
+     */
+    private static final RedisScript<List> REMOVE_REGISTRATION_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) ~= ARGV[1] then return {0} end\n" +
+            "redis.call('DEL', KEYS[1])\n" +
+            "redis.call('DEL', KEYS[2])\n" +
+            "if redis.call('GET', KEYS[3]) == ARGV[2] then redis.call('DEL', KEYS[3]) end\n" +
+            "if redis.call('GET', KEYS[4]) == ARGV[2] then redis.call('DEL', KEYS[4]) end\n" +
+            "redis.call('ZREM', KEYS[5], ARGV[2])\n" +
+            "local removed = {1}\n" +
+            "for _, token in ipairs(redis.call('LRANGE', KEYS[6], 0, -1)) do\n" +
+            "  local obs = redis.call('GET', ARGV[3] .. token)\n" +
+            "  if obs then table.insert(removed, obs) end\n" +
+            "  redis.call('DEL', ARGV[3] .. token)\n" +
+            "end\n" +
+            "redis.call('DEL', KEYS[6])\n" +
+            "return removed", List.class);
+
+    /*
+     * Stores an observation and indexes it by registration in one atomic step, provided the registration still
+     * exists. Returns {0} if the registration is gone, {1, previous} if ARGV[2] is '1' (put if absent) and an
+     * observation is already stored for the token, otherwise {2} or {2, previous} when an observation was replaced.
+     * KEYS: regId idx, observation, observation tokens idx
+     * ARGV: observation, put if absent flag, token
+     */
+    private static final RedisScript<List> ADD_OBSERVATION_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('EXISTS', KEYS[1]) == 0 then return {0} end\n" +
+            "local previous = redis.call('GET', KEYS[2])\n" +
+            "if previous == '' then previous = false end\n" +
+            "if ARGV[2] == '1' and previous then return {1, previous} end\n" +
+            "redis.call('SET', KEYS[2], ARGV[1])\n" +
+            "redis.call('LPUSH', KEYS[3], ARGV[3])\n" +
+            "if previous then return {2, previous} end\n" +
+            "return {2}", List.class);
+
+    /*
+     * Removes an observation and its token from the registration index in one atomic step, provided the stored
+     * observation is still the one read by the caller. Returns 0 if it was changed or removed concurrently, 1 otherwise.
+     * KEYS: observation, observation tokens idx
+     * ARGV: expected observation, token
+     */
+    private static final RedisScript<Long> REMOVE_OBSERVATION_SCRIPT = new DefaultRedisScript<>(
+            "if redis.call('GET', KEYS[1]) ~= ARGV[1] then return 0 end\n" +
+            "redis.call('DEL', KEYS[1])\n" +
+            "redis.call('LREM', KEYS[2], 0, ARGV[2])\n" +
+            "return 1", Long.class);
+
+    /*
+     * Removes all observations of a registration together with their index in one atomic step.
+     * Returns the serialized observations that were removed.
+     * KEYS: observation tokens idx
+     * ARGV: observation key prefix
+     */
+    private static final RedisScript<List> REMOVE_ALL_OBSERVATIONS_SCRIPT = new DefaultRedisScript<>(
+            "local removed = {}\n" +
+            "for _, token in ipairs(redis.call('LRANGE', KEYS[1], 0, -1)) do\n" +
+            "  local obs = redis.call('GET', ARGV[1] .. token)\n" +
+            "  if obs then table.insert(removed, obs) end\n" +
+            "  redis.call('DEL', ARGV[1] .. token)\n" +
+            "end\n" +
+            "redis.call('DEL', KEYS[1])\n" +
+            "return removed", List.class);
+
     private final RedisConnectionFactory connectionFactory;
 
     // Listener use to notify when a registration expires
@@ -142,57 +268,90 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
 
     @Override
     public Deregistration addRegistration(Registration registration) {
-        Lock lock = null;
         try (var connection = connectionFactory.getConnection()) {
-            String lockKey = toLockKey(registration.getEndpoint());
-
-            try {
-                lock = redisLock.obtain(lockKey);
-                lock.lock();
-                // add registration
-                byte[] k = toEndpointKey(registration.getEndpoint());
-                byte[] old = connection.getSet(k, serializeReg(registration));
-
-                // add registration: secondary indexes
-                byte[] regid_idx = toRegIdKey(registration.getId());
-                connection.set(regid_idx, registration.getEndpoint().getBytes(UTF_8));
-                byte[] addr_idx = toRegAddrKey(registration.getSocketAddress());
-                connection.set(addr_idx, registration.getEndpoint().getBytes(UTF_8));
-                byte[] identity_idx = toRegIdentityKey(registration.getIdentity());
-                connection.set(identity_idx, registration.getEndpoint().getBytes(UTF_8));
-
-                // Add or update expiration
-                addOrUpdateExpiration(connection, registration);
-
-                if (old != null) {
-                    Registration oldRegistration = deserializeReg(old);
-                    // remove old secondary index
-                    if (!registration.getId().equals(oldRegistration.getId()))
-                        connection.del(toRegIdKey(oldRegistration.getId()));
-                    if (!oldRegistration.getSocketAddress().equals(registration.getSocketAddress())) {
-                        removeAddrIndex(connection, oldRegistration);
-                    }
-                    if (!oldRegistration.getIdentity().equals(registration.getIdentity())) {
-                        removeIdentityIndex(connection, oldRegistration);
+            if (isScriptingSupported(connection)) {
+                while (true) {
+                    byte[] old = connection.get(toEndpointKey(registration.getEndpoint()));
+                    Registration oldRegistration = old != null ? deserializeReg(old) : null;
+                    Registration indexed = oldRegistration != null ? oldRegistration : registration;
+                    byte[] endpoint = registration.getEndpoint().getBytes(UTF_8);
+                    List<Object> result = evalScript(connection, ADD_REGISTRATION_SCRIPT, ReturnType.MULTI, 9,
+                            toEndpointKey(registration.getEndpoint()),
+                            toRegIdKey(registration.getId()),
+                            toRegAddrKey(registration.getSocketAddress()),
+                            toRegIdentityKey(registration.getIdentity()),
+                            EXP_EP,
+                            toRegIdKey(indexed.getId()),
+                            toRegAddrKey(indexed.getSocketAddress()),
+                            toRegIdentityKey(indexed.getIdentity()),
+                            toKey(OBS_TKNS_REGID_IDX, indexed.getId()),
+                            old != null ? old : new byte[0],
+                            serializeReg(registration),
+                            endpoint,
+                            toExpirationScore(registration),
+                            OBS_TKN);
+                    if ((Long) result.get(0) == 1L) {
+                        if (oldRegistration == null) {
+                            return null;
+                        }
+                        return new Deregistration(oldRegistration, toObservations(result));
                     }
-                    // remove old observation
-                    Collection<Observation> obsRemoved = unsafeRemoveAllObservations(connection, oldRegistration.getId());
-
-                    return new Deregistration(oldRegistration, obsRemoved);
                 }
+            } else {
+                return addRegistrationWithLock(connection, registration);
+            }
+        }
+    }
 
-                return null;
-            } finally {
-                if (lock != null) {
-                    lock.unlock();
+    private Deregistration addRegistrationWithLock(RedisConnection connection, Registration registration) {
+        Lock lock = null;
+        String lockKey = toLockKey(registration.getEndpoint());
+
+        try {
+            lock = redisLock.obtain(lockKey);
+            lock.lock();
+            // add registration
+            byte[] k = toEndpointKey(registration.getEndpoint());
+            byte[] old = connection.getSet(k, serializeReg(registration));
+
+            // add registration: secondary indexes
+            byte[] regid_idx = toRegIdKey(registration.getId());
+            connection.set(regid_idx, registration.getEndpoint().getBytes(UTF_8));
+            byte[] addr_idx = toRegAddrKey(registration.getSocketAddress());
+            connection.set(addr_idx, registration.getEndpoint().getBytes(UTF_8));
+            byte[] identity_idx = toRegIdentityKey(registration.getIdentity());
+            connection.set(identity_idx, registration.getEndpoint().getBytes(UTF_8));
+
+            // Add or update expiration
+            addOrUpdateExpiration(connection, registration);
+
+            if (old != null) {
+                Registration oldRegistration = deserializeReg(old);
+                // remove old secondary index
+                if (!registration.getId().equals(oldRegistration.getId()))
+                    connection.del(toRegIdKey(oldRegistration.getId()));
+                if (!oldRegistration.getSocketAddress().equals(registration.getSocketAddress())) {
+                    removeAddrIndex(connection, oldRegistration);
+                }
+                if (!oldRegistration.getIdentity().equals(registration.getIdentity())) {
+                    removeIdentityIndex(connection, oldRegistration);
                 }
+                // remove old observation
+                Collection<Observation> obsRemoved = unsafeRemoveAllObservations(connection, oldRegistration.getId());
+
+                return new Deregistration(oldRegistration, obsRemoved);
+            }
+
+            return null;
+        } finally {
+            if (lock != null) {
+                lock.unlock();
             }
         }
     }
 
     @Override
     public UpdatedRegistration updateRegistration(RegistrationUpdate update) {
-        Lock lock = null;
         try (var connection = connectionFactory.getConnection()) {
 
             // Fetch the registration ep by registration ID index
@@ -201,45 +360,83 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
                 return null;
             }
 
-            String lockKey = toLockKey(ep);
-            try {
-                lock = redisLock.obtain(lockKey);
-                lock.lock();
+            if (isScriptingSupported(connection)) {
+                while (true) {
+                    // Fetch the registration
+                    byte[] data = connection.get(toEndpointKey(ep));
+                    if (data == null) {
+                        return null;
+                    }
 
-                // Fetch the registration
-                byte[] data = connection.get(toEndpointKey(ep));
-                if (data == null) {
-                    return null;
+                    Registration r = deserializeReg(data);
+                    if (!r.getId().equals(update.getRegistrationId())) {
+                        // the registration was replaced by a new one for the same endpoint
+                        return null;
+                    }
+
+                    Registration updatedRegistration = update.update(r);
+
+                    Long updated = evalScript(connection, UPDATE_REGISTRATION_SCRIPT, ReturnType.INTEGER, 6,
+                            toEndpointKey(ep),
+                            EXP_EP,
+                            toRegAddrKey(updatedRegistration.getSocketAddress()),
+                            toRegAddrKey(r.getSocketAddress()),
+                            toRegIdentityKey(r.getIdentity()),
+                            toRegIdentityKey(updatedRegistration.getIdentity()),
+                            data,
+                            serializeReg(updatedRegistration),
+                            updatedRegistration.getEndpoint().getBytes(UTF_8),
+                            toExpirationScore(updatedRegistration));
+                    if (updated == 1L) {
+                        return new UpdatedRegistration(r, updatedRegistration);
+                    }
                 }
+            } else {
+                return updateRegistrationWithLock(connection, ep, update);
+            }
+        }
+    }
 
-                Registration r = deserializeReg(data);
+    private UpdatedRegistration updateRegistrationWithLock(RedisConnection connection, byte[] ep, RegistrationUpdate update) {
+        Lock lock = null;
+        String lockKey = toLockKey(ep);
+        try {
+            lock = redisLock.obtain(lockKey);
+            lock.lock();
 
-                Registration updatedRegistration = update.update(r);
+            // Fetch the registration
+            byte[] data = connection.get(toEndpointKey(ep));
+            if (data == null) {
+                return null;
+            }
 
-                // Store the new registration
-                connection.set(toEndpointKey(updatedRegistration.getEndpoint()), serializeReg(updatedRegistration));
+            Registration r = deserializeReg(data);
 
-                // Add or update expiration
-                addOrUpdateExpiration(connection, updatedRegistration);
+            Registration updatedRegistration = update.update(r);
 
-                /** Update secondary index :
-                 * If registration is already associated to this address we don't care as we only want to keep the most
-                 * recent binding. */
-                byte[] addr_idx = toRegAddrKey(updatedRegistration.getSocketAddress());
-                connection.set(addr_idx, updatedRegistration.getEndpoint().getBytes(UTF_8));
-                if (!r.getSocketAddress().equals(updatedRegistration.getSocketAddress())) {
-                    removeAddrIndex(connection, r);
-                }
-                if (!r.getIdentity().equals(updatedRegistration.getIdentity())) {
-                    removeIdentityIndex(connection, r);
-                }
+            // Store the new registration
+            connection.set(toEndpointKey(updatedRegistration.getEndpoint()), serializeReg(updatedRegistration));
 
-                return new UpdatedRegistration(r, updatedRegistration);
+            // Add or update expiration
+            addOrUpdateExpiration(connection, updatedRegistration);
 
-            } finally {
-                if (lock != null) {
-                    lock.unlock();
-                }
+            /** Update secondary index :
+             * If registration is already associated to this address we don't care as we only want to keep the most
+             * recent binding. */
+            byte[] addr_idx = toRegAddrKey(updatedRegistration.getSocketAddress());
+            connection.set(addr_idx, updatedRegistration.getEndpoint().getBytes(UTF_8));
+            if (!r.getSocketAddress().equals(updatedRegistration.getSocketAddress())) {
+                removeAddrIndex(connection, r);
+            }
+            if (!r.getIdentity().equals(updatedRegistration.getIdentity())) {
+                removeIdentityIndex(connection, r);
+            }
+
+            return new UpdatedRegistration(r, updatedRegistration);
+
+        } finally {
+            if (lock != null) {
+                lock.unlock();
             }
         }
     }
@@ -299,7 +496,7 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
     public Iterator<Registration> getAllRegistrations() {
         try (var connection = connectionFactory.getConnection()) {
             Collection<Registration> list = new LinkedList<>();
-            ScanOptions scanOptions = ScanOptions.scanOptions().count(100).match(REG_EP + "*").build();
+            ScanOptions scanOptions = ScanOptions.scanOptions().count(SCAN_BATCH_SIZE).match(REG_EP + "*").build();
             List<Cursor<byte[]>> scans = new ArrayList<>();
             if (connection instanceof RedisClusterConnection) {
                 ((RedisClusterConnection) connection).clusterGetNodes().forEach(node -> {
@@ -309,16 +506,37 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
                 scans.add(connection.scan(scanOptions));
             }
 
+            // fetch the registrations page by page as the cursor advances instead of one round trip per key
             scans.forEach(scan -> {
+                List<byte[]> keys = new ArrayList<>(SCAN_BATCH_SIZE);
                 scan.forEachRemaining(key -> {
-                    byte[] element = connection.get(key);
-                    list.add(deserializeReg(element));
+                    keys.add(key);
+                    if (keys.size() >= SCAN_BATCH_SIZE) {
+                        fetchRegistrations(connection, keys, list);
+                        keys.clear();
+                    }
                 });
+                fetchRegistrations(connection, keys, list);
             });
             return list.iterator();
         }
     }
 
+    private void fetchRegistrations(RedisConnection connection, List<byte[]> keys, Collection<Registration> result) {
+        if (keys.isEmpty()) {
+            return;
+        }
+        List<byte[]> values = connection.mGet(keys.toArray(new byte[0][]));
+        if (values != null) {
+            for (byte[] value : values) {
+                // the registration may have been removed since the key was scanned
+                if (value != null) {
+                    result.add(deserializeReg(value));
+                }
+            }
+        }
+    }
+
     @Override
     public Deregistration removeRegistration(String registrationId) {
         try (var connection = connectionFactory.getConnection()) {
@@ -333,6 +551,41 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
             return null;
         }
 
+        if (isScriptingSupported(connection)) {
+            while (true) {
+                // fetch the client
+                byte[] data = connection.get(toEndpointKey(ep));
+                if (data == null) {
+                    return null;
+                }
+                Registration r = deserializeReg(data);
+                if (!r.getId().equals(registrationId)) {
+                    // the registration was already replaced by a new one for the same endpoint
+                    return null;
+                }
+                if (removeOnlyIfNotAlive && r.isAlive(gracePeriod)) {
+                    return null;
+                }
+                List<Object> result = evalScript(connection, REMOVE_REGISTRATION_SCRIPT, ReturnType.MULTI, 6,
+                        toEndpointKey(ep),
+                        toRegIdKey(r.getId()),
+                        toRegAddrKey(r.getSocketAddress()),
+                        toRegIdentityKey(r.getIdentity()),
+                        EXP_EP,
+                        toKey(OBS_TKNS_REGID_IDX, r.getId()),
+                        data,
+                        r.getEndpoint().getBytes(UTF_8),
+                        OBS_TKN);
+                if ((Long) result.get(0) == 1L) {
+                    return new Deregistration(r, toObservations(result));
+                }
+            }
+        } else {
+            return removeRegistrationWithLock(connection, ep, removeOnlyIfNotAlive);
+        }
+    }
+
+    private Deregistration removeRegistrationWithLock(RedisConnection connection, byte[] ep, boolean removeOnlyIfNotAlive) {
         Lock lock = null;
         String lockKey = toLockKey(ep);
         try {
@@ -401,6 +654,43 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
         connection.zRem(EXP_EP, registration.getEndpoint().getBytes(UTF_8));
     }
 
+    private byte[] toExpirationScore(Registration registration) {
+        return Long.toString(registration.getExpirationTimeStamp(gracePeriod)).getBytes(UTF_8);
+    }
+
+    private <T> T evalScript(RedisConnection connection, RedisScript<?> script, ReturnType returnType, int numKeys, byte[]... keysAndArgs) {
+        try {
+            return connection.evalSha(script.getSha1(), returnType, numKeys, keysAndArgs);
+        } catch (RuntimeException e) {
+            if (!isNoScriptError(e)) {
+                throw e;
+            }
+            // the script is not cached by the server yet (first call or after SCRIPT FLUSH / restart)
+            return connection.eval(script.getScriptAsString().getBytes(UTF_8), returnType, numKeys, keysAndArgs);
+        }
+    }
+
+    private Collection<Observation> toObservations(List<Object> scriptResult) {
+        Collection<Observation> observations = new ArrayList<>();
+        for (Object obs : scriptResult.subList(1, scriptResult.size())) {
+            observations.add(build(deserializeObs((byte[]) obs)));
+        }
+        return observations;
+    }
+
+    private boolean isScriptingSupported(RedisConnection connection) {
+        return !(connection instanceof RedisClusterConnection);
+    }
+
+    private static boolean isNoScriptError(Throwable e) {
+        for (Throwable t = e; t != null; t = t.getCause()) {
+            if (t.getMessage() != null && t.getMessage().contains("NOSCRIPT")) {
+                return true;
+            }
+        }
+        return false;
+    }
+
     private byte[] toRegIdKey(String registrationId) {
         return toKey(REG_EP_REGID_IDX, registrationId);
     }
@@ -446,6 +736,23 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
                 return null;
             }
 
+            if (isScriptingSupported(connection)) {
+                // cancel existing observations for the same path and registration id, unless they were replaced meanwhile
+                for (byte[] token : connection.lRange(toKey(OBS_TKNS_REGID_IDX, registrationId), 0, -1)) {
+                    byte[] data = connection.get(toKey(OBS_TKN, token));
+                    if (data == null) {
+                        continue;
+                    }
+                    Observation obs = build(deserializeObs(data));
+                    if (observation.getPath().equals(obs.getPath())
+                            && !Arrays.equals(observation.getId(), obs.getId())
+                            && removeObservationIfUnchanged(connection, registrationId, token, data)) {
+                        removed.add(obs);
+                    }
+                }
+                return removed;
+            }
+
             Lock lock = null;
             String lockKey = toLockKey(ep);
 
@@ -481,6 +788,22 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
                 return null;
             }
 
+            if (isScriptingSupported(connection)) {
+                while (true) {
+                    byte[] data = connection.get(toKey(OBS_TKN, observationId));
+                    if (data == null) {
+                        return null;
+                    }
+                    Observation observation = build(deserializeObs(data));
+                    if (!registrationId.equals(observation.getRegistrationId())) {
+                        return null;
+                    }
+                    if (removeObservationIfUnchanged(connection, registrationId, observationId, data)) {
+                        return observation;
+                    }
+                }
+            }
+
             // remove observation
             Lock lock = null;
             String lockKey = toLockKey(ep);
@@ -534,6 +857,17 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
             if (registration == null)
                 return Collections.emptyList();
 
+            if (isScriptingSupported(connection)) {
+                List<Object> result = evalScript(connection, REMOVE_ALL_OBSERVATIONS_SCRIPT, ReturnType.MULTI, 1,
+                        toKey(OBS_TKNS_REGID_IDX, registrationId),
+                        OBS_TKN);
+                Collection<Observation> removed = new ArrayList<>(result.size());
+                for (Object obs : result) {
+                    removed.add(build(deserializeObs((byte[]) obs)));
+                }
+                return removed;
+            }
+
             // get endpoint and create lock
             String endpoint = registration.getEndpoint();
             Lock lock = null;
@@ -569,6 +903,31 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
         org.eclipse.californium.core.observe.Observation previousObservation = null;
 
         try (var connection = connectionFactory.getConnection()) {
+            if (isScriptingSupported(connection)) {
+                String registrationId = ObserveUtil.extractRegistrationId(obs);
+                byte[] token = obs.getRequest().getToken().getBytes();
+                List<Object> result = evalScript(connection, ADD_OBSERVATION_SCRIPT, ReturnType.MULTI, 3,
+                        toRegIdKey(registrationId),
+                        toKey(OBS_TKN, token),
+                        toKey(OBS_TKNS_REGID_IDX, registrationId),
+                        serializeObs(obs),
+                        (ifAbsent ? "1" : "0").getBytes(UTF_8),
+                        token);
+                long status = (Long) result.get(0);
+                if (status == 0L) {
+                    throw new ObservationStoreException("no registration for this Id");
+                }
+                if (result.size() > 1) {
+                    previousObservation = deserializeObs((byte[]) result.get(1));
+                    if (status == 1L) {
+                        return previousObservation;
+                    }
+                    LOG.warn(
+                            "Token collision ? observation from request [{}] will be replaced by observation from request [{}] ",
+                            previousObservation.getRequest(), obs.getRequest());
+                }
+                return previousObservation;
+            }
             Lock lock = null;
             String lockKey = toLockKey(endpoint);
             try {
@@ -630,6 +989,12 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
                 return;
             }
 
+            if (isScriptingSupported(connection)) {
+                // a concurrent put for the same token replaces the observation, which then must not be removed
+                removeObservationIfUnchanged(connection, registrationId, token.getBytes(), serializedObs);
+                return;
+            }
+
             String endpoint = registration.getEndpoint();
             Lock lock = null;
             String lockKey = toLockKey(endpoint);
@@ -674,6 +1039,15 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
         return deserializeReg(data);
     }
 
+    private boolean removeObservationIfUnchanged(RedisConnection connection, String registrationId, byte[] observationId, byte[] expected) {
+        Long result = evalScript(connection, REMOVE_OBSERVATION_SCRIPT, ReturnType.INTEGER, 2,
+                toKey(OBS_TKN, observationId),
+                toKey(OBS_TKNS_REGID_IDX, registrationId),
+                expected,
+                observationId);
+        return result != null && result == 1L;
+    }
+
     private void unsafeRemoveObservation(RedisConnection connection, String registrationId, byte[] observationId) {
         if (connection.del(toKey(OBS_TKN, observationId)) > 0L) {
             connection.lRem(toKey(OBS_TKNS_REGID_IDX, registrationId), 0, observationId);
@@ -766,8 +1140,9 @@ public class TbLwM2mRedisRegistrationStore implements CaliforniumRegistrationSto
                 Set<byte[]> endpointsExpired = connection.zRangeByScore(EXP_EP, Double.NEGATIVE_INFINITY,
                         System.currentTimeMillis(), 0, cleanLimit);
 
-                for (byte[] endpoint : endpointsExpired) {
-                    Registration r = deserializeReg(connection.get(toEndpointKey(endpoint)));
+                List<Registration> expired = new ArrayList<>(endpointsExpired.size());
+                fetchRegistrations(connection, endpointsExpired.stream().map(endpoint -> toEndpointKey(endpoint)).collect(Collectors.toList()), expired);
+                for (Registration r : expired) {
                     if (!r.isAlive(gracePeriod)) {
                         Deregistration dereg = removeRegistration(connection, r.getId(), true);
                         if (dereg != null)
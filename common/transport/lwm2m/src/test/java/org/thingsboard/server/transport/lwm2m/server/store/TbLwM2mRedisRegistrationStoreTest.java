@@ -0,0 +1,351 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.lwm2m.server.store;
+
+import org.eclipse.californium.core.coap.Request;
+import org.eclipse.californium.core.coap.Token;
+import org.eclipse.californium.elements.AddressEndpointContext;
+import org.eclipse.leshan.core.Link;
+import org.eclipse.leshan.core.observation.Observation;
+import org.eclipse.leshan.core.request.BindingMode;
+import org.eclipse.leshan.core.request.Identity;
+import org.eclipse.leshan.core.request.ObserveRequest;
+import org.eclipse.leshan.server.registration.Deregistration;
+import org.eclipse.leshan.server.registration.Registration;
+import org.eclipse.leshan.server.registration.RegistrationUpdate;
+import org.eclipse.leshan.server.californium.observation.ObserveUtil;
+import org.eclipse.leshan.server.registration.UpdatedRegistration;
+import org.junit.After;
+import org.junit.AfterClass;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import org.springframework.data.redis.connection.RedisStandaloneConfiguration;
+import org.springframework.data.redis.connection.jedis.JedisConnectionFactory;
+import redis.embedded.RedisServer;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumSet;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+import static java.nio.charset.StandardCharsets.UTF_8;
+
+public class TbLwM2mRedisRegistrationStoreTest {
+
+    private static final String ENDPOINT = "test-endpoint";
+
+    private static RedisServer redisServer;
+    private static int redisPort;
+
+    private JedisConnectionFactory connectionFactory;
+    private TbLwM2mRedisRegistrationStore store;
+
+    @BeforeClass
+    public static void startRedis() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            redisPort = socket.getLocalPort();
+        }
+        redisServer = new RedisServer(redisPort);
+        redisServer.start();
+    }
+
+    @AfterClass
+    public static void stopRedis() {
+        if (redisServer != null) {
+            redisServer.stop();
+        }
+    }
+
+    @Before
+    public void before() {
+        connectionFactory = new JedisConnectionFactory(new RedisStandaloneConfiguration("localhost", redisPort));
+        connectionFactory.afterPropertiesSet();
+        try (var connection = connectionFactory.getConnection()) {
+            connection.flushAll();
+        }
+        store = new TbLwM2mRedisRegistrationStore(connectionFactory);
+    }
+
+    @After
+    public void after() {
+        store.destroy();
+        connectionFactory.destroy();
+    }
+
+    @Test
+    public void testAddRegistration() {
+        Registration registration = newRegistration(5683);
+
+        Assert.assertNull(store.addRegistration(registration));
+
+        Assert.assertEquals(registration.getId(), store.getRegistration(registration.getId()).getId());
+        Assert.assertEquals(registration.getId(), store.getRegistrationByEndpoint(ENDPOINT).getId());
+        Assert.assertEquals(registration.getId(), store.getRegistrationByAdress(registration.getSocketAddress()).getId());
+        Assert.assertEquals(registration.getId(), store.getRegistrationByIdentity(registration.getIdentity()).getId());
+        Assert.assertTrue(store.getAllRegistrations().hasNext());
+        Assert.assertEquals(1L, expirationCount());
+    }
+
+    @Test
+    public void testReplaceRegistration() {
+        Registration first = newRegistration(5683);
+        Registration second = newRegistration(5684);
+        store.addRegistration(first);
+
+        Deregistration deregistration = store.addRegistration(second);
+
+        Assert.assertNotNull(deregistration);
+        Assert.assertEquals(first.getId(), deregistration.getRegistration().getId());
+        Assert.assertNull(store.getRegistration(first.getId()));
+        Assert.assertNull(store.getRegistrationByAdress(first.getSocketAddress()));
+        Assert.assertNull(store.getRegistrationByIdentity(first.getIdentity()));
+        Assert.assertEquals(second.getId(), store.getRegistration(second.getId()).getId());
+        Assert.assertEquals(second.getId(), store.getRegistrationByAdress(second.getSocketAddress()).getId());
+        Assert.assertEquals(1L, expirationCount());
+    }
+
+    @Test
+    public void testUpdateRegistration() {
+        Registration registration = newRegistration(5683);
+        store.addRegistration(registration);
+        Identity newIdentity = Identity.unsecure(new InetSocketAddress("127.0.0.1", 5690));
+
+        UpdatedRegistration updated = store.updateRegistration(newUpdate(registration.getId(), newIdentity));
+
+        Assert.assertNotNull(updated);
+        Assert.assertEquals(newIdentity, updated.getUpdatedRegistration().getIdentity());
+        Assert.assertEquals(registration.getId(), store.getRegistrationByAdress(newIdentity.getPeerAddress()).getId());
+        Assert.assertNull(store.getRegistrationByAdress(registration.getSocketAddress()));
+        Assert.assertNull(store.getRegistrationByIdentity(registration.getIdentity()));
+        Assert.assertNull(store.updateRegistration(newUpdate(UUID.randomUUID().toString(), newIdentity)));
+    }
+
+    @Test
+    public void testRemoveRegistration() {
+        Registration registration = newRegistration(5683);
+        store.addRegistration(registration);
+
+        Deregistration deregistration = store.removeRegistration(registration.getId());
+
+        Assert.assertNotNull(deregistration);
+        Assert.assertEquals(registration.getId(), deregistration.getRegistration().getId());
+        Assert.assertNull(store.getRegistration(registration.getId()));
+        Assert.assertNull(store.getRegistrationByEndpoint(ENDPOINT));
+        Assert.assertNull(store.getRegistrationByAdress(registration.getSocketAddress()));
+        Assert.assertNull(store.getRegistrationByIdentity(registration.getIdentity()));
+        Assert.assertFalse(store.getAllRegistrations().hasNext());
+        Assert.assertEquals(0L, expirationCount());
+        Assert.assertNull(store.removeRegistration(registration.getId()));
+    }
+
+    @Test
+    public void testRemoveOfReplacedRegistrationKeepsNewOne() {
+        Registration first = newRegistration(5683);
+        Registration second = newRegistration(5684);
+        store.addRegistration(first);
+        store.addRegistration(second);
+
+        Assert.assertNull(store.removeRegistration(first.getId()));
+
+        Assert.assertEquals(second.getId(), store.getRegistrationByEndpoint(ENDPOINT).getId());
+        Assert.assertEquals(second.getId(), store.getRegistrationByAdress(second.getSocketAddress()).getId());
+        Assert.assertEquals(second.getId(), store.getRegistrationByIdentity(second.getIdentity()).getId());
+        Assert.assertEquals(1L, expirationCount());
+    }
+
+    @Test
+    public void testConcurrentAddAndRemoveLeaveNoDanglingKeys() throws Exception {
+        int iterations = 200;
+        AtomicReference<String> lastId = new AtomicReference<>();
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> adder = executor.submit(() -> {
+                await(start);
+                for (int i = 0; i < iterations; i++) {
+                    Registration registration = newRegistration(6000 + i);
+                    store.addRegistration(registration);
+                    lastId.set(registration.getId());
+                }
+            });
+            Future<?> remover = executor.submit(() -> {
+                await(start);
+                for (int i = 0; i < iterations; i++) {
+                    String id = lastId.get();
+                    if (id != null) {
+                        store.removeRegistration(id);
+                    }
+                }
+            });
+            start.countDown();
+            adder.get(30, TimeUnit.SECONDS);
+            remover.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        Registration registration = store.getRegistrationByEndpoint(ENDPOINT);
+        try (var connection = connectionFactory.getConnection()) {
+            long regIdIdxCount = countKeys("EP:REGID:*");
+            long addrIdxCount = countKeys("EP:ADDR:*");
+            long identityIdxCount = countKeys("EP:IDENTITY:*");
+            if (registration == null) {
+                Assert.assertEquals(0L, regIdIdxCount);
+                Assert.assertEquals(0L, addrIdxCount);
+                Assert.assertEquals(0L, identityIdxCount);
+                Assert.assertEquals(0L, expirationCount());
+            } else {
+                Assert.assertEquals(1L, regIdIdxCount);
+                Assert.assertEquals(1L, addrIdxCount);
+                Assert.assertEquals(1L, identityIdxCount);
+                Assert.assertEquals(1L, expirationCount());
+                Assert.assertEquals(registration.getId(), store.getRegistrationByAdress(registration.getSocketAddress()).getId());
+                Assert.assertArrayEquals(ENDPOINT.getBytes(UTF_8), connection.get(("EP:REGID:" + registration.getId()).getBytes(UTF_8)));
+            }
+        }
+    }
+
+    @Test
+    public void testAddAndRemoveObservation() {
+        Registration registration = newRegistration(5683);
+        store.addRegistration(registration);
+        org.eclipse.californium.core.observe.Observation first = newObservation(registration, 1, "/3/0/1");
+        org.eclipse.californium.core.observe.Observation second = newObservation(registration, 2, "/3/0/1");
+
+        Assert.assertNull(store.put(first.getRequest().getToken(), first));
+        Assert.assertNull(store.put(second.getRequest().getToken(), second));
+        Collection<Observation> cancelled = store.addObservation(registration.getId(), ObserveUtil.createLwM2mObservation(second.getRequest()));
+
+        Assert.assertEquals(1, cancelled.size());
+        Assert.assertArrayEquals(first.getRequest().getToken().getBytes(), cancelled.iterator().next().getId());
+        Assert.assertNull(store.get(first.getRequest().getToken()));
+        Assert.assertEquals(1, store.getObservations(registration.getId()).size());
+
+        Observation removed = store.removeObservation(registration.getId(), second.getRequest().getToken().getBytes());
+
+        Assert.assertNotNull(removed);
+        Assert.assertTrue(store.getObservations(registration.getId()).isEmpty());
+        Assert.assertEquals(0L, countKeys("OBS:TKN:*"));
+        Assert.assertEquals(0L, countKeys("TKNS:REGID:*"));
+    }
+
+    @Test
+    public void testConcurrentPutAndRemoveObservationsLeaveNoDanglingKeys() throws Exception {
+        Registration registration = newRegistration(5683);
+        store.addRegistration(registration);
+        int iterations = 200;
+        CountDownLatch start = new CountDownLatch(1);
+        ExecutorService executor = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> putter = executor.submit(() -> {
+                await(start);
+                for (int i = 0; i < iterations; i++) {
+                    org.eclipse.californium.core.observe.Observation obs = newObservation(registration, i, "/3/0/" + i);
+                    store.put(obs.getRequest().getToken(), obs);
+                }
+            });
+            Future<?> remover = executor.submit(() -> {
+                await(start);
+                for (int i = 0; i < iterations; i++) {
+                    store.removeObservations(registration.getId());
+                }
+            });
+            start.countDown();
+            putter.get(30, TimeUnit.SECONDS);
+            remover.get(30, TimeUnit.SECONDS);
+        } finally {
+            executor.shutdownNow();
+        }
+
+        try (var connection = connectionFactory.getConnection()) {
+            Set<String> indexed = new HashSet<>();
+            for (byte[] token : connection.lRange(("TKNS:REGID:" + registration.getId()).getBytes(UTF_8), 0, -1)) {
+                indexed.add(new Token(token).getAsString());
+            }
+            Assert.assertEquals(indexed.size(), store.getObservations(registration.getId()).size());
+            for (int i = 0; i < iterations; i++) {
+                Token token = newToken(i);
+                if (store.get(token) != null) {
+                    Assert.assertTrue("Observation " + i + " is not indexed", indexed.contains(token.getAsString()));
+                }
+            }
+        }
+    }
+
+    private org.eclipse.californium.core.observe.Observation newObservation(Registration registration, int token, String path) {
+        ObserveRequest observeRequest = new ObserveRequest(path);
+        Request request = Request.newGet();
+        request.setToken(newToken(token));
+        request.setObserve();
+        request.setURI("coap://127.0.0.1:" + registration.getSocketAddress().getPort() + path);
+        request.setDestinationContext(new AddressEndpointContext(registration.getSocketAddress()));
+        request.setUserContext(ObserveUtil.createCoapObserveRequestContext(registration.getEndpoint(), registration.getId(), observeRequest));
+        return new org.eclipse.californium.core.observe.Observation(request, null);
+    }
+
+    private Token newToken(int token) {
+        return new Token(ByteBuffer.allocate(4).putInt(token).array());
+    }
+
+    private Registration newRegistration(int port) {
+        Identity identity = Identity.unsecure(new InetSocketAddress("127.0.0.1", port));
+        return new Registration.Builder(UUID.randomUUID().toString(), ENDPOINT, identity)
+                .lifeTimeInSec(300L)
+                .bindingMode(EnumSet.of(BindingMode.U))
+                .objectLinks(new Link[]{new Link("/3/0")})
+                .build();
+    }
+
+    private RegistrationUpdate newUpdate(String registrationId, Identity identity) {
+        return new RegistrationUpdate(registrationId, identity, null, null, null, null, null);
+    }
+
+    private long expirationCount() {
+        try (var connection = connectionFactory.getConnection()) {
+            return connection.zCard("EXP:EP".getBytes(UTF_8));
+        }
+    }
+
+    private long countKeys(String pattern) {
+        try (var connection = connectionFactory.getConnection()) {
+            List<byte[]> keys = new ArrayList<>(connection.keys(pattern.getBytes(UTF_8)));
+            return keys.size();
+        }
+    }
+
+    private static void await(CountDownLatch latch) {
+        try {
+            latch.await();
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+}
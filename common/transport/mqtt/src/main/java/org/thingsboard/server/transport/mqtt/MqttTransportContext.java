@@ -55,6 +55,10 @@ public class MqttTransportContext extends TransportContext {
     @Value("${transport.mqtt.ssl.skip_validity_check_for_client_cert:false}")
     private boolean skipValidityCheckForClientCert;
 
+    @Getter
+    @Value("${transport.mqtt.gateway_telemetry_batch:false}")
+    private boolean gatewayTelemetryBatch;
+
     @Getter
     @Setter
     private SslHandler sslHandler;
@@ -16,10 +16,15 @@
 package org.thingsboard.server.transport.mqtt;
 
 import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.PooledByteBufAllocator;
 import io.netty.channel.Channel;
 import io.netty.channel.ChannelOption;
 import io.netty.channel.EventLoopGroup;
+import io.netty.channel.epoll.Epoll;
+import io.netty.channel.epoll.EpollEventLoopGroup;
+import io.netty.channel.epoll.EpollServerSocketChannel;
 import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.ServerSocketChannel;
 import io.netty.channel.socket.nio.NioServerSocketChannel;
 import io.netty.util.ResourceLeakDetector;
 import lombok.extern.slf4j.Slf4j;
@@ -62,6 +67,8 @@ public class MqttTransportService implements TbTransportService {
     private Integer workerGroupThreadCount;
     @Value("${transport.mqtt.netty.so_keep_alive}")
     private boolean keepAlive;
+    @Value("${transport.mqtt.netty.native_transport:false}")
+    private boolean nativeTransport;
 
     @Autowired
     private MqttTransportContext context;
@@ -77,20 +84,36 @@ public class MqttTransportService implements TbTransportService {
         ResourceLeakDetector.setLevel(ResourceLeakDetector.Level.valueOf(leakDetectorLevel.toUpperCase()));
 
         log.info("Starting MQTT transport...");
-        bossGroup = new NioEventLoopGroup(bossGroupThreadCount);
-        workerGroup = new NioEventLoopGroup(workerGroupThreadCount);
+        Class<? extends ServerSocketChannel> channelClass;
+        if (nativeTransport && Epoll.isAvailable()) {
+            log.info("Using native epoll transport");
+            bossGroup = new EpollEventLoopGroup(bossGroupThreadCount);
+            workerGroup = new EpollEventLoopGroup(workerGroupThreadCount);
+            channelClass = EpollServerSocketChannel.class;
+        } else {
+            if (nativeTransport) {
+                log.warn("Native epoll transport is not available, falling back to NIO", Epoll.unavailabilityCause());
+            }
+            bossGroup = new NioEventLoopGroup(bossGroupThreadCount);
+            workerGroup = new NioEventLoopGroup(workerGroupThreadCount);
+            channelClass = NioServerSocketChannel.class;
+        }
         ServerBootstrap b = new ServerBootstrap();
         b.group(bossGroup, workerGroup)
-                .channel(NioServerSocketChannel.class)
+                .channel(channelClass)
                 .childHandler(new MqttTransportServerInitializer(context, false))
+                .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
                 .childOption(ChannelOption.SO_KEEPALIVE, keepAlive);
 
         serverChannel = b.bind(host, port).sync().channel();
         if (sslEnabled) {
             b = new ServerBootstrap();
             b.group(bossGroup, workerGroup)
-                    .channel(NioServerSocketChannel.class)
+                    .channel(channelClass)
                     .childHandler(new MqttTransportServerInitializer(context, true))
+                    .option(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
+                    .childOption(ChannelOption.ALLOCATOR, PooledByteBufAllocator.DEFAULT)
                     .childOption(ChannelOption.SO_KEEPALIVE, keepAlive);
             sslServerChannel = b.bind(sslHost, sslPort).sync().channel();
         }
@@ -17,7 +17,8 @@ package org.thingsboard.server.transport.mqtt.adaptors;
 
 import io.netty.buffer.ByteBuf;
 import io.netty.buffer.ByteBufAllocator;
-import io.netty.buffer.UnpooledByteBufAllocator;
+import io.netty.buffer.PooledByteBufAllocator;
+import io.netty.buffer.Unpooled;
 import io.netty.handler.codec.mqtt.MqttFixedHeader;
 import io.netty.handler.codec.mqtt.MqttMessage;
 import io.netty.handler.codec.mqtt.MqttMessageType;
@@ -46,7 +47,7 @@ import java.util.Optional;
  */
 public interface MqttTransportAdaptor {
 
-    ByteBufAllocator ALLOCATOR = new UnpooledByteBufAllocator(false);
+    ByteBufAllocator ALLOCATOR = PooledByteBufAllocator.DEFAULT;
 
     PostTelemetryMsg convertToPostTelemetry(MqttDeviceAwareSessionContext ctx, MqttPublishMessage inbound) throws AdaptorException;
 
@@ -84,8 +85,7 @@ public interface MqttTransportAdaptor {
         MqttFixedHeader mqttFixedHeader =
                 new MqttFixedHeader(MqttMessageType.PUBLISH, false, ctx.getQoSForTopic(topic), false, 0);
         MqttPublishVariableHeader header = new MqttPublishVariableHeader(topic, ctx.nextMsgId());
-        ByteBuf payload = ALLOCATOR.buffer();
-        payload.writeBytes(payloadInBytes);
+        ByteBuf payload = Unpooled.wrappedBuffer(payloadInBytes);
         return new MqttPublishMessage(mqttFixedHeader, header, payload);
     }
 }
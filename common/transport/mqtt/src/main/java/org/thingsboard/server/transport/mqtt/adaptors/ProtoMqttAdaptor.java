@@ -17,6 +17,7 @@ package org.thingsboard.server.transport.mqtt.adaptors;
 
 import com.google.gson.JsonElement;
 import com.google.gson.JsonParser;
+import com.google.protobuf.CodedInputStream;
 import com.google.protobuf.Descriptors;
 import com.google.protobuf.DynamicMessage;
 import com.google.protobuf.InvalidProtocolBufferException;
@@ -37,6 +38,8 @@ import org.thingsboard.server.gen.transport.TransportProtos;
 import org.thingsboard.server.transport.mqtt.session.DeviceSessionCtx;
 import org.thingsboard.server.transport.mqtt.session.MqttDeviceAwareSessionContext;
 
+import java.io.IOException;
+import java.nio.ByteBuffer;
 import java.util.Optional;
 
 import static org.thingsboard.server.common.data.device.profile.MqttTopics.DEVICE_SOFTWARE_FIRMWARE_RESPONSES_TOPIC_FORMAT;
@@ -48,10 +51,9 @@ public class ProtoMqttAdaptor implements MqttTransportAdaptor {
     @Override
     public TransportProtos.PostTelemetryMsg convertToPostTelemetry(MqttDeviceAwareSessionContext ctx, MqttPublishMessage inbound) throws AdaptorException {
         DeviceSessionCtx deviceSessionCtx = (DeviceSessionCtx) ctx;
-        byte[] bytes = toBytes(inbound.payload());
         Descriptors.Descriptor telemetryDynamicMsgDescriptor = getDescriptor(deviceSessionCtx.getTelemetryDynamicMsgDescriptor());
         try {
-            return JsonConverter.convertToTelemetryProto(new JsonParser().parse(dynamicMsgToJson(bytes, telemetryDynamicMsgDescriptor)));
+            return JsonConverter.convertToTelemetryProto(new JsonParser().parse(dynamicMsgToJson(inbound.payload(), telemetryDynamicMsgDescriptor)));
         } catch (Exception e) {
             throw new AdaptorException(e);
         }
@@ -60,10 +62,9 @@ public class ProtoMqttAdaptor implements MqttTransportAdaptor {
     @Override
     public TransportProtos.PostAttributeMsg convertToPostAttributes(MqttDeviceAwareSessionContext ctx, MqttPublishMessage inbound) throws AdaptorException {
         DeviceSessionCtx deviceSessionCtx = (DeviceSessionCtx) ctx;
-        byte[] bytes = toBytes(inbound.payload());
         Descriptors.Descriptor attributesDynamicMessageDescriptor = getDescriptor(deviceSessionCtx.getAttributesDynamicMessageDescriptor());
         try {
-            return JsonConverter.convertToAttributesProto(new JsonParser().parse(dynamicMsgToJson(bytes, attributesDynamicMessageDescriptor)));
+            return JsonConverter.convertToAttributesProto(new JsonParser().parse(dynamicMsgToJson(inbound.payload(), attributesDynamicMessageDescriptor)));
         } catch (Exception e) {
             throw new AdaptorException(e);
         }
@@ -96,11 +97,10 @@ public class ProtoMqttAdaptor implements MqttTransportAdaptor {
     public TransportProtos.ToDeviceRpcResponseMsg convertToDeviceRpcResponse(MqttDeviceAwareSessionContext ctx, MqttPublishMessage mqttMsg) throws AdaptorException {
         DeviceSessionCtx deviceSessionCtx = (DeviceSessionCtx) ctx;
         String topicName = mqttMsg.variableHeader().topicName();
-        byte[] bytes = toBytes(mqttMsg.payload());
         Descriptors.Descriptor rpcResponseDynamicMessageDescriptor = getDescriptor(deviceSessionCtx.getRpcResponseDynamicMessageDescriptor());
         try {
             int requestId = getRequestId(topicName, MqttTopics.DEVICE_RPC_RESPONSE_TOPIC);
-            JsonElement response = new JsonParser().parse(dynamicMsgToJson(bytes, rpcResponseDynamicMessageDescriptor));
+            JsonElement response = new JsonParser().parse(dynamicMsgToJson(mqttMsg.payload(), rpcResponseDynamicMessageDescriptor));
             return TransportProtos.ToDeviceRpcResponseMsg.newBuilder().setRequestId(requestId).setPayload(response.toString()).build();
         } catch (Exception e) {
             log.warn("Failed to decode Rpc response", e);
@@ -210,6 +210,14 @@ public class ProtoMqttAdaptor implements MqttTransportAdaptor {
         return bytes;
     }
 
+    /**
+     * Returns a view of the readable bytes without copying them.
+     * The view is valid only until the inbound message is released, so it must be parsed synchronously.
+     */
+    public static ByteBuffer toByteBuffer(ByteBuf inbound) {
+        return inbound.nioBuffer();
+    }
+
     private int getRequestId(String topicName, String topic) {
         return Integer.parseInt(topicName.substring(topic.length()));
     }
@@ -221,8 +229,8 @@ public class ProtoMqttAdaptor implements MqttTransportAdaptor {
         return descriptor;
     }
 
-    private String dynamicMsgToJson(byte[] bytes, Descriptors.Descriptor descriptor) throws InvalidProtocolBufferException {
-        DynamicMessage dynamicMessage = DynamicMessage.parseFrom(descriptor, bytes);
+    private String dynamicMsgToJson(ByteBuf payload, Descriptors.Descriptor descriptor) throws IOException {
+        DynamicMessage dynamicMessage = DynamicMessage.parseFrom(descriptor, CodedInputStream.newInstance(toByteBuffer(payload)));
         return JsonFormat.printer().includingDefaultValueFields().print(dynamicMessage);
     }
 
@@ -33,9 +33,9 @@ import org.thingsboard.server.transport.mqtt.MqttTransportContext;
 import org.thingsboard.server.transport.mqtt.adaptors.MqttTransportAdaptor;
 import org.thingsboard.server.transport.mqtt.util.MqttTopicFilter;
 import org.thingsboard.server.transport.mqtt.util.MqttTopicFilterFactory;
+import org.thingsboard.server.transport.mqtt.util.MqttTopicTrie;
 
 import java.util.UUID;
-import java.util.concurrent.ConcurrentMap;
 import java.util.concurrent.atomic.AtomicInteger;
 
 /**
@@ -68,7 +68,7 @@ public class DeviceSessionCtx extends MqttDeviceAwareSessionContext {
     @Setter
     private TransportPayloadType provisionPayloadType = payloadType;
 
-    public DeviceSessionCtx(UUID sessionId, ConcurrentMap<MqttTopicMatcher, Integer> mqttQoSMap, MqttTransportContext context) {
+    public DeviceSessionCtx(UUID sessionId, MqttTopicTrie<Integer> mqttQoSMap, MqttTransportContext context) {
         super(sessionId, mqttQoSMap);
         this.context = context;
     }
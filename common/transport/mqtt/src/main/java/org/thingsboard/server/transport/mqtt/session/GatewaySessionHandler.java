@@ -53,10 +53,14 @@ import org.thingsboard.server.transport.mqtt.MqttTransportHandler;
 import org.thingsboard.server.transport.mqtt.adaptors.JsonMqttAdaptor;
 import org.thingsboard.server.transport.mqtt.adaptors.MqttTransportAdaptor;
 import org.thingsboard.server.transport.mqtt.adaptors.ProtoMqttAdaptor;
+import org.thingsboard.server.transport.mqtt.util.MqttTopicTrie;
 
 import javax.annotation.Nullable;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
@@ -83,7 +87,7 @@ public class GatewaySessionHandler {
     private final ConcurrentMap<String, Lock> deviceCreationLockMap;
     private final ConcurrentMap<String, GatewayDeviceSessionCtx> devices;
     private final ConcurrentMap<String, SettableFuture<GatewayDeviceSessionCtx>> deviceFutures;
-    private final ConcurrentMap<MqttTopicMatcher, Integer> mqttQoSMap;
+    private final MqttTopicTrie<Integer> mqttQoSMap;
     private final ChannelHandlerContext channel;
     private final DeviceSessionCtx deviceSessionCtx;
 
@@ -306,7 +310,7 @@ public class GatewaySessionHandler {
 
     private void onDeviceConnectProto(MqttPublishMessage mqttMsg) throws AdaptorException {
         try {
-            TransportApiProtos.ConnectMsg connectProto = TransportApiProtos.ConnectMsg.parseFrom(getBytes(mqttMsg.payload()));
+            TransportApiProtos.ConnectMsg connectProto = TransportApiProtos.ConnectMsg.parseFrom(getByteBuffer(mqttMsg.payload()));
             String deviceName = checkDeviceName(connectProto.getDeviceName());
             String deviceType = StringUtils.isEmpty(connectProto.getDeviceType()) ? DEFAULT_DEVICE_TYPE : connectProto.getDeviceType();
             processOnConnect(mqttMsg, deviceName, deviceType);
@@ -322,7 +326,7 @@ public class GatewaySessionHandler {
 
     private void onDeviceDisconnectProto(MqttPublishMessage mqttMsg) throws AdaptorException {
         try {
-            TransportApiProtos.DisconnectMsg connectProto = TransportApiProtos.DisconnectMsg.parseFrom(getBytes(mqttMsg.payload()));
+            TransportApiProtos.DisconnectMsg connectProto = TransportApiProtos.DisconnectMsg.parseFrom(getByteBuffer(mqttMsg.payload()));
             String deviceName = checkDeviceName(connectProto.getDeviceName());
             processOnDisconnect(mqttMsg, deviceName);
         } catch (RuntimeException | InvalidProtocolBufferException e) {
@@ -339,6 +343,22 @@ public class GatewaySessionHandler {
         JsonElement json = JsonMqttAdaptor.validateJsonPayload(sessionId, payload);
         if (json.isJsonObject()) {
             JsonObject jsonObj = json.getAsJsonObject();
+            if (context.isGatewayTelemetryBatch()) {
+                Map<String, TransportProtos.PostTelemetryMsg> deviceMsgs = new LinkedHashMap<>();
+                for (Map.Entry<String, JsonElement> deviceEntry : jsonObj.entrySet()) {
+                    String deviceName = deviceEntry.getKey();
+                    try {
+                        if (!deviceEntry.getValue().isJsonArray()) {
+                            throw new JsonSyntaxException(CAN_T_PARSE_VALUE + json);
+                        }
+                        addDeviceTelemetry(deviceMsgs, deviceName, JsonConverter.convertToTelemetryProto(deviceEntry.getValue().getAsJsonArray()));
+                    } catch (Throwable e) {
+                        log.warn("[{}][{}] Failed to convert telemetry: {}", gateway.getDeviceId(), deviceName, deviceEntry.getValue(), e);
+                    }
+                }
+                processPostTelemetryBatch(deviceMsgs, msgId);
+                return;
+            }
             for (Map.Entry<String, JsonElement> deviceEntry : jsonObj.entrySet()) {
                 String deviceName = deviceEntry.getKey();
                 Futures.addCallback(checkDeviceConnected(deviceName),
@@ -369,9 +389,21 @@ public class GatewaySessionHandler {
 
     private void onDeviceTelemetryProto(int msgId, ByteBuf payload) throws AdaptorException {
         try {
-            TransportApiProtos.GatewayTelemetryMsg telemetryMsgProto = TransportApiProtos.GatewayTelemetryMsg.parseFrom(getBytes(payload));
+            TransportApiProtos.GatewayTelemetryMsg telemetryMsgProto = TransportApiProtos.GatewayTelemetryMsg.parseFrom(getByteBuffer(payload));
             List<TransportApiProtos.TelemetryMsg> deviceMsgList = telemetryMsgProto.getMsgList();
-            if (!CollectionUtils.isEmpty(deviceMsgList)) {
+            if (!CollectionUtils.isEmpty(deviceMsgList) && context.isGatewayTelemetryBatch()) {
+                Map<String, TransportProtos.PostTelemetryMsg> deviceMsgs = new LinkedHashMap<>();
+                for (TransportApiProtos.TelemetryMsg telemetryMsg : deviceMsgList) {
+                    String deviceName = checkDeviceName(telemetryMsg.getDeviceName());
+                    TransportProtos.PostTelemetryMsg msg = telemetryMsg.getMsg();
+                    try {
+                        addDeviceTelemetry(deviceMsgs, deviceName, ProtoConverter.validatePostTelemetryMsg(msg.toByteArray()));
+                    } catch (Throwable e) {
+                        log.warn("[{}][{}] Failed to convert telemetry: {}", gateway.getDeviceId(), deviceName, msg, e);
+                    }
+                }
+                processPostTelemetryBatch(deviceMsgs, msgId);
+            } else if (!CollectionUtils.isEmpty(deviceMsgList)) {
                 deviceMsgList.forEach(telemetryMsg -> {
                     String deviceName = checkDeviceName(telemetryMsg.getDeviceName());
                     Futures.addCallback(checkDeviceConnected(deviceName),
@@ -406,6 +438,44 @@ public class GatewaySessionHandler {
         transportService.process(deviceCtx.getSessionInfo(), postTelemetryMsg, getPubAckCallback(channel, deviceName, msgId, postTelemetryMsg));
     }
 
+    private static void addDeviceTelemetry(Map<String, TransportProtos.PostTelemetryMsg> deviceMsgs, String deviceName, TransportProtos.PostTelemetryMsg msg) {
+        deviceMsgs.merge(deviceName, msg, (existing, added) -> existing.toBuilder().addAllTsKvList(added.getTsKvListList()).build());
+    }
+
+    private void processPostTelemetryBatch(Map<String, TransportProtos.PostTelemetryMsg> deviceMsgs, int msgId) {
+        List<String> deviceNames = new ArrayList<>(deviceMsgs.keySet());
+        List<ListenableFuture<GatewayDeviceSessionCtx>> deviceCtxFutures = new ArrayList<>(deviceNames.size());
+        for (String deviceName : deviceNames) {
+            deviceCtxFutures.add(checkDeviceConnected(deviceName));
+        }
+        Futures.addCallback(Futures.successfulAsList(deviceCtxFutures),
+                new FutureCallback<List<GatewayDeviceSessionCtx>>() {
+                    @Override
+                    public void onSuccess(@Nullable List<GatewayDeviceSessionCtx> deviceCtxs) {
+                        TransportProtos.PostTelemetryBatchMsg.Builder batchMsg = TransportProtos.PostTelemetryBatchMsg.newBuilder();
+                        for (int i = 0; i < deviceNames.size(); i++) {
+                            String deviceName = deviceNames.get(i);
+                            GatewayDeviceSessionCtx deviceCtx = deviceCtxs.get(i);
+                            if (deviceCtx == null) {
+                                log.debug("[{}] Failed to process device telemetry command: {}", sessionId, deviceName);
+                                continue;
+                            }
+                            batchMsg.addMsgs(TransportProtos.SessionPostTelemetryMsg.newBuilder()
+                                    .setSessionInfo(deviceCtx.getSessionInfo())
+                                    .setMsg(deviceMsgs.get(deviceName))
+                                    .build());
+                        }
+                        TransportProtos.PostTelemetryBatchMsg msg = batchMsg.build();
+                        transportService.process(msg, getPubAckCallback(channel, gateway.getDeviceName(), msgId, msg));
+                    }
+
+                    @Override
+                    public void onFailure(Throwable t) {
+                        log.debug("[{}] Failed to process devices telemetry command: {}", sessionId, deviceNames, t);
+                    }
+                }, context.getExecutor());
+    }
+
     private void onDeviceClaimJson(int msgId, ByteBuf payload) throws AdaptorException {
         JsonElement json = JsonMqttAdaptor.validateJsonPayload(sessionId, payload);
         if (json.isJsonObject()) {
@@ -441,7 +511,7 @@ public class GatewaySessionHandler {
 
     private void onDeviceClaimProto(int msgId, ByteBuf payload) throws AdaptorException {
         try {
-            TransportApiProtos.GatewayClaimMsg claimMsgProto = TransportApiProtos.GatewayClaimMsg.parseFrom(getBytes(payload));
+            TransportApiProtos.GatewayClaimMsg claimMsgProto = TransportApiProtos.GatewayClaimMsg.parseFrom(getByteBuffer(payload));
             List<TransportApiProtos.ClaimDeviceMsg> claimMsgList = claimMsgProto.getMsgList();
             if (!CollectionUtils.isEmpty(claimMsgList)) {
                 claimMsgList.forEach(claimDeviceMsg -> {
@@ -512,7 +582,7 @@ public class GatewaySessionHandler {
 
     private void onDeviceAttributesProto(int msgId, ByteBuf payload) throws AdaptorException {
         try {
-            TransportApiProtos.GatewayAttributesMsg attributesMsgProto = TransportApiProtos.GatewayAttributesMsg.parseFrom(getBytes(payload));
+            TransportApiProtos.GatewayAttributesMsg attributesMsgProto = TransportApiProtos.GatewayAttributesMsg.parseFrom(getByteBuffer(payload));
             List<TransportApiProtos.AttributesMsg> attributesMsgList = attributesMsgProto.getMsgList();
             if (!CollectionUtils.isEmpty(attributesMsgList)) {
                 attributesMsgList.forEach(attributesMsg -> {
@@ -578,7 +648,7 @@ public class GatewaySessionHandler {
 
     private void onDeviceAttributesRequestProto(MqttPublishMessage mqttMsg) throws AdaptorException {
         try {
-            TransportApiProtos.GatewayAttributesRequestMsg gatewayAttributesRequestMsg = TransportApiProtos.GatewayAttributesRequestMsg.parseFrom(getBytes(mqttMsg.payload()));
+            TransportApiProtos.GatewayAttributesRequestMsg gatewayAttributesRequestMsg = TransportApiProtos.GatewayAttributesRequestMsg.parseFrom(getByteBuffer(mqttMsg.payload()));
             String deviceName = checkDeviceName(gatewayAttributesRequestMsg.getDeviceName());
             int requestId = gatewayAttributesRequestMsg.getId();
             boolean clientScope = gatewayAttributesRequestMsg.getClient();
@@ -619,7 +689,7 @@ public class GatewaySessionHandler {
 
     private void onDeviceRpcResponseProto(int msgId, ByteBuf payload) throws AdaptorException {
         try {
-            TransportApiProtos.GatewayRpcResponseMsg gatewayRpcResponseMsg = TransportApiProtos.GatewayRpcResponseMsg.parseFrom(getBytes(payload));
+            TransportApiProtos.GatewayRpcResponseMsg gatewayRpcResponseMsg = TransportApiProtos.GatewayRpcResponseMsg.parseFrom(getByteBuffer(payload));
             String deviceName = checkDeviceName(gatewayRpcResponseMsg.getDeviceName());
             Futures.addCallback(checkDeviceConnected(deviceName),
                     new FutureCallback<GatewayDeviceSessionCtx>() {
@@ -706,8 +776,8 @@ public class GatewaySessionHandler {
         return JsonMqttAdaptor.validateJsonPayload(sessionId, mqttMsg.payload());
     }
 
-    private byte[] getBytes(ByteBuf payload) {
-        return ProtoMqttAdaptor.toBytes(payload);
+    private ByteBuffer getByteBuffer(ByteBuf payload) {
+        return ProtoMqttAdaptor.toByteBuffer(payload);
     }
 
     private void ack(MqttPublishMessage msg) {
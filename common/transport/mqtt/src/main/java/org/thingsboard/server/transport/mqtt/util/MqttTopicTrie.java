@@ -0,0 +1,202 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.mqtt.util;
+
+import java.util.function.BinaryOperator;
+
+/**
+ * Thread-safe trie of MQTT topic filters with '+' and '#' wildcard support.
+ * Updates are synchronized and copy-on-write, so lookups are lock-free and do not allocate.
+ * A level that contains a wildcard character together with other characters is matched literally.
+ */
+public class MqttTopicTrie<T> {
+
+    private static final String SINGLE_LEVEL_WILDCARD = "+";
+    private static final String MULTI_LEVEL_WILDCARD = "#";
+    private static final char LEVEL_SEPARATOR = '/';
+
+    private final Node<T> root = new Node<>("");
+
+    public synchronized void put(String topicFilter, T value) {
+        if (value == null) {
+            throw new IllegalArgumentException("Value can't be null!");
+        }
+        String[] levels = toLevels(topicFilter);
+        Node<T> node = root;
+        for (int i = 0; i < levels.length; i++) {
+            String level = levels[i];
+            if (MULTI_LEVEL_WILDCARD.equals(level) && i == levels.length - 1) {
+                node.multiLevelValue = value;
+                return;
+            }
+            node = node.getOrCreateChild(level);
+        }
+        node.value = value;
+    }
+
+    public synchronized T remove(String topicFilter) {
+        return remove(root, toLevels(topicFilter), 0);
+    }
+
+    public boolean isEmpty() {
+        return root.isEmpty();
+    }
+
+    /**
+     * Returns true if at least one topic filter matches the topic.
+     */
+    public boolean matches(String topic) {
+        return match(topic, (a, b) -> a) != null;
+    }
+
+    /**
+     * Returns the values of all topic filters that match the topic, combined with the merge function,
+     * or null if there is no matching filter.
+     */
+    public T match(String topic, BinaryOperator<T> merge) {
+        return match(root, topic, 0, merge, null);
+    }
+
+    private T match(Node<T> node, String topic, int start, BinaryOperator<T> merge, T result) {
+        result = merge(merge, result, node.multiLevelValue);
+        if (start < 0) {
+            return merge(merge, result, node.value);
+        }
+        int end = topic.indexOf(LEVEL_SEPARATOR, start);
+        int next;
+        if (end < 0) {
+            end = topic.length();
+            next = -1;
+        } else {
+            next = end + 1;
+        }
+        Node<T> child = node.findChild(topic, start, end);
+        if (child != null) {
+            result = match(child, topic, next, merge, result);
+        }
+        Node<T> singleLevelChild = node.singleLevelChild;
+        if (singleLevelChild != null) {
+            result = match(singleLevelChild, topic, next, merge, result);
+        }
+        return result;
+    }
+
+    private T remove(Node<T> node, String[] levels, int idx) {
+        String level = levels[idx];
+        if (MULTI_LEVEL_WILDCARD.equals(level) && idx == levels.length - 1) {
+            T removed = node.multiLevelValue;
+            node.multiLevelValue = null;
+            return removed;
+        }
+        Node<T> child = SINGLE_LEVEL_WILDCARD.equals(level) ? node.singleLevelChild : node.findChild(level, 0, level.length());
+        if (child == null) {
+            return null;
+        }
+        T removed;
+        if (idx == levels.length - 1) {
+            removed = child.value;
+            child.value = null;
+        } else {
+            removed = remove(child, levels, idx + 1);
+        }
+        if (child.isEmpty()) {
+            node.removeChild(child);
+        }
+        return removed;
+    }
+
+    private static String[] toLevels(String topicFilter) {
+        if (topicFilter == null || topicFilter.isEmpty()) {
+            throw new IllegalArgumentException("Topic filter can't be empty!");
+        }
+        return topicFilter.split(String.valueOf(LEVEL_SEPARATOR), -1);
+    }
+
+    private static <T> T merge(BinaryOperator<T> merge, T result, T value) {
+        if (value == null) {
+            return result;
+        } else if (result == null) {
+            return value;
+        } else {
+            return merge.apply(result, value);
+        }
+    }
+
+    private static class Node<T> {
+
+        private static final Node<?>[] NO_CHILDREN = new Node<?>[0];
+
+        private final String level;
+        private volatile Node<?>[] children = NO_CHILDREN;
+        private volatile Node<T> singleLevelChild;
+        private volatile T multiLevelValue;
+        private volatile T value;
+
+        private Node(String level) {
+            this.level = level;
+        }
+
+        @SuppressWarnings("unchecked")
+        private Node<T> findChild(String topic, int start, int end) {
+            int length = end - start;
+            for (Node<?> child : children) {
+                if (child.level.length() == length && topic.regionMatches(start, child.level, 0, length)) {
+                    return (Node<T>) child;
+                }
+            }
+            return null;
+        }
+
+        private Node<T> getOrCreateChild(String level) {
+            if (SINGLE_LEVEL_WILDCARD.equals(level)) {
+                if (singleLevelChild == null) {
+                    singleLevelChild = new Node<>(level);
+                }
+                return singleLevelChild;
+            }
+            Node<T> child = findChild(level, 0, level.length());
+            if (child == null) {
+                child = new Node<>(level);
+                Node<?>[] newChildren = new Node<?>[children.length + 1];
+                System.arraycopy(children, 0, newChildren, 0, children.length);
+                newChildren[children.length] = child;
+                children = newChildren;
+            }
+            return child;
+        }
+
+        private void removeChild(Node<T> child) {
+            if (child == singleLevelChild) {
+                singleLevelChild = null;
+                return;
+            }
+            Node<?>[] current = children;
+            for (int i = 0; i < current.length; i++) {
+                if (current[i] == child) {
+                    Node<?>[] newChildren = new Node<?>[current.length - 1];
+                    System.arraycopy(current, 0, newChildren, 0, i);
+                    System.arraycopy(current, i + 1, newChildren, i, current.length - i - 1);
+                    children = newChildren;
+                    return;
+                }
+            }
+        }
+
+        private boolean isEmpty() {
+            return value == null && multiLevelValue == null && singleLevelChild == null && children.length == 0;
+        }
+    }
+}
@@ -17,19 +17,20 @@ package org.thingsboard.server.transport.mqtt.util;
 
 import lombok.Data;
 
-import java.util.regex.Pattern;
-
 @Data
-public class RegexTopicFilter implements MqttTopicFilter {
+public class WildcardTopicFilter implements MqttTopicFilter {
 
-    private final Pattern regex;
+    private final String filter;
+    private final MqttTopicTrie<Boolean> trie;
 
-    public RegexTopicFilter(String regex) {
-        this.regex = Pattern.compile(regex);
+    public WildcardTopicFilter(String filter) {
+        this.filter = filter;
+        this.trie = new MqttTopicTrie<>();
+        this.trie.put(filter, Boolean.TRUE);
     }
 
     @Override
     public boolean filter(String topic) {
-        return regex.matcher(topic).matches();
+        return trie.matches(topic);
     }
 }
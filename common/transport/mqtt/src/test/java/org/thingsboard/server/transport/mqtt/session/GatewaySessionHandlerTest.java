@@ -0,0 +1,208 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.mqtt.session;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttPublishVariableHeader;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.thingsboard.server.common.data.DeviceProfile;
+import org.thingsboard.server.common.data.device.profile.DefaultDeviceProfileTransportConfiguration;
+import org.thingsboard.server.common.data.device.profile.DeviceProfileData;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.DeviceProfileId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.transport.TransportService;
+import org.thingsboard.server.common.transport.TransportServiceCallback;
+import org.thingsboard.server.common.transport.auth.GetOrCreateDeviceFromGatewayResponse;
+import org.thingsboard.server.common.transport.auth.TransportDeviceInfo;
+import org.thingsboard.server.gen.transport.TransportApiProtos;
+import org.thingsboard.server.gen.transport.TransportProtos;
+import org.thingsboard.server.transport.mqtt.MqttTransportContext;
+import org.thingsboard.server.transport.mqtt.util.MqttTopicTrie;
+
+import java.nio.charset.StandardCharsets;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.argThat;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class GatewaySessionHandlerTest {
+
+    private static final String TELEMETRY_TOPIC = "v1/gateway/telemetry";
+
+    @Mock
+    private DeviceSessionCtx gatewaySessionCtx;
+    @Mock
+    private MqttTransportContext context;
+    @Mock
+    private TransportService transportService;
+    @Mock
+    private ChannelHandlerContext channel;
+
+    private GatewaySessionHandler handler;
+
+    @Before
+    public void before() {
+        TransportDeviceInfo gatewayInfo = deviceInfo("Gateway");
+        when(gatewaySessionCtx.getContext()).thenReturn(context);
+        when(gatewaySessionCtx.getDeviceInfo()).thenReturn(gatewayInfo);
+        when(gatewaySessionCtx.getMqttQoSMap()).thenReturn(new MqttTopicTrie<>());
+        when(gatewaySessionCtx.getChannel()).thenReturn(channel);
+        when(context.getTransportService()).thenReturn(transportService);
+        when(context.getExecutor()).thenReturn(MoreExecutors.newDirectExecutorService());
+        when(context.getNodeId()).thenReturn("test-node");
+        when(context.isGatewayTelemetryBatch()).thenReturn(true);
+        doAnswer(invocation -> {
+            TransportProtos.GetOrCreateDeviceFromGatewayRequestMsg request = invocation.getArgument(0);
+            TransportServiceCallback<GetOrCreateDeviceFromGatewayResponse> callback = invocation.getArgument(1);
+            if (request.getDeviceName().startsWith("Failing")) {
+                callback.onError(new RuntimeException("Failed to create device"));
+            } else {
+                callback.onSuccess(GetOrCreateDeviceFromGatewayResponse.builder()
+                        .deviceInfo(deviceInfo(request.getDeviceName()))
+                        .deviceProfile(deviceProfile())
+                        .build());
+            }
+            return null;
+        }).when(transportService).process(any(TransportProtos.GetOrCreateDeviceFromGatewayRequestMsg.class), any());
+        handler = new GatewaySessionHandler(gatewaySessionCtx, UUID.randomUUID());
+    }
+
+    @Test
+    public void testProtoTelemetryOfRepeatedDeviceIsMerged() throws Exception {
+        when(gatewaySessionCtx.isJsonPayloadType()).thenReturn(false);
+        TransportApiProtos.GatewayTelemetryMsg gatewayMsg = TransportApiProtos.GatewayTelemetryMsg.newBuilder()
+                .addMsg(telemetryMsg("Device A", 1L, "temperature", 20))
+                .addMsg(telemetryMsg("Device B", 1L, "temperature", 30))
+                .addMsg(telemetryMsg("Device A", 2L, "humidity", 40))
+                .build();
+
+        handler.onDeviceTelemetry(publishMsg(gatewayMsg.toByteArray()));
+
+        TransportProtos.PostTelemetryBatchMsg batchMsg = captureBatch();
+        assertEquals(2, batchMsg.getMsgsCount());
+        TransportProtos.SessionPostTelemetryMsg deviceA = batchMsg.getMsgs(0);
+        assertEquals("Device A", deviceA.getSessionInfo().getDeviceName());
+        assertEquals(2, deviceA.getMsg().getTsKvListCount());
+        assertEquals(1L, deviceA.getMsg().getTsKvList(0).getTs());
+        assertEquals("temperature", deviceA.getMsg().getTsKvList(0).getKv(0).getKey());
+        assertEquals(2L, deviceA.getMsg().getTsKvList(1).getTs());
+        assertEquals("humidity", deviceA.getMsg().getTsKvList(1).getKv(0).getKey());
+        assertEquals("Device B", batchMsg.getMsgs(1).getSessionInfo().getDeviceName());
+        assertEquals(1, batchMsg.getMsgs(1).getMsg().getTsKvListCount());
+        verify(transportService, times(1)).process(argThat((TransportProtos.GetOrCreateDeviceFromGatewayRequestMsg request) ->
+                "Device A".equals(request.getDeviceName())), any());
+    }
+
+    @Test
+    public void testJsonTelemetryIsSentAsSingleBatchAndAcked() throws Exception {
+        when(gatewaySessionCtx.isJsonPayloadType()).thenReturn(true);
+        String json = "{\"Device A\": [{\"ts\": 1, \"values\": {\"temperature\": 20}}]," +
+                "\"Device B\": [{\"ts\": 1, \"values\": {\"temperature\": 30}}, {\"ts\": 2, \"values\": {\"temperature\": 31}}]}";
+
+        handler.onDeviceTelemetry(publishMsg(json.getBytes(StandardCharsets.UTF_8)));
+
+        ArgumentCaptor<TransportServiceCallback<Void>> callbackCaptor = ArgumentCaptor.forClass(TransportServiceCallback.class);
+        ArgumentCaptor<TransportProtos.PostTelemetryBatchMsg> batchCaptor = ArgumentCaptor.forClass(TransportProtos.PostTelemetryBatchMsg.class);
+        verify(transportService).process(batchCaptor.capture(), callbackCaptor.capture());
+        TransportProtos.PostTelemetryBatchMsg batchMsg = batchCaptor.getValue();
+        assertEquals(2, batchMsg.getMsgsCount());
+        assertEquals("Device A", batchMsg.getMsgs(0).getSessionInfo().getDeviceName());
+        assertEquals("Device B", batchMsg.getMsgs(1).getSessionInfo().getDeviceName());
+        assertEquals(2, batchMsg.getMsgs(1).getMsg().getTsKvListCount());
+
+        verify(channel, never()).writeAndFlush(any());
+        callbackCaptor.getValue().onSuccess(null);
+        verify(channel, times(1)).writeAndFlush(any());
+    }
+
+    @Test
+    public void testDeviceThatFailedToConnectIsSkipped() throws Exception {
+        when(gatewaySessionCtx.isJsonPayloadType()).thenReturn(false);
+        TransportApiProtos.GatewayTelemetryMsg gatewayMsg = TransportApiProtos.GatewayTelemetryMsg.newBuilder()
+                .addMsg(telemetryMsg("Failing device", 1L, "temperature", 20))
+                .addMsg(telemetryMsg("Device B", 1L, "temperature", 30))
+                .build();
+
+        handler.onDeviceTelemetry(publishMsg(gatewayMsg.toByteArray()));
+
+        TransportProtos.PostTelemetryBatchMsg batchMsg = captureBatch();
+        assertEquals(1, batchMsg.getMsgsCount());
+        assertEquals("Device B", batchMsg.getMsgs(0).getSessionInfo().getDeviceName());
+    }
+
+    private TransportProtos.PostTelemetryBatchMsg captureBatch() {
+        ArgumentCaptor<TransportProtos.PostTelemetryBatchMsg> batchCaptor = ArgumentCaptor.forClass(TransportProtos.PostTelemetryBatchMsg.class);
+        verify(transportService).process(batchCaptor.capture(), any());
+        return batchCaptor.getValue();
+    }
+
+    private static MqttPublishMessage publishMsg(byte[] payload) {
+        return new MqttPublishMessage(new MqttFixedHeader(MqttMessageType.PUBLISH, false, MqttQoS.AT_LEAST_ONCE, false, 0),
+                new MqttPublishVariableHeader(TELEMETRY_TOPIC, 1), Unpooled.wrappedBuffer(payload));
+    }
+
+    private static TransportApiProtos.TelemetryMsg telemetryMsg(String deviceName, long ts, String key, long value) {
+        return TransportApiProtos.TelemetryMsg.newBuilder()
+                .setDeviceName(deviceName)
+                .setMsg(TransportProtos.PostTelemetryMsg.newBuilder()
+                        .addTsKvList(TransportProtos.TsKvListProto.newBuilder()
+                                .setTs(ts)
+                                .addKv(TransportProtos.KeyValueProto.newBuilder()
+                                        .setKey(key)
+                                        .setType(TransportProtos.KeyValueType.LONG_V)
+                                        .setLongV(value))))
+                .build();
+    }
+
+    private static TransportDeviceInfo deviceInfo(String deviceName) {
+        TransportDeviceInfo deviceInfo = new TransportDeviceInfo();
+        deviceInfo.setTenantId(new TenantId(UUID.randomUUID()));
+        deviceInfo.setCustomerId(new CustomerId(UUID.randomUUID()));
+        deviceInfo.setDeviceProfileId(new DeviceProfileId(UUID.randomUUID()));
+        deviceInfo.setDeviceId(new DeviceId(UUID.randomUUID()));
+        deviceInfo.setDeviceName(deviceName);
+        deviceInfo.setDeviceType("default");
+        return deviceInfo;
+    }
+
+    private static DeviceProfile deviceProfile() {
+        DeviceProfileData profileData = new DeviceProfileData();
+        profileData.setTransportConfiguration(new DefaultDeviceProfileTransportConfiguration());
+        DeviceProfile deviceProfile = new DeviceProfile();
+        deviceProfile.setProfileData(profileData);
+        return deviceProfile;
+    }
+}
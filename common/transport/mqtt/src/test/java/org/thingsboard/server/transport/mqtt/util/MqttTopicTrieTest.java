@@ -0,0 +1,70 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.transport.mqtt.util;
+
+import org.junit.Test;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MqttTopicTrieTest {
+
+    @Test
+    public void testWildcardMatching() {
+        MqttTopicTrie<Integer> trie = new MqttTopicTrie<>();
+        trie.put("v1/devices/me/rpc/request/+", 1);
+        trie.put("v1/devices/me/attributes", 0);
+
+        assertTrue(trie.matches("v1/devices/me/rpc/request/42"));
+        assertFalse(trie.matches("v1/devices/me/rpc/request/42/extra"));
+        assertTrue(trie.matches("v1/devices/me/attributes"));
+        assertFalse(trie.matches("v1/devices/me/attributes/response/1"));
+
+        trie.put("v1/devices/me/#", 0);
+        assertTrue(trie.matches("v1/devices/me"));
+        assertTrue(trie.matches("v1/devices/me/attributes/response/1"));
+        assertFalse(trie.matches("v1/devices/other"));
+    }
+
+    @Test
+    public void testMatchMergesAllMatchingFilters() {
+        MqttTopicTrie<Integer> trie = new MqttTopicTrie<>();
+        trie.put("v1/devices/me/#", 0);
+        trie.put("v1/devices/+/rpc/request/+", 1);
+        trie.put("#", 2);
+
+        assertEquals(Integer.valueOf(2), trie.match("v1/devices/me/rpc/request/1", Math::max));
+        assertEquals(Integer.valueOf(2), trie.remove("#"));
+        assertEquals(Integer.valueOf(1), trie.match("v1/devices/me/rpc/request/1", Math::max));
+        assertEquals(Integer.valueOf(0), trie.match("v1/devices/me/attributes", Math::max));
+    }
+
+    @Test
+    public void testRemove() {
+        MqttTopicTrie<Integer> trie = new MqttTopicTrie<>();
+        trie.put("a/+/c", 1);
+        trie.put("a/b/#", 1);
+        assertEquals(Integer.valueOf(1), trie.remove("a/+/c"));
+        assertNull(trie.remove("a/+/c"));
+        assertFalse(trie.matches("a/x/c"));
+        assertTrue(trie.matches("a/b/c"));
+        trie.remove("a/b/#");
+        assertTrue(trie.isEmpty());
+        assertNull(trie.match("a/b/c", Math::max));
+    }
+}
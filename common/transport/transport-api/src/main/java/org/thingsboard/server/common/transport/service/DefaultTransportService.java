@@ -94,7 +94,10 @@ import org.thingsboard.server.queue.util.TbTransportComponent;
 
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
+import java.util.ArrayList;
 import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Optional;
@@ -508,6 +511,58 @@ public class DefaultTransportService implements TransportService {
         }
     }
 
+    @Override
+    public void process(TransportProtos.PostTelemetryBatchMsg batchMsg, TransportServiceCallback<Void> callback) {
+        TenantId tenantId = null;
+        EntityType rateLimitedEntityType = null;
+        Map<CustomerId, int[]> usageByCustomer = new HashMap<>();
+        Map<TopicPartitionInfo, List<TbMsg>> msgsByPartition = new LinkedHashMap<>();
+        for (TransportProtos.SessionPostTelemetryMsg sessionMsg : batchMsg.getMsgsList()) {
+            TransportProtos.SessionInfoProto sessionInfo = sessionMsg.getSessionInfo();
+            TransportProtos.PostTelemetryMsg msg = sessionMsg.getMsg();
+            int dataPoints = 0;
+            for (TransportProtos.TsKvListProto tsKv : msg.getTsKvListList()) {
+                dataPoints += tsKv.getKvCount();
+            }
+            EntityType deviceRateLimitedEntityType = getRateLimitedEntityType(sessionInfo, msg, dataPoints);
+            if (deviceRateLimitedEntityType != null) {
+                // skip only the limited device, the rest of the gateway batch is still delivered
+                log.debug("[{}] Skipping rate limited telemetry of device [{}] from the batch", toSessionId(sessionInfo), sessionInfo.getDeviceName());
+                rateLimitedEntityType = deviceRateLimitedEntityType;
+                continue;
+            }
+            reportActivityInternal(sessionInfo);
+            tenantId = getTenantId(sessionInfo);
+            DeviceId deviceId = new DeviceId(new UUID(sessionInfo.getDeviceIdMSB(), sessionInfo.getDeviceIdLSB()));
+            CustomerId customerId = getCustomerId(sessionInfo);
+            int[] usage = usageByCustomer.computeIfAbsent(customerId, id -> new int[2]);
+            usage[0]++;
+            usage[1] += dataPoints;
+            for (TransportProtos.TsKvListProto tsKv : msg.getTsKvListList()) {
+                TbMsgMetaData metaData = new TbMsgMetaData();
+                metaData.putValue("deviceName", sessionInfo.getDeviceName());
+                metaData.putValue("deviceType", sessionInfo.getDeviceType());
+                metaData.putValue("ts", tsKv.getTs() + "");
+                JsonObject json = JsonUtils.getJsonObject(tsKv.getKvList());
+                TbMsg tbMsg = toTbMsg(deviceId, customerId, sessionInfo, json, metaData, SessionMsgType.POST_TELEMETRY_REQUEST);
+                TopicPartitionInfo tpi = partitionService.resolve(ServiceType.TB_RULE_ENGINE, tbMsg.getQueueName(), tenantId, tbMsg.getOriginator());
+                msgsByPartition.computeIfAbsent(tpi, k -> new ArrayList<>()).add(tbMsg);
+            }
+        }
+        if (msgsByPartition.isEmpty()) {
+            if (rateLimitedEntityType != null) {
+                callback.onError(new TbRateLimitsException(rateLimitedEntityType));
+            } else {
+                callback.onSuccess(null);
+            }
+            return;
+        }
+        MsgPackCallback packCallback = new MsgPackCallback(msgsByPartition.size(), new ApiStatsBatchProxyCallback<>(tenantId, usageByCustomer, callback));
+        for (Map.Entry<TopicPartitionInfo, List<TbMsg>> entry : msgsByPartition.entrySet()) {
+            sendToRuleEngine(tenantId, entry.getKey(), entry.getValue(), packCallback);
+        }
+    }
+
     @Override
     public void process(TransportProtos.SessionInfoProto sessionInfo, TransportProtos.PostAttributeMsg msg, TransportServiceCallback<Void> callback) {
         if (checkLimits(sessionInfo, msg, callback, msg.getKvCount())) {
@@ -750,13 +805,7 @@ public class DefaultTransportService implements TransportService {
     }
 
     private boolean checkLimits(TransportProtos.SessionInfoProto sessionInfo, Object msg, TransportServiceCallback<?> callback, int dataPoints) {
-        if (log.isTraceEnabled()) {
-            log.trace("[{}] Processing msg: {}", toSessionId(sessionInfo), msg);
-        }
-        TenantId tenantId = new TenantId(new UUID(sessionInfo.getTenantIdMSB(), sessionInfo.getTenantIdLSB()));
-        DeviceId deviceId = new DeviceId(new UUID(sessionInfo.getDeviceIdMSB(), sessionInfo.getDeviceIdLSB()));
-
-        EntityType rateLimitedEntityType = rateLimitService.checkLimits(tenantId, deviceId, dataPoints);
+        EntityType rateLimitedEntityType = getRateLimitedEntityType(sessionInfo, msg, dataPoints);
         if (rateLimitedEntityType == null) {
             return true;
         } else {
@@ -767,6 +816,15 @@ public class DefaultTransportService implements TransportService {
         }
     }
 
+    private EntityType getRateLimitedEntityType(TransportProtos.SessionInfoProto sessionInfo, Object msg, int dataPoints) {
+        if (log.isTraceEnabled()) {
+            log.trace("[{}] Processing msg: {}", toSessionId(sessionInfo), msg);
+        }
+        TenantId tenantId = new TenantId(new UUID(sessionInfo.getTenantIdMSB(), sessionInfo.getTenantIdLSB()));
+        DeviceId deviceId = new DeviceId(new UUID(sessionInfo.getDeviceIdMSB(), sessionInfo.getDeviceIdLSB()));
+        return rateLimitService.checkLimits(tenantId, deviceId, dataPoints);
+    }
+
     protected void processToTransportMsg(TransportProtos.ToTransportMsg toSessionMsg) {
         UUID sessionId = new UUID(toSessionMsg.getSessionIdMSB(), toSessionMsg.getSessionIdLSB());
         SessionMetaData md = sessions.get(sessionId);
@@ -1002,6 +1060,11 @@ public class DefaultTransportService implements TransportService {
 
     private void sendToRuleEngine(TenantId tenantId, DeviceId deviceId, CustomerId customerId, TransportProtos.SessionInfoProto sessionInfo, JsonObject json,
                                   TbMsgMetaData metaData, SessionMsgType sessionMsgType, TbQueueCallback callback) {
+        sendToRuleEngine(tenantId, toTbMsg(deviceId, customerId, sessionInfo, json, metaData, sessionMsgType), callback);
+    }
+
+    private TbMsg toTbMsg(DeviceId deviceId, CustomerId customerId, TransportProtos.SessionInfoProto sessionInfo, JsonObject json,
+                          TbMsgMetaData metaData, SessionMsgType sessionMsgType) {
         DeviceProfileId deviceProfileId = new DeviceProfileId(new UUID(sessionInfo.getDeviceProfileIdMSB(), sessionInfo.getDeviceProfileIdLSB()));
         DeviceProfile deviceProfile = deviceProfileCache.get(deviceProfileId);
         RuleChainId ruleChainId;
@@ -1017,8 +1080,26 @@ public class DefaultTransportService implements TransportService {
             queueName = defaultQueueName != null ? defaultQueueName : ServiceQueue.MAIN;
         }
 
-        TbMsg tbMsg = TbMsg.newMsg(queueName, sessionMsgType.name(), deviceId, customerId, metaData, gson.toJson(json), ruleChainId, null);
-        sendToRuleEngine(tenantId, tbMsg, callback);
+        return TbMsg.newMsg(queueName, sessionMsgType.name(), deviceId, customerId, metaData, gson.toJson(json), ruleChainId, null);
+    }
+
+    private void sendToRuleEngine(TenantId tenantId, TopicPartitionInfo tpi, List<TbMsg> tbMsgs, TbQueueCallback callback) {
+        if (log.isTraceEnabled()) {
+            log.trace("[{}] Pushing to topic {} batch of {} messages", tenantId, tpi.getFullTopicName(), tbMsgs.size());
+        }
+        ToRuleEngineMsg.Builder msg = ToRuleEngineMsg.newBuilder()
+                .setTenantIdMSB(tenantId.getId().getMostSignificantBits())
+                .setTenantIdLSB(tenantId.getId().getLeastSignificantBits());
+        if (tbMsgs.size() == 1) {
+            msg.setTbMsg(TbMsg.toByteString(tbMsgs.get(0)));
+        } else {
+            for (TbMsg tbMsg : tbMsgs) {
+                msg.addTbMsgBatch(TbMsg.toByteString(tbMsg));
+            }
+        }
+        ruleEngineProducerStats.incrementTotal();
+        StatsCallback wrappedCallback = new StatsCallback(callback, ruleEngineProducerStats);
+        ruleEngineMsgProducer.send(tpi, new TbProtoQueueMsg<>(tbMsgs.get(0).getId(), msg.build()), wrappedCallback);
     }
 
     private class TransportTbQueueCallback implements TbQueueCallback {
@@ -1113,4 +1194,33 @@ public class DefaultTransportService implements TransportService {
             callback.onError(e);
         }
     }
+
+    private class ApiStatsBatchProxyCallback<T> implements TransportServiceCallback<T> {
+        private final TenantId tenantId;
+        private final Map<CustomerId, int[]> usageByCustomer;
+        private final TransportServiceCallback<T> callback;
+
+        public ApiStatsBatchProxyCallback(TenantId tenantId, Map<CustomerId, int[]> usageByCustomer, TransportServiceCallback<T> callback) {
+            this.tenantId = tenantId;
+            this.usageByCustomer = usageByCustomer;
+            this.callback = callback;
+        }
+
+        @Override
+        public void onSuccess(T msg) {
+            try {
+                usageByCustomer.forEach((customerId, usage) -> {
+                    apiUsageClient.report(tenantId, customerId, ApiUsageRecordKey.TRANSPORT_MSG_COUNT, usage[0]);
+                    apiUsageClient.report(tenantId, customerId, ApiUsageRecordKey.TRANSPORT_DP_COUNT, usage[1]);
+                });
+            } finally {
+                callback.onSuccess(msg);
+            }
+        }
+
+        @Override
+        public void onError(Throwable e) {
+            callback.onError(e);
+        }
+    }
 }
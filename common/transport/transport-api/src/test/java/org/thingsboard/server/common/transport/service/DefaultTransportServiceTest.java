@@ -0,0 +1,240 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.common.transport.service;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.context.ApplicationEventPublisher;
+import org.thingsboard.server.common.data.ApiUsageRecordKey;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.msg.queue.ServiceType;
+import org.thingsboard.server.common.msg.queue.TopicPartitionInfo;
+import org.thingsboard.server.common.msg.tools.TbRateLimitsException;
+import org.thingsboard.server.common.stats.MessagesStats;
+import org.thingsboard.server.common.stats.StatsFactory;
+import org.thingsboard.server.common.transport.TransportDeviceProfileCache;
+import org.thingsboard.server.common.transport.TransportResourceCache;
+import org.thingsboard.server.common.transport.TransportServiceCallback;
+import org.thingsboard.server.common.transport.TransportTenantProfileCache;
+import org.thingsboard.server.common.transport.limits.TransportRateLimitService;
+import org.thingsboard.server.common.transport.util.DataDecodingEncodingService;
+import org.thingsboard.server.gen.transport.TransportProtos;
+import org.thingsboard.server.gen.transport.TransportProtos.ToRuleEngineMsg;
+import org.thingsboard.server.queue.TbQueueCallback;
+import org.thingsboard.server.queue.TbQueueProducer;
+import org.thingsboard.server.queue.common.TbProtoQueueMsg;
+import org.thingsboard.server.queue.discovery.PartitionService;
+import org.thingsboard.server.queue.discovery.TbServiceInfoProvider;
+import org.thingsboard.server.queue.provider.TbQueueProducerProvider;
+import org.thingsboard.server.queue.provider.TbTransportQueueFactory;
+import org.thingsboard.server.queue.scheduler.SchedulerComponent;
+import org.thingsboard.server.queue.usagestats.TbApiUsageClient;
+
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.ArgumentMatchers.anyLong;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class DefaultTransportServiceTest {
+
+    private static final TenantId TENANT_ID = new TenantId(UUID.randomUUID());
+    private static final CustomerId CUSTOMER_ID = new CustomerId(UUID.randomUUID());
+    private static final TopicPartitionInfo PARTITION_1 = new TopicPartitionInfo("tb_rule_engine.main", TENANT_ID, 1, true);
+    private static final TopicPartitionInfo PARTITION_2 = new TopicPartitionInfo("tb_rule_engine.main", TENANT_ID, 2, true);
+
+    @Mock
+    private TbServiceInfoProvider serviceInfoProvider;
+    @Mock
+    private TbTransportQueueFactory queueProvider;
+    @Mock
+    private TbQueueProducerProvider producerProvider;
+    @Mock
+    private PartitionService partitionService;
+    @Mock
+    private StatsFactory statsFactory;
+    @Mock
+    private TransportDeviceProfileCache deviceProfileCache;
+    @Mock
+    private TransportTenantProfileCache tenantProfileCache;
+    @Mock
+    private TbApiUsageClient apiUsageClient;
+    @Mock
+    private TransportRateLimitService rateLimitService;
+    @Mock
+    private DataDecodingEncodingService dataDecodingEncodingService;
+    @Mock
+    private SchedulerComponent scheduler;
+    @Mock
+    private TransportResourceCache transportResourceCache;
+    @Mock
+    private ApplicationEventPublisher eventPublisher;
+    @Mock
+    private TbQueueProducer<TbProtoQueueMsg<ToRuleEngineMsg>> ruleEngineMsgProducer;
+    @Mock
+    private MessagesStats ruleEngineProducerStats;
+    @Mock
+    private TransportServiceCallback<Void> callback;
+
+    private DefaultTransportService transportService;
+
+    private final DeviceId device1 = new DeviceId(UUID.randomUUID());
+    private final DeviceId device2 = new DeviceId(UUID.randomUUID());
+    private final DeviceId device3 = new DeviceId(UUID.randomUUID());
+
+    @Before
+    public void before() {
+        transportService = new DefaultTransportService(serviceInfoProvider, queueProvider, producerProvider, partitionService,
+                statsFactory, deviceProfileCache, tenantProfileCache, apiUsageClient, rateLimitService,
+                dataDecodingEncodingService, scheduler, transportResourceCache, eventPublisher);
+        transportService.ruleEngineMsgProducer = ruleEngineMsgProducer;
+        transportService.ruleEngineProducerStats = ruleEngineProducerStats;
+        transportService.transportCallbackExecutor = MoreExecutors.newDirectExecutorService();
+    }
+
+    @Test
+    public void testBatchIsSentOncePerPartitionAndReportedOnce() {
+        mockPartition(device1, PARTITION_1);
+        mockPartition(device2, PARTITION_2);
+        mockPartition(device3, PARTITION_1);
+        mockProducer(true);
+
+        transportService.process(batch(device1, device2, device3), callback);
+
+        ArgumentCaptor<TbProtoQueueMsg<ToRuleEngineMsg>> msgCaptor = ArgumentCaptor.forClass(TbProtoQueueMsg.class);
+        verify(ruleEngineMsgProducer).send(eq(PARTITION_1), msgCaptor.capture(), any());
+        verify(ruleEngineMsgProducer).send(eq(PARTITION_2), msgCaptor.capture(), any());
+        List<TbProtoQueueMsg<ToRuleEngineMsg>> sent = msgCaptor.getAllValues();
+        assertEquals(2, sent.get(0).getValue().getTbMsgBatchCount());
+        assertEquals(0, sent.get(1).getValue().getTbMsgBatchCount());
+        assertFalse(sent.get(1).getValue().getTbMsg().isEmpty());
+
+        verify(callback, times(1)).onSuccess(null);
+        verify(callback, never()).onError(any());
+        verify(apiUsageClient, times(1)).report(TENANT_ID, CUSTOMER_ID, ApiUsageRecordKey.TRANSPORT_MSG_COUNT, 3);
+        verify(apiUsageClient, times(1)).report(TENANT_ID, CUSTOMER_ID, ApiUsageRecordKey.TRANSPORT_DP_COUNT, 6);
+    }
+
+    @Test
+    public void testRateLimitedDeviceIsSkipped() {
+        when(rateLimitService.checkLimits(TENANT_ID, device2, 2)).thenReturn(EntityType.DEVICE);
+        mockPartition(device1, PARTITION_1);
+        mockPartition(device3, PARTITION_1);
+        mockProducer(true);
+
+        transportService.process(batch(device1, device2, device3), callback);
+
+        ArgumentCaptor<TbProtoQueueMsg<ToRuleEngineMsg>> msgCaptor = ArgumentCaptor.forClass(TbProtoQueueMsg.class);
+        verify(ruleEngineMsgProducer, times(1)).send(eq(PARTITION_1), msgCaptor.capture(), any());
+        assertEquals(2, msgCaptor.getValue().getValue().getTbMsgBatchCount());
+        verify(callback, times(1)).onSuccess(null);
+        verify(apiUsageClient, times(1)).report(TENANT_ID, CUSTOMER_ID, ApiUsageRecordKey.TRANSPORT_MSG_COUNT, 2);
+        verify(apiUsageClient, times(1)).report(TENANT_ID, CUSTOMER_ID, ApiUsageRecordKey.TRANSPORT_DP_COUNT, 4);
+    }
+
+    @Test
+    public void testFullyRateLimitedBatchFails() {
+        when(rateLimitService.checkLimits(any(), any(), anyInt())).thenReturn(EntityType.TENANT);
+
+        transportService.process(batch(device1, device2), callback);
+
+        verify(ruleEngineMsgProducer, never()).send(any(), any(), any());
+        verify(callback, times(1)).onError(any(TbRateLimitsException.class));
+        verify(callback, never()).onSuccess(any());
+        verify(apiUsageClient, never()).report(any(), any(), any(), anyLong());
+    }
+
+    @Test
+    public void testFailedPartitionFailsBatchWithoutUsageReport() {
+        mockPartition(device1, PARTITION_1);
+        mockProducer(false);
+
+        transportService.process(batch(device1), callback);
+
+        verify(callback, times(1)).onError(any());
+        verify(callback, never()).onSuccess(any());
+        verify(apiUsageClient, never()).report(any(), any(), any(), anyLong());
+    }
+
+    private void mockPartition(DeviceId deviceId, TopicPartitionInfo tpi) {
+        when(partitionService.resolve(eq(ServiceType.TB_RULE_ENGINE), anyString(), eq(TENANT_ID), eq(deviceId))).thenReturn(tpi);
+    }
+
+    private void mockProducer(boolean success) {
+        doAnswer(invocation -> {
+            TbQueueCallback queueCallback = invocation.getArgument(2);
+            if (success) {
+                queueCallback.onSuccess(null);
+            } else {
+                queueCallback.onFailure(new RuntimeException("Failed to send"));
+            }
+            return null;
+        }).when(ruleEngineMsgProducer).send(any(), any(), any());
+    }
+
+    private static TransportProtos.PostTelemetryBatchMsg batch(DeviceId... deviceIds) {
+        TransportProtos.PostTelemetryBatchMsg.Builder batch = TransportProtos.PostTelemetryBatchMsg.newBuilder();
+        for (DeviceId deviceId : deviceIds) {
+            batch.addMsgs(TransportProtos.SessionPostTelemetryMsg.newBuilder()
+                    .setSessionInfo(sessionInfo(deviceId))
+                    .setMsg(TransportProtos.PostTelemetryMsg.newBuilder()
+                            .addTsKvList(TransportProtos.TsKvListProto.newBuilder()
+                                    .setTs(System.currentTimeMillis())
+                                    .addKv(kv("temperature", 20))
+                                    .addKv(kv("humidity", 40)))));
+        }
+        return batch.build();
+    }
+
+    private static TransportProtos.KeyValueProto kv(String key, long value) {
+        return TransportProtos.KeyValueProto.newBuilder().setKey(key).setType(TransportProtos.KeyValueType.LONG_V).setLongV(value).build();
+    }
+
+    private static TransportProtos.SessionInfoProto sessionInfo(DeviceId deviceId) {
+        UUID sessionId = UUID.randomUUID();
+        return TransportProtos.SessionInfoProto.newBuilder()
+                .setSessionIdMSB(sessionId.getMostSignificantBits())
+                .setSessionIdLSB(sessionId.getLeastSignificantBits())
+                .setTenantIdMSB(TENANT_ID.getId().getMostSignificantBits())
+                .setTenantIdLSB(TENANT_ID.getId().getLeastSignificantBits())
+                .setCustomerIdMSB(CUSTOMER_ID.getId().getMostSignificantBits())
+                .setCustomerIdLSB(CUSTOMER_ID.getId().getLeastSignificantBits())
+                .setDeviceIdMSB(deviceId.getId().getMostSignificantBits())
+                .setDeviceIdLSB(deviceId.getId().getLeastSignificantBits())
+                .setDeviceName(deviceId.toString())
+                .setDeviceType("default")
+                .build();
+    }
+}
@@ -0,0 +1,53 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.alarm;
+
+import org.thingsboard.server.common.data.alarm.AlarmSeverity;
+import org.thingsboard.server.common.data.alarm.AlarmStatus;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+
+import java.util.Collection;
+import java.util.Set;
+
+/**
+ * Incrementally maintained per entity and alarm status counters of alarms by severity.
+ */
+public interface AlarmSeverityRollupDao {
+
+    /**
+     * Moves an alarm from the old status and severity counter to the new one for each of the entities in a single batch.
+     * A null old status or severity stands for a new alarm, a null new status or severity stands for a removed one.
+     * Runs in the transaction of the caller, if any.
+     */
+    void updateCounts(TenantId tenantId, Collection<EntityId> entityIds,
+                      AlarmStatus oldStatus, AlarmSeverity oldSeverity,
+                      AlarmStatus newStatus, AlarmSeverity newSeverity);
+
+    /**
+     * Returns severities of alarms that are raised on, or propagated to, the entity and have one of the statuses.
+     * All statuses are taken into account when statuses are empty or null.
+     */
+    Set<AlarmSeverity> findAlarmSeverities(TenantId tenantId, EntityId entityId, Set<AlarmStatus> statuses);
+
+    /**
+     * Recalculates the counters of the entity from the alarms that are raised on, or propagated to, the entity.
+     */
+    void rebuild(TenantId tenantId, EntityId entityId);
+
+    void removeByEntityId(TenantId tenantId, EntityId entityId);
+
+}
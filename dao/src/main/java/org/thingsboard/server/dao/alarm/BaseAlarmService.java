@@ -24,6 +24,7 @@ import com.google.common.util.concurrent.MoreExecutors;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.stereotype.Service;
+import org.springframework.transaction.support.TransactionTemplate;
 import org.springframework.util.CollectionUtils;
 import org.springframework.util.StringUtils;
 import org.thingsboard.common.util.ThingsBoardThreadFactory;
@@ -43,10 +44,7 @@ import org.thingsboard.server.common.data.page.PageData;
 import org.thingsboard.server.common.data.query.AlarmData;
 import org.thingsboard.server.common.data.query.AlarmDataQuery;
 import org.thingsboard.server.common.data.relation.EntityRelation;
-import org.thingsboard.server.common.data.relation.EntityRelationsQuery;
-import org.thingsboard.server.common.data.relation.EntitySearchDirection;
 import org.thingsboard.server.common.data.relation.RelationTypeGroup;
-import org.thingsboard.server.common.data.relation.RelationsSearchParameters;
 import org.thingsboard.server.dao.entity.AbstractEntityService;
 import org.thingsboard.server.dao.entity.EntityService;
 import org.thingsboard.server.dao.exception.DataValidationException;
@@ -63,6 +61,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Executor;
 import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.stream.Collectors;
@@ -86,6 +85,12 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
     @Autowired
     private EntityService entityService;
 
+    @Autowired
+    private AlarmSeverityRollupDao alarmSeverityRollupDao;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
     protected ExecutorService readResultsProcessingExecutor;
 
     @PostConstruct
@@ -107,33 +112,60 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
 
     @Override
     public AlarmOperationResult createOrUpdateAlarm(Alarm alarm, boolean alarmCreationEnabled) {
-        alarmDataValidator.validate(alarm, Alarm::getTenantId);
         try {
-            if (alarm.getStartTs() == 0L) {
-                alarm.setStartTs(System.currentTimeMillis());
+            return createOrUpdateAlarmAsync(alarm, alarmCreationEnabled, MoreExecutors.directExecutor()).get();
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof RuntimeException) {
+                throw (RuntimeException) e.getCause();
             }
-            if (alarm.getEndTs() == 0L) {
-                alarm.setEndTs(alarm.getStartTs());
+            throw new RuntimeException(e.getCause());
+        } catch (InterruptedException e) {
+            throw new RuntimeException(e);
+        }
+    }
+
+    @Override
+    public ListenableFuture<AlarmOperationResult> createOrUpdateAlarmAsync(Alarm alarm, boolean alarmCreationEnabled, Executor executor) {
+        prepareAlarm(alarm);
+        ListenableFuture<Alarm> existingFuture;
+        if (alarm.getId() == null) {
+            existingFuture = alarmDao.findLatestByOriginatorAndType(alarm.getTenantId(), alarm.getOriginator(), alarm.getType());
+        } else {
+            existingFuture = alarmDao.findAlarmByIdAsync(alarm.getTenantId(), alarm.getId().getId());
+        }
+        return Futures.transformAsync(existingFuture, existing -> {
+            if (alarm.getId() != null && existing == null) {
+                return Futures.immediateFuture(null);
             }
             alarm.setCustomerId(entityService.fetchEntityCustomerId(alarm.getTenantId(), alarm.getOriginator()));
-            if (alarm.getId() == null) {
-                Alarm existing = alarmDao.findLatestByOriginatorAndType(alarm.getTenantId(), alarm.getOriginator(), alarm.getType()).get();
-                if (existing == null || existing.getStatus().isCleared()) {
-                    if (!alarmCreationEnabled) {
-                        throw new ApiUsageLimitsExceededException("Alarms creation is disabled");
-                    }
-                    return createAlarm(alarm);
-                } else {
-                    return updateAlarm(existing, alarm);
-                }
+            if (isNewAlarm(alarm, existing, alarmCreationEnabled)) {
+                return createAlarm(alarm, executor);
             } else {
-                return updateAlarm(alarm).get();
+                return updateAlarm(existing, alarm, executor);
             }
-        } catch (ExecutionException | InterruptedException e) {
-            throw new RuntimeException(e);
+        }, executor);
+    }
+
+    private void prepareAlarm(Alarm alarm) {
+        alarmDataValidator.validate(alarm, Alarm::getTenantId);
+        if (alarm.getStartTs() == 0L) {
+            alarm.setStartTs(System.currentTimeMillis());
+        }
+        if (alarm.getEndTs() == 0L) {
+            alarm.setEndTs(alarm.getStartTs());
         }
     }
 
+    private boolean isNewAlarm(Alarm alarm, Alarm existing, boolean alarmCreationEnabled) {
+        if (alarm.getId() != null || (existing != null && !existing.getStatus().isCleared())) {
+            return false;
+        }
+        if (!alarmCreationEnabled) {
+            throw new ApiUsageLimitsExceededException("Alarms creation is disabled");
+        }
+        return true;
+    }
+
     public ListenableFuture<Alarm> findLatestByOriginatorAndType(TenantId tenantId, EntityId originator, String type) {
         return alarmDao.findLatestByOriginatorAndType(tenantId, originator, type);
     }
@@ -156,82 +188,116 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
             }
             AlarmOperationResult result = new AlarmOperationResult(alarm, true, new ArrayList<>(getPropagationEntityIds(alarm)));
             deleteEntityRelations(tenantId, alarm.getId());
-            alarmDao.deleteAlarm(tenantId, alarm);
+            transactionTemplate.executeWithoutResult(status -> {
+                alarmDao.deleteAlarm(tenantId, alarm);
+                alarmSeverityRollupDao.updateCounts(tenantId, result.getPropagatedEntitiesList(), alarm.getStatus(), alarm.getSeverity(), null, null);
+            });
             return result;
         } catch (ExecutionException | InterruptedException e) {
             throw new RuntimeException(e);
         }
     }
 
-    private AlarmOperationResult createAlarm(Alarm alarm) throws InterruptedException, ExecutionException {
+    @Override
+    public void onEntityDeleted(TenantId tenantId, EntityId entityId) {
+        log.trace("Executing onEntityDeleted [{}]", entityId);
+        alarmSeverityRollupDao.removeByEntityId(tenantId, entityId);
+    }
+
+    private ListenableFuture<AlarmOperationResult> createAlarm(Alarm alarm, Executor executor) {
         log.debug("New Alarm : {}", alarm);
-        Alarm saved = alarmDao.save(alarm.getTenantId(), alarm);
-        List<EntityId> propagatedEntitiesList = createAlarmRelations(saved);
-        return new AlarmOperationResult(saved, true, true, propagatedEntitiesList);
+        return Futures.transformAsync(findPropagatedEntities(alarm), propagatedEntitiesList -> {
+            Alarm saved = saveAlarm(alarm, null, null, propagatedEntitiesList);
+            return Futures.transform(saveAlarmRelations(saved, propagatedEntitiesList),
+                    v -> new AlarmOperationResult(saved, true, true, propagatedEntitiesList), MoreExecutors.directExecutor());
+        }, executor);
     }
 
-    private List<EntityId> createAlarmRelations(Alarm alarm) throws InterruptedException, ExecutionException {
-        List<EntityId> propagatedEntitiesList;
-        if (alarm.isPropagate()) {
-            Set<EntityId> parentEntities = getParentEntities(alarm);
-            propagatedEntitiesList = new ArrayList<>(parentEntities.size() + 1);
-            for (EntityId parentId : parentEntities) {
-                propagatedEntitiesList.add(parentId);
-                createAlarmRelation(alarm.getTenantId(), parentId, alarm.getId());
-            }
-            propagatedEntitiesList.add(alarm.getOriginator());
-        } else {
-            propagatedEntitiesList = Collections.singletonList(alarm.getOriginator());
+    private ListenableFuture<List<EntityId>> findPropagatedEntities(Alarm alarm) {
+        if (!alarm.isPropagate()) {
+            return Futures.immediateFuture(Collections.singletonList(alarm.getOriginator()));
         }
-        return propagatedEntitiesList;
+        return Futures.transform(relationService.findByToRecursivelyAsync(alarm.getTenantId(), alarm.getOriginator(), RelationTypeGroup.COMMON),
+                relations -> getPropagatedEntities(alarm, relations), MoreExecutors.directExecutor());
+    }
+
+    private ListenableFuture<?> saveAlarmRelations(Alarm alarm, List<EntityId> propagatedEntitiesList) {
+        if (!alarm.isPropagate()) {
+            return Futures.immediateFuture(null);
+        }
+        return relationService.saveRelationsAsync(alarm.getTenantId(), toAlarmRelations(alarm, propagatedEntitiesList));
     }
 
-    private Set<EntityId> getParentEntities(Alarm alarm) throws InterruptedException, ExecutionException {
-        EntityRelationsQuery query = new EntityRelationsQuery();
-        //TODO 3.1: @dlandiak we need to fetch max 3 levels and then fetch more if needed and there is at least one non-duplicate.
-        RelationsSearchParameters parameters = new RelationsSearchParameters(alarm.getOriginator(), EntitySearchDirection.TO, Integer.MAX_VALUE, false);
-        query.setParameters(parameters);
+    private List<EntityId> getPropagatedEntities(Alarm alarm, List<EntityRelation> relations) {
         List<String> propagateRelationTypes = alarm.getPropagateRelationTypes();
-        Stream<EntityRelation> relations = relationService.findByQuery(alarm.getTenantId(), query).get().stream();
+        Stream<EntityRelation> relationsStream = relations.stream();
         if (!CollectionUtils.isEmpty(propagateRelationTypes)) {
-            relations = relations.filter(entityRelation -> propagateRelationTypes.contains(entityRelation.getType()));
+            relationsStream = relationsStream.filter(entityRelation -> propagateRelationTypes.contains(entityRelation.getType()));
         }
-        return relations.map(EntityRelation::getFrom).collect(Collectors.toCollection(LinkedHashSet::new));
+        Set<EntityId> parentEntities = relationsStream.map(EntityRelation::getFrom)
+                .filter(entityId -> !entityId.equals(alarm.getOriginator()))
+                .collect(Collectors.toCollection(LinkedHashSet::new));
+        List<EntityId> propagatedEntitiesList = new ArrayList<>(parentEntities.size() + 1);
+        propagatedEntitiesList.addAll(parentEntities);
+        propagatedEntitiesList.add(alarm.getOriginator());
+        return propagatedEntitiesList;
     }
 
-    private ListenableFuture<AlarmOperationResult> updateAlarm(Alarm update) {
-        alarmDataValidator.validate(update, Alarm::getTenantId);
-        return getAndUpdate(update.getTenantId(), update.getId(), new Function<Alarm, AlarmOperationResult>() {
-            @Nullable
-            @Override
-            public AlarmOperationResult apply(@Nullable Alarm alarm) {
-                if (alarm == null) {
-                    return null;
-                } else {
-                    return updateAlarm(alarm, update);
-                }
-            }
-        });
+    private List<EntityRelation> toAlarmRelations(Alarm alarm, List<EntityId> propagatedEntitiesList) {
+        List<EntityRelation> alarmRelations = propagatedEntitiesList.stream()
+                .filter(entityId -> !entityId.equals(alarm.getOriginator()))
+                .map(parentId -> new EntityRelation(parentId, alarm.getId(), AlarmSearchStatus.ANY.name(), RelationTypeGroup.ALARM))
+                .collect(Collectors.toList());
+        log.debug("Creating alarm relations: {}", alarmRelations);
+        return alarmRelations;
     }
 
-    private AlarmOperationResult updateAlarm(Alarm oldAlarm, Alarm newAlarm) {
+    private ListenableFuture<AlarmOperationResult> updateAlarm(Alarm oldAlarm, Alarm newAlarm, Executor executor) {
         boolean oldPropagate = oldAlarm.isPropagate();
-        boolean newPropagate = newAlarm.isPropagate();
-        Alarm result = alarmDao.save(newAlarm.getTenantId(), merge(oldAlarm, newAlarm));
-        List<EntityId> propagatedEntitiesList;
-        if (!oldPropagate && newPropagate) {
-            try {
-                propagatedEntitiesList = createAlarmRelations(result);
-            } catch (InterruptedException | ExecutionException e) {
-                log.warn("Failed to update alarm relations [{}]", result, e);
-                throw new RuntimeException(e);
-            }
+        AlarmStatus oldStatus = oldAlarm.getStatus();
+        AlarmSeverity oldSeverity = oldAlarm.getSeverity();
+        Alarm merged = merge(oldAlarm, newAlarm);
+        if (!oldPropagate && merged.isPropagate()) {
+            return Futures.transformAsync(findPropagatedEntities(merged),
+                    propagatedEntitiesList -> onAlarmPropagationEnabled(merged, oldStatus, oldSeverity, propagatedEntitiesList), executor);
         } else {
-            propagatedEntitiesList = new ArrayList<>(getPropagationEntityIds(result));
+            return Futures.immediateFuture(onAlarmUpdated(merged, oldStatus, oldSeverity));
         }
+    }
+
+    private ListenableFuture<AlarmOperationResult> onAlarmPropagationEnabled(Alarm alarm, AlarmStatus oldStatus, AlarmSeverity oldSeverity, List<EntityId> propagatedEntitiesList) {
+        List<EntityId> newlyPropagatedEntities = propagatedEntitiesList.stream()
+                .filter(entityId -> !entityId.equals(alarm.getOriginator())).collect(Collectors.toList());
+        Alarm result = saveAlarm(alarm, oldStatus, oldSeverity, Collections.singletonList(alarm.getOriginator()), newlyPropagatedEntities);
+        return Futures.transform(saveAlarmRelations(result, propagatedEntitiesList),
+                v -> new AlarmOperationResult(result, true, propagatedEntitiesList), MoreExecutors.directExecutor());
+    }
+
+    private AlarmOperationResult onAlarmUpdated(Alarm alarm, AlarmStatus oldStatus, AlarmSeverity oldSeverity) {
+        List<EntityId> propagatedEntitiesList = new ArrayList<>(getPropagationEntityIds(alarm));
+        Alarm result = saveAlarm(alarm, oldStatus, oldSeverity, propagatedEntitiesList);
         return new AlarmOperationResult(result, true, propagatedEntitiesList);
     }
 
+    private Alarm saveAlarm(Alarm alarm, AlarmStatus oldStatus, AlarmSeverity oldSeverity, List<EntityId> entityIds) {
+        return saveAlarm(alarm, oldStatus, oldSeverity, entityIds, Collections.emptyList());
+    }
+
+    /**
+     * Saves the alarm and updates the severity rollup in one transaction, so the counters never drift from the alarm table.
+     * The alarm moves from the old status and severity counter to the new one for the entities,
+     * and is added to the counter of the new status and severity for the newly propagated entities.
+     */
+    private Alarm saveAlarm(Alarm alarm, AlarmStatus oldStatus, AlarmSeverity oldSeverity,
+                            List<EntityId> entityIds, List<EntityId> newlyPropagatedEntities) {
+        return transactionTemplate.execute(status -> {
+            Alarm saved = alarmDao.save(alarm.getTenantId(), alarm);
+            alarmSeverityRollupDao.updateCounts(saved.getTenantId(), entityIds, oldStatus, oldSeverity, saved.getStatus(), saved.getSeverity());
+            alarmSeverityRollupDao.updateCounts(saved.getTenantId(), newlyPropagatedEntities, null, null, saved.getStatus(), saved.getSeverity());
+            return saved;
+        });
+    }
+
     @Override
     public ListenableFuture<AlarmOperationResult> ackAlarm(TenantId tenantId, AlarmId alarmId, long ackTime) {
         return getAndUpdate(tenantId, alarmId, new Function<Alarm, AlarmOperationResult>() {
@@ -245,8 +311,9 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
                     AlarmStatus newStatus = oldStatus.isCleared() ? AlarmStatus.CLEARED_ACK : AlarmStatus.ACTIVE_ACK;
                     alarm.setStatus(newStatus);
                     alarm.setAckTs(ackTime);
-                    alarm = alarmDao.save(alarm.getTenantId(), alarm);
-                    return new AlarmOperationResult(alarm, true, new ArrayList<>(getPropagationEntityIds(alarm)));
+                    List<EntityId> propagatedEntitiesList = new ArrayList<>(getPropagationEntityIds(alarm));
+                    alarm = saveAlarm(alarm, oldStatus, alarm.getSeverity(), propagatedEntitiesList);
+                    return new AlarmOperationResult(alarm, true, propagatedEntitiesList);
                 }
             }
         });
@@ -268,8 +335,9 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
                     if (details != null) {
                         alarm.setDetails(details);
                     }
-                    alarm = alarmDao.save(alarm.getTenantId(), alarm);
-                    return new AlarmOperationResult(alarm, true, new ArrayList<>(getPropagationEntityIds(alarm)));
+                    List<EntityId> propagatedEntitiesList = new ArrayList<>(getPropagationEntityIds(alarm));
+                    alarm = saveAlarm(alarm, oldStatus, alarm.getSeverity(), propagatedEntitiesList);
+                    return new AlarmOperationResult(alarm, true, propagatedEntitiesList);
                 }
             }
         });
@@ -343,7 +411,7 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
             statusList = Collections.singleton(alarmStatus);
         }
 
-        Set<AlarmSeverity> alarmSeverities = alarmDao.findAlarmSeverities(tenantId, entityId, statusList);
+        Set<AlarmSeverity> alarmSeverities = alarmSeverityRollupDao.findAlarmSeverities(tenantId, entityId, statusList);
 
         return alarmSeverities.stream().min(AlarmSeverity::compareTo).orElse(null);
     }
@@ -391,10 +459,6 @@ public class BaseAlarmService extends AbstractEntityService implements AlarmServ
         }
     }
 
-    private void createAlarmRelation(TenantId tenantId, EntityId entityId, EntityId alarmId) {
-        createRelation(tenantId, new EntityRelation(entityId, alarmId, AlarmSearchStatus.ANY.name(), RelationTypeGroup.ALARM));
-    }
-
     private <T> ListenableFuture<T> getAndUpdate(TenantId tenantId, AlarmId alarmId, Function<Alarm, T> function) {
         validateId(alarmId, "Alarm id should be specified!");
         ListenableFuture<Alarm> entity = alarmDao.findAlarmByIdAsync(tenantId, alarmId.getId());
@@ -166,6 +166,7 @@ public class BaseAssetService extends AbstractEntityService implements AssetServ
         log.trace("Executing deleteAsset [{}]", assetId);
         validateId(assetId, INCORRECT_ASSET_ID + assetId);
         deleteEntityRelations(tenantId, assetId);
+        alarmService.onEntityDeleted(tenantId, assetId);
 
         Asset asset = assetDao.findById(tenantId, assetId.getId());
         try {
@@ -166,6 +166,7 @@ public class DashboardServiceImpl extends AbstractEntityService implements Dashb
         log.trace("Executing deleteDashboard [{}]", dashboardId);
         Validator.validateId(dashboardId, INCORRECT_DASHBOARD_ID + dashboardId);
         deleteEntityRelations(tenantId, dashboardId);
+        alarmService.onEntityDeleted(tenantId, dashboardId);
         try {
             dashboardDao.removeById(tenantId, dashboardId.getId());
         } catch (Exception t) {
@@ -342,6 +342,7 @@ public class DeviceServiceImpl extends AbstractEntityService implements DeviceSe
             deviceCredentialsService.deleteDeviceCredentials(tenantId, deviceCredentials);
         }
         deleteEntityRelations(tenantId, deviceId);
+        alarmService.onEntityDeleted(tenantId, deviceId);
 
         removeDeviceFromCacheByName(tenantId, device.getName());
         removeDeviceFromCacheById(tenantId, device.getId());
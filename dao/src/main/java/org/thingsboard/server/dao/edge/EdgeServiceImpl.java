@@ -222,6 +222,7 @@ public class EdgeServiceImpl extends AbstractEntityService implements EdgeServic
         Edge edge = edgeDao.findById(tenantId, edgeId.getId());
 
         deleteEntityRelations(tenantId, edgeId);
+        alarmService.onEntityDeleted(tenantId, edgeId);
 
         removeEdgeFromCacheByName(edge.getTenantId(), edge.getName());
 
@@ -42,7 +42,6 @@ import org.thingsboard.server.common.data.query.EntityCountQuery;
 import org.thingsboard.server.common.data.query.EntityData;
 import org.thingsboard.server.common.data.query.EntityDataPageLink;
 import org.thingsboard.server.common.data.query.EntityDataQuery;
-import org.thingsboard.server.dao.alarm.AlarmService;
 import org.thingsboard.server.dao.asset.AssetService;
 import org.thingsboard.server.dao.customer.CustomerService;
 import org.thingsboard.server.dao.dashboard.DashboardService;
@@ -89,9 +88,6 @@ public class BaseEntityService extends AbstractEntityService implements EntitySe
     @Autowired
     private DashboardService dashboardService;
 
-    @Autowired
-    private AlarmService alarmService;
-
     @Autowired
     private RuleChainService ruleChainService;
 
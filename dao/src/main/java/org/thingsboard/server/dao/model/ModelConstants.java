@@ -276,6 +276,18 @@ public class ModelConstants {
 
     public static final String ALARM_BY_ID_VIEW_NAME = "alarm_by_id";
 
+    /**
+     * Alarm severity rollup constants.
+     */
+    public static final String ALARM_SEVERITY_ROLLUP_COLUMN_FAMILY_NAME = "alarm_severity_rollup";
+    public static final String ALARM_SEVERITY_ROLLUP_ENTITY_ID_PROPERTY = ENTITY_ID_COLUMN;
+    public static final String ALARM_SEVERITY_ROLLUP_STATUS_PROPERTY = "status";
+    public static final String ALARM_SEVERITY_ROLLUP_CRITICAL_COUNT_PROPERTY = "critical_count";
+    public static final String ALARM_SEVERITY_ROLLUP_MAJOR_COUNT_PROPERTY = "major_count";
+    public static final String ALARM_SEVERITY_ROLLUP_MINOR_COUNT_PROPERTY = "minor_count";
+    public static final String ALARM_SEVERITY_ROLLUP_WARNING_COUNT_PROPERTY = "warning_count";
+    public static final String ALARM_SEVERITY_ROLLUP_INDETERMINATE_COUNT_PROPERTY = "indeterminate_count";
+
     /**
      * Cassandra entity relation constants.
      */
@@ -0,0 +1,114 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.model.sql;
+
+import lombok.Data;
+import lombok.NoArgsConstructor;
+import org.thingsboard.server.common.data.alarm.AlarmSeverity;
+
+import javax.persistence.Column;
+import javax.persistence.Entity;
+import javax.persistence.Id;
+import javax.persistence.IdClass;
+import javax.persistence.Table;
+import java.util.UUID;
+
+import static org.thingsboard.server.dao.model.ModelConstants.ALARM_SEVERITY_ROLLUP_COLUMN_FAMILY_NAME;
+import static org.thingsboard.server.dao.model.ModelConstants.ALARM_SEVERITY_ROLLUP_CRITICAL_COUNT_PROPERTY;
+import static org.thingsboard.server.dao.model.ModelConstants.ALARM_SEVERITY_ROLLUP_ENTITY_ID_PROPERTY;
+import static org.thingsboard.server.dao.model.ModelConstants.ALARM_SEVERITY_ROLLUP_INDETERMINATE_COUNT_PROPERTY;
+import static org.thingsboard.server.dao.model.ModelConstants.ALARM_SEVERITY_ROLLUP_MAJOR_COUNT_PROPERTY;
+import static org.thingsboard.server.dao.model.ModelConstants.ALARM_SEVERITY_ROLLUP_MINOR_COUNT_PROPERTY;
+import static org.thingsboard.server.dao.model.ModelConstants.ALARM_SEVERITY_ROLLUP_STATUS_PROPERTY;
+import static org.thingsboard.server.dao.model.ModelConstants.ALARM_SEVERITY_ROLLUP_WARNING_COUNT_PROPERTY;
+
+/**
+ * Number of alarms per severity that are raised on, or propagated to, an entity and have the given status.
+ */
+@Data
+@NoArgsConstructor
+@Entity
+@Table(name = ALARM_SEVERITY_ROLLUP_COLUMN_FAMILY_NAME)
+@IdClass(AlarmSeverityRollupCompositeKey.class)
+public final class AlarmSeverityRollupEntity {
+
+    @Id
+    @Column(name = ALARM_SEVERITY_ROLLUP_ENTITY_ID_PROPERTY, columnDefinition = "uuid")
+    private UUID entityId;
+
+    @Id
+    @Column(name = ALARM_SEVERITY_ROLLUP_STATUS_PROPERTY)
+    private String status;
+
+    @Column(name = ALARM_SEVERITY_ROLLUP_CRITICAL_COUNT_PROPERTY)
+    private long criticalCount;
+
+    @Column(name = ALARM_SEVERITY_ROLLUP_MAJOR_COUNT_PROPERTY)
+    private long majorCount;
+
+    @Column(name = ALARM_SEVERITY_ROLLUP_MINOR_COUNT_PROPERTY)
+    private long minorCount;
+
+    @Column(name = ALARM_SEVERITY_ROLLUP_WARNING_COUNT_PROPERTY)
+    private long warningCount;
+
+    @Column(name = ALARM_SEVERITY_ROLLUP_INDETERMINATE_COUNT_PROPERTY)
+    private long indeterminateCount;
+
+    public AlarmSeverityRollupEntity(UUID entityId, String status) {
+        this.entityId = entityId;
+        this.status = status;
+    }
+
+    public void addCount(AlarmSeverity severity, long delta) {
+        switch (severity) {
+            case CRITICAL:
+                criticalCount += delta;
+                break;
+            case MAJOR:
+                majorCount += delta;
+                break;
+            case MINOR:
+                minorCount += delta;
+                break;
+            case WARNING:
+                warningCount += delta;
+                break;
+            case INDETERMINATE:
+                indeterminateCount += delta;
+                break;
+            default:
+                throw new IllegalArgumentException("Unsupported alarm severity: " + severity);
+        }
+    }
+
+    public long getCount(AlarmSeverity severity) {
+        switch (severity) {
+            case CRITICAL:
+                return criticalCount;
+            case MAJOR:
+                return majorCount;
+            case MINOR:
+                return minorCount;
+            case WARNING:
+                return warningCount;
+            case INDETERMINATE:
+                return indeterminateCount;
+            default:
+                throw new IllegalArgumentException("Unsupported alarm severity: " + severity);
+        }
+    }
+}
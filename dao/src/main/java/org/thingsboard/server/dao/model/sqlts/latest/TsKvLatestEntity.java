@@ -61,6 +61,12 @@ import java.util.UUID;
                 query = SearchTsKvLatestRepository.FIND_ALL_BY_ENTITY_ID_QUERY,
                 resultSetMapping = "tsKvLatestFindMapping",
                 resultClass = TsKvLatestEntity.class
+        ),
+        @NamedNativeQuery(
+                name = SearchTsKvLatestRepository.FIND_ALL_BY_ENTITY_IDS_AND_KEYS,
+                query = SearchTsKvLatestRepository.FIND_ALL_BY_ENTITY_IDS_AND_KEYS_QUERY,
+                resultSetMapping = "tsKvLatestFindMapping",
+                resultClass = TsKvLatestEntity.class
         )
 })
 public final class TsKvLatestEntity extends AbstractTsKvEntity {
@@ -121,6 +121,18 @@ public class BaseRelationService implements RelationService {
         return relationDao.saveRelationAsync(tenantId, relation);
     }
 
+    @Override
+    public ListenableFuture<Void> saveRelationsAsync(TenantId tenantId, List<EntityRelation> relations) {
+        log.trace("Executing saveRelationsAsync [{}]", relations);
+        if (relations.isEmpty()) {
+            return Futures.immediateFuture(null);
+        }
+        relations.forEach(this::validate);
+        Cache cache = cacheManager.getCache(RELATIONS_CACHE);
+        relations.forEach(relation -> cacheEviction(relation, cache));
+        return relationDao.saveRelationsAsync(tenantId, relations);
+    }
+
     @Caching(evict = {
             @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#relation.from, #relation.to, #relation.type, #relation.typeGroup}"),
             @CacheEvict(cacheNames = RELATIONS_CACHE, key = "{#relation.from, #relation.type, #relation.typeGroup, 'FROM'}"),
@@ -430,6 +442,14 @@ public class BaseRelationService implements RelationService {
         }
     }
 
+    @Override
+    public ListenableFuture<List<EntityRelation>> findByToRecursivelyAsync(TenantId tenantId, EntityId to, RelationTypeGroup typeGroup) {
+        log.trace("Executing findByToRecursivelyAsync [{}][{}]", to, typeGroup);
+        validate(to);
+        validateTypeGroup(typeGroup);
+        return relationDao.findAllByToRecursivelyAsync(tenantId, to, typeGroup);
+    }
+
     @Override
     public ListenableFuture<List<EntityRelationInfo>> findInfoByTo(TenantId tenantId, EntityId to, RelationTypeGroup typeGroup) {
         log.trace("Executing findInfoByTo [{}][{}]", to, typeGroup);
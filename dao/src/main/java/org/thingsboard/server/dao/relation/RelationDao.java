@@ -41,6 +41,8 @@ public interface RelationDao {
 
     List<EntityRelation> findAllByTo(TenantId tenantId, EntityId to, RelationTypeGroup typeGroup);
 
+    ListenableFuture<List<EntityRelation>> findAllByToRecursivelyAsync(TenantId tenantId, EntityId to, RelationTypeGroup typeGroup);
+
     ListenableFuture<List<EntityRelation>> findAllByToAndType(TenantId tenantId, EntityId to, String relationType, RelationTypeGroup typeGroup);
 
     ListenableFuture<Boolean> checkRelation(TenantId tenantId, EntityId from, EntityId to, String relationType, RelationTypeGroup typeGroup);
@@ -51,6 +53,8 @@ public interface RelationDao {
 
     ListenableFuture<Boolean> saveRelationAsync(TenantId tenantId, EntityRelation relation);
 
+    ListenableFuture<Void> saveRelationsAsync(TenantId tenantId, List<EntityRelation> relations);
+
     boolean deleteRelation(TenantId tenantId, EntityRelation relation);
 
     ListenableFuture<Boolean> deleteRelationAsync(TenantId tenantId, EntityRelation relation);
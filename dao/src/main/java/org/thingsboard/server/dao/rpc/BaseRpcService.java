@@ -28,6 +28,8 @@ import org.thingsboard.server.common.data.rpc.Rpc;
 import org.thingsboard.server.common.data.rpc.RpcStatus;
 import org.thingsboard.server.dao.service.PaginatedRemover;
 
+import java.util.List;
+
 import static org.thingsboard.server.dao.service.Validator.validateId;
 import static org.thingsboard.server.dao.service.Validator.validatePageLink;
 
@@ -85,6 +87,13 @@ public class BaseRpcService implements RpcService {
         return rpcDao.findAllByDeviceId(tenantId, deviceId, rpcStatus, pageLink);
     }
 
+    @Override
+    public List<Rpc> findAllByDeviceIdsAndStatus(TenantId tenantId, List<DeviceId> deviceIds, RpcStatus rpcStatus) {
+        log.trace("Executing findAllByDeviceIdsAndStatus, tenantId [{}], deviceIds [{}], rpcStatus [{}]", tenantId, deviceIds, rpcStatus);
+        validateId(tenantId, INCORRECT_TENANT_ID + tenantId);
+        return rpcDao.findAllByDeviceIds(tenantId, deviceIds, rpcStatus);
+    }
+
     private PaginatedRemover<TenantId, Rpc> tenantRpcRemover =
             new PaginatedRemover<>() {
                 @Override
@@ -23,9 +23,13 @@ import org.thingsboard.server.common.data.rpc.Rpc;
 import org.thingsboard.server.common.data.rpc.RpcStatus;
 import org.thingsboard.server.dao.Dao;
 
+import java.util.List;
+
 public interface RpcDao extends Dao<Rpc> {
     PageData<Rpc> findAllByDeviceId(TenantId tenantId, DeviceId deviceId, RpcStatus rpcStatus, PageLink pageLink);
 
+    List<Rpc> findAllByDeviceIds(TenantId tenantId, List<DeviceId> deviceIds, RpcStatus rpcStatus);
+
     PageData<Rpc> findAllRpcByTenantId(TenantId tenantId, PageLink pageLink);
 
     Long deleteOutdatedRpcByTenantId(TenantId tenantId, Long expirationTime);
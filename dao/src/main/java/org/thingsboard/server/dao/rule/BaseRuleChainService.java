@@ -655,6 +655,7 @@ public class BaseRuleChainService extends AbstractEntityService implements RuleC
             deleteRuleNode(tenantId, relation.getTo());
         }
         deleteEntityRelations(tenantId, ruleChainId);
+        alarmService.onEntityDeleted(tenantId, ruleChainId);
     }
 
     private List<EntityRelation> getRuleChainToNodeRelations(TenantId tenantId, RuleChainId ruleChainId) {
@@ -667,6 +668,7 @@ public class BaseRuleChainService extends AbstractEntityService implements RuleC
 
     private void deleteRuleNode(TenantId tenantId, EntityId entityId) {
         deleteEntityRelations(tenantId, entityId);
+        alarmService.onEntityDeleted(tenantId, entityId);
         ruleNodeDao.removeById(tenantId, entityId.getId());
     }
 
@@ -0,0 +1,206 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql;
+
+import lombok.extern.slf4j.Slf4j;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.UUID;
+
+/**
+ * Streams rows to PostgreSQL using {@code COPY ... FROM STDIN} in the text format.
+ * <p>
+ * Rows are accumulated in a buffer that is flushed to the server each time it exceeds {@link #FLUSH_THRESHOLD} chars,
+ * so the whole batch is never materialized as bind parameters.
+ * <p>
+ * The staging tables are session temporary tables, but no state is carried between transactions: every batch creates
+ * its staging table if needed, copies and merges the rows within a single transaction, and the table is empty again
+ * after the commit. This keeps the copy path usable behind a connection pooler in transaction pooling mode
+ * (e.g. PgBouncer with {@code pool_mode = transaction}), where consecutive transactions of a client may run on different
+ * server sessions. For the same reason {@link #copyAndMerge} refuses to run outside of a transaction.
+ */
+@Slf4j
+public class PsqlCopyWriter {
+
+    private static final int FLUSH_THRESHOLD = 64 * 1024;
+    private static final char DELIMITER = '\t';
+    private static final char ROW_DELIMITER = '\n';
+    private static final String NULL = "\\N";
+
+    private final CopyIn copyIn;
+    private final StringBuilder buffer = new StringBuilder(FLUSH_THRESHOLD + 1024);
+    private boolean firstColumn = true;
+
+    private PsqlCopyWriter(CopyIn copyIn) {
+        this.copyIn = copyIn;
+    }
+
+    /**
+     * Copies the rows into the staging table and merges them into the target table with a single set-based query.
+     * Must be called within a transaction: the staging table is expected to be created with {@code ON COMMIT DELETE ROWS}.
+     *
+     * @return number of rows affected by the merge query
+     * @throws IllegalStateException if the connection is in auto-commit mode
+     */
+    public static int copyAndMerge(JdbcTemplate jdbcTemplate, String createStagingTable, String copyQuery, String mergeQuery, RowsWriter rowsWriter) {
+        Integer result = jdbcTemplate.execute((ConnectionCallback<Integer>) connection -> {
+            if (connection.getAutoCommit()) {
+                // In auto-commit mode the copied rows are deleted before the merge query runs,
+                // and with transaction pooling the statements may even run on different server sessions
+                throw new IllegalStateException("Copy and merge must be executed within a transaction!");
+            }
+            PsqlCopyWriter writer = start(connection, createStagingTable, copyQuery);
+            try {
+                rowsWriter.write(writer);
+                writer.finish();
+            } finally {
+                writer.cancel();
+            }
+            try (Statement statement = connection.createStatement()) {
+                return statement.executeUpdate(mergeQuery);
+            }
+        });
+        return result != null ? result : 0;
+    }
+
+    /**
+     * Creates the staging table (if it does not exist yet in the current session) and starts copying into it.
+     */
+    public static PsqlCopyWriter start(Connection connection, String createStagingTable, String copyQuery) throws SQLException {
+        try (Statement statement = connection.createStatement()) {
+            statement.execute(createStagingTable);
+        }
+        return new PsqlCopyWriter(connection.unwrap(PGConnection.class).getCopyAPI().copyIn(copyQuery));
+    }
+
+    public PsqlCopyWriter add(String value) {
+        separate();
+        if (value == null) {
+            buffer.append(NULL);
+        } else {
+            for (int i = 0; i < value.length(); i++) {
+                char c = value.charAt(i);
+                switch (c) {
+                    case '\\':
+                        buffer.append("\\\\");
+                        break;
+                    case '\t':
+                        buffer.append("\\t");
+                        break;
+                    case '\n':
+                        buffer.append("\\n");
+                        break;
+                    case '\r':
+                        buffer.append("\\r");
+                        break;
+                    default:
+                        buffer.append(c);
+                }
+            }
+        }
+        return this;
+    }
+
+    public PsqlCopyWriter add(UUID value) {
+        return addRaw(value);
+    }
+
+    public PsqlCopyWriter add(Integer value) {
+        return addRaw(value);
+    }
+
+    public PsqlCopyWriter add(Long value) {
+        return addRaw(value);
+    }
+
+    public PsqlCopyWriter add(Double value) {
+        return addRaw(value);
+    }
+
+    public PsqlCopyWriter add(Boolean value) {
+        separate();
+        buffer.append(value == null ? NULL : (value ? "t" : "f"));
+        return this;
+    }
+
+    public void endRow() throws SQLException {
+        buffer.append(ROW_DELIMITER);
+        firstColumn = true;
+        if (buffer.length() >= FLUSH_THRESHOLD) {
+            flush();
+        }
+    }
+
+    /**
+     * Sends the remaining rows and completes the copy operation.
+     *
+     * @return number of copied rows
+     */
+    public long finish() throws SQLException {
+        try {
+            flush();
+            return copyIn.endCopy();
+        } finally {
+            cancel();
+        }
+    }
+
+    /**
+     * Aborts the copy operation if it is still in progress, so the connection can be used for further queries.
+     */
+    public void cancel() {
+        if (copyIn.isActive()) {
+            try {
+                copyIn.cancelCopy();
+            } catch (SQLException e) {
+                log.debug("Failed to cancel copy operation", e);
+            }
+        }
+    }
+
+    private PsqlCopyWriter addRaw(Object value) {
+        separate();
+        buffer.append(value == null ? NULL : value.toString());
+        return this;
+    }
+
+    private void separate() {
+        if (firstColumn) {
+            firstColumn = false;
+        } else {
+            buffer.append(DELIMITER);
+        }
+    }
+
+    private void flush() throws SQLException {
+        if (buffer.length() > 0) {
+            byte[] data = buffer.toString().getBytes(StandardCharsets.UTF_8);
+            copyIn.writeToCopy(data, 0, data.length);
+            buffer.setLength(0);
+        }
+    }
+
+    public interface RowsWriter {
+        void write(PsqlCopyWriter writer) throws SQLException;
+    }
+}
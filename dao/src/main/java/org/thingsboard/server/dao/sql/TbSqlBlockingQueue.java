@@ -29,6 +29,7 @@ import java.util.concurrent.ExecutorService;
 import java.util.concurrent.Executors;
 import java.util.concurrent.LinkedBlockingQueue;
 import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
 import java.util.function.Consumer;
 import java.util.stream.Collectors;
 import java.util.stream.Stream;
@@ -36,8 +37,9 @@ import java.util.stream.Stream;
 @Slf4j
 public class TbSqlBlockingQueue<E> implements TbSqlQueue<E> {
 
-    private final BlockingQueue<TbSqlQueueElement<E>> queue = new LinkedBlockingQueue<>();
+    private final BlockingQueue<TbSqlQueueElement<E>> queue;
     private final TbSqlBlockingQueueParams params;
+    private final AtomicInteger dropped = new AtomicInteger();
 
     private ExecutorService executor;
     private final MessagesStats stats;
@@ -45,6 +47,7 @@ public class TbSqlBlockingQueue<E> implements TbSqlQueue<E> {
     public TbSqlBlockingQueue(TbSqlBlockingQueueParams params, MessagesStats stats) {
         this.params = params;
         this.stats = stats;
+        this.queue = params.getMaxQueueSize() > 0 ? new LinkedBlockingQueue<>(params.getMaxQueueSize()) : new LinkedBlockingQueue<>();
     }
 
     @Override
@@ -96,9 +99,10 @@ public class TbSqlBlockingQueue<E> implements TbSqlQueue<E> {
         });
 
         logExecutor.scheduleAtFixedRate(() -> {
-            if (queue.size() > 0 || stats.getTotal() > 0 || stats.getSuccessful() > 0 || stats.getFailed() > 0) {
-                log.info("Queue-{} [{}] queueSize [{}] totalAdded [{}] totalSaved [{}] totalFailed [{}]", index,
-                        params.getLogName(), queue.size(), stats.getTotal(), stats.getSuccessful(), stats.getFailed());
+            int droppedCount = dropped.getAndSet(0);
+            if (queue.size() > 0 || stats.getTotal() > 0 || stats.getSuccessful() > 0 || stats.getFailed() > 0 || droppedCount > 0) {
+                log.info("Queue-{} [{}] queueSize [{}] totalAdded [{}] totalSaved [{}] totalFailed [{}] totalDropped [{}]", index,
+                        params.getLogName(), queue.size(), stats.getTotal(), stats.getSuccessful(), stats.getFailed(), droppedCount);
                 stats.reset();
             }
         }, params.getStatsPrintIntervalMs(), params.getStatsPrintIntervalMs(), TimeUnit.MILLISECONDS);
@@ -114,7 +118,15 @@ public class TbSqlBlockingQueue<E> implements TbSqlQueue<E> {
     @Override
     public ListenableFuture<Void> add(E element) {
         SettableFuture<Void> future = SettableFuture.create();
-        queue.add(new TbSqlQueueElement<>(future, element));
+        TbSqlQueueElement<E> queueElement = new TbSqlQueueElement<>(future, element);
+        while (!queue.offer(queueElement)) {
+            TbSqlQueueElement<E> oldest = queue.poll();
+            if (oldest != null) {
+                dropped.incrementAndGet();
+                stats.incrementFailed();
+                oldest.getFuture().setException(new TbSqlQueueOverflowException(params.getLogName()));
+            }
+        }
         stats.incrementTotal();
         return future;
     }
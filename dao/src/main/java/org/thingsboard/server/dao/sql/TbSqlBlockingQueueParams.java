@@ -32,4 +32,9 @@ public class TbSqlBlockingQueueParams {
     private final long statsPrintIntervalMs;
     private final String statsNamePrefix;
     private final boolean batchSortEnabled;
+    /**
+     * Maximum number of pending elements per queue. When the limit is reached the oldest pending element is dropped
+     * and its future is failed instead of blocking the producer. Zero or negative value means unbounded queue.
+     */
+    private final int maxQueueSize;
 }
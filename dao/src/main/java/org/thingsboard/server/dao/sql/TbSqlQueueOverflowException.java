@@ -0,0 +1,28 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql;
+
+/**
+ * Reported to the producer when its pending element was evicted from a bounded {@link TbSqlBlockingQueue}.
+ */
+public class TbSqlQueueOverflowException extends RuntimeException {
+
+    private static final long serialVersionUID = 3524711528366193812L;
+
+    public TbSqlQueueOverflowException(String logName) {
+        super("[" + logName + "] Queue is full, the oldest pending element was dropped");
+    }
+}
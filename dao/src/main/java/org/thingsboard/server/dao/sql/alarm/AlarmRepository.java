@@ -21,7 +21,6 @@ import org.springframework.data.jpa.repository.Modifying;
 import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.data.repository.query.Param;
-import org.thingsboard.server.common.data.alarm.AlarmSeverity;
 import org.thingsboard.server.common.data.alarm.AlarmStatus;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.dao.model.sql.AlarmEntity;
@@ -148,7 +147,7 @@ public interface AlarmRepository extends CrudRepository<AlarmEntity, UUID> {
                                              @Param("searchText") String searchText,
                                              Pageable pageable);
 
-    @Query(value = "SELECT a.severity FROM AlarmEntity a " +
+    @Query(value = "SELECT a.status, a.severity, COUNT(a.id) FROM AlarmEntity a " +
             "LEFT JOIN RelationEntity re ON a.id = re.toId " +
             "AND re.relationTypeGroup = 'ALARM' " +
             "AND re.toType = 'ALARM' " +
@@ -156,11 +155,10 @@ public interface AlarmRepository extends CrudRepository<AlarmEntity, UUID> {
             "AND re.fromType = :affectedEntityType " +
             "WHERE a.tenantId = :tenantId " +
             "AND (a.originatorId = :affectedEntityId or re.fromId IS NOT NULL) " +
-            "AND ((:alarmStatuses) IS NULL OR a.status in (:alarmStatuses))")
-    Set<AlarmSeverity> findAlarmSeverities(@Param("tenantId") UUID tenantId,
-                                           @Param("affectedEntityId") UUID affectedEntityId,
-                                           @Param("affectedEntityType") String affectedEntityType,
-                                           @Param("alarmStatuses") Set<AlarmStatus> alarmStatuses);
+            "GROUP BY a.status, a.severity")
+    List<Object[]> countAlarmsByStatusAndSeverity(@Param("tenantId") UUID tenantId,
+                                                  @Param("affectedEntityId") UUID affectedEntityId,
+                                                  @Param("affectedEntityType") String affectedEntityType);
 
     @Query("SELECT a.id FROM AlarmEntity a WHERE a.tenantId = :tenantId AND a.createdTime < :time AND a.endTs < :time")
     Page<UUID> findAlarmsIdsByEndTsBeforeAndTenantId(@Param("time") Long time, @Param("tenantId") UUID tenantId, Pageable pageable);
@@ -0,0 +1,60 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.alarm;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.stereotype.Repository;
+import org.thingsboard.server.dao.model.sql.AlarmSeverityRollupEntity;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
+
+@Repository
+public abstract class AlarmSeverityRollupInsertRepository {
+
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
+    /**
+     * Adds the counts of each entity to the stored counters, creating the missing rows, in a single batch.
+     * Runs in the transaction of the caller, if any.
+     */
+    public void addCounts(List<AlarmSeverityRollupEntity> deltas) {
+        jdbcTemplate.batchUpdate(getAddCountsQuery(), new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                AlarmSeverityRollupEntity delta = deltas.get(i);
+                ps.setObject(1, delta.getEntityId());
+                ps.setString(2, delta.getStatus());
+                ps.setLong(3, delta.getCriticalCount());
+                ps.setLong(4, delta.getMajorCount());
+                ps.setLong(5, delta.getMinorCount());
+                ps.setLong(6, delta.getWarningCount());
+                ps.setLong(7, delta.getIndeterminateCount());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return deltas.size();
+            }
+        });
+    }
+
+    protected abstract String getAddCountsQuery();
+}
@@ -0,0 +1,35 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.alarm;
+
+import org.springframework.data.repository.CrudRepository;
+import org.springframework.transaction.annotation.Transactional;
+import org.thingsboard.server.dao.model.sql.AlarmSeverityRollupCompositeKey;
+import org.thingsboard.server.dao.model.sql.AlarmSeverityRollupEntity;
+
+import java.util.Collection;
+import java.util.List;
+import java.util.UUID;
+
+public interface AlarmSeverityRollupRepository extends CrudRepository<AlarmSeverityRollupEntity, AlarmSeverityRollupCompositeKey> {
+
+    List<AlarmSeverityRollupEntity> findAllByEntityId(UUID entityId);
+
+    List<AlarmSeverityRollupEntity> findAllByEntityIdAndStatusIn(UUID entityId, Collection<String> statuses);
+
+    @Transactional
+    void deleteByEntityId(UUID entityId);
+}
@@ -0,0 +1,42 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.alarm;
+
+import org.springframework.stereotype.Repository;
+import org.thingsboard.server.dao.util.HsqlDao;
+
+@HsqlDao
+@Repository
+public class HsqlAlarmSeverityRollupInsertRepository extends AlarmSeverityRollupInsertRepository {
+
+    private static final String ADD_COUNTS =
+            "MERGE INTO alarm_severity_rollup USING(VALUES CAST(? AS UUID), CAST(? AS VARCHAR(255)), CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS BIGINT), CAST(? AS BIGINT)) " +
+                    "A (entity_id, status, critical_count, major_count, minor_count, warning_count, indeterminate_count) " +
+                    "ON (alarm_severity_rollup.entity_id = A.entity_id AND alarm_severity_rollup.status = A.status) " +
+                    "WHEN MATCHED THEN UPDATE SET " +
+                    "alarm_severity_rollup.critical_count = alarm_severity_rollup.critical_count + A.critical_count, " +
+                    "alarm_severity_rollup.major_count = alarm_severity_rollup.major_count + A.major_count, " +
+                    "alarm_severity_rollup.minor_count = alarm_severity_rollup.minor_count + A.minor_count, " +
+                    "alarm_severity_rollup.warning_count = alarm_severity_rollup.warning_count + A.warning_count, " +
+                    "alarm_severity_rollup.indeterminate_count = alarm_severity_rollup.indeterminate_count + A.indeterminate_count " +
+                    "WHEN NOT MATCHED THEN INSERT (entity_id, status, critical_count, major_count, minor_count, warning_count, indeterminate_count) " +
+                    "VALUES (A.entity_id, A.status, A.critical_count, A.major_count, A.minor_count, A.warning_count, A.indeterminate_count)";
+
+    @Override
+    protected String getAddCountsQuery() {
+        return ADD_COUNTS;
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.alarm;
+
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.stereotype.Component;
+import org.springframework.transaction.annotation.Transactional;
+import org.springframework.util.CollectionUtils;
+import org.thingsboard.server.common.data.alarm.AlarmSeverity;
+import org.thingsboard.server.common.data.alarm.AlarmStatus;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.dao.alarm.AlarmSeverityRollupDao;
+import org.thingsboard.server.dao.model.sql.AlarmSeverityRollupEntity;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.EnumMap;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.stream.Collectors;
+
+@Slf4j
+@Component
+public class JpaAlarmSeverityRollupDao implements AlarmSeverityRollupDao {
+
+    @Autowired
+    private AlarmSeverityRollupRepository alarmSeverityRollupRepository;
+
+    @Autowired
+    private AlarmSeverityRollupInsertRepository alarmSeverityRollupInsertRepository;
+
+    @Autowired
+    private AlarmRepository alarmRepository;
+
+    @Override
+    public void updateCounts(TenantId tenantId, Collection<EntityId> entityIds,
+                             AlarmStatus oldStatus, AlarmSeverity oldSeverity,
+                             AlarmStatus newStatus, AlarmSeverity newSeverity) {
+        boolean removeOld = oldStatus != null && oldSeverity != null;
+        boolean addNew = newStatus != null && newSeverity != null;
+        if (entityIds.isEmpty() || (!removeOld && !addNew) || (oldStatus == newStatus && oldSeverity == newSeverity)) {
+            return;
+        }
+        boolean sameStatus = removeOld && addNew && oldStatus == newStatus;
+        List<AlarmSeverityRollupEntity> deltas = new ArrayList<>(entityIds.size() * 2);
+        for (EntityId entityId : entityIds) {
+            if (sameStatus) {
+                AlarmSeverityRollupEntity delta = new AlarmSeverityRollupEntity(entityId.getId(), newStatus.name());
+                delta.addCount(oldSeverity, -1);
+                delta.addCount(newSeverity, 1);
+                deltas.add(delta);
+            } else {
+                if (removeOld) {
+                    AlarmSeverityRollupEntity delta = new AlarmSeverityRollupEntity(entityId.getId(), oldStatus.name());
+                    delta.addCount(oldSeverity, -1);
+                    deltas.add(delta);
+                }
+                if (addNew) {
+                    AlarmSeverityRollupEntity delta = new AlarmSeverityRollupEntity(entityId.getId(), newStatus.name());
+                    delta.addCount(newSeverity, 1);
+                    deltas.add(delta);
+                }
+            }
+        }
+        alarmSeverityRollupInsertRepository.addCounts(deltas);
+    }
+
+    @Override
+    public Set<AlarmSeverity> findAlarmSeverities(TenantId tenantId, EntityId entityId, Set<AlarmStatus> statuses) {
+        List<AlarmSeverityRollupEntity> rollups;
+        if (CollectionUtils.isEmpty(statuses)) {
+            rollups = alarmSeverityRollupRepository.findAllByEntityId(entityId.getId());
+        } else {
+            rollups = alarmSeverityRollupRepository.findAllByEntityIdAndStatusIn(entityId.getId(),
+                    statuses.stream().map(AlarmStatus::name).collect(Collectors.toList()));
+        }
+        Set<AlarmSeverity> severities = EnumSet.noneOf(AlarmSeverity.class);
+        for (AlarmSeverityRollupEntity rollup : rollups) {
+            for (AlarmSeverity severity : AlarmSeverity.values()) {
+                if (rollup.getCount(severity) > 0) {
+                    severities.add(severity);
+                }
+            }
+        }
+        return severities;
+    }
+
+    @Override
+    @Transactional
+    public void rebuild(TenantId tenantId, EntityId entityId) {
+        Map<AlarmStatus, AlarmSeverityRollupEntity> rollups = new EnumMap<>(AlarmStatus.class);
+        for (Object[] row : alarmRepository.countAlarmsByStatusAndSeverity(tenantId.getId(), entityId.getId(), entityId.getEntityType().name())) {
+            AlarmStatus status = (AlarmStatus) row[0];
+            rollups.computeIfAbsent(status, s -> new AlarmSeverityRollupEntity(entityId.getId(), s.name()))
+                    .addCount((AlarmSeverity) row[1], ((Number) row[2]).longValue());
+        }
+        alarmSeverityRollupRepository.deleteByEntityId(entityId.getId());
+        alarmSeverityRollupRepository.saveAll(rollups.values());
+    }
+
+    @Override
+    public void removeByEntityId(TenantId tenantId, EntityId entityId) {
+        alarmSeverityRollupRepository.deleteByEntityId(entityId.getId());
+    }
+}
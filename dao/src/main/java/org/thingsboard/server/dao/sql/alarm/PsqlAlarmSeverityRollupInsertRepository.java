@@ -0,0 +1,39 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.alarm;
+
+import org.springframework.stereotype.Repository;
+import org.thingsboard.server.dao.util.PsqlDao;
+
+@PsqlDao
+@Repository
+public class PsqlAlarmSeverityRollupInsertRepository extends AlarmSeverityRollupInsertRepository {
+
+    private static final String ADD_COUNTS =
+            "INSERT INTO alarm_severity_rollup (entity_id, status, critical_count, major_count, minor_count, warning_count, indeterminate_count) " +
+                    "VALUES (?, ?, ?, ?, ?, ?, ?) " +
+                    "ON CONFLICT (entity_id, status) DO UPDATE SET " +
+                    "critical_count = alarm_severity_rollup.critical_count + EXCLUDED.critical_count, " +
+                    "major_count = alarm_severity_rollup.major_count + EXCLUDED.major_count, " +
+                    "minor_count = alarm_severity_rollup.minor_count + EXCLUDED.minor_count, " +
+                    "warning_count = alarm_severity_rollup.warning_count + EXCLUDED.warning_count, " +
+                    "indeterminate_count = alarm_severity_rollup.indeterminate_count + EXCLUDED.indeterminate_count";
+
+    @Override
+    protected String getAddCountsQuery() {
+        return ADD_COUNTS;
+    }
+}
@@ -54,7 +54,7 @@ public abstract class AttributeKvInsertRepository {
     protected JdbcTemplate jdbcTemplate;
 
     @Autowired
-    private TransactionTemplate transactionTemplate;
+    protected TransactionTemplate transactionTemplate;
 
     @Value("${sql.remove_null_chars}")
     private boolean removeNullChars;
@@ -168,7 +168,7 @@ public abstract class AttributeKvInsertRepository {
         });
     }
 
-    private String replaceNullChars(String strValue) {
+    protected String replaceNullChars(String strValue) {
         if (removeNullChars && strValue != null) {
             return PATTERN_THREAD_LOCAL.get().matcher(strValue).replaceAll(EMPTY_STR);
         }
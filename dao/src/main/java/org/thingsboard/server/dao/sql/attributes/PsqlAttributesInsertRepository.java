@@ -15,13 +15,68 @@
  */
 package org.thingsboard.server.dao.sql.attributes;
 
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
+import org.thingsboard.server.dao.model.sql.AttributeKvEntity;
+import org.thingsboard.server.dao.sql.PsqlCopyWriter;
 import org.thingsboard.server.dao.util.PsqlDao;
 
+import java.util.List;
+
 @PsqlDao
 @Repository
 @Transactional
 public class PsqlAttributesInsertRepository extends AttributeKvInsertRepository {
 
-}
\ No newline at end of file
+    private static final String CREATE_COPY_TABLE = "CREATE TEMP TABLE IF NOT EXISTS attribute_kv_copy (seq int, entity_type varchar(255), entity_id uuid, " +
+            "attribute_type varchar(255), attribute_key varchar(255), bool_v boolean, str_v varchar(10000000), long_v bigint, dbl_v double precision, " +
+            "json_v json, last_update_ts bigint) ON COMMIT DELETE ROWS;";
+
+    private static final String COPY = "COPY attribute_kv_copy (seq, entity_type, entity_id, attribute_type, attribute_key, " +
+            "bool_v, str_v, long_v, dbl_v, json_v, last_update_ts) FROM STDIN";
+
+    private static final String MERGE_COPY = "INSERT INTO attribute_kv (entity_type, entity_id, attribute_type, attribute_key, " +
+            "bool_v, str_v, long_v, dbl_v, json_v, last_update_ts) " +
+            "SELECT DISTINCT ON (entity_type, entity_id, attribute_type, attribute_key) entity_type, entity_id, attribute_type, attribute_key, " +
+            "bool_v, str_v, long_v, dbl_v, json_v, last_update_ts FROM attribute_kv_copy " +
+            "ORDER BY entity_type, entity_id, attribute_type, attribute_key, seq DESC " +
+            "ON CONFLICT (entity_type, entity_id, attribute_type, attribute_key) DO UPDATE SET str_v = EXCLUDED.str_v, long_v = EXCLUDED.long_v, " +
+            "dbl_v = EXCLUDED.dbl_v, bool_v = EXCLUDED.bool_v, json_v = EXCLUDED.json_v, last_update_ts = EXCLUDED.last_update_ts;";
+
+    @Value("${sql.copy_upsert_enabled:false}")
+    private boolean copyUpsertEnabled;
+
+    @Override
+    protected void saveOrUpdate(List<AttributeKvEntity> entities) {
+        if (!copyUpsertEnabled) {
+            super.saveOrUpdate(entities);
+            return;
+        }
+        transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                PsqlCopyWriter.copyAndMerge(jdbcTemplate, CREATE_COPY_TABLE, COPY, MERGE_COPY, writer -> {
+                    for (int i = 0; i < entities.size(); i++) {
+                        AttributeKvEntity kvEntity = entities.get(i);
+                        writer.add(i)
+                                .add(kvEntity.getId().getEntityType().name())
+                                .add(kvEntity.getId().getEntityId())
+                                .add(kvEntity.getId().getAttributeType())
+                                .add(kvEntity.getId().getAttributeKey())
+                                .add(kvEntity.getBooleanValue())
+                                .add(replaceNullChars(kvEntity.getStrValue()))
+                                .add(kvEntity.getLongValue())
+                                .add(kvEntity.getDoubleValue())
+                                .add(replaceNullChars(kvEntity.getJsonValue()))
+                                .add(kvEntity.getLastUpdateTs())
+                                .endRow();
+                    }
+                });
+            }
+        });
+    }
+
+}
@@ -17,8 +17,16 @@ package org.thingsboard.server.dao.sql.event;
 
 import org.thingsboard.server.dao.model.sql.EventEntity;
 
+import java.util.List;
+
 public interface EventInsertRepository {
 
     EventEntity saveOrUpdate(EventEntity entity);
 
+    /**
+     * Inserts a batch of events. Events that are already persisted with the same id get the body and ts of the batch.
+     * If the batch contains several events with the same id, the last one is saved.
+     */
+    void save(List<EventEntity> entities);
+
 }
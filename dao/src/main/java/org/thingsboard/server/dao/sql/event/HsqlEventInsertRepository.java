@@ -15,11 +15,15 @@
  */
 package org.thingsboard.server.dao.sql.event;
 
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.stereotype.Repository;
 import org.thingsboard.server.dao.model.sql.EventEntity;
 import org.thingsboard.server.dao.util.HsqlDao;
 
 import javax.persistence.Query;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
 
 @HsqlDao
 @Repository
@@ -31,11 +35,40 @@ public class HsqlEventInsertRepository extends AbstractEventInsertRepository {
     private static final String INSERT_OR_UPDATE_ON_P_KEY_CONFLICT = getInsertString(P_KEY_CONFLICT_STATEMENT);
     private static final String INSERT_OR_UPDATE_ON_UNQ_KEY_CONFLICT = getInsertString(UNQ_KEY_CONFLICT_STATEMENT);
 
+    private static final String BATCH_INSERT_OR_UPDATE = "MERGE INTO event USING (VALUES UUID(?), ?, ?, UUID(?), ?, ?, ?, UUID(?), ?) I (id, created_time, body, entity_id, entity_type, event_type, event_uid, tenant_id, ts) ON " +
+            "(" + P_KEY_CONFLICT_STATEMENT + " OR " + UNQ_KEY_CONFLICT_STATEMENT + ")" +
+            " WHEN MATCHED THEN UPDATE SET event.body = I.body, event.ts = I.ts" +
+            " WHEN NOT MATCHED THEN INSERT (id, created_time, body, entity_id, entity_type, event_type, event_uid, tenant_id, ts) VALUES (I.id, I.created_time, I.body, I.entity_id, I.entity_type, I.event_type, I.event_uid, I.tenant_id, I.ts)";
+
     @Override
     public EventEntity saveOrUpdate(EventEntity entity) {
         return saveAndGet(entity, INSERT_OR_UPDATE_ON_P_KEY_CONFLICT, INSERT_OR_UPDATE_ON_UNQ_KEY_CONFLICT);
     }
 
+    @Override
+    public void save(List<EventEntity> entities) {
+        jdbcTemplate.batchUpdate(BATCH_INSERT_OR_UPDATE, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                EventEntity entity = entities.get(i);
+                ps.setString(1, entity.getUuid().toString());
+                ps.setLong(2, entity.getCreatedTime());
+                ps.setString(3, entity.getBody() != null ? entity.getBody().toString() : null);
+                ps.setString(4, entity.getEntityId() != null ? entity.getEntityId().toString() : null);
+                ps.setString(5, entity.getEntityType() != null ? entity.getEntityType().name() : null);
+                ps.setString(6, entity.getEventType());
+                ps.setString(7, entity.getEventUid());
+                ps.setString(8, entity.getTenantId().toString());
+                ps.setLong(9, entity.getTs());
+            }
+
+            @Override
+            public int getBatchSize() {
+                return entities.size();
+            }
+        });
+    }
+
     @Override
     protected EventEntity doProcessSaveOrUpdate(EventEntity entity, String query) {
         getQuery(entity, query).executeUpdate();
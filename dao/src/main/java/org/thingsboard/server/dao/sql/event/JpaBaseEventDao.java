@@ -16,13 +16,17 @@
 package org.thingsboard.server.dao.sql.event;
 
 import com.datastax.oss.driver.api.core.uuid.Uuids;
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.PageRequest;
 import org.springframework.data.repository.CrudRepository;
 import org.springframework.stereotype.Component;
+import org.thingsboard.server.common.data.DataConstants;
 import org.thingsboard.server.common.data.Event;
 import org.thingsboard.server.common.data.event.DebugEvent;
 import org.thingsboard.server.common.data.event.ErrorEventFilter;
@@ -34,19 +38,30 @@ import org.thingsboard.server.common.data.id.EventId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.page.PageData;
 import org.thingsboard.server.common.data.page.TimePageLink;
+import org.thingsboard.server.common.stats.StatsFactory;
 import org.thingsboard.server.dao.DaoUtil;
 import org.thingsboard.server.dao.event.EventDao;
 import org.thingsboard.server.dao.model.sql.EventEntity;
 import org.thingsboard.server.dao.sql.JpaAbstractDao;
+import org.thingsboard.server.dao.sql.ScheduledLogExecutorComponent;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueueParams;
+import org.thingsboard.server.dao.sql.TbSqlBlockingQueueWrapper;
 
+import javax.annotation.PostConstruct;
+import javax.annotation.PreDestroy;
 import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.Arrays;
+import java.util.Comparator;
+import java.util.HashSet;
 import java.util.List;
 import java.util.Objects;
 import java.util.Optional;
+import java.util.Set;
 import java.util.UUID;
+import java.util.function.Function;
 
 import static org.thingsboard.server.dao.model.ModelConstants.NULL_UUID;
 
@@ -57,6 +72,8 @@ import static org.thingsboard.server.dao.model.ModelConstants.NULL_UUID;
 @Component
 public class JpaBaseEventDao extends JpaAbstractDao<EventEntity, Event> implements EventDao {
 
+    private static final Set<String> NOT_BATCHED_EVENT_TYPES = new HashSet<>(Arrays.asList(DataConstants.LC_EVENT, DataConstants.ERROR));
+
     private final UUID systemTenantId = NULL_UUID;
 
     @Autowired
@@ -68,6 +85,55 @@ public class JpaBaseEventDao extends JpaAbstractDao<EventEntity, Event> implemen
     @Autowired
     private EventCleanupRepository eventCleanupRepository;
 
+    @Autowired
+    ScheduledLogExecutorComponent logExecutor;
+
+    @Autowired
+    private StatsFactory statsFactory;
+
+    @Value("${sql.events.batch_size:10000}")
+    private int batchSize;
+
+    @Value("${sql.events.batch_max_delay:100}")
+    private long maxDelay;
+
+    @Value("${sql.events.stats_print_interval_ms:10000}")
+    private long statsPrintIntervalMs;
+
+    @Value("${sql.events.batch_threads:3}")
+    private int batchThreads;
+
+    @Value("${sql.events.max_queue_size:100000}")
+    private int maxQueueSize;
+
+    @Value("${sql.batch_sort:false}")
+    private boolean batchSortEnabled;
+
+    private TbSqlBlockingQueueWrapper<EventEntity> queue;
+
+    @PostConstruct
+    private void init() {
+        TbSqlBlockingQueueParams params = TbSqlBlockingQueueParams.builder()
+                .logName("Events")
+                .batchSize(batchSize)
+                .maxDelay(maxDelay)
+                .statsPrintIntervalMs(statsPrintIntervalMs)
+                .statsNamePrefix("events")
+                .batchSortEnabled(batchSortEnabled)
+                .maxQueueSize(maxQueueSize)
+                .build();
+        Function<EventEntity, Integer> hashcodeFunction = entity -> entity.getEntityId() != null ? entity.getEntityId().hashCode() : 0;
+        queue = new TbSqlBlockingQueueWrapper<>(params, hashcodeFunction, batchThreads, statsFactory);
+        queue.init(logExecutor, v -> eventInsertRepository.save(v), Comparator.comparing(EventEntity::getUuid));
+    }
+
+    @PreDestroy
+    private void destroy() {
+        if (queue != null) {
+            queue.destroy();
+        }
+    }
+
     @Override
     protected Class<EventEntity> getEntityClass() {
         return EventEntity.class;
@@ -117,7 +183,22 @@ public class JpaBaseEventDao extends JpaAbstractDao<EventEntity, Event> implemen
         if (StringUtils.isEmpty(event.getUid())) {
             event.setUid(event.getId().toString());
         }
-        return service.submit(() -> save(new EventEntity(event), false).orElse(null));
+        EventEntity entity = new EventEntity(event);
+        if (!isBatched(entity)) {
+            return service.submit(() -> save(entity, false).orElse(null));
+        }
+        if (entity.getTenantId() == null) {
+            entity.setTenantId(systemTenantId);
+        }
+        return Futures.transform(queue.add(entity), v -> event, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Lifecycle and error events are rare and must not be dropped when the queue overflows.
+     * Events with an explicit uid are upserted one by one to resolve the uid of an already stored event.
+     */
+    private boolean isBatched(EventEntity entity) {
+        return !NOT_BATCHED_EVENT_TYPES.contains(entity.getEventType()) && entity.getUuid().toString().equals(entity.getEventUid());
     }
 
     @Override
@@ -41,7 +41,7 @@ public class PsqlEventCleanupRepository extends JpaAbstractDaoListeningExecutorS
             printWarnings(stmt);
             try (ResultSet resultSet = stmt.getResultSet()){
                 resultSet.next();
-                log.info("Total events removed by TTL: [{}]", resultSet.getLong(1));
+                log.info("Total event partitions removed by TTL: [{}]", resultSet.getLong(1));
             }
         } catch (SQLException e) {
             log.error("SQLException occurred during events TTL task execution ", e);
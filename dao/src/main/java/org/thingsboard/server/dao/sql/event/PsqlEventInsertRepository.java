@@ -15,17 +15,37 @@
  */
 package org.thingsboard.server.dao.sql.event;
 
+import com.google.common.collect.Lists;
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
 import org.springframework.stereotype.Repository;
 import org.thingsboard.server.dao.model.sql.EventEntity;
+import org.thingsboard.server.dao.sqlts.insert.psql.PsqlPartitioningRepository;
+import org.thingsboard.server.dao.timeseries.PsqlPartition;
 import org.thingsboard.server.dao.util.PsqlDao;
 
+import java.time.Instant;
+import java.time.ZoneOffset;
+import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.UUID;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.ReentrantLock;
+
 @Slf4j
 @PsqlDao
 @Repository
 public class PsqlEventInsertRepository extends AbstractEventInsertRepository {
 
-    private static final String P_KEY_CONFLICT_STATEMENT = "(id)";
+    private static final String P_KEY_CONFLICT_STATEMENT = "(id, event_type, created_time)";
     private static final String UNQ_KEY_CONFLICT_STATEMENT = "(tenant_id, created_time, entity_type, entity_id, event_type, event_uid)";
 
     private static final String UPDATE_P_KEY_STATEMENT = "id = :id";
@@ -34,17 +54,141 @@ public class PsqlEventInsertRepository extends AbstractEventInsertRepository {
     private static final String INSERT_OR_UPDATE_ON_P_KEY_CONFLICT = getInsertOrUpdateString(P_KEY_CONFLICT_STATEMENT, UPDATE_UNQ_KEY_STATEMENT);
     private static final String INSERT_OR_UPDATE_ON_UNQ_KEY_CONFLICT = getInsertOrUpdateString(UNQ_KEY_CONFLICT_STATEMENT, UPDATE_P_KEY_STATEMENT);
 
+    // The unique key of the partitioned table has to include created_time, so the created_time of an event with an explicit uid
+    // is registered in event_uid_lookup. An event saved again with the same uid is stored with the registered created_time,
+    // which keeps it unique by uid and lets the upsert touch a single partition.
+    private static final String INSERT_OR_UPDATE_BY_EVENT_UID = "WITH uid AS (" +
+            "INSERT INTO event_uid_lookup (tenant_id, entity_type, entity_id, event_type, event_uid, created_time) " +
+            "VALUES (:tenant_id, :entity_type, :entity_id, :event_type, :event_uid, :created_time) " +
+            "ON CONFLICT (tenant_id, entity_type, entity_id, event_type, event_uid) DO UPDATE SET created_time = event_uid_lookup.created_time " +
+            "RETURNING created_time) " +
+            "INSERT INTO event (id, created_time, body, entity_id, entity_type, event_type, event_uid, tenant_id, ts) " +
+            "SELECT :id, uid.created_time, :body, :entity_id, :entity_type, :event_type, :event_uid, :tenant_id, :ts FROM uid " +
+            "ON CONFLICT " + UNQ_KEY_CONFLICT_STATEMENT + " DO UPDATE SET body = :body, ts = :ts," + UPDATE_P_KEY_STATEMENT + " returning *";
+
+    private static final int INSERT_COLUMNS_COUNT = 9;
+    // PostgreSQL allows at most 32767 bind parameters per statement
+    private static final int MAX_ROWS_PER_INSERT = Short.MAX_VALUE / INSERT_COLUMNS_COUNT;
+
+    // Must be in sync with the list partition of the event_debug table
+    private static final Set<String> DEBUG_EVENT_TYPES = new HashSet<>(Arrays.asList("DEBUG_RULE_NODE", "DEBUG_RULE_CHAIN", "DEBUG_CONVERTER", "DEBUG_INTEGRATION"));
+    private static final String DEBUG_EVENT_TABLE = "event_debug";
+    private static final String OTHER_EVENT_TABLE = "event_other";
+    private static final DateTimeFormatter PARTITION_DATE_FORMAT = DateTimeFormatter.ofPattern("yyyy_MM_dd_HH").withZone(ZoneOffset.UTC);
+
+    private final Map<String, PsqlPartition> partitions = new ConcurrentHashMap<>();
+    private final ReentrantLock partitionCreationLock = new ReentrantLock();
+
+    @Autowired
+    private PsqlPartitioningRepository partitioningRepository;
+
+    @Value("${sql.events.partition_size_hours:24}")
+    private int partitionSizeHours;
+
+    @Value("${sql.ttl.events.enabled:true}")
+    private boolean ttlEnabled;
+
+    @Value("${sql.ttl.events.events_ttl:0}")
+    private long otherEventsTtl;
+
+    @Value("${sql.ttl.events.debug_events_ttl:604800}")
+    private long debugEventsTtl;
+
     @Override
     public EventEntity saveOrUpdate(EventEntity entity) {
+        savePartitionIfNotExist(entity);
+        if (!entity.getUuid().toString().equals(entity.getEventUid())) {
+            return saveAndGet(entity, INSERT_OR_UPDATE_BY_EVENT_UID, INSERT_OR_UPDATE_ON_P_KEY_CONFLICT);
+        }
         return saveAndGet(entity, INSERT_OR_UPDATE_ON_P_KEY_CONFLICT, INSERT_OR_UPDATE_ON_UNQ_KEY_CONFLICT);
     }
 
+    @Override
+    public void save(List<EventEntity> entities) {
+        // ON CONFLICT DO UPDATE can not affect the same row twice within one statement
+        Map<UUID, EventEntity> unique = new LinkedHashMap<>();
+        entities.forEach(entity -> unique.put(entity.getUuid(), entity));
+        unique.values().forEach(this::savePartitionIfNotExist);
+        for (List<EventEntity> rows : Lists.partition(new ArrayList<>(unique.values()), MAX_ROWS_PER_INSERT)) {
+            jdbcTemplate.update(getMultiRowInsertString(rows.size()), ps -> {
+                int idx = 1;
+                for (EventEntity entity : rows) {
+                    ps.setObject(idx++, entity.getUuid());
+                    ps.setLong(idx++, entity.getCreatedTime());
+                    ps.setString(idx++, entity.getBody() != null ? entity.getBody().toString() : null);
+                    ps.setObject(idx++, entity.getEntityId());
+                    ps.setString(idx++, entity.getEntityType() != null ? entity.getEntityType().name() : null);
+                    ps.setString(idx++, entity.getEventType());
+                    ps.setString(idx++, entity.getEventUid());
+                    ps.setObject(idx++, entity.getTenantId());
+                    ps.setLong(idx++, entity.getTs());
+                }
+            });
+        }
+    }
+
     @Override
     protected EventEntity doProcessSaveOrUpdate(EventEntity entity, String query) {
         return (EventEntity) getQuery(entity, query).getSingleResult();
 
     }
 
+    private void savePartitionIfNotExist(EventEntity entity) {
+        String table = DEBUG_EVENT_TYPES.contains(entity.getEventType()) ? DEBUG_EVENT_TABLE : OTHER_EVENT_TABLE;
+        long partitionSizeMs = TimeUnit.HOURS.toMillis(partitionSizeHours);
+        long partitionStartTs = entity.getCreatedTime() - Math.floorMod(entity.getCreatedTime(), partitionSizeMs);
+        String partitionKey = table + partitionStartTs;
+        if (isExpired(table, partitionStartTs + partitionSizeMs)) {
+            // The TTL task may drop this partition at any time and on any node, so it is not cached
+            partitions.remove(partitionKey);
+            savePartition(createPartition(table, partitionStartTs, partitionSizeMs));
+        } else if (!partitions.containsKey(partitionKey)) {
+            partitionCreationLock.lock();
+            try {
+                if (!partitions.containsKey(partitionKey)) {
+                    PsqlPartition partition = createPartition(table, partitionStartTs, partitionSizeMs);
+                    savePartition(partition);
+                    partitions.put(partitionKey, partition);
+                }
+            } finally {
+                partitionCreationLock.unlock();
+            }
+        }
+    }
+
+    private boolean isExpired(String table, long partitionEndTs) {
+        long ttl = DEBUG_EVENT_TABLE.equals(table) ? debugEventsTtl : otherEventsTtl;
+        return ttlEnabled && ttl > 0 && partitionEndTs <= System.currentTimeMillis() - TimeUnit.SECONDS.toMillis(ttl);
+    }
+
+    private void savePartition(PsqlPartition partition) {
+        log.trace("Saving event partition: {}", partition);
+        try {
+            partitioningRepository.save(partition);
+        } catch (RuntimeException e) {
+            // CREATE TABLE IF NOT EXISTS still fails when another node creates the same partition concurrently,
+            // the second attempt succeeds in that case and any other failure is propagated to the caller
+            log.trace("Failed to save event partition: {}, retrying", partition, e);
+            partitioningRepository.save(partition);
+        }
+    }
+
+    private static PsqlPartition createPartition(String table, long partitionStartTs, long partitionSizeMs) {
+        String partitionDate = PARTITION_DATE_FORMAT.format(Instant.ofEpochMilli(partitionStartTs));
+        return new PsqlPartition(table, partitionStartTs, partitionStartTs + partitionSizeMs, partitionDate);
+    }
+
+    private static String getMultiRowInsertString(int rowsCount) {
+        StringBuilder sb = new StringBuilder("INSERT INTO event (id, created_time, body, entity_id, entity_type, event_type, event_uid, tenant_id, ts) VALUES ");
+        for (int i = 0; i < rowsCount; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append("(?, ?, ?, ?, ?, ?, ?, ?, ?)");
+        }
+        return sb.append(" ON CONFLICT " + P_KEY_CONFLICT_STATEMENT + " DO UPDATE SET body = EXCLUDED.body, ts = EXCLUDED.ts").toString();
+    }
+
     private static String getInsertOrUpdateString(String eventKeyStatement, String updateKeyStatement) {
         return "INSERT INTO event (id, created_time, body, entity_id, entity_type, event_type, event_uid, tenant_id, ts) " +
                 "VALUES (:id, :created_time, :body, :entity_id, :entity_type, :event_type, :event_uid, :tenant_id, :ts) " +
@@ -16,7 +16,9 @@
 package org.thingsboard.server.dao.sql.relation;
 
 import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.data.jpa.repository.Modifying;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.thingsboard.server.dao.model.sql.RelationEntity;
 
 import javax.persistence.EntityManager;
@@ -29,6 +31,9 @@ public abstract class AbstractRelationInsertRepository implements RelationInsert
     @PersistenceContext
     protected EntityManager entityManager;
 
+    @Autowired
+    protected JdbcTemplate jdbcTemplate;
+
     protected Query getQuery(RelationEntity entity, String query) {
         Query nativeQuery = entityManager.createNativeQuery(query, RelationEntity.class);
         if (entity.getAdditionalInfo() == null) {
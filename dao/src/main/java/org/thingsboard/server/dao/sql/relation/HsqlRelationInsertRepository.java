@@ -15,6 +15,7 @@
  */
 package org.thingsboard.server.dao.sql.relation;
 
+import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
 import org.thingsboard.server.dao.model.sql.RelationCompositeKey;
@@ -22,6 +23,9 @@ import org.thingsboard.server.dao.model.sql.RelationEntity;
 import org.thingsboard.server.dao.util.HsqlDao;
 
 import javax.persistence.Query;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.List;
 
 @HsqlDao
 @Repository
@@ -34,6 +38,12 @@ public class HsqlRelationInsertRepository extends AbstractRelationInsertReposito
             "WHEN MATCHED THEN UPDATE SET relation.additional_info = R.additional_info " +
             "WHEN NOT MATCHED THEN INSERT (from_id, from_type, to_id, to_type, relation_type_group, relation_type, additional_info) VALUES (UUID(R.from_id), R.from_type, UUID(R.to_id), R.to_type, R.relation_type_group, R.relation_type, R.additional_info)";
 
+    private static final String INSERT_ON_CONFLICT_DO_UPDATE_BATCH = "MERGE INTO relation USING (VALUES ?, ?, ?, ?, ?, ?, ?) R " +
+            "(from_id, from_type, to_id, to_type, relation_type_group, relation_type, additional_info) " +
+            "ON (relation.from_id = UUID(R.from_id) AND relation.from_type = R.from_type AND relation.relation_type_group = R.relation_type_group AND relation.relation_type = R.relation_type AND relation.to_id = UUID(R.to_id) AND relation.to_type = R.to_type) " +
+            "WHEN MATCHED THEN UPDATE SET relation.additional_info = R.additional_info " +
+            "WHEN NOT MATCHED THEN INSERT (from_id, from_type, to_id, to_type, relation_type_group, relation_type, additional_info) VALUES (UUID(R.from_id), R.from_type, UUID(R.to_id), R.to_type, R.relation_type_group, R.relation_type, R.additional_info)";
+
     protected Query getQuery(RelationEntity entity, String query) {
         Query nativeQuery = entityManager.createNativeQuery(query, RelationEntity.class);
         if (entity.getAdditionalInfo() == null) {
@@ -55,6 +65,28 @@ public class HsqlRelationInsertRepository extends AbstractRelationInsertReposito
         return processSaveOrUpdate(entity);
     }
 
+    @Override
+    public void saveOrUpdate(List<RelationEntity> entities) {
+        jdbcTemplate.batchUpdate(INSERT_ON_CONFLICT_DO_UPDATE_BATCH, new BatchPreparedStatementSetter() {
+            @Override
+            public void setValues(PreparedStatement ps, int i) throws SQLException {
+                RelationEntity entity = entities.get(i);
+                ps.setString(1, entity.getFromId().toString());
+                ps.setString(2, entity.getFromType());
+                ps.setString(3, entity.getToId().toString());
+                ps.setString(4, entity.getToType());
+                ps.setString(5, entity.getRelationTypeGroup());
+                ps.setString(6, entity.getRelationType());
+                ps.setString(7, entity.getAdditionalInfo() != null ? entity.getAdditionalInfo().toString() : null);
+            }
+
+            @Override
+            public int getBatchSize() {
+                return entities.size();
+            }
+        });
+    }
+
     @Override
     protected RelationEntity processSaveOrUpdate(RelationEntity entity) {
         getQuery(entity, INSERT_ON_CONFLICT_DO_UPDATE).executeUpdate();
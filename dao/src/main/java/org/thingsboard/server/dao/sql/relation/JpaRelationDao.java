@@ -34,6 +34,7 @@ import org.thingsboard.server.dao.sql.JpaAbstractDaoListeningExecutorService;
 import javax.persistence.criteria.Predicate;
 import java.util.ArrayList;
 import java.util.List;
+import java.util.stream.Collectors;
 
 /**
  * Created by Valerii Sosliuk on 5/29/2017.
@@ -86,6 +87,15 @@ public class JpaRelationDao extends JpaAbstractDaoListeningExecutorService imple
                         typeGroup.name()));
     }
 
+    @Override
+    public ListenableFuture<List<EntityRelation>> findAllByToRecursivelyAsync(TenantId tenantId, EntityId to, RelationTypeGroup typeGroup) {
+        return service.submit(() -> DaoUtil.convertDataList(
+                relationRepository.findAllByToIdAndToTypeAndRelationTypeGroupRecursively(
+                        to.getId(),
+                        to.getEntityType().name(),
+                        typeGroup.name())));
+    }
+
     @Override
     public ListenableFuture<List<EntityRelation>> findAllByToAndType(TenantId tenantId, EntityId to, String relationType, RelationTypeGroup typeGroup) {
         return service.submit(() -> DaoUtil.convertDataList(
@@ -127,6 +137,14 @@ public class JpaRelationDao extends JpaAbstractDaoListeningExecutorService imple
         return service.submit(() -> relationInsertRepository.saveOrUpdate(new RelationEntity(relation)) != null);
     }
 
+    @Override
+    public ListenableFuture<Void> saveRelationsAsync(TenantId tenantId, List<EntityRelation> relations) {
+        return service.submit(() -> {
+            relationInsertRepository.saveOrUpdate(relations.stream().map(RelationEntity::new).collect(Collectors.toList()));
+            return null;
+        });
+    }
+
     @Override
     public boolean deleteRelation(TenantId tenantId, EntityRelation relation) {
         RelationCompositeKey key = new RelationCompositeKey(relation);
@@ -15,11 +15,18 @@
  */
 package org.thingsboard.server.dao.sql.relation;
 
+import com.google.common.collect.Lists;
 import org.springframework.stereotype.Repository;
 import org.springframework.transaction.annotation.Transactional;
+import org.thingsboard.server.dao.model.sql.RelationCompositeKey;
 import org.thingsboard.server.dao.model.sql.RelationEntity;
 import org.thingsboard.server.dao.util.PsqlDao;
 
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
 @PsqlDao
 @Repository
 @Transactional
@@ -29,13 +36,51 @@ public class PsqlRelationInsertRepository extends AbstractRelationInsertReposito
             " VALUES (:fromId, :fromType, :toId, :toType, :relationTypeGroup, :relationType, :additionalInfo) " +
             "ON CONFLICT (from_id, from_type, relation_type_group, relation_type, to_id, to_type) DO UPDATE SET additional_info = :additionalInfo returning *";
 
+    private static final int INSERT_COLUMNS_COUNT = 7;
+    // PostgreSQL allows at most 32767 bind parameters per statement
+    private static final int MAX_ROWS_PER_INSERT = Short.MAX_VALUE / INSERT_COLUMNS_COUNT;
+
     @Override
     public RelationEntity saveOrUpdate(RelationEntity entity) {
         return processSaveOrUpdate(entity);
     }
 
+    @Override
+    public void saveOrUpdate(List<RelationEntity> entities) {
+        // ON CONFLICT DO UPDATE can not touch the same row twice within one statement
+        Map<RelationCompositeKey, RelationEntity> uniqueEntities = new LinkedHashMap<>();
+        for (RelationEntity entity : entities) {
+            uniqueEntities.put(new RelationCompositeKey(entity.toData()), entity);
+        }
+        for (List<RelationEntity> rows : Lists.partition(new ArrayList<>(uniqueEntities.values()), MAX_ROWS_PER_INSERT)) {
+            jdbcTemplate.update(getMultiRowInsertString(rows.size()), ps -> {
+                int idx = 1;
+                for (RelationEntity entity : rows) {
+                    ps.setObject(idx++, entity.getFromId());
+                    ps.setString(idx++, entity.getFromType());
+                    ps.setObject(idx++, entity.getToId());
+                    ps.setString(idx++, entity.getToType());
+                    ps.setString(idx++, entity.getRelationTypeGroup());
+                    ps.setString(idx++, entity.getRelationType());
+                    ps.setString(idx++, entity.getAdditionalInfo() != null ? entity.getAdditionalInfo().toString() : null);
+                }
+            });
+        }
+    }
+
     @Override
     protected RelationEntity processSaveOrUpdate(RelationEntity entity) {
         return (RelationEntity) getQuery(entity, INSERT_ON_CONFLICT_DO_UPDATE).getSingleResult();
     }
+
+    private static String getMultiRowInsertString(int rowsCount) {
+        StringBuilder sb = new StringBuilder("INSERT INTO relation (from_id, from_type, to_id, to_type, relation_type_group, relation_type, additional_info) VALUES ");
+        for (int i = 0; i < rowsCount; i++) {
+            if (i > 0) {
+                sb.append(", ");
+            }
+            sb.append("(?, ?, ?, ?, ?, ?, ?)");
+        }
+        return sb.append(" ON CONFLICT (from_id, from_type, relation_type_group, relation_type, to_id, to_type) DO UPDATE SET additional_info = EXCLUDED.additional_info").toString();
+    }
 }
@@ -16,7 +16,9 @@
 package org.thingsboard.server.dao.sql.relation;
 
 import org.springframework.data.jpa.repository.JpaSpecificationExecutor;
+import org.springframework.data.jpa.repository.Query;
 import org.springframework.data.repository.CrudRepository;
+import org.springframework.data.repository.query.Param;
 import org.springframework.transaction.annotation.Transactional;
 import org.thingsboard.server.dao.model.sql.RelationCompositeKey;
 import org.thingsboard.server.dao.model.sql.RelationEntity;
@@ -48,6 +50,18 @@ public interface RelationRepository
     List<RelationEntity> findAllByFromIdAndFromType(UUID fromId,
                                                     String fromType);
 
+    @Query(value = "WITH RECURSIVE related_entities(from_id, from_type, to_id, to_type, relation_type_group, relation_type, additional_info) AS (" +
+            "SELECT from_id, from_type, to_id, to_type, relation_type_group, relation_type, additional_info FROM relation " +
+            "WHERE to_id = :toId AND to_type = :toType AND relation_type_group = :relationTypeGroup " +
+            "UNION " +
+            "SELECT r.from_id, r.from_type, r.to_id, r.to_type, r.relation_type_group, r.relation_type, r.additional_info FROM relation r " +
+            "INNER JOIN related_entities re ON r.to_id = re.from_id AND r.to_type = re.from_type " +
+            "WHERE r.relation_type_group = :relationTypeGroup) " +
+            "SELECT * FROM related_entities", nativeQuery = true)
+    List<RelationEntity> findAllByToIdAndToTypeAndRelationTypeGroupRecursively(@Param("toId") UUID toId,
+                                                                               @Param("toType") String toType,
+                                                                               @Param("relationTypeGroup") String relationTypeGroup);
+
     @Transactional
     <S extends RelationEntity> S save(S entity);
 
@@ -30,7 +30,9 @@ import org.thingsboard.server.dao.model.sql.RpcEntity;
 import org.thingsboard.server.dao.rpc.RpcDao;
 import org.thingsboard.server.dao.sql.JpaAbstractDao;
 
+import java.util.List;
 import java.util.UUID;
+import java.util.stream.Collectors;
 
 @Slf4j
 @Component
@@ -54,6 +56,12 @@ public class JpaRpcDao extends JpaAbstractDao<RpcEntity, Rpc> implements RpcDao
         return DaoUtil.toPageData(rpcRepository.findAllByTenantIdAndDeviceIdAndStatus(tenantId.getId(), deviceId.getId(), rpcStatus, DaoUtil.toPageable(pageLink)));
     }
 
+    @Override
+    public List<Rpc> findAllByDeviceIds(TenantId tenantId, List<DeviceId> deviceIds, RpcStatus rpcStatus) {
+        return DaoUtil.convertDataList(rpcRepository.findAllByTenantIdAndDeviceIdInAndStatus(tenantId.getId(),
+                deviceIds.stream().map(DeviceId::getId).collect(Collectors.toList()), rpcStatus));
+    }
+
     @Override
     public PageData<Rpc> findAllRpcByTenantId(TenantId tenantId, PageLink pageLink) {
         return DaoUtil.toPageData(rpcRepository.findAllByTenantId(tenantId.getId(), DaoUtil.toPageable(pageLink)));
@@ -23,11 +23,15 @@ import org.springframework.data.repository.query.Param;
 import org.thingsboard.server.common.data.rpc.RpcStatus;
 import org.thingsboard.server.dao.model.sql.RpcEntity;
 
+import java.util.Collection;
+import java.util.List;
 import java.util.UUID;
 
 public interface RpcRepository extends CrudRepository<RpcEntity, UUID> {
     Page<RpcEntity> findAllByTenantIdAndDeviceIdAndStatus(UUID tenantId, UUID deviceId, RpcStatus status, Pageable pageable);
 
+    List<RpcEntity> findAllByTenantIdAndDeviceIdInAndStatus(UUID tenantId, Collection<UUID> deviceIds, RpcStatus status);
+
     Page<RpcEntity> findAllByTenantId(UUID tenantId, Pageable pageable);
 
     @Query(value = "WITH deleted AS (DELETE FROM rpc WHERE (tenant_id = :tenantId AND created_time < :expirationTime) IS TRUE RETURNING *) SELECT count(*) FROM deleted",
@@ -18,14 +18,22 @@ package org.thingsboard.server.dao.sqlts;
 import com.google.common.base.Function;
 import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
+import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Sort;
+import org.springframework.jdbc.core.namedparam.MapSqlParameterSource;
+import org.springframework.jdbc.core.namedparam.NamedParameterJdbcTemplate;
 import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.Aggregation;
 import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
 import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.dao.DaoUtil;
 import org.thingsboard.server.dao.model.ModelConstants;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
 import org.thingsboard.server.dao.sql.ScheduledLogExecutorComponent;
 
 import javax.annotation.Nullable;
@@ -33,8 +41,15 @@ import java.sql.Connection;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
 import java.util.List;
+import java.util.Map;
 import java.util.Objects;
+import java.util.Set;
+import java.util.UUID;
 import java.util.concurrent.TimeUnit;
 import java.util.stream.Collectors;
 
@@ -43,9 +58,18 @@ public abstract class AbstractSqlTimeseriesDao extends BaseAbstractSqlTimeseries
 
     protected static final long SECONDS_IN_DAY = TimeUnit.DAYS.toSeconds(1);
 
+    private static final String FIND_ALL_WITH_LIMIT_FOR_ENTITIES = "SELECT entity_id, key, ts, bool_v, str_v, long_v, dbl_v, json_v FROM " +
+            "(SELECT entity_id, key, ts, bool_v, str_v, long_v, dbl_v, json_v, " +
+            "row_number() OVER (PARTITION BY entity_id, key ORDER BY ts %s) AS rn FROM ts_kv " +
+            "WHERE entity_id IN (:entityIds) AND key IN (:keys) AND ts >= :startTs AND ts < :endTs) AS data " +
+            "WHERE rn <= :limit ORDER BY entity_id, key, ts %s";
+
     @Autowired
     protected ScheduledLogExecutorComponent logExecutor;
 
+    @Autowired
+    protected NamedParameterJdbcTemplate namedParameterJdbcTemplate;
+
     @Value("${sql.ts.batch_size:1000}")
     protected int tsBatchSize;
 
@@ -105,6 +129,77 @@ public abstract class AbstractSqlTimeseriesDao extends BaseAbstractSqlTimeseries
         }, service);
     }
 
+    /**
+     * Reads the raw (not aggregated) queries of all the entities with one statement per distinct
+     * (startTs, endTs, limit, order) combination. The limit is applied per entity and key.
+     * Aggregated queries are still executed per entity.
+     */
+    protected ListenableFuture<Map<EntityId, List<TsKvEntry>>> processFindAllAsync(TenantId tenantId, List<EntityId> entityIds, List<ReadTsKvQuery> queries) {
+        Map<UUID, EntityId> entityIdsMap = new LinkedHashMap<>();
+        entityIds.forEach(entityId -> entityIdsMap.put(entityId.getId(), entityId));
+        Map<RawQueryGroup, Set<String>> rawQueries = new LinkedHashMap<>();
+        List<ReadTsKvQuery> aggQueries = new ArrayList<>();
+        for (ReadTsKvQuery query : queries) {
+            if (query.getAggregation() == Aggregation.NONE) {
+                RawQueryGroup group = new RawQueryGroup(query.getStartTs(), query.getEndTs(), query.getLimit(),
+                        Sort.Direction.fromString(query.getOrder()));
+                rawQueries.computeIfAbsent(group, g -> new LinkedHashSet<>()).add(query.getKey());
+            } else {
+                aggQueries.add(query);
+            }
+        }
+        List<ListenableFuture<Map<EntityId, List<TsKvEntry>>>> futures = new ArrayList<>();
+        if (!entityIdsMap.isEmpty()) {
+            rawQueries.forEach((group, keys) -> futures.add(service.submit(() -> findAllWithLimit(entityIdsMap, group, keys))));
+        }
+        if (!aggQueries.isEmpty()) {
+            for (EntityId entityId : entityIds) {
+                futures.add(Futures.transform(processFindAllAsync(tenantId, entityId, aggQueries), entries -> {
+                    Map<EntityId, List<TsKvEntry>> entityResult = new HashMap<>();
+                    if (entries != null) {
+                        entityResult.put(entityId, entries);
+                    }
+                    return entityResult;
+                }, MoreExecutors.directExecutor()));
+            }
+        }
+        return Futures.transform(Futures.allAsList(futures), results -> {
+            Map<EntityId, List<TsKvEntry>> result = new HashMap<>();
+            entityIds.forEach(entityId -> result.put(entityId, new ArrayList<>()));
+            if (results != null) {
+                results.forEach(partial -> partial.forEach((entityId, entries) -> result.get(entityId).addAll(entries)));
+            }
+            return result;
+        }, MoreExecutors.directExecutor());
+    }
+
+    private Map<EntityId, List<TsKvEntry>> findAllWithLimit(Map<UUID, EntityId> entityIdsMap, RawQueryGroup group, Set<String> keys) {
+        Map<Integer, String> keysMap = new HashMap<>();
+        keys.forEach(key -> keysMap.put(getOrSaveKeyId(key), key));
+        MapSqlParameterSource params = new MapSqlParameterSource()
+                .addValue("entityIds", entityIdsMap.keySet())
+                .addValue("keys", keysMap.keySet())
+                .addValue("startTs", group.getStartTs())
+                .addValue("endTs", group.getEndTs())
+                .addValue("limit", group.getLimit());
+        String order = group.getOrder().name();
+        Map<EntityId, List<TsKvEntry>> result = new HashMap<>();
+        namedParameterJdbcTemplate.query(String.format(FIND_ALL_WITH_LIMIT_FOR_ENTITIES, order, order), params, rs -> {
+            TsKvEntity entity = new TsKvEntity();
+            entity.setEntityId(rs.getObject("entity_id", UUID.class));
+            entity.setKey(rs.getInt("key"));
+            entity.setStrKey(keysMap.get(entity.getKey()));
+            entity.setTs(rs.getLong("ts"));
+            entity.setBooleanValue(rs.getObject("bool_v", Boolean.class));
+            entity.setStrValue(rs.getString("str_v"));
+            entity.setLongValue(rs.getObject("long_v", Long.class));
+            entity.setDoubleValue(rs.getObject("dbl_v", Double.class));
+            entity.setJsonValue(rs.getString("json_v"));
+            result.computeIfAbsent(entityIdsMap.get(entity.getEntityId()), id -> new ArrayList<>()).add(DaoUtil.getData(entity));
+        });
+        return result;
+    }
+
     protected long computeTtl(long ttl) {
         if (systemTtl > 0) {
             if (ttl == 0) {
@@ -119,4 +214,12 @@ public abstract class AbstractSqlTimeseriesDao extends BaseAbstractSqlTimeseries
     protected int getDataPointDays(TsKvEntry tsKvEntry, long ttl) {
         return tsKvEntry.getDataPoints() * Math.max(1, (int) (ttl / SECONDS_IN_DAY));
     }
+
+    @Data
+    private static class RawQueryGroup {
+        private final long startTs;
+        private final long endTs;
+        private final int limit;
+        private final Sort.Direction order;
+    }
 }
@@ -53,6 +53,8 @@ import javax.annotation.Nullable;
 import javax.annotation.PostConstruct;
 import javax.annotation.PreDestroy;
 import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashMap;
 import java.util.List;
@@ -156,6 +158,16 @@ public class SqlTimeseriesLatestDao extends BaseAbstractSqlTimeseriesDao impleme
         return getFindLatestFuture(entityId, key);
     }
 
+    @Override
+    public ListenableFuture<Map<EntityId, List<TsKvEntry>>> findLatest(TenantId tenantId, List<EntityId> entityIds, Collection<String> keys) {
+        if (entityIds.isEmpty() || keys.isEmpty()) {
+            Map<EntityId, List<TsKvEntry>> result = new HashMap<>();
+            entityIds.forEach(entityId -> result.put(entityId, new ArrayList<>()));
+            return Futures.immediateFuture(result);
+        }
+        return service.submit(() -> getFindLatestForEntities(entityIds, keys));
+    }
+
     @Override
     public ListenableFuture<List<TsKvEntry>> findAllLatest(TenantId tenantId, EntityId entityId) {
         return getFindAllLatestFuture(entityId);
@@ -212,6 +224,25 @@ public class SqlTimeseriesLatestDao extends BaseAbstractSqlTimeseriesDao impleme
         return Futures.immediateFuture(result);
     }
 
+    protected Map<EntityId, List<TsKvEntry>> getFindLatestForEntities(List<EntityId> entityIds, Collection<String> keys) {
+        Map<UUID, Map<String, TsKvLatestEntity>> found = new HashMap<>();
+        List<UUID> ids = entityIds.stream().map(EntityId::getId).collect(Collectors.toList());
+        for (TsKvLatestEntity entity : searchTsKvLatestRepository.findAllByEntityIdsAndKeys(ids, keys)) {
+            found.computeIfAbsent(entity.getEntityId(), id -> new HashMap<>()).put(entity.getStrKey(), entity);
+        }
+        Map<EntityId, List<TsKvEntry>> result = new HashMap<>();
+        for (EntityId entityId : entityIds) {
+            Map<String, TsKvLatestEntity> entityValues = found.getOrDefault(entityId.getId(), Collections.emptyMap());
+            List<TsKvEntry> entries = new ArrayList<>(keys.size());
+            for (String key : keys) {
+                TsKvLatestEntity entity = entityValues.get(key);
+                entries.add(entity != null ? DaoUtil.getData(entity) : new BasicTsKvEntry(System.currentTimeMillis(), new StringDataEntry(key, null)));
+            }
+            result.put(entityId, entries);
+        }
+        return result;
+    }
+
     protected ListenableFuture<Void> getRemoveLatestFuture(TenantId tenantId, EntityId entityId, DeleteTsKvQuery query) {
         ListenableFuture<TsKvEntry> latestFuture = getFindLatestFuture(entityId, query.getKey());
 
@@ -32,6 +32,9 @@ public abstract class AbstractInsertRepository {
     @Value("${sql.remove_null_chars}")
     private boolean removeNullChars;
 
+    @Value("${sql.copy_upsert_enabled:false}")
+    protected boolean copyUpsertEnabled;
+
     @Autowired
     protected JdbcTemplate jdbcTemplate;
 
@@ -22,6 +22,7 @@ import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
 import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 import org.thingsboard.server.dao.model.sqlts.latest.TsKvLatestEntity;
+import org.thingsboard.server.dao.sql.PsqlCopyWriter;
 import org.thingsboard.server.dao.sqlts.insert.AbstractInsertRepository;
 import org.thingsboard.server.dao.sqlts.insert.latest.InsertLatestTsRepository;
 import org.thingsboard.server.dao.util.PsqlTsLatestAnyDao;
@@ -52,8 +53,28 @@ public class PsqlLatestInsertTsRepository extends AbstractInsertRepository imple
 
     private static final String INSERT_OR_UPDATE_BY_LATEST_TS = INSERT_OR_UPDATE + " WHERE ts_kv_latest.ts <= ?";
 
+    private static final String CREATE_COPY_TABLE = "CREATE TEMP TABLE IF NOT EXISTS ts_kv_latest_copy (seq int, entity_id uuid, key int, ts bigint, " +
+            "bool_v boolean, str_v varchar(10000000), long_v bigint, dbl_v double precision, json_v json) ON COMMIT DELETE ROWS;";
+
+    private static final String COPY = "COPY ts_kv_latest_copy (seq, entity_id, key, ts, bool_v, str_v, long_v, dbl_v, json_v) FROM STDIN";
+
+    private static final String MERGE_COPY_PREFIX = "INSERT INTO ts_kv_latest (entity_id, key, ts, bool_v, str_v, long_v, dbl_v, json_v) " +
+            "SELECT DISTINCT ON (entity_id, key) entity_id, key, ts, bool_v, str_v, long_v, dbl_v, json_v FROM ts_kv_latest_copy ";
+
+    private static final String MERGE_COPY_ON_CONFLICT = "ON CONFLICT (entity_id, key) DO UPDATE SET ts = EXCLUDED.ts, bool_v = EXCLUDED.bool_v, " +
+            "str_v = EXCLUDED.str_v, long_v = EXCLUDED.long_v, dbl_v = EXCLUDED.dbl_v, json_v = EXCLUDED.json_v";
+
+    private static final String MERGE_COPY = MERGE_COPY_PREFIX + "ORDER BY entity_id, key, seq DESC " + MERGE_COPY_ON_CONFLICT;
+
+    private static final String MERGE_COPY_BY_LATEST_TS = MERGE_COPY_PREFIX + "ORDER BY entity_id, key, ts DESC, seq DESC " +
+            MERGE_COPY_ON_CONFLICT + " WHERE ts_kv_latest.ts <= EXCLUDED.ts";
+
     @Override
     public void saveOrUpdate(List<TsKvLatestEntity> entities) {
+        if (copyUpsertEnabled) {
+            copyAndMerge(entities);
+            return;
+        }
         transactionTemplate.execute(new TransactionCallbackWithoutResult() {
             @Override
             protected void doInTransactionWithoutResult(TransactionStatus status) {
@@ -167,4 +188,27 @@ public class PsqlLatestInsertTsRepository extends AbstractInsertRepository imple
             }
         });
     }
+
+    private void copyAndMerge(List<TsKvLatestEntity> entities) {
+        transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                PsqlCopyWriter.copyAndMerge(jdbcTemplate, CREATE_COPY_TABLE, COPY, updateByLatestTs ? MERGE_COPY_BY_LATEST_TS : MERGE_COPY, writer -> {
+                    for (int i = 0; i < entities.size(); i++) {
+                        TsKvLatestEntity tsKvLatestEntity = entities.get(i);
+                        writer.add(i)
+                                .add(tsKvLatestEntity.getEntityId())
+                                .add(tsKvLatestEntity.getKey())
+                                .add(tsKvLatestEntity.getTs())
+                                .add(tsKvLatestEntity.getBooleanValue())
+                                .add(replaceNullChars(tsKvLatestEntity.getStrValue()))
+                                .add(tsKvLatestEntity.getLongValue())
+                                .add(tsKvLatestEntity.getDoubleValue())
+                                .add(replaceNullChars(tsKvLatestEntity.getJsonValue()))
+                                .endRow();
+                    }
+                });
+            }
+        });
+    }
 }
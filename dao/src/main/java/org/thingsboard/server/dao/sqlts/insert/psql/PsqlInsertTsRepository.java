@@ -17,8 +17,11 @@ package org.thingsboard.server.dao.sqlts.insert.psql;
 
 import org.springframework.jdbc.core.BatchPreparedStatementSetter;
 import org.springframework.stereotype.Repository;
+import org.springframework.transaction.TransactionStatus;
 import org.springframework.transaction.annotation.Transactional;
+import org.springframework.transaction.support.TransactionCallbackWithoutResult;
 import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+import org.thingsboard.server.dao.sql.PsqlCopyWriter;
 import org.thingsboard.server.dao.sqlts.insert.AbstractInsertRepository;
 import org.thingsboard.server.dao.sqlts.insert.InsertTsRepository;
 import org.thingsboard.server.dao.util.PsqlDao;
@@ -38,8 +41,23 @@ public class PsqlInsertTsRepository extends AbstractInsertRepository implements
     private static final String INSERT_ON_CONFLICT_DO_UPDATE = "INSERT INTO ts_kv (entity_id, key, ts, bool_v, str_v, long_v, dbl_v, json_v) VALUES (?, ?, ?, ?, ?, ?, ?, cast(? AS json)) " +
             "ON CONFLICT (entity_id, key, ts) DO UPDATE SET bool_v = ?, str_v = ?, long_v = ?, dbl_v = ?, json_v = cast(? AS json);";
 
+    private static final String CREATE_COPY_TABLE = "CREATE TEMP TABLE IF NOT EXISTS ts_kv_copy (seq int, entity_id uuid, key int, ts bigint, " +
+            "bool_v boolean, str_v varchar(10000000), long_v bigint, dbl_v double precision, json_v json) ON COMMIT DELETE ROWS;";
+
+    private static final String COPY = "COPY ts_kv_copy (seq, entity_id, key, ts, bool_v, str_v, long_v, dbl_v, json_v) FROM STDIN";
+
+    private static final String MERGE_COPY = "INSERT INTO ts_kv (entity_id, key, ts, bool_v, str_v, long_v, dbl_v, json_v) " +
+            "SELECT DISTINCT ON (entity_id, key, ts) entity_id, key, ts, bool_v, str_v, long_v, dbl_v, json_v FROM ts_kv_copy " +
+            "ORDER BY entity_id, key, ts, seq DESC " +
+            "ON CONFLICT (entity_id, key, ts) DO UPDATE SET bool_v = EXCLUDED.bool_v, str_v = EXCLUDED.str_v, " +
+            "long_v = EXCLUDED.long_v, dbl_v = EXCLUDED.dbl_v, json_v = EXCLUDED.json_v;";
+
     @Override
     public void saveOrUpdate(List<TsKvEntity> entities) {
+        if (copyUpsertEnabled) {
+            copyAndMerge(entities);
+            return;
+        }
         jdbcTemplate.batchUpdate(INSERT_ON_CONFLICT_DO_UPDATE, new BatchPreparedStatementSetter() {
             @Override
             public void setValues(PreparedStatement ps, int i) throws SQLException {
@@ -87,4 +105,27 @@ public class PsqlInsertTsRepository extends AbstractInsertRepository implements
         });
     }
 
+    private void copyAndMerge(List<TsKvEntity> entities) {
+        transactionTemplate.execute(new TransactionCallbackWithoutResult() {
+            @Override
+            protected void doInTransactionWithoutResult(TransactionStatus status) {
+                PsqlCopyWriter.copyAndMerge(jdbcTemplate, CREATE_COPY_TABLE, COPY, MERGE_COPY, writer -> {
+                    for (int i = 0; i < entities.size(); i++) {
+                        TsKvEntity tsKvEntity = entities.get(i);
+                        writer.add(i)
+                                .add(tsKvEntity.getEntityId())
+                                .add(tsKvEntity.getKey())
+                                .add(tsKvEntity.getTs())
+                                .add(tsKvEntity.getBooleanValue())
+                                .add(replaceNullChars(tsKvEntity.getStrValue()))
+                                .add(tsKvEntity.getLongValue())
+                                .add(tsKvEntity.getDoubleValue())
+                                .add(replaceNullChars(tsKvEntity.getJsonValue()))
+                                .endRow();
+                    }
+                });
+            }
+        });
+    }
+
 }
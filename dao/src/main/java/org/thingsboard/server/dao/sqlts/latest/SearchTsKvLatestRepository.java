@@ -21,6 +21,7 @@ import org.thingsboard.server.dao.util.SqlTsLatestAnyDao;
 
 import javax.persistence.EntityManager;
 import javax.persistence.PersistenceContext;
+import java.util.Collection;
 import java.util.List;
 import java.util.UUID;
 
@@ -34,6 +35,12 @@ public class SearchTsKvLatestRepository {
             " ts_kv_latest.bool_v AS boolValue, ts_kv_latest.long_v AS longValue, ts_kv_latest.dbl_v AS doubleValue, ts_kv_latest.json_v AS jsonValue, ts_kv_latest.ts AS ts FROM ts_kv_latest " +
             "INNER JOIN ts_kv_dictionary ON ts_kv_latest.key = ts_kv_dictionary.key_id WHERE ts_kv_latest.entity_id = cast(:id AS uuid)";
 
+    public static final String FIND_ALL_BY_ENTITY_IDS_AND_KEYS = "findAllByEntityIdsAndKeys";
+
+    public static final String FIND_ALL_BY_ENTITY_IDS_AND_KEYS_QUERY = "SELECT ts_kv_latest.entity_id AS entityId, ts_kv_latest.key AS key, ts_kv_dictionary.key AS strKey, ts_kv_latest.str_v AS strValue," +
+            " ts_kv_latest.bool_v AS boolValue, ts_kv_latest.long_v AS longValue, ts_kv_latest.dbl_v AS doubleValue, ts_kv_latest.json_v AS jsonValue, ts_kv_latest.ts AS ts FROM ts_kv_latest " +
+            "INNER JOIN ts_kv_dictionary ON ts_kv_latest.key = ts_kv_dictionary.key_id WHERE ts_kv_latest.entity_id IN :ids AND ts_kv_dictionary.key IN :keys";
+
     @PersistenceContext
     private EntityManager entityManager;
 
@@ -43,4 +50,11 @@ public class SearchTsKvLatestRepository {
                 .getResultList();
     }
 
+    public List<TsKvLatestEntity> findAllByEntityIdsAndKeys(Collection<UUID> entityIds, Collection<String> keys) {
+        return entityManager.createNamedQuery(FIND_ALL_BY_ENTITY_IDS_AND_KEYS, TsKvLatestEntity.class)
+                .setParameter("ids", entityIds)
+                .setParameter("keys", keys)
+                .getResultList();
+    }
+
 }
@@ -105,6 +105,11 @@ public class TimescaleTimeseriesDao extends AbstractSqlTimeseriesDao implements
         return processFindAllAsync(tenantId, entityId, queries);
     }
 
+    @Override
+    public ListenableFuture<Map<EntityId, List<TsKvEntry>>> findAllAsync(TenantId tenantId, List<EntityId> entityIds, List<ReadTsKvQuery> queries) {
+        return processFindAllAsync(tenantId, entityIds, queries);
+    }
+
     @Override
     public ListenableFuture<Integer> save(TenantId tenantId, EntityId entityId, TsKvEntry tsKvEntry, long ttl) {
         int dataPointDays = getDataPointDays(tsKvEntry,  computeTtl(ttl));
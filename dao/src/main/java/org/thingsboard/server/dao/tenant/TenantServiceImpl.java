@@ -158,6 +158,7 @@ public class TenantServiceImpl extends AbstractEntityService implements TenantSe
         rpcService.deleteAllRpcByTenantId(tenantId);
         tenantDao.removeById(tenantId, tenantId.getId());
         deleteEntityRelations(tenantId, tenantId);
+        alarmService.onEntityDeleted(tenantId, tenantId);
     }
 
     @Override
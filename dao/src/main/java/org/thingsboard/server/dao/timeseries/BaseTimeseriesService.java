@@ -24,6 +24,7 @@ import lombok.extern.slf4j.Slf4j;
 import org.checkerframework.checker.nullness.qual.Nullable;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.cache.Cache;
 import org.springframework.stereotype.Service;
 import org.thingsboard.server.common.data.EntityType;
 import org.thingsboard.server.common.data.EntityView;
@@ -34,16 +35,21 @@ import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.kv.Aggregation;
 import org.thingsboard.server.common.data.kv.BaseDeleteTsKvQuery;
 import org.thingsboard.server.common.data.kv.BaseReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
 import org.thingsboard.server.common.data.kv.DeleteTsKvQuery;
 import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
 import org.thingsboard.server.common.data.kv.TsKvEntry;
 import org.thingsboard.server.dao.entityview.EntityViewService;
 import org.thingsboard.server.dao.exception.IncorrectParameterException;
 import org.thingsboard.server.dao.service.Validator;
 
+import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.stream.Collectors;
 
 import static org.apache.commons.lang3.StringUtils.isBlank;
@@ -75,6 +81,9 @@ public class BaseTimeseriesService implements TimeseriesService {
     @Value("${database.ts_max_intervals}")
     private long maxTsIntervals;
 
+    @Value("${database.ts_downsampling_page_size:100000}")
+    private int downsamplingPageSize;
+
     @Autowired
     private TimeseriesDao timeseriesDao;
 
@@ -84,6 +93,9 @@ public class BaseTimeseriesService implements TimeseriesService {
     @Autowired
     private EntityViewService entityViewService;
 
+    @Autowired(required = false)
+    private TsLatestCacheWrapper tsLatestCache;
+
     @Override
     public ListenableFuture<List<TsKvEntry>> findAll(TenantId tenantId, EntityId entityId, List<ReadTsKvQuery> queries) {
         validate(entityId);
@@ -96,9 +108,91 @@ public class BaseTimeseriesService implements TimeseriesService {
                     queries.stream()
                             .filter(query -> keys.isEmpty() || keys.contains(query.getKey()))
                             .collect(Collectors.toList());
-            return timeseriesDao.findAllAsync(tenantId, entityView.getEntityId(), updateQueriesForEntityView(entityView, filteredQueries));
+            return findAllAndDownsample(tenantId, entityView.getEntityId(), updateQueriesForEntityView(entityView, filteredQueries));
         }
-        return timeseriesDao.findAllAsync(tenantId, entityId, queries);
+        return findAllAndDownsample(tenantId, entityId, queries);
+    }
+
+    @Override
+    public ListenableFuture<Map<EntityId, List<TsKvEntry>>> findAll(TenantId tenantId, List<EntityId> entityIds, List<ReadTsKvQuery> queries) {
+        entityIds.forEach(BaseTimeseriesService::validate);
+        queries.forEach(this::validate);
+        boolean downsampled = queries.stream().anyMatch(BaseTimeseriesService::isDownsampled);
+        List<EntityId> regularEntityIds = new ArrayList<>(entityIds.size());
+        List<ListenableFuture<Map<EntityId, List<TsKvEntry>>>> futures = new ArrayList<>();
+        for (EntityId entityId : entityIds) {
+            if (downsampled || entityId.getEntityType().equals(EntityType.ENTITY_VIEW)) {
+                futures.add(Futures.transform(findAll(tenantId, entityId, queries), entries -> {
+                    Map<EntityId, List<TsKvEntry>> result = new HashMap<>();
+                    result.put(entityId, entries != null ? entries : Collections.emptyList());
+                    return result;
+                }, MoreExecutors.directExecutor()));
+            } else {
+                regularEntityIds.add(entityId);
+            }
+        }
+        if (!regularEntityIds.isEmpty()) {
+            futures.add(timeseriesDao.findAllAsync(tenantId, regularEntityIds, queries));
+        }
+        return Futures.transform(Futures.allAsList(futures), results -> {
+            Map<EntityId, List<TsKvEntry>> result = new HashMap<>();
+            results.forEach(result::putAll);
+            return result;
+        }, MoreExecutors.directExecutor());
+    }
+
+    /**
+     * Downsampled queries ignore the query limit and read the whole interval in ascending pages, so the reduced series
+     * covers the requested interval and not only its newest records. Each page is reduced to maxDataPoints as soon as
+     * it is fetched, which keeps the memory bounded by the number of pages rather than the number of raw records.
+     */
+    private ListenableFuture<List<TsKvEntry>> findAllAndDownsample(TenantId tenantId, EntityId entityId, List<ReadTsKvQuery> queries) {
+        Map<Boolean, List<ReadTsKvQuery>> queriesByDownsampling = queries.stream().collect(Collectors.partitioningBy(BaseTimeseriesService::isDownsampled));
+        List<ReadTsKvQuery> downsampledQueries = queriesByDownsampling.get(true);
+        if (downsampledQueries.isEmpty()) {
+            return timeseriesDao.findAllAsync(tenantId, entityId, queries);
+        }
+        List<ListenableFuture<List<TsKvEntry>>> futures = new ArrayList<>(downsampledQueries.size() + 1);
+        List<ReadTsKvQuery> regularQueries = queriesByDownsampling.get(false);
+        if (!regularQueries.isEmpty()) {
+            futures.add(timeseriesDao.findAllAsync(tenantId, entityId, regularQueries));
+        }
+        for (ReadTsKvQuery query : downsampledQueries) {
+            futures.add(Futures.transform(findAllPagesAndDownsample(tenantId, entityId, query, query.getStartTs(), new ArrayList<>()), entries -> {
+                List<TsKvEntry> result = TsKvDownsampler.downsample(entries, query.getMaxDataPoints());
+                if ("DESC".equals(query.getOrder())) {
+                    result = new ArrayList<>(result);
+                    Collections.reverse(result);
+                }
+                return result;
+            }, MoreExecutors.directExecutor()));
+        }
+        return Futures.transform(Futures.allAsList(futures), results -> {
+            List<TsKvEntry> result = new ArrayList<>();
+            results.forEach(result::addAll);
+            return result;
+        }, MoreExecutors.directExecutor());
+    }
+
+    private ListenableFuture<List<TsKvEntry>> findAllPagesAndDownsample(TenantId tenantId, EntityId entityId, ReadTsKvQuery query,
+                                                                        long startTs, List<TsKvEntry> reduced) {
+        ReadTsKvQuery pageQuery = new BaseReadTsKvQuery(query.getKey(), startTs, query.getEndTs(), query.getInterval(),
+                downsamplingPageSize, Aggregation.NONE, "ASC");
+        return Futures.transformAsync(timeseriesDao.findAllAsync(tenantId, entityId, Collections.singletonList(pageQuery)), page -> {
+            if (page == null || page.isEmpty()) {
+                return Futures.immediateFuture(reduced);
+            }
+            reduced.addAll(TsKvDownsampler.downsample(page, query.getMaxDataPoints()));
+            long lastTs = page.get(page.size() - 1).getTs();
+            if (page.size() < downsamplingPageSize || lastTs + 1 >= query.getEndTs()) {
+                return Futures.immediateFuture(reduced);
+            }
+            return findAllPagesAndDownsample(tenantId, entityId, query, lastTs + 1, reduced);
+        }, MoreExecutors.directExecutor());
+    }
+
+    private static boolean isDownsampled(ReadTsKvQuery query) {
+        return Aggregation.NONE.equals(query.getAggregation()) && query.getMaxDataPoints() > 0;
     }
 
     @Override
@@ -106,14 +200,89 @@ public class BaseTimeseriesService implements TimeseriesService {
         validate(entityId);
         List<ListenableFuture<TsKvEntry>> futures = Lists.newArrayListWithExpectedSize(keys.size());
         keys.forEach(key -> Validator.validateString(key, "Incorrect key " + key));
-        keys.forEach(key -> futures.add(timeseriesLatestDao.findLatest(tenantId, entityId, key)));
+        keys.forEach(key -> futures.add(findLatest(tenantId, entityId, key)));
         return Futures.allAsList(futures);
     }
 
+    @Override
+    public ListenableFuture<Map<EntityId, List<TsKvEntry>>> findLatest(TenantId tenantId, List<EntityId> entityIds, Collection<String> keys) {
+        entityIds.forEach(BaseTimeseriesService::validate);
+        keys.forEach(key -> Validator.validateString(key, "Incorrect key " + key));
+        if (tsLatestCache == null) {
+            return timeseriesLatestDao.findLatest(tenantId, entityIds, keys);
+        }
+        Map<EntityId, List<TsKvEntry>> result = new HashMap<>();
+        List<EntityId> notCachedEntityIds = new ArrayList<>();
+        for (EntityId entityId : entityIds) {
+            List<TsKvEntry> cachedEntries = getCachedLatest(entityId, keys);
+            if (cachedEntries != null) {
+                result.put(entityId, cachedEntries);
+            } else {
+                notCachedEntityIds.add(entityId);
+            }
+        }
+        if (notCachedEntityIds.isEmpty()) {
+            return Futures.immediateFuture(result);
+        }
+        return Futures.transform(timeseriesLatestDao.findLatest(tenantId, notCachedEntityIds, keys), foundEntries -> {
+            foundEntries.forEach((entityId, entries) -> entries.forEach(entry ->
+                    tsLatestCache.putIfAbsent(new TsLatestCacheKey(entityId, entry.getKey()), entry.getValue() != null ? entry : null)));
+            result.putAll(foundEntries);
+            return result;
+        }, tsLatestCache.getExecutor());
+    }
+
+    private List<TsKvEntry> getCachedLatest(EntityId entityId, Collection<String> keys) {
+        List<TsKvEntry> entries = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            Cache.ValueWrapper cachedValue = tsLatestCache.get(new TsLatestCacheKey(entityId, key));
+            if (cachedValue == null) {
+                return null;
+            }
+            TsKvEntry cachedEntry = (TsKvEntry) cachedValue.get();
+            entries.add(cachedEntry != null ? cachedEntry : new BasicTsKvEntry(System.currentTimeMillis(), new StringDataEntry(key, null)));
+        }
+        return entries;
+    }
+
+    private ListenableFuture<TsKvEntry> findLatest(TenantId tenantId, EntityId entityId, String key) {
+        if (tsLatestCache == null) {
+            return timeseriesLatestDao.findLatest(tenantId, entityId, key);
+        }
+        TsLatestCacheKey cacheKey = new TsLatestCacheKey(entityId, key);
+        Cache.ValueWrapper cachedValue = tsLatestCache.get(cacheKey);
+        if (cachedValue != null) {
+            TsKvEntry cachedEntry = (TsKvEntry) cachedValue.get();
+            return Futures.immediateFuture(cachedEntry != null ? cachedEntry : new BasicTsKvEntry(System.currentTimeMillis(), new StringDataEntry(key, null)));
+        }
+        return Futures.transform(timeseriesLatestDao.findLatest(tenantId, entityId, key), foundEntry -> {
+            tsLatestCache.putIfAbsent(cacheKey, foundEntry != null && foundEntry.getValue() != null ? foundEntry : null);
+            return foundEntry;
+        }, tsLatestCache.getExecutor());
+    }
+
     @Override
     public ListenableFuture<List<TsKvEntry>> findAllLatest(TenantId tenantId, EntityId entityId) {
         validate(entityId);
-        return timeseriesLatestDao.findAllLatest(tenantId, entityId);
+        if (tsLatestCache == null) {
+            return timeseriesLatestDao.findAllLatest(tenantId, entityId);
+        }
+        TsLatestCacheKey keysCacheKey = TsLatestCacheKey.allKeys(entityId);
+        Cache.ValueWrapper cachedKeys = tsLatestCache.get(keysCacheKey);
+        if (cachedKeys != null) {
+            @SuppressWarnings("unchecked")
+            List<TsKvEntry> cachedEntries = getCachedLatest(entityId, (List<String>) cachedKeys.get());
+            if (cachedEntries != null) {
+                return Futures.immediateFuture(cachedEntries.stream().filter(entry -> entry.getValue() != null).collect(Collectors.toList()));
+            }
+        }
+        return Futures.transform(timeseriesLatestDao.findAllLatest(tenantId, entityId), foundEntries -> {
+            if (foundEntries != null) {
+                foundEntries.forEach(entry -> tsLatestCache.putIfAbsent(new TsLatestCacheKey(entityId, entry.getKey()), entry));
+                tsLatestCache.putIfAbsent(keysCacheKey, foundEntries.stream().map(TsKvEntry::getKey).collect(Collectors.toCollection(ArrayList::new)));
+            }
+            return foundEntries;
+        }, tsLatestCache.getExecutor());
     }
 
     @Override
@@ -161,17 +330,40 @@ public class BaseTimeseriesService implements TimeseriesService {
             if (tsKvEntry == null) {
                 throw new IncorrectParameterException("Key value entry can't be null");
             }
-            futures.add(timeseriesLatestDao.saveLatest(tenantId, entityId, tsKvEntry));
+            futures.add(saveLatest(tenantId, entityId, tsKvEntry));
         }
         return Futures.allAsList(futures);
     }
 
+    private ListenableFuture<Void> saveLatest(TenantId tenantId, EntityId entityId, TsKvEntry tsKvEntry) {
+        ListenableFuture<Void> future = timeseriesLatestDao.saveLatest(tenantId, entityId, tsKvEntry);
+        if (tsLatestCache != null) {
+            // concurrent saves of the same key may complete in any order, so the entry is evicted instead of being updated
+            future.addListener(() -> evictLatest(entityId, tsKvEntry.getKey()), tsLatestCache.getExecutor());
+        }
+        return future;
+    }
+
+    private ListenableFuture<Void> removeLatest(TenantId tenantId, EntityId entityId, DeleteTsKvQuery query) {
+        ListenableFuture<Void> future = timeseriesLatestDao.removeLatest(tenantId, entityId, query);
+        if (tsLatestCache != null) {
+            // the removal may rewrite the latest value with the previous one, so the entry is evicted instead of being updated
+            future.addListener(() -> evictLatest(entityId, query.getKey()), tsLatestCache.getExecutor());
+        }
+        return future;
+    }
+
+    private void evictLatest(EntityId entityId, String key) {
+        tsLatestCache.evict(new TsLatestCacheKey(entityId, key));
+        tsLatestCache.evict(TsLatestCacheKey.allKeys(entityId));
+    }
+
     private void saveAndRegisterFutures(TenantId tenantId, List<ListenableFuture<Integer>> futures, EntityId entityId, TsKvEntry tsKvEntry, long ttl) {
         if (entityId.getEntityType().equals(EntityType.ENTITY_VIEW)) {
             throw new IncorrectParameterException("Telemetry data can't be stored for entity view. Read only");
         }
         futures.add(timeseriesDao.savePartition(tenantId, entityId, tsKvEntry.getTs(), tsKvEntry.getKey(), ttl));
-        futures.add(Futures.transform(timeseriesLatestDao.saveLatest(tenantId, entityId, tsKvEntry), v -> 0, MoreExecutors.directExecutor()));
+        futures.add(Futures.transform(saveLatest(tenantId, entityId, tsKvEntry), v -> 0, MoreExecutors.directExecutor()));
         futures.add(timeseriesDao.save(tenantId, entityId, tsKvEntry, ttl));
     }
 
@@ -190,7 +382,7 @@ public class BaseTimeseriesService implements TimeseriesService {
             } else {
                 endTs = query.getEndTs();
             }
-            return new BaseReadTsKvQuery(query.getKey(), startTs, endTs, query.getInterval(), query.getLimit(), query.getAggregation(), query.getOrder());
+            return new BaseReadTsKvQuery(query.getKey(), startTs, endTs, query.getInterval(), query.getLimit(), query.getAggregation(), query.getOrder(), query.getMaxDataPoints());
         }).collect(Collectors.toList());
     }
 
@@ -211,7 +403,7 @@ public class BaseTimeseriesService implements TimeseriesService {
         List<ListenableFuture<Void>> futures = Lists.newArrayListWithExpectedSize(keys.size());
         for (String key : keys) {
             DeleteTsKvQuery query = new BaseDeleteTsKvQuery(key, 0, System.currentTimeMillis(), false);
-            futures.add(timeseriesLatestDao.removeLatest(tenantId, entityId, query));
+            futures.add(removeLatest(tenantId, entityId, query));
         }
         return Futures.allAsList(futures);
     }
@@ -231,7 +423,7 @@ public class BaseTimeseriesService implements TimeseriesService {
 
     private void deleteAndRegisterFutures(TenantId tenantId, List<ListenableFuture<Void>> futures, EntityId entityId, DeleteTsKvQuery query) {
         futures.add(timeseriesDao.remove(tenantId, entityId, query));
-        futures.add(timeseriesLatestDao.removeLatest(tenantId, entityId, query));
+        futures.add(removeLatest(tenantId, entityId, query));
         futures.add(timeseriesDao.removePartition(tenantId, entityId, query));
     }
 
@@ -32,8 +32,10 @@ import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.kv.Aggregation;
 import org.thingsboard.server.common.data.kv.BaseReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
 import org.thingsboard.server.common.data.kv.DeleteTsKvQuery;
 import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
 import org.thingsboard.server.common.data.kv.TsKvEntry;
 import org.thingsboard.server.dao.model.ModelConstants;
 import org.thingsboard.server.dao.nosql.TbResultSet;
@@ -41,8 +43,12 @@ import org.thingsboard.server.dao.sqlts.AggregationTimeseriesDao;
 import org.thingsboard.server.dao.util.NoSqlTsLatestDao;
 
 import javax.annotation.Nullable;
+import java.util.ArrayList;
+import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 import java.util.Optional;
 import java.util.concurrent.ExecutionException;
 
@@ -58,6 +64,7 @@ public class CassandraBaseTimeseriesLatestDao extends AbstractCassandraBaseTimes
 
     private PreparedStatement latestInsertStmt;
     private PreparedStatement findLatestStmt;
+    private PreparedStatement findLatestByKeysStmt;
     private PreparedStatement findAllLatestStmt;
 
     @Override
@@ -71,6 +78,29 @@ public class CassandraBaseTimeseriesLatestDao extends AbstractCassandraBaseTimes
         return getFuture(executeAsyncRead(tenantId, stmt), rs -> convertResultToTsKvEntry(key, rs.one()));
     }
 
+    @Override
+    public ListenableFuture<Map<EntityId, List<TsKvEntry>>> findLatest(TenantId tenantId, List<EntityId> entityIds, Collection<String> keys) {
+        List<String> keysList = new ArrayList<>(keys);
+        List<ListenableFuture<List<TsKvEntry>>> futures = new ArrayList<>(entityIds.size());
+        for (EntityId entityId : entityIds) {
+            BoundStatementBuilder stmtBuilder = new BoundStatementBuilder(getFindLatestByKeysStmt().bind());
+            stmtBuilder.setString(0, entityId.getEntityType().name());
+            stmtBuilder.setUuid(1, entityId.getId());
+            stmtBuilder.setList(2, keysList, String.class);
+            BoundStatement stmt = stmtBuilder.build();
+            log.debug(GENERATED_QUERY_FOR_ENTITY_TYPE_AND_ENTITY_ID, stmt, entityId.getEntityType(), entityId.getId());
+            futures.add(Futures.transform(getFutureAsync(executeAsyncRead(tenantId, stmt), rs -> convertAsyncResultSetToTsKvEntryList(rs)),
+                    entries -> toLatestEntries(keysList, entries), MoreExecutors.directExecutor()));
+        }
+        return Futures.transform(Futures.allAsList(futures), results -> {
+            Map<EntityId, List<TsKvEntry>> result = new HashMap<>();
+            for (int i = 0; i < entityIds.size(); i++) {
+                result.put(entityIds.get(i), results.get(i));
+            }
+            return result;
+        }, MoreExecutors.directExecutor());
+    }
+
     @Override
     public ListenableFuture<List<TsKvEntry>> findAllLatest(TenantId tenantId, EntityId entityId) {
         BoundStatementBuilder stmtBuilder = new BoundStatementBuilder(getFindAllLatestStmt().bind());
@@ -195,6 +225,17 @@ public class CassandraBaseTimeseriesLatestDao extends AbstractCassandraBaseTimes
                 rows -> this.convertResultToTsKvEntryList(rows), readResultsProcessingExecutor);
     }
 
+    private List<TsKvEntry> toLatestEntries(List<String> keys, List<TsKvEntry> foundEntries) {
+        Map<String, TsKvEntry> found = new HashMap<>();
+        foundEntries.forEach(entry -> found.put(entry.getKey(), entry));
+        List<TsKvEntry> entries = new ArrayList<>(keys.size());
+        for (String key : keys) {
+            TsKvEntry entry = found.get(key);
+            entries.add(entry != null ? entry : new BasicTsKvEntry(System.currentTimeMillis(), new StringDataEntry(key, null)));
+        }
+        return entries;
+    }
+
     private PreparedStatement getLatestStmt() {
         if (latestInsertStmt == null) {
             latestInsertStmt = prepare(INSERT_INTO + ModelConstants.TS_KV_LATEST_CF +
@@ -230,6 +271,24 @@ public class CassandraBaseTimeseriesLatestDao extends AbstractCassandraBaseTimes
         return findLatestStmt;
     }
 
+    private PreparedStatement getFindLatestByKeysStmt() {
+        if (findLatestByKeysStmt == null) {
+            findLatestByKeysStmt = prepare(SELECT_PREFIX +
+                    ModelConstants.KEY_COLUMN + "," +
+                    ModelConstants.TS_COLUMN + "," +
+                    ModelConstants.STRING_VALUE_COLUMN + "," +
+                    ModelConstants.BOOLEAN_VALUE_COLUMN + "," +
+                    ModelConstants.LONG_VALUE_COLUMN + "," +
+                    ModelConstants.DOUBLE_VALUE_COLUMN + "," +
+                    ModelConstants.JSON_VALUE_COLUMN + " " +
+                    "FROM " + ModelConstants.TS_KV_LATEST_CF + " " +
+                    "WHERE " + ModelConstants.ENTITY_TYPE_COLUMN + EQUALS_PARAM +
+                    "AND " + ModelConstants.ENTITY_ID_COLUMN + EQUALS_PARAM +
+                    "AND " + ModelConstants.KEY_COLUMN + " IN ?");
+        }
+        return findLatestByKeysStmt;
+    }
+
     private PreparedStatement getFindAllLatestStmt() {
         if (findAllLatestStmt == null) {
             findAllLatestStmt = prepare(SELECT_PREFIX +
@@ -20,21 +20,27 @@ import lombok.Data;
 @Data
 public class PsqlPartition {
 
-    private static final String TABLE_REGEX = "ts_kv_";
+    private static final String TS_KV_TABLE = "ts_kv";
 
+    private String table;
     private long start;
     private long end;
     private String partitionDate;
     private String query;
 
     public PsqlPartition(long start, long end, String partitionDate) {
+        this(TS_KV_TABLE, start, end, partitionDate);
+    }
+
+    public PsqlPartition(String table, long start, long end, String partitionDate) {
+        this.table = table;
         this.start = start;
         this.end = end;
         this.partitionDate = partitionDate;
-        this.query = createStatement(start, end, partitionDate);
+        this.query = createStatement(table, start, end, partitionDate);
     }
 
-    private String createStatement(long start, long end, String partitionDate) {
-        return "CREATE TABLE IF NOT EXISTS " + TABLE_REGEX + partitionDate + " PARTITION OF ts_kv FOR VALUES FROM (" + start + ") TO (" + end + ")";
+    private String createStatement(String table, long start, long end, String partitionDate) {
+        return "CREATE TABLE IF NOT EXISTS " + table + "_" + partitionDate + " PARTITION OF " + table + " FOR VALUES FROM (" + start + ") TO (" + end + ")";
     }
-}
\ No newline at end of file
+}
@@ -15,14 +15,20 @@
  */
 package org.thingsboard.server.dao.timeseries;
 
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.kv.DeleteTsKvQuery;
 import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
 import org.thingsboard.server.common.data.kv.TsKvEntry;
 
+import java.util.Collections;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
+import java.util.stream.Collectors;
 
 /**
  * @author Andrew Shvayka
@@ -31,6 +37,24 @@ public interface TimeseriesDao {
 
     ListenableFuture<List<TsKvEntry>> findAllAsync(TenantId tenantId, EntityId entityId, List<ReadTsKvQuery> queries);
 
+    /**
+     * Finds the time-series data of multiple entities. The result contains an entry for each of the entities.
+     * The default implementation queries the entities one by one.
+     */
+    default ListenableFuture<Map<EntityId, List<TsKvEntry>>> findAllAsync(TenantId tenantId, List<EntityId> entityIds, List<ReadTsKvQuery> queries) {
+        List<ListenableFuture<List<TsKvEntry>>> futures = entityIds.stream()
+                .map(entityId -> findAllAsync(tenantId, entityId, queries))
+                .collect(Collectors.toList());
+        return Futures.transform(Futures.allAsList(futures), results -> {
+            Map<EntityId, List<TsKvEntry>> result = new HashMap<>();
+            for (int i = 0; i < entityIds.size(); i++) {
+                List<TsKvEntry> entries = results != null ? results.get(i) : null;
+                result.put(entityIds.get(i), entries != null ? entries : Collections.emptyList());
+            }
+            return result;
+        }, MoreExecutors.directExecutor());
+    }
+
     ListenableFuture<Integer> save(TenantId tenantId, EntityId entityId, TsKvEntry tsKvEntry, long ttl);
 
     ListenableFuture<Integer> savePartition(TenantId tenantId, EntityId entityId, long tsKvEntryTs, String key, long ttl);
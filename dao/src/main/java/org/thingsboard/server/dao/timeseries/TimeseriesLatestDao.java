@@ -15,19 +15,50 @@
  */
 package org.thingsboard.server.dao.timeseries;
 
+import com.google.common.util.concurrent.Futures;
 import com.google.common.util.concurrent.ListenableFuture;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.thingsboard.server.common.data.id.DeviceProfileId;
 import org.thingsboard.server.common.data.id.EntityId;
 import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.kv.DeleteTsKvQuery;
 import org.thingsboard.server.common.data.kv.TsKvEntry;
 
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
 import java.util.List;
+import java.util.Map;
 
 public interface TimeseriesLatestDao {
 
     ListenableFuture<TsKvEntry> findLatest(TenantId tenantId, EntityId entityId, String key);
 
+    /**
+     * Finds the latest values of the keys for multiple entities. Same as {@link #findLatest(TenantId, EntityId, String)},
+     * a missing value is returned as an entry with the null value. The default implementation queries the keys one by one.
+     */
+    default ListenableFuture<Map<EntityId, List<TsKvEntry>>> findLatest(TenantId tenantId, List<EntityId> entityIds, Collection<String> keys) {
+        List<ListenableFuture<TsKvEntry>> futures = new ArrayList<>(entityIds.size() * keys.size());
+        for (EntityId entityId : entityIds) {
+            for (String key : keys) {
+                futures.add(findLatest(tenantId, entityId, key));
+            }
+        }
+        return Futures.transform(Futures.allAsList(futures), entries -> {
+            Map<EntityId, List<TsKvEntry>> result = new HashMap<>();
+            int i = 0;
+            for (EntityId entityId : entityIds) {
+                List<TsKvEntry> entityEntries = new ArrayList<>(keys.size());
+                for (int k = 0; k < keys.size(); k++) {
+                    entityEntries.add(entries.get(i++));
+                }
+                result.put(entityId, entityEntries);
+            }
+            return result;
+        }, MoreExecutors.directExecutor());
+    }
+
     ListenableFuture<List<TsKvEntry>> findAllLatest(TenantId tenantId, EntityId entityId);
 
     ListenableFuture<Void> saveLatest(TenantId tenantId, EntityId entityId, TsKvEntry tsKvEntry);
@@ -0,0 +1,138 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.Optional;
+
+/**
+ * Reduces the raw time-series of a single key to the given number of points using the
+ * Largest-Triangle-Three-Buckets algorithm, which keeps the visual shape of the chart.
+ * Series with non-numeric values are reduced by taking the first point of every bucket.
+ */
+public class TsKvDownsampler {
+
+    private TsKvDownsampler() {
+    }
+
+    public static List<TsKvEntry> downsample(List<TsKvEntry> entries, int maxDataPoints) {
+        if (maxDataPoints <= 0 || entries.size() <= maxDataPoints) {
+            return entries;
+        }
+        boolean descending = entries.get(0).getTs() > entries.get(entries.size() - 1).getTs();
+        List<TsKvEntry> ascending = entries;
+        if (descending) {
+            ascending = new ArrayList<>(entries);
+            Collections.reverse(ascending);
+        }
+        double[] values = toNumeric(ascending);
+        List<TsKvEntry> result = values != null ? lttb(ascending, values, maxDataPoints) : firstInBucket(ascending, maxDataPoints);
+        if (descending) {
+            Collections.reverse(result);
+        }
+        return result;
+    }
+
+    private static List<TsKvEntry> lttb(List<TsKvEntry> data, double[] values, int threshold) {
+        int size = data.size();
+        List<TsKvEntry> sampled = new ArrayList<>(threshold);
+        if (threshold < 3) {
+            sampled.add(data.get(0));
+            if (threshold == 2) {
+                sampled.add(data.get(size - 1));
+            }
+            return sampled;
+        }
+        double bucketSize = (double) (size - 2) / (threshold - 2);
+        int a = 0;
+        sampled.add(data.get(a));
+        for (int i = 0; i < threshold - 2; i++) {
+            int avgRangeStart = (int) Math.floor((i + 1) * bucketSize) + 1;
+            int avgRangeEnd = Math.min((int) Math.floor((i + 2) * bucketSize) + 1, size);
+            double avgX = 0;
+            double avgY = 0;
+            int avgRangeLength = avgRangeEnd - avgRangeStart;
+            for (int j = avgRangeStart; j < avgRangeEnd; j++) {
+                avgX += data.get(j).getTs();
+                avgY += values[j];
+            }
+            if (avgRangeLength > 0) {
+                avgX /= avgRangeLength;
+                avgY /= avgRangeLength;
+            }
+
+            int rangeStart = (int) Math.floor(i * bucketSize) + 1;
+            int rangeEnd = (int) Math.floor((i + 1) * bucketSize) + 1;
+            double pointAX = data.get(a).getTs();
+            double pointAY = values[a];
+            double maxArea = -1;
+            int next = rangeStart;
+            for (int j = rangeStart; j < rangeEnd; j++) {
+                double area = Math.abs((pointAX - avgX) * (values[j] - pointAY) - (pointAX - data.get(j).getTs()) * (avgY - pointAY));
+                if (area > maxArea) {
+                    maxArea = area;
+                    next = j;
+                }
+            }
+            sampled.add(data.get(next));
+            a = next;
+        }
+        sampled.add(data.get(size - 1));
+        return sampled;
+    }
+
+    private static List<TsKvEntry> firstInBucket(List<TsKvEntry> data, int threshold) {
+        List<TsKvEntry> sampled = new ArrayList<>(threshold);
+        double bucketSize = (double) data.size() / threshold;
+        for (int i = 0; i < threshold; i++) {
+            sampled.add(data.get((int) Math.floor(i * bucketSize)));
+        }
+        return sampled;
+    }
+
+    private static double[] toNumeric(List<TsKvEntry> data) {
+        double[] values = new double[data.size()];
+        for (int i = 0; i < data.size(); i++) {
+            TsKvEntry entry = data.get(i);
+            switch (entry.getDataType()) {
+                case LONG:
+                    Optional<Long> longValue = entry.getLongValue();
+                    if (!longValue.isPresent()) {
+                        return null;
+                    }
+                    values[i] = longValue.get();
+                    break;
+                case DOUBLE:
+                    Optional<Double> doubleValue = entry.getDoubleValue();
+                    if (!doubleValue.isPresent()) {
+                        return null;
+                    }
+                    values[i] = doubleValue.get();
+                    break;
+                case BOOLEAN:
+                    values[i] = entry.getBooleanValue().orElse(false) ? 1 : 0;
+                    break;
+                default:
+                    return null;
+            }
+        }
+        return values;
+    }
+}
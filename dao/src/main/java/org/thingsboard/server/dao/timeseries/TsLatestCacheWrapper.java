@@ -0,0 +1,115 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import com.google.common.util.concurrent.MoreExecutors;
+import lombok.extern.slf4j.Slf4j;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.boot.autoconfigure.condition.ConditionalOnProperty;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.stereotype.Service;
+import org.springframework.util.StringUtils;
+import org.thingsboard.server.common.stats.DefaultCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+import org.thingsboard.server.dao.cache.CacheExecutorService;
+
+import javax.annotation.PostConstruct;
+import java.util.concurrent.Executor;
+
+import static org.thingsboard.server.common.data.CacheConstants.TS_LATEST_CACHE;
+
+@Service
+@ConditionalOnProperty(prefix = "cache.ts_latest", value = "enabled", havingValue = "true")
+@Slf4j
+public class TsLatestCacheWrapper {
+    private static final String STATS_NAME = "tsLatest.cache";
+    public static final String LOCAL_CACHE_TYPE = "caffeine";
+
+    private final Cache tsLatestCache;
+    private final CacheExecutorService cacheExecutorService;
+    private final DefaultCounter hitCounter;
+    private final DefaultCounter missCounter;
+    private Executor executor;
+
+    @Value("${cache.type}")
+    private String cacheType;
+
+    public TsLatestCacheWrapper(CacheManager cacheManager,
+                                StatsFactory statsFactory,
+                                CacheExecutorService cacheExecutorService) {
+        this.tsLatestCache = cacheManager.getCache(TS_LATEST_CACHE);
+        this.cacheExecutorService = cacheExecutorService;
+        this.hitCounter = statsFactory.createDefaultCounter(STATS_NAME, "result", "hit");
+        this.missCounter = statsFactory.createDefaultCounter(STATS_NAME, "result", "miss");
+    }
+
+    @PostConstruct
+    public void init() {
+        this.executor = getExecutor(cacheType, cacheExecutorService);
+    }
+
+    /**
+     * Same as for the attributes cache: directExecutor for the local cache and a dedicated thread pool for the remote one.
+     * */
+    Executor getExecutor(String cacheType, CacheExecutorService cacheExecutorService) {
+        if (StringUtils.isEmpty(cacheType) || LOCAL_CACHE_TYPE.equals(cacheType)) {
+            return MoreExecutors.directExecutor();
+        }
+        return cacheExecutorService;
+    }
+
+    public Executor getExecutor() {
+        return executor;
+    }
+
+    /**
+     * Returns null on cache miss. The wrapped value is null if the key is known to have no latest value.
+     * */
+    public Cache.ValueWrapper get(TsLatestCacheKey cacheKey) {
+        Cache.ValueWrapper result = null;
+        try {
+            result = tsLatestCache.get(cacheKey);
+        } catch (Exception e) {
+            log.debug("Failed to retrieve element from cache for key {}. Reason - {}.", cacheKey, e.getMessage());
+        }
+        if (result != null) {
+            hitCounter.increment();
+        } else {
+            missCounter.increment();
+        }
+        return result;
+    }
+
+    /**
+     * Used to populate the cache from the database reads. Saves and removals evict the entries once they are persisted.
+     * */
+    public void putIfAbsent(TsLatestCacheKey cacheKey, Object value) {
+        try {
+            tsLatestCache.putIfAbsent(cacheKey, value);
+        } catch (Exception e) {
+            log.debug("Failed to put element to cache for key {}. Reason - {}.", cacheKey, e.getMessage());
+        }
+    }
+
+    public void evict(TsLatestCacheKey cacheKey) {
+        try {
+            tsLatestCache.evict(cacheKey);
+        } catch (Exception e) {
+            log.debug("Failed to evict element from cache for key {}. Reason - {}.", cacheKey, e.getMessage());
+        }
+    }
+}
@@ -43,6 +43,17 @@ CREATE TABLE IF NOT EXISTS alarm (
     type varchar(255)
 );
 
+CREATE TABLE IF NOT EXISTS alarm_severity_rollup (
+    entity_id uuid NOT NULL,
+    status varchar(255) NOT NULL,
+    critical_count bigint DEFAULT 0 NOT NULL,
+    major_count bigint DEFAULT 0 NOT NULL,
+    minor_count bigint DEFAULT 0 NOT NULL,
+    warning_count bigint DEFAULT 0 NOT NULL,
+    indeterminate_count bigint DEFAULT 0 NOT NULL,
+    CONSTRAINT alarm_severity_rollup_pkey PRIMARY KEY (entity_id, status)
+);
+
 CREATE TABLE IF NOT EXISTS asset (
     id uuid NOT NULL CONSTRAINT asset_pkey PRIMARY KEY,
     created_time bigint NOT NULL,
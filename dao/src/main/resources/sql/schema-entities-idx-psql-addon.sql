@@ -21,14 +21,6 @@
 --       That difference between NULLS LAST and NULLS FIRST prevents to hit index while querying latest by ts
 --       That why we need to define DESC index explicitly as (ts DESC NULLS LAST)
 
-CREATE INDEX IF NOT EXISTS idx_event_ts
-    ON public.event
-    (ts DESC NULLS LAST)
-    WITH (FILLFACTOR=95);
-
-COMMENT ON INDEX public.idx_event_ts
-    IS 'This index helps to delete events by TTL using timestamp';
-
 CREATE INDEX IF NOT EXISTS idx_event_tenant_entity_type_entity_event_type_created_time_des
     ON public.event
     (tenant_id ASC, entity_type ASC, entity_id ASC, event_type ASC, created_time DESC NULLS LAST)
@@ -58,6 +58,17 @@ CREATE TABLE IF NOT EXISTS alarm (
     type varchar(255)
 );
 
+CREATE TABLE IF NOT EXISTS alarm_severity_rollup (
+    entity_id uuid NOT NULL,
+    status varchar(255) NOT NULL,
+    critical_count bigint DEFAULT 0 NOT NULL,
+    major_count bigint DEFAULT 0 NOT NULL,
+    minor_count bigint DEFAULT 0 NOT NULL,
+    warning_count bigint DEFAULT 0 NOT NULL,
+    indeterminate_count bigint DEFAULT 0 NOT NULL,
+    CONSTRAINT alarm_severity_rollup_pkey PRIMARY KEY (entity_id, status)
+);
+
 CREATE TABLE IF NOT EXISTS asset (
     id uuid NOT NULL CONSTRAINT asset_pkey PRIMARY KEY,
     created_time bigint NOT NULL,
@@ -267,16 +278,36 @@ CREATE TABLE IF NOT EXISTS device_credentials (
 );
 
 CREATE TABLE IF NOT EXISTS event (
-    id uuid NOT NULL CONSTRAINT event_pkey PRIMARY KEY,
+    id uuid NOT NULL,
     created_time bigint NOT NULL,
     body varchar(10000000),
     entity_id uuid,
     entity_type varchar(255),
-    event_type varchar(255),
+    event_type varchar(255) NOT NULL,
     event_uid varchar(255),
     tenant_id uuid,
     ts bigint NOT NULL,
-    CONSTRAINT event_unq_key UNIQUE (tenant_id, entity_type, entity_id, event_type, event_uid)
+    CONSTRAINT event_pkey PRIMARY KEY (id, event_type, created_time),
+    CONSTRAINT event_unq_key UNIQUE (tenant_id, created_time, entity_type, entity_id, event_type, event_uid)
+) PARTITION BY LIST (event_type);
+
+-- Debug events have their own TTL, so they are kept apart from other events.
+-- Unique keys of a partitioned table must include created_time, so the created_time of events with an explicit
+-- event_uid is kept in event_uid_lookup and events saved again with the same event_uid reuse it.
+-- Time range partitions of event_debug and event_other are created on demand by the application.
+CREATE TABLE IF NOT EXISTS event_debug PARTITION OF event
+    FOR VALUES IN ('DEBUG_RULE_NODE', 'DEBUG_RULE_CHAIN', 'DEBUG_CONVERTER', 'DEBUG_INTEGRATION') PARTITION BY RANGE (created_time);
+
+CREATE TABLE IF NOT EXISTS event_other PARTITION OF event DEFAULT PARTITION BY RANGE (created_time);
+
+CREATE TABLE IF NOT EXISTS event_uid_lookup (
+    tenant_id uuid NOT NULL,
+    entity_type varchar(255) NOT NULL,
+    entity_id uuid NOT NULL,
+    event_type varchar(255) NOT NULL,
+    event_uid varchar(255) NOT NULL,
+    created_time bigint NOT NULL,
+    CONSTRAINT event_uid_lookup_pkey PRIMARY KEY (tenant_id, entity_type, entity_id, event_type, event_uid)
 );
 
 CREATE TABLE IF NOT EXISTS relation (
@@ -616,6 +647,38 @@ CREATE TABLE IF NOT EXISTS rpc (
     status varchar(255) NOT NULL
 );
 
+CREATE OR REPLACE FUNCTION drop_event_partitions_by_ttl(IN partition_table varchar, IN ttl_ts bigint) RETURNS bigint
+    LANGUAGE plpgsql AS
+$$
+DECLARE
+    partition_record record;
+    partition_end_ts bigint;
+    dropped_end_ts bigint DEFAULT 0;
+    dropped bigint DEFAULT 0;
+BEGIN
+    FOR partition_record IN
+        SELECT c.relname AS partition_name, pg_get_expr(c.relpartbound, c.oid) AS partition_bound
+        FROM pg_inherits i
+                 JOIN pg_class c ON c.oid = i.inhrelid
+                 JOIN pg_class p ON p.oid = i.inhparent
+        WHERE p.relname = partition_table
+        LOOP
+            partition_end_ts := substring(partition_record.partition_bound FROM 'TO \(''?(\d+)''?\)')::bigint;
+            IF partition_end_ts IS NOT NULL AND partition_end_ts <= ttl_ts THEN
+                EXECUTE format('DROP TABLE IF EXISTS %I', partition_record.partition_name);
+                RAISE NOTICE 'Event partition % dropped by ttl', partition_record.partition_name;
+                dropped := dropped + 1;
+                dropped_end_ts := greatest(dropped_end_ts, partition_end_ts);
+            END IF;
+        END LOOP;
+    IF dropped > 0 THEN
+        DELETE FROM event_uid_lookup WHERE created_time < dropped_end_ts
+            AND (event_type IN ('DEBUG_RULE_NODE', 'DEBUG_RULE_CHAIN', 'DEBUG_CONVERTER', 'DEBUG_INTEGRATION')) = (partition_table = 'event_debug');
+    END IF;
+    RETURN dropped;
+END
+$$;
+
 CREATE OR REPLACE PROCEDURE cleanup_events_by_ttl(IN ttl bigint, IN debug_ttl bigint, INOUT deleted bigint)
     LANGUAGE plpgsql AS
 $$
@@ -627,16 +690,14 @@ DECLARE
 BEGIN
     IF ttl > 0 THEN
         ttl_ts := (EXTRACT(EPOCH FROM current_timestamp) * 1000 - ttl::bigint * 1000)::bigint;
-        EXECUTE format(
-                'WITH deleted AS (DELETE FROM event WHERE ts < %L::bigint AND (event_type != %L::varchar AND event_type != %L::varchar) RETURNING *) SELECT count(*) FROM deleted', ttl_ts, 'DEBUG_RULE_NODE', 'DEBUG_RULE_CHAIN') into ttl_deleted_count;
+        ttl_deleted_count := drop_event_partitions_by_ttl('event_other', ttl_ts);
     END IF;
     IF debug_ttl > 0 THEN
         debug_ttl_ts := (EXTRACT(EPOCH FROM current_timestamp) * 1000 - debug_ttl::bigint * 1000)::bigint;
-        EXECUTE format(
-                'WITH deleted AS (DELETE FROM event WHERE ts < %L::bigint AND (event_type = %L::varchar OR event_type = %L::varchar) RETURNING *) SELECT count(*) FROM deleted', debug_ttl_ts, 'DEBUG_RULE_NODE', 'DEBUG_RULE_CHAIN') into debug_ttl_deleted_count;
+        debug_ttl_deleted_count := drop_event_partitions_by_ttl('event_debug', debug_ttl_ts);
     END IF;
-    RAISE NOTICE 'Events removed by ttl: %', ttl_deleted_count;
-    RAISE NOTICE 'Debug Events removed by ttl: %', debug_ttl_deleted_count;
+    RAISE NOTICE 'Event partitions removed by ttl: %', ttl_deleted_count;
+    RAISE NOTICE 'Debug event partitions removed by ttl: %', debug_ttl_deleted_count;
     deleted := ttl_deleted_count + debug_ttl_deleted_count;
 END
 $$;
@@ -27,7 +27,8 @@ import java.util.Arrays;
         "org.thingsboard.server.dao.service.sql.*SqlTest",
         "org.thingsboard.server.dao.service.attributes.sql.*SqlTest",
         "org.thingsboard.server.dao.service.event.sql.*SqlTest",
-        "org.thingsboard.server.dao.service.timeseries.sql.*SqlTest"
+        "org.thingsboard.server.dao.service.timeseries.sql.*SqlTest",
+        "org.thingsboard.server.dao.sql.*SqlTest"
 
 })
 public class SqlDaoServiceTestSuite {
@@ -16,10 +16,12 @@
 package org.thingsboard.server.dao.service;
 
 import com.datastax.oss.driver.api.core.uuid.Uuids;
+import com.google.common.util.concurrent.MoreExecutors;
 import org.junit.After;
 import org.junit.Assert;
 import org.junit.Before;
 import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
 import org.thingsboard.server.common.data.Customer;
 import org.thingsboard.server.common.data.Device;
 import org.thingsboard.server.common.data.Tenant;
@@ -46,6 +48,7 @@ import org.thingsboard.server.common.data.query.EntityKeyType;
 import org.thingsboard.server.common.data.relation.EntityRelation;
 import org.thingsboard.server.common.data.relation.RelationTypeGroup;
 import org.thingsboard.server.dao.alarm.AlarmOperationResult;
+import org.thingsboard.server.dao.alarm.AlarmSeverityRollupDao;
 import org.thingsboard.common.util.JacksonUtil;
 
 import java.util.Arrays;
@@ -58,6 +61,9 @@ public abstract class BaseAlarmServiceTest extends AbstractServiceTest {
     public static final String TEST_ALARM = "TEST_ALARM";
     private TenantId tenantId;
 
+    @Autowired
+    private AlarmSeverityRollupDao alarmSeverityRollupDao;
+
     @Before
     public void before() {
         Tenant tenant = new Tenant();
@@ -111,6 +117,39 @@ public abstract class BaseAlarmServiceTest extends AbstractServiceTest {
         Assert.assertEquals(created, fetched);
     }
 
+    @Test
+    public void testCreateAndUpdatePropagatedAlarmAsync() throws ExecutionException, InterruptedException {
+        AssetId parentId = new AssetId(Uuids.timeBased());
+        AssetId childId = new AssetId(Uuids.timeBased());
+
+        EntityRelation relation = new EntityRelation(parentId, childId, EntityRelation.CONTAINS_TYPE);
+        Assert.assertTrue(relationService.saveRelationAsync(tenantId, relation).get());
+
+        Alarm alarm = Alarm.builder().tenantId(tenantId).originator(childId)
+                .type(TEST_ALARM)
+                .propagate(true)
+                .severity(AlarmSeverity.MAJOR)
+                .status(AlarmStatus.ACTIVE_UNACK)
+                .startTs(System.currentTimeMillis()).build();
+        AlarmOperationResult result = alarmService.createOrUpdateAlarmAsync(alarm, true, MoreExecutors.directExecutor()).get();
+
+        Alarm created = result.getAlarm();
+        Assert.assertTrue(result.isCreated());
+        Assert.assertEquals(Arrays.asList(parentId, childId), result.getPropagatedEntitiesList());
+        Assert.assertEquals(AlarmSeverity.MAJOR, alarmService.findHighestAlarmSeverity(tenantId, parentId, AlarmSearchStatus.ACTIVE, null));
+
+        Alarm update = Alarm.builder().tenantId(tenantId).originator(childId)
+                .type(TEST_ALARM)
+                .severity(AlarmSeverity.CRITICAL)
+                .status(AlarmStatus.ACTIVE_UNACK)
+                .startTs(System.currentTimeMillis()).build();
+        result = alarmService.createOrUpdateAlarmAsync(update, false, MoreExecutors.directExecutor()).get();
+
+        Assert.assertFalse(result.isCreated());
+        Assert.assertEquals(created.getId(), result.getAlarm().getId());
+        Assert.assertEquals(AlarmSeverity.CRITICAL, alarmService.findHighestAlarmSeverity(tenantId, parentId, AlarmSearchStatus.ACTIVE, null));
+    }
+
     @Test
     public void testFindAlarm() throws ExecutionException, InterruptedException {
         AssetId parentId = new AssetId(Uuids.timeBased());
@@ -410,6 +449,82 @@ public abstract class BaseAlarmServiceTest extends AbstractServiceTest {
         Assert.assertEquals(AlarmSeverity.MINOR, alarmService.findHighestAlarmSeverity(tenantId, customerDevice.getId(), null, AlarmStatus.CLEARED_ACK));
     }
 
+    @Test
+    public void testFindHighestAlarmSeverityOfPropagatedAlarms() throws ExecutionException, InterruptedException {
+        AssetId parentId = new AssetId(Uuids.timeBased());
+        AssetId childId = new AssetId(Uuids.timeBased());
+
+        EntityRelation relation = new EntityRelation(parentId, childId, EntityRelation.CONTAINS_TYPE);
+        Assert.assertTrue(relationService.saveRelationAsync(tenantId, relation).get());
+
+        Alarm alarm = Alarm.builder().tenantId(tenantId).originator(childId)
+                .type(TEST_ALARM)
+                .propagate(false)
+                .severity(AlarmSeverity.MAJOR)
+                .status(AlarmStatus.ACTIVE_UNACK)
+                .startTs(System.currentTimeMillis()).build();
+        Alarm created = alarmService.createOrUpdateAlarm(alarm).getAlarm();
+
+        Assert.assertEquals(AlarmSeverity.MAJOR, alarmService.findHighestAlarmSeverity(tenantId, childId, AlarmSearchStatus.ACTIVE, null));
+        Assert.assertNull(alarmService.findHighestAlarmSeverity(tenantId, parentId, null, null));
+
+        Alarm update = Alarm.builder().tenantId(tenantId).originator(childId)
+                .type(TEST_ALARM)
+                .propagate(true)
+                .severity(AlarmSeverity.CRITICAL)
+                .status(AlarmStatus.ACTIVE_UNACK)
+                .startTs(System.currentTimeMillis()).build();
+        alarmService.createOrUpdateAlarm(update);
+
+        Assert.assertEquals(AlarmSeverity.CRITICAL, alarmService.findHighestAlarmSeverity(tenantId, childId, AlarmSearchStatus.ACTIVE, null));
+        Assert.assertEquals(AlarmSeverity.CRITICAL, alarmService.findHighestAlarmSeverity(tenantId, parentId, AlarmSearchStatus.ACTIVE, null));
+
+        alarmService.ackAlarm(tenantId, created.getId(), System.currentTimeMillis()).get();
+        Assert.assertNull(alarmService.findHighestAlarmSeverity(tenantId, parentId, AlarmSearchStatus.UNACK, null));
+        Assert.assertEquals(AlarmSeverity.CRITICAL, alarmService.findHighestAlarmSeverity(tenantId, parentId, null, AlarmStatus.ACTIVE_ACK));
+
+        alarmService.clearAlarm(tenantId, created.getId(), null, System.currentTimeMillis()).get();
+        Assert.assertNull(alarmService.findHighestAlarmSeverity(tenantId, parentId, AlarmSearchStatus.ACTIVE, null));
+        Assert.assertEquals(AlarmSeverity.CRITICAL, alarmService.findHighestAlarmSeverity(tenantId, parentId, null, AlarmStatus.CLEARED_ACK));
+
+        alarmService.deleteAlarm(tenantId, created.getId());
+        Assert.assertNull(alarmService.findHighestAlarmSeverity(tenantId, childId, null, null));
+        Assert.assertNull(alarmService.findHighestAlarmSeverity(tenantId, parentId, null, null));
+    }
+
+    @Test
+    public void testAlarmSeverityRollupRebuildAndRemoval() throws ExecutionException, InterruptedException {
+        Asset asset = new Asset();
+        asset.setTenantId(tenantId);
+        asset.setName("Rollup asset");
+        asset.setType("default");
+        asset = assetService.saveAsset(asset);
+
+        Alarm alarm = Alarm.builder().tenantId(tenantId).originator(asset.getId())
+                .type(TEST_ALARM)
+                .propagate(false)
+                .severity(AlarmSeverity.MAJOR)
+                .status(AlarmStatus.ACTIVE_UNACK)
+                .startTs(System.currentTimeMillis()).build();
+        alarmService.createOrUpdateAlarm(alarm);
+
+        alarmSeverityRollupDao.updateCounts(tenantId, Collections.singletonList(asset.getId()), null, null, AlarmStatus.ACTIVE_UNACK, AlarmSeverity.CRITICAL);
+        Assert.assertEquals(AlarmSeverity.CRITICAL, alarmService.findHighestAlarmSeverity(tenantId, asset.getId(), null, null));
+
+        alarmSeverityRollupDao.rebuild(tenantId, asset.getId());
+        Assert.assertEquals(AlarmSeverity.MAJOR, alarmService.findHighestAlarmSeverity(tenantId, asset.getId(), null, null));
+
+        alarmSeverityRollupDao.updateCounts(tenantId, Collections.singletonList(asset.getId()), AlarmStatus.ACTIVE_UNACK, AlarmSeverity.MAJOR, AlarmStatus.ACTIVE_UNACK, AlarmSeverity.MINOR);
+        Assert.assertEquals(AlarmSeverity.MINOR, alarmService.findHighestAlarmSeverity(tenantId, asset.getId(), null, null));
+
+        alarmSeverityRollupDao.updateCounts(tenantId, Collections.singletonList(asset.getId()), AlarmStatus.ACTIVE_UNACK, AlarmSeverity.MINOR, AlarmStatus.CLEARED_UNACK, AlarmSeverity.MINOR);
+        Assert.assertNull(alarmService.findHighestAlarmSeverity(tenantId, asset.getId(), null, AlarmStatus.ACTIVE_UNACK));
+        Assert.assertEquals(AlarmSeverity.MINOR, alarmService.findHighestAlarmSeverity(tenantId, asset.getId(), null, AlarmStatus.CLEARED_UNACK));
+
+        assetService.deleteAsset(tenantId, asset.getId());
+        Assert.assertTrue(alarmSeverityRollupDao.findAlarmSeverities(tenantId, asset.getId(), null).isEmpty());
+    }
+
     @Test
     public void testFindAlarmUsingAlarmDataQuery() throws ExecutionException, InterruptedException {
         AssetId parentId = new AssetId(Uuids.timeBased());
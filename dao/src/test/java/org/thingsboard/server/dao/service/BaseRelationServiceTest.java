@@ -31,6 +31,7 @@ import org.thingsboard.server.common.data.relation.RelationTypeGroup;
 import org.thingsboard.server.common.data.relation.RelationsSearchParameters;
 import org.thingsboard.server.dao.exception.DataValidationException;
 
+import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 import java.util.concurrent.ExecutionException;
@@ -268,6 +269,49 @@ public abstract class BaseRelationServiceTest extends AbstractServiceTest {
         Assert.assertTrue(relations.contains(relationBC));
     }
 
+    @Test
+    public void testSaveRelations() throws ExecutionException, InterruptedException {
+        AssetId parentId = new AssetId(Uuids.timeBased());
+        AssetId childA = new AssetId(Uuids.timeBased());
+        DeviceId childB = new DeviceId(Uuids.timeBased());
+
+        EntityRelation relationA = new EntityRelation(parentId, childA, EntityRelation.CONTAINS_TYPE);
+        EntityRelation relationB = new EntityRelation(parentId, childB, EntityRelation.CONTAINS_TYPE);
+
+        relationService.saveRelationsAsync(SYSTEM_TENANT_ID, Arrays.asList(relationA, relationB, relationA)).get();
+
+        List<EntityRelation> relations = relationService.findByFrom(SYSTEM_TENANT_ID, parentId, RelationTypeGroup.COMMON);
+        Assert.assertEquals(2, relations.size());
+        Assert.assertTrue(relations.contains(relationA));
+        Assert.assertTrue(relations.contains(relationB));
+    }
+
+    @Test
+    public void testFindToRecursively() throws ExecutionException, InterruptedException {
+        // A -> B -> D, C -> D, D -> A
+        AssetId assetA = new AssetId(Uuids.timeBased());
+        AssetId assetB = new AssetId(Uuids.timeBased());
+        AssetId assetC = new AssetId(Uuids.timeBased());
+        DeviceId deviceD = new DeviceId(Uuids.timeBased());
+
+        EntityRelation relationAB = new EntityRelation(assetA, assetB, EntityRelation.CONTAINS_TYPE);
+        EntityRelation relationBD = new EntityRelation(assetB, deviceD, EntityRelation.CONTAINS_TYPE);
+        EntityRelation relationCD = new EntityRelation(assetC, deviceD, EntityRelation.MANAGES_TYPE);
+        EntityRelation relationDA = new EntityRelation(deviceD, assetA, EntityRelation.CONTAINS_TYPE);
+
+        saveRelation(relationAB);
+        saveRelation(relationBD);
+        saveRelation(relationCD);
+        saveRelation(relationDA);
+
+        List<EntityRelation> relations = relationService.findByToRecursivelyAsync(SYSTEM_TENANT_ID, deviceD, RelationTypeGroup.COMMON).get();
+        Assert.assertEquals(4, relations.size());
+        Assert.assertTrue(relations.contains(relationAB));
+        Assert.assertTrue(relations.contains(relationBD));
+        Assert.assertTrue(relations.contains(relationCD));
+        Assert.assertTrue(relations.contains(relationDA));
+    }
+
 
     @Test(expected = DataValidationException.class)
     public void testSaveRelationWithEmptyFrom() throws ExecutionException, InterruptedException {
@@ -16,8 +16,12 @@
 package org.thingsboard.server.dao.service.event;
 
 import com.datastax.oss.driver.api.core.uuid.Uuids;
+import com.fasterxml.jackson.databind.node.ObjectNode;
 import org.junit.Assert;
+import org.junit.Assume;
 import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.thingsboard.server.common.data.DataConstants;
 import org.thingsboard.server.common.data.Event;
 import org.thingsboard.server.common.data.id.CustomerId;
@@ -29,15 +33,21 @@ import org.thingsboard.server.common.data.page.PageData;
 import org.thingsboard.server.common.data.page.SortOrder;
 import org.thingsboard.server.common.data.page.TimePageLink;
 import org.thingsboard.server.dao.service.AbstractServiceTest;
+import org.thingsboard.server.dao.util.DaoTestUtil;
+import org.thingsboard.server.dao.util.SqlDbType;
 
 import java.io.IOException;
 import java.time.LocalDateTime;
 import java.time.Month;
 import java.time.ZoneOffset;
 import java.util.Optional;
+import java.util.concurrent.TimeUnit;
 
 public abstract class BaseEventServiceTest extends AbstractServiceTest {
 
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @Test
     public void saveEvent() throws Exception {
         DeviceId devId = new DeviceId(Uuids.timeBased());
@@ -59,6 +69,77 @@ public abstract class BaseEventServiceTest extends AbstractServiceTest {
         Assert.assertFalse(saved.isPresent());
     }
 
+    @Test
+    public void saveEventWithTheSameUidAndAnotherCreatedTime() throws Exception {
+        DeviceId devId = new DeviceId(Uuids.timeBased());
+        TenantId tenantId = new TenantId(Uuids.timeBased());
+        String uid = Uuids.timeBased().toString();
+        long createdTime = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(2);
+        Event event = generateEvent(tenantId, devId, "ALARM", uid);
+        event.setId(new EventId(Uuids.startOf(createdTime)));
+        eventService.save(event);
+
+        Event updated = generateEvent(tenantId, devId, "ALARM", uid);
+        updated.setId(new EventId(Uuids.startOf(createdTime + TimeUnit.DAYS.toMillis(1))));
+        eventService.save(updated);
+
+        Optional<Event> loaded = eventService.findEvent(tenantId, devId, "ALARM", uid);
+        Assert.assertTrue(loaded.isPresent());
+        Assert.assertEquals(updated.getId(), loaded.get().getId());
+        PageData<Event> events = eventService.findEvents(tenantId, devId, "ALARM",
+                new TimePageLink(10, 0, "", null, createdTime - 1, System.currentTimeMillis()));
+        Assert.assertEquals(1, events.getData().size());
+    }
+
+    @Test
+    public void saveAsyncEventWithTheSameId() throws Exception {
+        DeviceId devId = new DeviceId(Uuids.timeBased());
+        TenantId tenantId = new TenantId(Uuids.timeBased());
+        Event event = generateEvent(tenantId, devId, DataConstants.DEBUG_RULE_NODE, null);
+        event.setId(new EventId(Uuids.timeBased()));
+        eventService.saveAsync(event).get();
+
+        Event updated = generateEvent(tenantId, devId, DataConstants.DEBUG_RULE_NODE, null);
+        updated.setId(event.getId());
+        ((ObjectNode) updated.getBody()).put("updated", true);
+        eventService.saveAsync(updated).get();
+
+        Optional<Event> loaded = eventService.findEvent(tenantId, devId, DataConstants.DEBUG_RULE_NODE, event.getId().toString());
+        Assert.assertTrue(loaded.isPresent());
+        Assert.assertEquals(updated.getBody(), loaded.get().getBody());
+    }
+
+    @Test
+    public void saveAsyncLifecycleEventReturnsStoredEvent() throws Exception {
+        DeviceId devId = new DeviceId(Uuids.timeBased());
+        TenantId tenantId = new TenantId(Uuids.timeBased());
+        Event event = generateEvent(tenantId, devId, DataConstants.LC_EVENT, null);
+        Event saved = eventService.saveAsync(event).get();
+
+        Optional<Event> loaded = eventService.findEvent(tenantId, devId, DataConstants.LC_EVENT, saved.getUid());
+        Assert.assertTrue(loaded.isPresent());
+        Assert.assertEquals(loaded.get(), saved);
+    }
+
+    @Test
+    public void saveEventIntoPartitionDroppedByTtl() throws Exception {
+        Assume.assumeTrue(SqlDbType.POSTGRES == DaoTestUtil.getSqlDbType(jdbcTemplate));
+        DeviceId devId = new DeviceId(Uuids.timeBased());
+        TenantId tenantId = new TenantId(Uuids.timeBased());
+        long createdTime = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(30);
+        Event event = generateEvent(tenantId, devId, DataConstants.DEBUG_RULE_NODE, null);
+        event.setId(new EventId(Uuids.startOf(createdTime)));
+        eventService.save(event);
+
+        eventService.cleanupEvents(0, TimeUnit.DAYS.toSeconds(7));
+        TimePageLink timePageLink = new TimePageLink(10, 0, "", null, createdTime - 1, createdTime + 1);
+        Assert.assertTrue(eventService.findEvents(tenantId, devId, DataConstants.DEBUG_RULE_NODE, timePageLink).getData().isEmpty());
+
+        Event saved = eventService.save(event);
+        Assert.assertNotNull(saved);
+        Assert.assertEquals(1, eventService.findEvents(tenantId, devId, DataConstants.DEBUG_RULE_NODE, timePageLink).getData().size());
+    }
+
     @Test
     public void findEventsByTypeAndTimeAscOrder() throws Exception {
         long timeBeforeStartTime = LocalDateTime.of(2016, Month.NOVEMBER, 1, 11, 30).toEpochSecond(ZoneOffset.UTC);
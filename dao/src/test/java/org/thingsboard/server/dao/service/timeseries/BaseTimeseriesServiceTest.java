@@ -18,6 +18,8 @@ package org.thingsboard.server.dao.service.timeseries;
 import com.datastax.oss.driver.api.core.uuid.Uuids;
 import lombok.extern.slf4j.Slf4j;
 import org.junit.*;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
 import org.thingsboard.server.common.data.EntityView;
 import org.thingsboard.server.common.data.Tenant;
 import org.thingsboard.server.common.data.id.DeviceId;
@@ -36,12 +38,17 @@ import org.thingsboard.server.common.data.kv.StringDataEntry;
 import org.thingsboard.server.common.data.kv.TsKvEntry;
 import org.thingsboard.server.common.data.objects.TelemetryEntityView;
 import org.thingsboard.server.dao.service.AbstractServiceTest;
+import org.thingsboard.server.dao.timeseries.TimeseriesDao;
+import org.thingsboard.server.dao.util.DaoTestUtil;
+import org.thingsboard.server.dao.util.SqlDbType;
 
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ExecutionException;
+import java.util.stream.Collectors;
 
 import static org.junit.Assert.assertEquals;
 import static org.junit.Assert.assertNotNull;
@@ -68,6 +75,12 @@ public abstract class BaseTimeseriesServiceTest extends AbstractServiceTest {
 
     private TenantId tenantId;
 
+    @Autowired
+    private TimeseriesDao timeseriesDao;
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
     @Before
     public void before() {
         Tenant tenant = new Tenant();
@@ -139,6 +152,85 @@ public abstract class BaseTimeseriesServiceTest extends AbstractServiceTest {
         Assert.assertEquals(toTsEntry(TS, stringKvEntry), entries.get(0));
     }
 
+    @Test
+    public void testFindLatestForMultipleEntities() throws Exception {
+        DeviceId deviceId = new DeviceId(Uuids.timeBased());
+        DeviceId otherDeviceId = new DeviceId(Uuids.timeBased());
+
+        saveEntries(deviceId, TS - 1);
+        saveEntries(deviceId, TS);
+        tsService.save(tenantId, otherDeviceId, toTsEntry(TS - 1, new StringDataEntry(STRING_KEY, "other"))).get();
+
+        Map<EntityId, List<TsKvEntry>> entries = tsService.findLatest(tenantId, Arrays.asList(deviceId, otherDeviceId),
+                Arrays.asList(STRING_KEY, LONG_KEY)).get();
+        Assert.assertEquals(2, entries.size());
+        Assert.assertEquals(Arrays.asList(toTsEntry(TS, stringKvEntry), toTsEntry(TS, longKvEntry)), entries.get(deviceId));
+        List<TsKvEntry> otherEntries = entries.get(otherDeviceId);
+        Assert.assertEquals(2, otherEntries.size());
+        Assert.assertEquals(toTsEntry(TS - 1, new StringDataEntry(STRING_KEY, "other")), otherEntries.get(0));
+        Assert.assertEquals(LONG_KEY, otherEntries.get(1).getKey());
+        Assert.assertNull(otherEntries.get(1).getValue());
+    }
+
+    @Test
+    public void testFindByQueryForMultipleEntities() throws Exception {
+        DeviceId deviceId = new DeviceId(Uuids.timeBased());
+        DeviceId otherDeviceId = new DeviceId(Uuids.timeBased());
+        DeviceId emptyDeviceId = new DeviceId(Uuids.timeBased());
+
+        saveEntries(deviceId, TS - 3);
+        saveEntries(deviceId, TS - 2);
+        saveEntries(deviceId, TS - 1);
+        saveEntries(otherDeviceId, TS - 2);
+
+        List<ReadTsKvQuery> queries = new ArrayList<>();
+        queries.add(new BaseReadTsKvQuery(STRING_KEY, TS - 3, TS, 0, 2, Aggregation.NONE, "DESC"));
+        queries.add(new BaseReadTsKvQuery(LONG_KEY, TS - 3, TS, 0, 1, Aggregation.NONE, "ASC"));
+
+        Map<EntityId, List<TsKvEntry>> entries = tsService.findAll(tenantId, Arrays.asList(deviceId, otherDeviceId, emptyDeviceId), queries).get();
+        Assert.assertEquals(3, entries.size());
+        List<TsKvEntry> deviceEntries = entries.get(deviceId);
+        Assert.assertEquals(3, deviceEntries.size());
+        Assert.assertTrue(deviceEntries.containsAll(Arrays.asList(
+                toTsEntry(TS - 1, stringKvEntry), toTsEntry(TS - 2, stringKvEntry), toTsEntry(TS - 3, longKvEntry))));
+        List<TsKvEntry> otherDeviceEntries = entries.get(otherDeviceId);
+        Assert.assertEquals(2, otherDeviceEntries.size());
+        Assert.assertTrue(otherDeviceEntries.containsAll(Arrays.asList(
+                toTsEntry(TS - 2, stringKvEntry), toTsEntry(TS - 2, longKvEntry))));
+        Assert.assertTrue(entries.get(emptyDeviceId).isEmpty());
+    }
+
+    @Test
+    public void testFindAllWithLimitForMultipleEntitiesInDao() throws Exception {
+        Assume.assumeTrue(SqlDbType.POSTGRES == DaoTestUtil.getSqlDbType(jdbcTemplate));
+        DeviceId deviceId = new DeviceId(Uuids.timeBased());
+        DeviceId otherDeviceId = new DeviceId(Uuids.timeBased());
+
+        for (long ts = TS - 5; ts <= TS; ts++) {
+            saveEntries(deviceId, ts);
+            saveEntries(otherDeviceId, ts);
+        }
+
+        List<ReadTsKvQuery> queries = new ArrayList<>();
+        queries.add(new BaseReadTsKvQuery(STRING_KEY, TS - 4, TS, 0, 2, Aggregation.NONE, "DESC"));
+        queries.add(new BaseReadTsKvQuery(LONG_KEY, TS - 4, TS, 0, 2, Aggregation.NONE, "DESC"));
+        queries.add(new BaseReadTsKvQuery(DOUBLE_KEY, TS - 4, TS, 0, 3, Aggregation.NONE, "ASC"));
+        queries.add(new BaseReadTsKvQuery(BOOLEAN_KEY, TS - 4, TS, 4, 10, Aggregation.COUNT, "ASC"));
+
+        Map<EntityId, List<TsKvEntry>> entries = timeseriesDao.findAllAsync(tenantId, Arrays.asList(deviceId, otherDeviceId), queries).get();
+        Assert.assertEquals(2, entries.size());
+        for (DeviceId id : Arrays.asList(deviceId, otherDeviceId)) {
+            List<TsKvEntry> entityEntries = entries.get(id);
+            Assert.assertEquals(8, entityEntries.size());
+            // The limit is applied per entity and key, endTs is exclusive
+            Assert.assertEquals(Arrays.asList(TS - 1, TS - 2), getTs(entityEntries, STRING_KEY));
+            Assert.assertEquals(Arrays.asList(TS - 1, TS - 2), getTs(entityEntries, LONG_KEY));
+            Assert.assertEquals(Arrays.asList(TS - 4, TS - 3, TS - 2), getTs(entityEntries, DOUBLE_KEY));
+            Assert.assertEquals(Collections.singletonList(4L), entityEntries.stream()
+                    .filter(entry -> entry.getKey().equals(BOOLEAN_KEY)).map(entry -> entry.getLongValue().orElse(0L)).collect(Collectors.toList()));
+        }
+    }
+
     @Test
     public void testFindByQueryAscOrder() throws Exception {
         DeviceId deviceId = new DeviceId(Uuids.timeBased());
@@ -479,6 +571,10 @@ public abstract class BaseTimeseriesServiceTest extends AbstractServiceTest {
         tsService.save(tenantId, deviceId, toTsEntry(ts, booleanKvEntry)).get();
     }
 
+    private static List<Long> getTs(List<TsKvEntry> entries, String key) {
+        return entries.stream().filter(entry -> entry.getKey().equals(key)).map(TsKvEntry::getTs).collect(Collectors.toList());
+    }
+
     private static TsKvEntry toTsEntry(long ts, KvEntry entry) {
         return new BasicTsKvEntry(ts, entry);
     }
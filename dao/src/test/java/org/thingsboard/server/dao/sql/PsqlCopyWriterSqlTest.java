@@ -0,0 +1,177 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql;
+
+import org.junit.After;
+import org.junit.Assume;
+import org.junit.Before;
+import org.junit.Test;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.springframework.transaction.support.TransactionTemplate;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.dao.model.sql.AbstractTsKvEntity;
+import org.thingsboard.server.dao.model.sql.AttributeKvCompositeKey;
+import org.thingsboard.server.dao.model.sql.AttributeKvEntity;
+import org.thingsboard.server.dao.model.sqlts.latest.TsKvLatestEntity;
+import org.thingsboard.server.dao.model.sqlts.ts.TsKvEntity;
+import org.thingsboard.server.dao.service.AbstractServiceTest;
+import org.thingsboard.server.dao.service.DaoSqlTest;
+import org.thingsboard.server.dao.sql.attributes.PsqlAttributesInsertRepository;
+import org.thingsboard.server.dao.sqlts.insert.latest.psql.PsqlLatestInsertTsRepository;
+import org.thingsboard.server.dao.sqlts.insert.psql.PsqlInsertTsRepository;
+import org.thingsboard.server.dao.timeseries.PsqlPartition;
+import org.thingsboard.server.dao.util.DaoTestUtil;
+import org.thingsboard.server.dao.util.SqlDbType;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+
+/**
+ * Runs the COPY based upsert path of the insert repositories against PostgreSQL. Skipped on other databases.
+ */
+@DaoSqlTest
+public class PsqlCopyWriterSqlTest extends AbstractServiceTest {
+
+    private static final PsqlPartition PARTITION = new PsqlPartition(0, 1000, "copy_writer_test");
+
+    @Autowired
+    private JdbcTemplate jdbcTemplate;
+
+    @Autowired
+    private TransactionTemplate transactionTemplate;
+
+    private PsqlInsertTsRepository tsRepository;
+    private PsqlLatestInsertTsRepository latestRepository;
+    private PsqlAttributesInsertRepository attributesRepository;
+    private UUID entityId;
+
+    @Before
+    public void before() {
+        Assume.assumeTrue(SqlDbType.POSTGRES == DaoTestUtil.getSqlDbType(jdbcTemplate));
+        jdbcTemplate.execute(PARTITION.getQuery());
+        tsRepository = init(new PsqlInsertTsRepository());
+        latestRepository = init(new PsqlLatestInsertTsRepository());
+        ReflectionTestUtils.setField(latestRepository, "updateByLatestTs", true);
+        attributesRepository = init(new PsqlAttributesInsertRepository());
+        entityId = UUID.randomUUID();
+    }
+
+    @After
+    public void after() {
+        if (entityId != null) {
+            jdbcTemplate.update("DELETE FROM ts_kv WHERE entity_id = ?", entityId);
+            jdbcTemplate.update("DELETE FROM ts_kv_latest WHERE entity_id = ?", entityId);
+            jdbcTemplate.update("DELETE FROM attribute_kv WHERE entity_id = ?", entityId);
+        }
+    }
+
+    @Test
+    public void givenDuplicateKeysInBatch_whenSaveTs_thenLastRowWinsAndExistingRowsAreUpdated() {
+        tsRepository.saveOrUpdate(Arrays.asList(
+                tsKv(new TsKvEntity(), 1, 100, "first"),
+                tsKv(new TsKvEntity(), 1, 100, "second"),
+                tsKv(new TsKvEntity(), 1, 200, "a\tb\nc\\d")));
+        assertEquals("second", findTsStr(100));
+        assertEquals("a\tb\nc\\d", findTsStr(200));
+
+        tsRepository.saveOrUpdate(Collections.singletonList(tsKv(new TsKvEntity(), 1, 100, "updated")));
+        assertEquals("updated", findTsStr(100));
+        assertEquals("a\tb\nc\\d", findTsStr(200));
+        assertEquals(2, countRows("ts_kv"));
+    }
+
+    @Test
+    public void givenOlderTs_whenSaveLatest_thenNewestTsWins() {
+        latestRepository.saveOrUpdate(Arrays.asList(
+                tsKv(new TsKvLatestEntity(), 1, 200, "newest"),
+                tsKv(new TsKvLatestEntity(), 1, 100, "older")));
+        assertEquals("newest", findLatestStr(200));
+
+        latestRepository.saveOrUpdate(Collections.singletonList(tsKv(new TsKvLatestEntity(), 1, 150, "outdated")));
+        assertEquals("newest", findLatestStr(200));
+
+        latestRepository.saveOrUpdate(Collections.singletonList(tsKv(new TsKvLatestEntity(), 1, 300, "updated")));
+        assertEquals("updated", findLatestStr(300));
+        assertEquals(1, countRows("ts_kv_latest"));
+    }
+
+    @Test
+    public void givenDuplicateKeysInBatch_whenSaveAttributes_thenLastRowWinsAndExistingRowsAreUpdated() {
+        saveAttributes(Arrays.asList(attribute("key", 1L, null), attribute("key", 2L, null), attribute("json", null, "{\"a\":1}")));
+        Map<String, Object> row = findAttribute("key");
+        assertEquals(2L, row.get("long_v"));
+        assertEquals("{\"a\":1}", findAttribute("json").get("json_v").toString());
+
+        saveAttributes(Collections.singletonList(attribute("key", null, "{\"b\":2}")));
+        row = findAttribute("key");
+        assertNull(row.get("long_v"));
+        assertEquals("{\"b\":2}", row.get("json_v").toString());
+        assertEquals(2, countRows("attribute_kv"));
+    }
+
+    private <T> T init(T repository) {
+        ReflectionTestUtils.setField(repository, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(repository, "transactionTemplate", transactionTemplate);
+        ReflectionTestUtils.setField(repository, "removeNullChars", true);
+        ReflectionTestUtils.setField(repository, "copyUpsertEnabled", true);
+        return repository;
+    }
+
+    private void saveAttributes(List<AttributeKvEntity> entities) {
+        ReflectionTestUtils.invokeMethod(attributesRepository, "saveOrUpdate", entities);
+    }
+
+    private <T extends AbstractTsKvEntity> T tsKv(T entity, int key, long ts, String value) {
+        entity.setEntityId(entityId);
+        entity.setKey(key);
+        entity.setTs(ts);
+        entity.setStrValue(value);
+        return entity;
+    }
+
+    private AttributeKvEntity attribute(String key, Long longValue, String jsonValue) {
+        AttributeKvEntity entity = new AttributeKvEntity();
+        entity.setId(new AttributeKvCompositeKey(EntityType.DEVICE, entityId, "SERVER_SCOPE", key));
+        entity.setLongValue(longValue);
+        entity.setJsonValue(jsonValue);
+        entity.setLastUpdateTs(System.currentTimeMillis());
+        return entity;
+    }
+
+    private String findTsStr(long ts) {
+        return jdbcTemplate.queryForObject("SELECT str_v FROM ts_kv WHERE entity_id = ? AND key = 1 AND ts = ?", String.class, entityId, ts);
+    }
+
+    private String findLatestStr(long ts) {
+        return jdbcTemplate.queryForObject("SELECT str_v FROM ts_kv_latest WHERE entity_id = ? AND key = 1 AND ts = ?", String.class, entityId, ts);
+    }
+
+    private Map<String, Object> findAttribute(String key) {
+        return jdbcTemplate.queryForMap("SELECT long_v, json_v FROM attribute_kv WHERE entity_id = ? AND attribute_key = ?", entityId, key);
+    }
+
+    private int countRows(String table) {
+        return jdbcTemplate.queryForObject("SELECT count(*) FROM " + table + " WHERE entity_id = ?", Integer.class, entityId);
+    }
+}
@@ -0,0 +1,107 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyIn;
+import org.postgresql.copy.CopyManager;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import javax.sql.DataSource;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.sql.Connection;
+import java.sql.Statement;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyInt;
+import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+public class PsqlCopyWriterTest {
+
+    private static final String CREATE = "CREATE TEMP TABLE IF NOT EXISTS test_copy (seq int, v varchar) ON COMMIT DELETE ROWS;";
+    private static final String COPY = "COPY test_copy (seq, v) FROM STDIN";
+
+    private Connection connection;
+    private Statement statement;
+    private CopyIn copyIn;
+    private final ByteArrayOutputStream copied = new ByteArrayOutputStream();
+
+    @Before
+    public void setUp() throws Exception {
+        connection = mock(Connection.class);
+        statement = mock(Statement.class);
+        PGConnection pgConnection = mock(PGConnection.class);
+        CopyManager copyManager = mock(CopyManager.class);
+        copyIn = mock(CopyIn.class);
+        when(connection.createStatement()).thenReturn(statement);
+        when(connection.unwrap(PGConnection.class)).thenReturn(pgConnection);
+        when(pgConnection.getCopyAPI()).thenReturn(copyManager);
+        when(copyManager.copyIn(COPY)).thenReturn(copyIn);
+        doAnswer(invocation -> {
+            copied.write(invocation.getArgument(0), invocation.getArgument(1), invocation.getArgument(2));
+            return null;
+        }).when(copyIn).writeToCopy(any(byte[].class), anyInt(), anyInt());
+    }
+
+    @Test
+    public void givenRows_whenFinish_thenRowsAreWrittenInTextFormat() throws Exception {
+        UUID id = UUID.fromString("1e1ba8e0-4a3b-11eb-8a6b-cf43bd7cc5f9");
+        PsqlCopyWriter writer = PsqlCopyWriter.start(connection, CREATE, COPY);
+        writer.add(0).add(id).add(42L).add(1.5).add(true).add("plain").endRow();
+        writer.add(1).add((UUID) null).add((Long) null).add((Double) null).add(false).add((String) null).endRow();
+        writer.finish();
+
+        verify(statement).execute(CREATE);
+        verify(copyIn).endCopy();
+        assertEquals("0\t" + id + "\t42\t1.5\tt\tplain\n" +
+                "1\t\\N\t\\N\t\\N\tf\t\\N\n", copied.toString(StandardCharsets.UTF_8.name()));
+    }
+
+    @Test
+    public void givenSpecialChars_whenAdd_thenCharsAreEscaped() throws Exception {
+        PsqlCopyWriter writer = PsqlCopyWriter.start(connection, CREATE, COPY);
+        writer.add(0).add("a\tb\nc\rd\\e \u00e9").endRow();
+        writer.finish();
+
+        assertEquals("0\ta\\tb\\nc\\rd\\\\e \u00e9\n", copied.toString(StandardCharsets.UTF_8.name()));
+    }
+
+    @Test
+    public void givenAutoCommitConnection_whenCopyAndMerge_thenNothingIsCopied() throws Exception {
+        DataSource dataSource = mock(DataSource.class);
+        when(dataSource.getConnection()).thenReturn(connection);
+        when(connection.getAutoCommit()).thenReturn(true);
+
+        try {
+            PsqlCopyWriter.copyAndMerge(new JdbcTemplate(dataSource), CREATE, COPY, "MERGE", writer -> writer.add(0).add("v").endRow());
+            fail("Copy and merge must not run outside of a transaction");
+        } catch (IllegalStateException e) {
+            assertEquals("Copy and merge must be executed within a transaction!", e.getMessage());
+        }
+        verify(connection, never()).createStatement();
+    }
+}
@@ -0,0 +1,71 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql;
+
+import com.google.common.util.concurrent.ListenableFuture;
+import org.junit.Test;
+import org.thingsboard.server.common.stats.MessagesStats;
+
+import java.util.concurrent.ExecutionException;
+
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.verify;
+
+public class TbSqlBlockingQueueTest {
+
+    @Test
+    public void givenBoundedQueueIsFull_whenAdd_thenOldestElementIsDropped() throws Exception {
+        MessagesStats stats = mock(MessagesStats.class);
+        TbSqlBlockingQueue<String> queue = new TbSqlBlockingQueue<>(TbSqlBlockingQueueParams.builder()
+                .logName("Test")
+                .batchSize(10)
+                .maxDelay(100)
+                .maxQueueSize(2)
+                .build(), stats);
+
+        ListenableFuture<Void> first = queue.add("first");
+        ListenableFuture<Void> second = queue.add("second");
+        ListenableFuture<Void> third = queue.add("third");
+
+        assertTrue(first.isDone());
+        assertFalse(second.isDone());
+        assertFalse(third.isDone());
+        try {
+            first.get();
+            fail("Dropped element must be completed exceptionally");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof TbSqlQueueOverflowException);
+        }
+        verify(stats).incrementFailed();
+    }
+
+    @Test
+    public void givenUnboundedQueue_whenAdd_thenNothingIsDropped() {
+        MessagesStats stats = mock(MessagesStats.class);
+        TbSqlBlockingQueue<String> queue = new TbSqlBlockingQueue<>(TbSqlBlockingQueueParams.builder()
+                .logName("Test")
+                .batchSize(10)
+                .maxDelay(100)
+                .build(), stats);
+
+        for (int i = 0; i < 1000; i++) {
+            assertFalse(queue.add("element-" + i).isDone());
+        }
+    }
+}
@@ -0,0 +1,142 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.sql.event;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.mockito.ArgumentCaptor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.PreparedStatementSetter;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.EntityType;
+import org.thingsboard.server.dao.model.sql.EventEntity;
+import org.thingsboard.server.dao.sqlts.insert.psql.PsqlPartitioningRepository;
+import org.thingsboard.server.dao.timeseries.PsqlPartition;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.UUID;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.Mockito.doThrow;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+public class PsqlEventInsertRepositoryTest {
+
+    private static final long DAY = TimeUnit.DAYS.toMillis(1);
+
+    private PsqlPartitioningRepository partitioningRepository;
+    private JdbcTemplate jdbcTemplate;
+    private PsqlEventInsertRepository repository;
+
+    @Before
+    public void before() {
+        partitioningRepository = mock(PsqlPartitioningRepository.class);
+        jdbcTemplate = mock(JdbcTemplate.class);
+        repository = new PsqlEventInsertRepository();
+        ReflectionTestUtils.setField(repository, "partitioningRepository", partitioningRepository);
+        ReflectionTestUtils.setField(repository, "jdbcTemplate", jdbcTemplate);
+        ReflectionTestUtils.setField(repository, "partitionSizeHours", 24);
+        ReflectionTestUtils.setField(repository, "ttlEnabled", true);
+        ReflectionTestUtils.setField(repository, "otherEventsTtl", 0L);
+        ReflectionTestUtils.setField(repository, "debugEventsTtl", TimeUnit.DAYS.toSeconds(7));
+    }
+
+    @Test
+    public void givenEventsOfTheSameDay_whenSave_thenPartitionIsCreatedOnce() {
+        long today = System.currentTimeMillis();
+        repository.save(Arrays.asList(newEvent("ERROR", today), newEvent("ERROR", today)));
+        repository.save(Collections.singletonList(newEvent("ERROR", today)));
+
+        ArgumentCaptor<PsqlPartition> partition = ArgumentCaptor.forClass(PsqlPartition.class);
+        verify(partitioningRepository).save(partition.capture());
+        assertEquals("event_other", partition.getValue().getTable());
+        assertEquals(today - Math.floorMod(today, DAY), partition.getValue().getStart());
+        verify(jdbcTemplate, times(2)).update(anyString(), any(PreparedStatementSetter.class));
+    }
+
+    @Test
+    public void givenEventsWithTheSameId_whenSave_thenLastEventIsUpserted() {
+        long today = System.currentTimeMillis();
+        EventEntity first = newEvent("DEBUG_RULE_NODE", today);
+        EventEntity last = newEvent("DEBUG_RULE_NODE", today);
+        last.setUuid(first.getUuid());
+        last.setEventUid(first.getEventUid());
+        repository.save(Arrays.asList(first, last));
+
+        ArgumentCaptor<String> query = ArgumentCaptor.forClass(String.class);
+        verify(jdbcTemplate).update(query.capture(), any(PreparedStatementSetter.class));
+        assertTrue(query.getValue().endsWith("VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?) ON CONFLICT (id, event_type, created_time) DO UPDATE SET body = EXCLUDED.body, ts = EXCLUDED.ts"));
+    }
+
+    @Test
+    public void givenPartitionDroppedByTtl_whenSave_thenPartitionIsCreatedAgain() {
+        long expired = System.currentTimeMillis() - TimeUnit.DAYS.toMillis(30);
+        repository.save(Collections.singletonList(newEvent("DEBUG_RULE_NODE", expired)));
+        // the TTL task drops the partition here, possibly on another node
+        repository.save(Collections.singletonList(newEvent("DEBUG_RULE_NODE", expired)));
+
+        verify(partitioningRepository, times(2)).save(any(PsqlPartition.class));
+    }
+
+    @Test
+    public void givenPartitionCreatedConcurrently_whenSave_thenCreationIsRetried() {
+        doThrow(new DataIntegrityViolationException("duplicate key value violates unique constraint \"pg_type_typname_nsp_index\""))
+                .doNothing()
+                .when(partitioningRepository).save(any(PsqlPartition.class));
+
+        repository.save(Collections.singletonList(newEvent("ERROR", System.currentTimeMillis())));
+
+        verify(partitioningRepository, times(2)).save(any(PsqlPartition.class));
+        verify(jdbcTemplate).update(anyString(), any(PreparedStatementSetter.class));
+    }
+
+    @Test
+    public void givenPartitionCanNotBeCreated_whenSave_thenErrorIsPropagated() {
+        doThrow(new DataIntegrityViolationException("permission denied"))
+                .when(partitioningRepository).save(any(PsqlPartition.class));
+
+        try {
+            repository.save(Collections.singletonList(newEvent("ERROR", System.currentTimeMillis())));
+            fail("Partition creation failure must be propagated");
+        } catch (DataIntegrityViolationException e) {
+            assertEquals("permission denied", e.getMessage());
+        }
+        verify(jdbcTemplate, never()).update(anyString(), any(PreparedStatementSetter.class));
+    }
+
+    private static EventEntity newEvent(String type, long createdTime) {
+        EventEntity entity = new EventEntity();
+        entity.setUuid(UUID.randomUUID());
+        entity.setCreatedTime(createdTime);
+        entity.setTenantId(UUID.randomUUID());
+        entity.setEntityId(UUID.randomUUID());
+        entity.setEntityType(EntityType.DEVICE);
+        entity.setEventType(type);
+        entity.setEventUid(entity.getUuid().toString());
+        entity.setTs(createdTime);
+        return entity;
+    }
+}
@@ -0,0 +1,159 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import com.google.common.util.concurrent.Futures;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.Mockito;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.Aggregation;
+import org.thingsboard.server.common.data.kv.BaseReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.ReadTsKvQuery;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.UUID;
+import java.util.stream.Collectors;
+
+import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.anyList;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TsDownsamplingTest {
+
+    private static final TenantId TENANT_ID = new TenantId(UUID.randomUUID());
+    private static final DeviceId DEVICE_ID = new DeviceId(UUID.randomUUID());
+    private static final String KEY = "temperature";
+    private static final int PAGE_SIZE = 1000;
+
+    @Mock
+    private TimeseriesDao timeseriesDao;
+
+    private BaseTimeseriesService timeseriesService;
+
+    @Before
+    public void setUp() {
+        timeseriesService = new BaseTimeseriesService();
+        ReflectionTestUtils.setField(timeseriesService, "timeseriesDao", timeseriesDao);
+        ReflectionTestUtils.setField(timeseriesService, "maxTsIntervals", 700L);
+        ReflectionTestUtils.setField(timeseriesService, "downsamplingPageSize", PAGE_SIZE);
+    }
+
+    @Test
+    public void givenDownsampledQuery_whenFindAll_thenWholeIntervalIsFetched() throws Exception {
+        when(timeseriesDao.findAllAsync(eq(TENANT_ID), eq(DEVICE_ID), anyList())).thenReturn(Futures.immediateFuture(newEntries(500)));
+
+        List<TsKvEntry> result = timeseriesService.findAll(TENANT_ID, DEVICE_ID,
+                Collections.singletonList(newQuery(100, 50))).get();
+
+        assertEquals(50, result.size());
+        List<ReadTsKvQuery> fetchQueries = captureFetchQueries(1).get(0);
+        assertEquals(1, fetchQueries.size());
+        assertEquals(PAGE_SIZE, fetchQueries.get(0).getLimit());
+        assertEquals("ASC", fetchQueries.get(0).getOrder());
+        assertEquals(0, fetchQueries.get(0).getMaxDataPoints());
+        assertEquals(499L, result.get(0).getTs());
+        assertEquals(0L, result.get(result.size() - 1).getTs());
+    }
+
+    @Test
+    @SuppressWarnings("unchecked")
+    public void givenIntervalDenserThanPageSize_whenFindAll_thenAllPagesAreDownsampled() throws Exception {
+        List<TsKvEntry> entries = newEntries(2500);
+        when(timeseriesDao.findAllAsync(eq(TENANT_ID), eq(DEVICE_ID), anyList())).thenAnswer(invocation -> {
+            ReadTsKvQuery query = ((List<ReadTsKvQuery>) invocation.getArgument(2)).get(0);
+            return Futures.immediateFuture(entries.stream()
+                    .filter(entry -> entry.getTs() >= query.getStartTs() && entry.getTs() < query.getEndTs())
+                    .limit(query.getLimit())
+                    .collect(Collectors.toList()));
+        });
+
+        ReadTsKvQuery query = new BaseReadTsKvQuery(KEY, 0, 2500, 2500, 100, Aggregation.NONE, "DESC", 50);
+        List<TsKvEntry> result = timeseriesService.findAll(TENANT_ID, DEVICE_ID, Collections.singletonList(query)).get();
+
+        assertEquals(50, result.size());
+        assertEquals(2499L, result.get(0).getTs());
+        assertEquals(0L, result.get(result.size() - 1).getTs());
+        List<List<ReadTsKvQuery>> fetchQueries = captureFetchQueries(3);
+        assertEquals(0L, fetchQueries.get(0).get(0).getStartTs());
+        assertEquals(1000L, fetchQueries.get(1).get(0).getStartTs());
+        assertEquals(2000L, fetchQueries.get(2).get(0).getStartTs());
+    }
+
+    @Test
+    public void givenQueriesOfSameKeyWithDifferentMaxDataPoints_whenFindAll_thenEachIsDownsampledSeparately() throws Exception {
+        when(timeseriesDao.findAllAsync(eq(TENANT_ID), eq(DEVICE_ID), anyList())).thenReturn(Futures.immediateFuture(newEntries(500)));
+
+        List<TsKvEntry> result = timeseriesService.findAll(TENANT_ID, DEVICE_ID,
+                Arrays.asList(newQuery(100, 10), newQuery(100, 20))).get();
+
+        assertEquals(30, result.size());
+        captureFetchQueries(2);
+    }
+
+    @Test
+    public void givenRegularAndDownsampledQueries_whenFindAllForEntities_thenOnlyDownsampledQueriesAreReduced() throws Exception {
+        DeviceId otherDeviceId = new DeviceId(UUID.randomUUID());
+        ReadTsKvQuery regularQuery = new BaseReadTsKvQuery("humidity", 0, 500, 500, 100, Aggregation.NONE, "DESC");
+        when(timeseriesDao.findAllAsync(eq(TENANT_ID), Mockito.any(EntityId.class), eq(Collections.singletonList(regularQuery))))
+                .thenReturn(Futures.immediateFuture(newEntries(100)));
+        when(timeseriesDao.findAllAsync(eq(TENANT_ID), Mockito.any(EntityId.class), Mockito.argThat((List<ReadTsKvQuery> queries) -> queries.get(0).getKey().equals(KEY))))
+                .thenReturn(Futures.immediateFuture(newEntries(500)));
+
+        Map<EntityId, List<TsKvEntry>> result = timeseriesService.findAll(TENANT_ID, Arrays.asList(DEVICE_ID, otherDeviceId),
+                Arrays.asList(regularQuery, newQuery(100, 10))).get();
+
+        assertEquals(110, result.get(DEVICE_ID).size());
+        assertEquals(110, result.get(otherDeviceId).size());
+    }
+
+    @SuppressWarnings("unchecked")
+    private List<List<ReadTsKvQuery>> captureFetchQueries(int count) {
+        ArgumentCaptor<List<ReadTsKvQuery>> captor = ArgumentCaptor.forClass(List.class);
+        verify(timeseriesDao, times(count)).findAllAsync(eq(TENANT_ID), eq(DEVICE_ID), captor.capture());
+        return captor.getAllValues();
+    }
+
+    private static ReadTsKvQuery newQuery(int limit, int maxDataPoints) {
+        return new BaseReadTsKvQuery(KEY, 0, 500, 500, limit, Aggregation.NONE, "DESC", maxDataPoints);
+    }
+
+    private static List<TsKvEntry> newEntries(int count) {
+        List<TsKvEntry> entries = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            entries.add(new BasicTsKvEntry(i, new LongDataEntry(KEY, (long) (i % 7))));
+        }
+        return entries;
+    }
+}
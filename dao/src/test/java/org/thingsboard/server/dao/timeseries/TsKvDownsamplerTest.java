@@ -0,0 +1,85 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import org.junit.Test;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.DoubleDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+
+public class TsKvDownsamplerTest {
+
+    @Test
+    public void givenLessPointsThanLimit_whenDownsample_thenSameListReturned() {
+        List<TsKvEntry> entries = numericSeries(10, false);
+        assertSame(entries, TsKvDownsampler.downsample(entries, 100));
+        assertSame(entries, TsKvDownsampler.downsample(entries, 0));
+    }
+
+    @Test
+    public void givenNumericSeries_whenDownsample_thenEdgesAndPeakArePreserved() {
+        List<TsKvEntry> entries = numericSeries(1000, false);
+        entries.set(500, new BasicTsKvEntry(500, new DoubleDataEntry("temperature", 1000.0)));
+
+        List<TsKvEntry> result = TsKvDownsampler.downsample(entries, 50);
+
+        assertEquals(50, result.size());
+        assertEquals(0, result.get(0).getTs());
+        assertEquals(999, result.get(49).getTs());
+        assertTrue(result.stream().anyMatch(entry -> entry.getTs() == 500));
+    }
+
+    @Test
+    public void givenDescendingSeries_whenDownsample_thenOrderIsKept() {
+        List<TsKvEntry> result = TsKvDownsampler.downsample(numericSeries(1000, true), 20);
+
+        assertEquals(20, result.size());
+        for (int i = 1; i < result.size(); i++) {
+            assertTrue(result.get(i - 1).getTs() > result.get(i).getTs());
+        }
+    }
+
+    @Test
+    public void givenStringSeries_whenDownsample_thenFirstPointOfBucketIsUsed() {
+        List<TsKvEntry> entries = new ArrayList<>();
+        for (int i = 0; i < 100; i++) {
+            entries.add(new BasicTsKvEntry(i, new StringDataEntry("state", "s" + i)));
+        }
+
+        List<TsKvEntry> result = TsKvDownsampler.downsample(entries, 10);
+
+        assertEquals(10, result.size());
+        assertEquals(0, result.get(0).getTs());
+        assertEquals(90, result.get(9).getTs());
+    }
+
+    private static List<TsKvEntry> numericSeries(int size, boolean descending) {
+        List<TsKvEntry> entries = new ArrayList<>(size);
+        for (int i = 0; i < size; i++) {
+            long ts = descending ? size - 1 - i : i;
+            entries.add(new BasicTsKvEntry(ts, new DoubleDataEntry("temperature", Math.sin(ts / 10.0))));
+        }
+        return entries;
+    }
+}
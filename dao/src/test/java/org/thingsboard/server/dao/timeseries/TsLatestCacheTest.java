@@ -0,0 +1,157 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.server.dao.timeseries;
+
+import com.google.common.util.concurrent.Futures;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.springframework.cache.concurrent.ConcurrentMapCacheManager;
+import org.springframework.test.util.ReflectionTestUtils;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.TenantId;
+import org.thingsboard.server.common.data.kv.BasicTsKvEntry;
+import org.thingsboard.server.common.data.kv.DeleteTsKvQuery;
+import org.thingsboard.server.common.data.kv.LongDataEntry;
+import org.thingsboard.server.common.data.kv.StringDataEntry;
+import org.thingsboard.server.common.data.kv.TsKvEntry;
+import org.thingsboard.server.common.stats.DefaultCounter;
+import org.thingsboard.server.common.stats.StatsFactory;
+import org.thingsboard.server.dao.cache.CacheExecutorService;
+
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.UUID;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.mock;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TsLatestCacheTest {
+
+    private static final TenantId TENANT_ID = new TenantId(UUID.randomUUID());
+    private static final DeviceId DEVICE_ID = new DeviceId(UUID.randomUUID());
+    private static final String KEY = "temperature";
+
+    @Mock
+    private TimeseriesLatestDao timeseriesLatestDao;
+
+    @Mock
+    private StatsFactory statsFactory;
+
+    private BaseTimeseriesService timeseriesService;
+
+    @Before
+    public void setUp() {
+        when(statsFactory.createDefaultCounter(anyString(), any())).thenReturn(mock(DefaultCounter.class));
+        TsLatestCacheWrapper cacheWrapper = new TsLatestCacheWrapper(new ConcurrentMapCacheManager(), statsFactory, mock(CacheExecutorService.class));
+        cacheWrapper.init();
+
+        timeseriesService = new BaseTimeseriesService();
+        ReflectionTestUtils.setField(timeseriesService, "timeseriesLatestDao", timeseriesLatestDao);
+        ReflectionTestUtils.setField(timeseriesService, "tsLatestCache", cacheWrapper);
+    }
+
+    @Test
+    public void givenLatestLoadedFromDao_whenFindLatestAgain_thenCacheIsUsed() throws Exception {
+        TsKvEntry entry = new BasicTsKvEntry(42L, new LongDataEntry(KEY, 1L));
+        when(timeseriesLatestDao.findLatest(TENANT_ID, DEVICE_ID, KEY)).thenReturn(Futures.immediateFuture(entry));
+
+        assertEquals(entry, timeseriesService.findLatest(TENANT_ID, DEVICE_ID, Collections.singletonList(KEY)).get().get(0));
+        assertEquals(entry, timeseriesService.findLatest(TENANT_ID, DEVICE_ID, Collections.singletonList(KEY)).get().get(0));
+
+        verify(timeseriesLatestDao, times(1)).findLatest(TENANT_ID, DEVICE_ID, KEY);
+    }
+
+    @Test
+    public void givenMissingLatest_whenFindLatestAgain_thenEmptyEntryIsReturnedFromCache() throws Exception {
+        TsKvEntry empty = new BasicTsKvEntry(42L, new StringDataEntry(KEY, null));
+        when(timeseriesLatestDao.findLatest(TENANT_ID, DEVICE_ID, KEY)).thenReturn(Futures.immediateFuture(empty));
+
+        timeseriesService.findLatest(TENANT_ID, DEVICE_ID, Collections.singletonList(KEY)).get();
+        List<TsKvEntry> result = timeseriesService.findLatest(TENANT_ID, DEVICE_ID, Collections.singletonList(KEY)).get();
+
+        assertEquals(KEY, result.get(0).getKey());
+        assertNull(result.get(0).getValue());
+        verify(timeseriesLatestDao, times(1)).findLatest(TENANT_ID, DEVICE_ID, KEY);
+    }
+
+    @Test
+    public void givenSavedLatest_whenFindLatest_thenSavedValueIsLoadedFromDao() throws Exception {
+        TsKvEntry entry = new BasicTsKvEntry(42L, new LongDataEntry(KEY, 1L));
+        TsKvEntry newer = new BasicTsKvEntry(43L, new LongDataEntry(KEY, 2L));
+        when(timeseriesLatestDao.findLatest(TENANT_ID, DEVICE_ID, KEY))
+                .thenReturn(Futures.immediateFuture(entry), Futures.immediateFuture(newer));
+        when(timeseriesLatestDao.saveLatest(TENANT_ID, DEVICE_ID, newer)).thenReturn(Futures.immediateFuture(null));
+
+        assertEquals(entry, timeseriesService.findLatest(TENANT_ID, DEVICE_ID, Collections.singletonList(KEY)).get().get(0));
+        timeseriesService.saveLatest(TENANT_ID, DEVICE_ID, Collections.singletonList(newer)).get();
+
+        assertEquals(newer, timeseriesService.findLatest(TENANT_ID, DEVICE_ID, Collections.singletonList(KEY)).get().get(0));
+        verify(timeseriesLatestDao, times(2)).findLatest(TENANT_ID, DEVICE_ID, KEY);
+    }
+
+    @Test
+    public void givenAllLatestLoadedFromDao_whenFindAllLatestAgain_thenCacheIsUsed() throws Exception {
+        List<TsKvEntry> entries = Arrays.asList(new BasicTsKvEntry(42L, new LongDataEntry(KEY, 1L)),
+                new BasicTsKvEntry(42L, new StringDataEntry("status", "on")));
+        when(timeseriesLatestDao.findAllLatest(TENANT_ID, DEVICE_ID)).thenReturn(Futures.immediateFuture(entries));
+
+        assertEquals(entries, timeseriesService.findAllLatest(TENANT_ID, DEVICE_ID).get());
+        assertEquals(entries, timeseriesService.findAllLatest(TENANT_ID, DEVICE_ID).get());
+
+        verify(timeseriesLatestDao, times(1)).findAllLatest(TENANT_ID, DEVICE_ID);
+    }
+
+    @Test
+    public void givenNewKeySaved_whenFindAllLatest_thenDaoIsQueried() throws Exception {
+        TsKvEntry entry = new BasicTsKvEntry(42L, new LongDataEntry(KEY, 1L));
+        TsKvEntry added = new BasicTsKvEntry(43L, new StringDataEntry("status", "on"));
+        when(timeseriesLatestDao.findAllLatest(TENANT_ID, DEVICE_ID))
+                .thenReturn(Futures.immediateFuture(Collections.singletonList(entry)), Futures.immediateFuture(Arrays.asList(entry, added)));
+        when(timeseriesLatestDao.saveLatest(TENANT_ID, DEVICE_ID, added)).thenReturn(Futures.immediateFuture(null));
+
+        timeseriesService.findAllLatest(TENANT_ID, DEVICE_ID).get();
+        timeseriesService.saveLatest(TENANT_ID, DEVICE_ID, Collections.singletonList(added)).get();
+
+        assertEquals(Arrays.asList(entry, added), timeseriesService.findAllLatest(TENANT_ID, DEVICE_ID).get());
+        verify(timeseriesLatestDao, times(2)).findAllLatest(TENANT_ID, DEVICE_ID);
+    }
+
+    @Test
+    public void givenRemovedLatest_whenFindLatest_thenDaoIsQueried() throws Exception {
+        TsKvEntry entry = new BasicTsKvEntry(42L, new LongDataEntry(KEY, 1L));
+        when(timeseriesLatestDao.saveLatest(TENANT_ID, DEVICE_ID, entry)).thenReturn(Futures.immediateFuture(null));
+        when(timeseriesLatestDao.removeLatest(eq(TENANT_ID), eq(DEVICE_ID), any(DeleteTsKvQuery.class))).thenReturn(Futures.immediateFuture(null));
+        when(timeseriesLatestDao.findLatest(TENANT_ID, DEVICE_ID, KEY)).thenReturn(Futures.immediateFuture(new BasicTsKvEntry(42L, new StringDataEntry(KEY, null))));
+
+        timeseriesService.saveLatest(TENANT_ID, DEVICE_ID, Collections.singletonList(entry)).get();
+        timeseriesService.removeLatest(TENANT_ID, DEVICE_ID, Collections.singletonList(KEY)).get();
+
+        assertNull(timeseriesService.findLatest(TENANT_ID, DEVICE_ID, Collections.singletonList(KEY)).get().get(0).getValue());
+        verify(timeseriesLatestDao, times(1)).findLatest(TENANT_ID, DEVICE_ID, KEY);
+    }
+}
@@ -8,6 +8,7 @@ DROP TABLE IF EXISTS customer;
 DROP TABLE IF EXISTS device;
 DROP TABLE IF EXISTS device_credentials;
 DROP TABLE IF EXISTS event;
+DROP TABLE IF EXISTS event_uid_lookup;
 DROP TABLE IF EXISTS relation;
 DROP TABLE IF EXISTS tb_user;
 DROP TABLE IF EXISTS tenant;
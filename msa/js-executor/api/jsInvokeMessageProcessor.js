@@ -64,6 +64,8 @@ JsInvokeMessageProcessor.prototype.onJsInvokeMessage = function (message) {
             this.processCompileRequest(requestId, responseTopic, headers, request.compileRequest);
         } else if (request.invokeRequest) {
             this.processInvokeRequest(requestId, responseTopic, headers, request.invokeRequest);
+        } else if (request.invokeBatchRequest) {
+            this.processInvokeBatchRequest(requestId, responseTopic, headers, request.invokeBatchRequest);
         } else if (request.releaseRequest) {
             this.processReleaseRequest(requestId, responseTopic, headers, request.releaseRequest);
         } else {
@@ -80,9 +82,10 @@ JsInvokeMessageProcessor.prototype.onJsInvokeMessage = function (message) {
 
     if (tTook > slowQueryLogMs) {
         let functionName;
-        if (request.invokeRequest) {
+        const invokeRequest = request.invokeRequest || request.invokeBatchRequest;
+        if (invokeRequest) {
             try {
-                buf = Buffer.from(request.invokeRequest['functionName']);
+                buf = Buffer.from(invokeRequest['functionName']);
                 functionName = buf.toString('utf8');
             } catch (err) {
                 logger.error('[%s] Failed to read functionName from message header: %s', requestId, err.message);
@@ -119,18 +122,7 @@ JsInvokeMessageProcessor.prototype.processCompileRequest = function (requestId,
 JsInvokeMessageProcessor.prototype.processInvokeRequest = function (requestId, responseTopic, headers, invokeRequest) {
     var scriptId = getScriptId(invokeRequest);
     logger.debug('[%s] Processing invoke request, scriptId: [%s]', requestId, scriptId);
-    this.executedScriptsCounter++;
-    if (this.executedScriptsCounter % statFrequency == 0) {
-        const nowMs = performance.now();
-        const msSinceLastStat = nowMs - this.lastStatTime;
-        const requestsPerSec = msSinceLastStat == 0 ? statFrequency : statFrequency / msSinceLastStat * 1000;
-        this.lastStatTime = nowMs;
-        logger.info('STAT[%s]: requests [%s], took [%s]ms, request/s [%s]', this.executedScriptsCounter, statFrequency, msSinceLastStat, requestsPerSec);
-    }
-
-    if (this.executedScriptsCounter % scriptBodyTraceFrequency == 0) {
-        logger.info('[%s] Executing script body: [%s]', scriptId, invokeRequest.scriptBody);
-    }
+    this.countExecutedScripts(scriptId, invokeRequest.scriptBody, 1);
     this.getOrCompileScript(scriptId, invokeRequest.scriptBody).then(
         (script) => {
             this.executor.executeScript(script, invokeRequest.args, invokeRequest.timeout).then(
@@ -160,6 +152,51 @@ JsInvokeMessageProcessor.prototype.processInvokeRequest = function (requestId, r
     );
 }
 
+JsInvokeMessageProcessor.prototype.processInvokeBatchRequest = function (requestId, responseTopic, headers, invokeBatchRequest) {
+    var scriptId = getScriptId(invokeBatchRequest);
+    const invokeArgs = invokeBatchRequest.invokeArgs || [];
+    logger.debug('[%s] Processing invoke batch request, scriptId: [%s], size: [%s]', requestId, scriptId, invokeArgs.length);
+    this.countExecutedScripts(scriptId, invokeBatchRequest.scriptBody, invokeArgs.length);
+    this.getOrCompileScript(scriptId, invokeBatchRequest.scriptBody).then(
+        (script) => {
+            Promise.all(invokeArgs.map((invokeArg) =>
+                this.executor.executeScript(script, invokeArg.args, invokeBatchRequest.timeout).then(
+                    (result) => createInvokeResponse(result, true),
+                    (err) => {
+                        var errorCode = err.message.includes('Script execution timed out') ? TIMEOUT_ERROR : RUNTIME_ERROR;
+                        return createInvokeResponse("", false, errorCode, err);
+                    }
+                )
+            )).then((invokeResponses) => {
+                logger.debug('[%s] Sending invoke batch response, scriptId: [%s]', requestId, scriptId);
+                this.sendResponse(requestId, responseTopic, headers, scriptId, null, null, null, {invokeResponses: invokeResponses});
+            });
+        },
+        (err) => {
+            const invokeResponse = createInvokeResponse("", false, COMPILATION_ERROR, err);
+            logger.debug('[%s] Sending failed invoke batch response, scriptId: [%s], errorCode: [%s]', requestId, scriptId, COMPILATION_ERROR);
+            this.sendResponse(requestId, responseTopic, headers, scriptId, null, null, null,
+                {invokeResponses: invokeArgs.map(() => invokeResponse)});
+        }
+    );
+}
+
+JsInvokeMessageProcessor.prototype.countExecutedScripts = function (scriptId, scriptBody, count) {
+    for (var i = 0; i < count; i++) {
+        this.executedScriptsCounter++;
+        if (this.executedScriptsCounter % statFrequency == 0) {
+            const nowMs = performance.now();
+            const msSinceLastStat = nowMs - this.lastStatTime;
+            const requestsPerSec = msSinceLastStat == 0 ? statFrequency : statFrequency / msSinceLastStat * 1000;
+            this.lastStatTime = nowMs;
+            logger.info('STAT[%s]: requests [%s], took [%s]ms, request/s [%s]', this.executedScriptsCounter, statFrequency, msSinceLastStat, requestsPerSec);
+        }
+        if (this.executedScriptsCounter % scriptBodyTraceFrequency == 0) {
+            logger.info('[%s] Executing script body: [%s]', scriptId, scriptBody);
+        }
+    }
+}
+
 JsInvokeMessageProcessor.prototype.processReleaseRequest = function (requestId, responseTopic, headers, releaseRequest) {
     var scriptId = getScriptId(releaseRequest);
     logger.debug('[%s] Processing release request, scriptId: [%s]', requestId, scriptId);
@@ -175,9 +212,9 @@ JsInvokeMessageProcessor.prototype.processReleaseRequest = function (requestId,
     this.sendResponse(requestId, responseTopic, headers, scriptId, null, null, releaseResponse);
 }
 
-JsInvokeMessageProcessor.prototype.sendResponse = function (requestId, responseTopic, headers, scriptId, compileResponse, invokeResponse, releaseResponse) {
+JsInvokeMessageProcessor.prototype.sendResponse = function (requestId, responseTopic, headers, scriptId, compileResponse, invokeResponse, releaseResponse, invokeBatchResponse) {
     var tStartSending = performance.now();
-    var remoteResponse = createRemoteResponse(requestId, compileResponse, invokeResponse, releaseResponse);
+    var remoteResponse = createRemoteResponse(requestId, compileResponse, invokeResponse, releaseResponse, invokeBatchResponse);
     var rawResponse = Buffer.from(JSON.stringify(remoteResponse), 'utf8');
     logger.debug('[%s] Sending response to queue, scriptId: [%s]', requestId, scriptId);
     this.producer.send(responseTopic, scriptId, rawResponse, headers).then(
@@ -227,14 +264,15 @@ JsInvokeMessageProcessor.prototype.cacheScript = function (scriptId, script) {
     logger.info("scriptMap size is [%s]", this.scriptMap.size);
 }
 
-function createRemoteResponse(requestId, compileResponse, invokeResponse, releaseResponse) {
+function createRemoteResponse(requestId, compileResponse, invokeResponse, releaseResponse, invokeBatchResponse) {
     const requestIdBits = Utils.UUIDToBits(requestId);
     return {
         requestIdMSB: requestIdBits[0],
         requestIdLSB: requestIdBits[1],
         compileResponse: compileResponse,
         invokeResponse: invokeResponse,
-        releaseResponse: releaseResponse
+        releaseResponse: releaseResponse,
+        invokeBatchResponse: invokeBatchResponse
     };
 }
 
@@ -0,0 +1,144 @@
+/*
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+'use strict';
+
+process.env.SCRIPT_USE_SANDBOX = 'true';
+
+const assert = require('assert'),
+      uuidParse = require('uuid-parse'),
+      Utils = require('../api/utils'),
+      JsInvokeMessageProcessor = require('../api/jsInvokeMessageProcessor');
+
+const RUNTIME_ERROR = 1;
+const TIMEOUT_ERROR = 2;
+const COMPILATION_ERROR = 0;
+
+const requestId = 'b6b2d1b0-5c3a-11ec-bf63-0242ac130002';
+const scriptId = 'c7f3e2c1-5c3a-11ec-bf63-0242ac130002';
+const responseTopic = 'js_eval.responses.test';
+
+const scriptBody = 'function(msgStr, metadataStr, msgType) {\n' +
+    '    var msg = JSON.parse(msgStr);\n' +
+    '    if (msg.fail) { throw new Error(\'Invalid message\'); }\n' +
+    '    if (msg.loop) { while (true) {} }\n' +
+    '    return JSON.stringify({temperatureF: msg.temperature * 9 / 5 + 32, msgType: msgType});\n' +
+    '}';
+
+function createProducer() {
+    const producer = {};
+    producer.response = new Promise((resolve) => {
+        producer.send = (topic, key, rawResponse, headers) => {
+            resolve({topic: topic, key: key, response: JSON.parse(rawResponse.toString('utf8'))});
+            return Promise.resolve();
+        };
+    });
+    return producer;
+}
+
+// The same JSON the Java RemoteJsRequestEncoder produces: 64 bit ids are printed as strings
+function createBatchRequestMessage(body, invokeArgs) {
+    const scriptIdBits = Utils.UUIDToBits(scriptId);
+    const request = {
+        invokeBatchRequest: {
+            scriptIdMSB: scriptIdBits[0],
+            scriptIdLSB: scriptIdBits[1],
+            functionName: 'invokeInternal_test',
+            scriptBody: body,
+            timeout: 100,
+            invokeArgs: invokeArgs.map((args) => ({args: args}))
+        }
+    };
+    return {
+        data: Buffer.from(JSON.stringify(request), 'utf8'),
+        headers: {
+            data: {
+                requestId: Buffer.from(uuidParse.parse(requestId)),
+                responseTopic: Buffer.from(responseTopic, 'utf8')
+            }
+        }
+    };
+}
+
+async function processBatch(body, invokeArgs) {
+    const producer = createProducer();
+    new JsInvokeMessageProcessor(producer).onJsInvokeMessage(createBatchRequestMessage(body, invokeArgs));
+    const sent = await producer.response;
+    assert.strictEqual(sent.topic, responseTopic);
+    assert.strictEqual(sent.key, scriptId);
+    const requestIdBits = Utils.UUIDToBits(requestId);
+    assert.strictEqual(sent.response.requestIdMSB, requestIdBits[0]);
+    assert.strictEqual(sent.response.requestIdLSB, requestIdBits[1]);
+    return sent.response.invokeBatchResponse.invokeResponses;
+}
+
+const tests = {
+    'batch responses are returned in request order': async () => {
+        const responses = await processBatch(scriptBody, [
+            ['{"temperature": 20}', '{}', 'POST_TELEMETRY_REQUEST'],
+            ['{"temperature": 25}', '{}', 'POST_ATTRIBUTES_REQUEST']
+        ]);
+        assert.strictEqual(responses.length, 2);
+        assert.strictEqual(responses[0].success, true);
+        assert.strictEqual(responses[0].result, '{"temperatureF":68,"msgType":"POST_TELEMETRY_REQUEST"}');
+        assert.strictEqual(responses[1].success, true);
+        assert.strictEqual(responses[1].result, '{"temperatureF":77,"msgType":"POST_ATTRIBUTES_REQUEST"}');
+    },
+    'failed invocation does not fail the rest of the batch': async () => {
+        const responses = await processBatch(scriptBody, [
+            ['{"fail": true}', '{}', 'POST_TELEMETRY_REQUEST'],
+            ['{"temperature": 25}', '{}', 'POST_TELEMETRY_REQUEST']
+        ]);
+        assert.strictEqual(responses[0].success, false);
+        assert.strictEqual(responses[0].errorCode, RUNTIME_ERROR);
+        assert.ok(responses[0].errorDetails.includes('Invalid message'), responses[0].errorDetails);
+        assert.strictEqual(responses[1].success, true);
+    },
+    'timed out invocation is reported with the timeout error code': async () => {
+        const responses = await processBatch(scriptBody, [
+            ['{"loop": true}', '{}', 'POST_TELEMETRY_REQUEST'],
+            ['{"temperature": 25}', '{}', 'POST_TELEMETRY_REQUEST']
+        ]);
+        assert.strictEqual(responses[0].success, false);
+        assert.strictEqual(responses[0].errorCode, TIMEOUT_ERROR);
+        assert.strictEqual(responses[1].success, true);
+    },
+    'compilation error fails every invocation of the batch': async () => {
+        const responses = await processBatch('function(msgStr) { return ', [
+            ['{"temperature": 20}', '{}', 'POST_TELEMETRY_REQUEST'],
+            ['{"temperature": 25}', '{}', 'POST_TELEMETRY_REQUEST']
+        ]);
+        assert.strictEqual(responses.length, 2);
+        responses.forEach((response) => {
+            assert.strictEqual(response.success, false);
+            assert.strictEqual(response.errorCode, COMPILATION_ERROR);
+        });
+    }
+};
+
+(async () => {
+    let failed = 0;
+    for (const name of Object.keys(tests)) {
+        try {
+            await tests[name]();
+            console.log('ok - ' + name);
+        } catch (err) {
+            failed++;
+            console.log('not ok - ' + name);
+            console.log(err.stack);
+        }
+    }
+    process.exit(failed > 0 ? 1 : 0);
+})();
@@ -227,6 +227,7 @@ final class MqttChannelHandler extends SimpleChannelInboundHandler<MqttMessage>
         pendingPublish.onPubackReceived();
         this.client.getPendingPublishes().remove(message.variableHeader().messageId());
         pendingPublish.getPayload().release();
+        this.client.releaseInflightSlot();
     }
 
     private void handlePubrec(Channel channel, MqttMessage message) {
@@ -239,7 +240,7 @@ final class MqttChannelHandler extends SimpleChannelInboundHandler<MqttMessage>
         channel.writeAndFlush(pubrelMessage);
 
         pendingPublish.setPubrelMessage(pubrelMessage);
-        pendingPublish.startPubrelRetransmissionTimer(this.client.getEventLoop().next(), this.client::sendAndFlushPacket);
+        pendingPublish.startPubrelRetransmissionTimer(this.client.getRetransmissionTimer(), this.client::retransmitPacket);
     }
 
     private void handlePubrel(Channel channel, MqttMessage message) {
@@ -260,5 +261,6 @@ final class MqttChannelHandler extends SimpleChannelInboundHandler<MqttMessage>
         this.client.getPendingPublishes().remove(variableHeader.messageId());
         pendingPublish.getPayload().release();
         pendingPublish.onPubcompReceived();
+        this.client.releaseInflightSlot();
     }
 }
@@ -42,6 +42,7 @@ public final class MqttClientConfig {
     private boolean reconnect = true;
     private long reconnectDelay = 1L;
     private int maxBytesInMessage = 8092;
+    private int maxInflightPublishes = 0;
 
     public MqttClientConfig() {
         this(null);
@@ -182,4 +183,24 @@ public final class MqttClientConfig {
         }
         this.maxBytesInMessage = maxBytesInMessage;
     }
+
+    public int getMaxInflightPublishes() {
+        return maxInflightPublishes;
+    }
+
+    /**
+     * Sets the maximum number of QoS 1 and QoS 2 publishes that may be awaiting an acknowledgement at the same time.
+     * Publishes above this limit are queued by the client and sent as soon as earlier ones are acknowledged,
+     * so the futures returned by {@link MqttClient#publish(String, io.netty.buffer.ByteBuf, io.netty.handler.codec.mqtt.MqttQoS)}
+     * complete at the rate the broker accepts messages. Default value is 0, which means no limit.
+     *
+     * @param maxInflightPublishes
+     * @throws IllegalArgumentException if maxInflightPublishes is negative or greater than 65535.
+     */
+    public void setMaxInflightPublishes(int maxInflightPublishes) {
+        if (maxInflightPublishes < 0 || maxInflightPublishes > 0xffff) {
+            throw new IllegalArgumentException("maxInflightPublishes must be >= 0 and <= 65535");
+        }
+        this.maxInflightPublishes = maxInflightPublishes;
+    }
 }
@@ -40,19 +40,29 @@ import io.netty.handler.codec.mqtt.MqttSubscribePayload;
 import io.netty.handler.codec.mqtt.MqttTopicSubscription;
 import io.netty.handler.codec.mqtt.MqttUnsubscribeMessage;
 import io.netty.handler.codec.mqtt.MqttUnsubscribePayload;
+import io.netty.handler.flush.FlushConsolidationHandler;
 import io.netty.handler.ssl.SslContext;
 import io.netty.handler.timeout.IdleStateHandler;
+import io.netty.util.HashedWheelTimer;
+import io.netty.util.ReferenceCountUtil;
+import io.netty.util.Timer;
 import io.netty.util.concurrent.DefaultPromise;
+import io.netty.util.concurrent.DefaultThreadFactory;
 import io.netty.util.concurrent.Future;
 import io.netty.util.concurrent.Promise;
 
+import java.util.ArrayDeque;
+import java.util.ArrayList;
 import java.util.Collections;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Optional;
+import java.util.Queue;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.atomic.AtomicInteger;
 
@@ -62,6 +72,12 @@ import java.util.concurrent.atomic.AtomicInteger;
 @SuppressWarnings({"WeakerAccess", "unused"})
 final class MqttClientImpl implements MqttClient {
 
+    /**
+     * Retransmission timeouts of all clients share one timer wheel instead of scheduling a task per message
+     */
+    private static final Timer RETRANSMISSION_TIMER = new HashedWheelTimer(
+            new DefaultThreadFactory("netty-mqtt-retransmission", true), 100, TimeUnit.MILLISECONDS);
+
     private final Set<String> serverSubscriptions = new HashSet<>();
     private final ConcurrentMap<Integer, MqttPendingUnsubscription> pendingServerUnsubscribes = new ConcurrentHashMap<>();
     private final ConcurrentMap<Integer, MqttIncomingQos2Publish> qos2PendingIncomingPublishes = new ConcurrentHashMap<>();
@@ -71,6 +87,8 @@ final class MqttClientImpl implements MqttClient {
     private final Set<String> pendingSubscribeTopics = new HashSet<>();
     private final HashMultimap<MqttHandler, MqttSubscription> handlerToSubscribtion = HashMultimap.create();
     private final AtomicInteger nextMessageId = new AtomicInteger(1);
+    private final Queue<MqttPendingPublish> queuedPublishes = new ArrayDeque<>();
+    private int inflightPublishes; // guarded by queuedPublishes
 
     private final MqttClientConfig clientConfig;
 
@@ -160,7 +178,7 @@ final class MqttClientImpl implements MqttClient {
                     subscriptions.clear();
                     pendingServerUnsubscribes.clear();
                     qos2PendingIncomingPublishes.clear();
-                    pendingPublishes.clear();
+                    failPendingPublishes(e);
                     pendingSubscribeTopics.clear();
                     handlerToSubscribtion.clear();
                     scheduleConnectIfRequired(host, port, true);
@@ -362,25 +380,115 @@ final class MqttClientImpl implements MqttClient {
         MqttPublishVariableHeader variableHeader = new MqttPublishVariableHeader(topic, getNewMessageId().messageId());
         MqttPublishMessage message = new MqttPublishMessage(fixedHeader, variableHeader, payload);
         MqttPendingPublish pendingPublish = new MqttPendingPublish(variableHeader.packetId(), future, payload.retain(), message, qos);
+        if (qos == MqttQoS.AT_MOST_ONCE) {
+            this.sendPublish(pendingPublish);
+        } else if (this.acquireInflightSlot(pendingPublish) && !this.sendPublish(pendingPublish)) {
+            this.releaseInflightSlot();
+        }
+        return future;
+    }
+
+    /**
+     * @return true if the publish was sent and is now waiting for an acknowledgement
+     */
+    private boolean sendPublish(MqttPendingPublish pendingPublish) {
         this.pendingPublishes.put(pendingPublish.getMessageId(), pendingPublish);
-        ChannelFuture channelFuture = this.sendAndFlushPacket(message);
+        ChannelFuture channelFuture = this.sendAndFlushPacket(pendingPublish.getMessage());
 
-        if (channelFuture != null) {
-            pendingPublish.setSent(true);
-            if (channelFuture.cause() != null) {
-                future.setFailure(channelFuture.cause());
-                return future;
+        if (channelFuture == null) {
+            // not connected, neither the encoder nor an acknowledgement will release the payload
+            this.pendingPublishes.remove(pendingPublish.getMessageId());
+            if (pendingPublish.getFuture().tryFailure(new ChannelClosedException("Channel is closed!"))) {
+                pendingPublish.getPayload().release(2);
             }
+            return false;
         }
-        if (pendingPublish.isSent() && pendingPublish.getQos() == MqttQoS.AT_MOST_ONCE) {
+        pendingPublish.setSent(true);
+        if (channelFuture.cause() != null) {
             this.pendingPublishes.remove(pendingPublish.getMessageId());
-            pendingPublish.getFuture().setSuccess(null); //We don't get an ACK for QOS 0
-        } else if (pendingPublish.isSent()) {
-            pendingPublish.startPublishRetransmissionTimer(this.eventLoop.next(), this::sendAndFlushPacket);
-        } else {
+            if (pendingPublish.getFuture().tryFailure(channelFuture.cause())) {
+                pendingPublish.getPayload().release();
+            }
+            return false;
+        }
+        if (pendingPublish.getQos() == MqttQoS.AT_MOST_ONCE) {
             this.pendingPublishes.remove(pendingPublish.getMessageId());
+            pendingPublish.getFuture().setSuccess(null); //We don't get an ACK for QOS 0
+            pendingPublish.getPayload().release();
+            return false;
+        }
+        pendingPublish.startPublishRetransmissionTimer(RETRANSMISSION_TIMER, this::retransmitPacket);
+        return true;
+    }
+
+    /**
+     * Takes an in-flight slot for a QoS 1 or QoS 2 publish or queues it until one of the in-flight publishes is acknowledged.
+     *
+     * @return true if the publish may be sent right away
+     */
+    private boolean acquireInflightSlot(MqttPendingPublish pendingPublish) {
+        int maxInflightPublishes = this.clientConfig.getMaxInflightPublishes();
+        synchronized (this.queuedPublishes) {
+            if (maxInflightPublishes <= 0 || (this.inflightPublishes < maxInflightPublishes && this.queuedPublishes.isEmpty())) {
+                this.inflightPublishes++;
+                return true;
+            }
+            this.queuedPublishes.add(pendingPublish);
+            return false;
+        }
+    }
+
+    /**
+     * Hands the slot of an acknowledged (or failed) publish over to the next queued publish, if any.
+     * When the client is not connected the queued publishes are failed instead of being sent one by one.
+     */
+    void releaseInflightSlot() {
+        while (true) {
+            MqttPendingPublish next;
+            synchronized (this.queuedPublishes) {
+                next = this.queuedPublishes.poll();
+                if (next == null) {
+                    this.inflightPublishes = Math.max(0, this.inflightPublishes - 1);
+                    return;
+                }
+            }
+            if (this.sendPublish(next)) {
+                return;
+            }
+            if (!next.isSent()) {
+                List<MqttPendingPublish> queued;
+                synchronized (this.queuedPublishes) {
+                    queued = new ArrayList<>(this.queuedPublishes);
+                    this.queuedPublishes.clear();
+                    this.inflightPublishes = Math.max(0, this.inflightPublishes - 1);
+                }
+                failPublishes(queued, new ChannelClosedException("Channel is closed!"));
+                return;
+            }
+        }
+    }
+
+    private void failPendingPublishes(Throwable cause) {
+        List<MqttPendingPublish> publishes;
+        synchronized (this.queuedPublishes) {
+            publishes = new ArrayList<>(this.queuedPublishes);
+            this.queuedPublishes.clear();
+            this.inflightPublishes = 0;
+        }
+        publishes.addAll(this.pendingPublishes.values());
+        this.pendingPublishes.clear();
+        failPublishes(publishes, cause);
+    }
+
+    private static void failPublishes(List<MqttPendingPublish> publishes, Throwable cause) {
+        for (MqttPendingPublish publish : publishes) {
+            publish.onPubackReceived();
+            publish.onPubcompReceived();
+            if (publish.getFuture().tryFailure(cause)) {
+                // a queued publish still holds the reference that the encoder would have released on write
+                publish.getPayload().release(publish.isSent() ? 1 : 2);
+            }
         }
-        return future;
     }
 
     /**
@@ -421,6 +529,11 @@ final class MqttClientImpl implements MqttClient {
     }
 
 
+    /**
+     * Flushes issued here are coalesced by the {@link FlushConsolidationHandler} in the pipeline,
+     * so a burst of publishes from the caller threads ends up in a single write syscall per event loop run.
+     * Like a write to a closed channel, a message that is not written to an inactive channel is released.
+     */
     ChannelFuture sendAndFlushPacket(Object message) {
         if (this.channel == null) {
             return null;
@@ -428,9 +541,28 @@ final class MqttClientImpl implements MqttClient {
         if (this.channel.isActive()) {
             return this.channel.writeAndFlush(message);
         }
+        ReferenceCountUtil.release(message);
         return this.channel.newFailedFuture(new ChannelClosedException("Channel is closed!"));
     }
 
+    /**
+     * Retransmissions fire on the shared timer thread, the packet is written from the channel's event loop
+     */
+    void retransmitPacket(Object message) {
+        Channel channel = this.channel;
+        if (channel == null) {
+            ReferenceCountUtil.release(message);
+        } else if (channel.eventLoop().inEventLoop()) {
+            this.sendAndFlushPacket(message);
+        } else {
+            try {
+                channel.eventLoop().execute(() -> this.sendAndFlushPacket(message));
+            } catch (RejectedExecutionException e) {
+                ReferenceCountUtil.release(message);
+            }
+        }
+    }
+
     private MqttMessageIdVariableHeader getNewMessageId() {
         int messageId;
         synchronized (this.nextMessageId) {
@@ -468,7 +600,7 @@ final class MqttClientImpl implements MqttClient {
         this.pendingSubscribeTopics.add(topic);
         pendingSubscription.setSent(this.sendAndFlushPacket(message) != null); //If not sent, we will send it when the connection is opened
 
-        pendingSubscription.startRetransmitTimer(this.eventLoop.next(), this::sendAndFlushPacket);
+        pendingSubscription.startRetransmitTimer(RETRANSMISSION_TIMER, this::retransmitPacket);
 
         return future;
     }
@@ -482,7 +614,7 @@ final class MqttClientImpl implements MqttClient {
 
             MqttPendingUnsubscription pendingUnsubscription = new MqttPendingUnsubscription(promise, topic, message);
             this.pendingServerUnsubscribes.put(variableHeader.messageId(), pendingUnsubscription);
-            pendingUnsubscription.startRetransmissionTimer(this.eventLoop.next(), this::sendAndFlushPacket);
+            pendingUnsubscription.startRetransmissionTimer(RETRANSMISSION_TIMER, this::retransmitPacket);
 
             this.sendAndFlushPacket(message);
         } else {
@@ -522,6 +654,10 @@ final class MqttClientImpl implements MqttClient {
         return qos2PendingIncomingPublishes;
     }
 
+    Timer getRetransmissionTimer() {
+        return RETRANSMISSION_TIMER;
+    }
+
     private class MqttChannelInitializer extends ChannelInitializer<SocketChannel> {
 
         private final Promise<MqttConnectResult> connectFuture;
@@ -543,6 +679,7 @@ final class MqttClientImpl implements MqttClient {
                 ch.pipeline().addLast(sslContext.newHandler(ch.alloc(), host, port));
             }
 
+            ch.pipeline().addLast("flushConsolidationHandler", new FlushConsolidationHandler(FlushConsolidationHandler.DEFAULT_EXPLICIT_FLUSH_AFTER_FLUSHES, true));
             ch.pipeline().addLast("mqttDecoder", new MqttDecoder(clientConfig.getMaxBytesInMessage()));
             ch.pipeline().addLast("mqttEncoder", MqttEncoder.INSTANCE);
             ch.pipeline().addLast("idleStateHandler", new IdleStateHandler(MqttClientImpl.this.clientConfig.getTimeoutSeconds(), MqttClientImpl.this.clientConfig.getTimeoutSeconds(), 0));
@@ -16,10 +16,10 @@
 package org.thingsboard.mqtt;
 
 import io.netty.buffer.ByteBuf;
-import io.netty.channel.EventLoop;
 import io.netty.handler.codec.mqtt.MqttMessage;
 import io.netty.handler.codec.mqtt.MqttPublishMessage;
 import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.util.Timer;
 import io.netty.util.concurrent.Promise;
 
 import java.util.function.Consumer;
@@ -75,10 +75,10 @@ final class MqttPendingPublish {
         return qos;
     }
 
-    void startPublishRetransmissionTimer(EventLoop eventLoop, Consumer<Object> sendPacket) {
+    void startPublishRetransmissionTimer(Timer wheel, Consumer<Object> sendPacket) {
         this.publishRetransmissionHandler.setHandle(((fixedHeader, originalMessage) ->
                 sendPacket.accept(new MqttPublishMessage(fixedHeader, originalMessage.variableHeader(), this.payload.retain()))));
-        this.publishRetransmissionHandler.start(eventLoop);
+        this.publishRetransmissionHandler.start(wheel);
     }
 
     void onPubackReceived() {
@@ -89,10 +89,10 @@ final class MqttPendingPublish {
         this.pubrelRetransmissionHandler.setOriginalMessage(pubrelMessage);
     }
 
-    void startPubrelRetransmissionTimer(EventLoop eventLoop, Consumer<Object> sendPacket) {
+    void startPubrelRetransmissionTimer(Timer wheel, Consumer<Object> sendPacket) {
         this.pubrelRetransmissionHandler.setHandle((fixedHeader, originalMessage) ->
                 sendPacket.accept(new MqttMessage(fixedHeader, originalMessage.variableHeader())));
-        this.pubrelRetransmissionHandler.start(eventLoop);
+        this.pubrelRetransmissionHandler.start(wheel);
     }
 
     void onPubcompReceived() {
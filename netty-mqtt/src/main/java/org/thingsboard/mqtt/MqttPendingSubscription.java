@@ -15,8 +15,8 @@
  */
 package org.thingsboard.mqtt;
 
-import io.netty.channel.EventLoop;
 import io.netty.handler.codec.mqtt.MqttSubscribeMessage;
+import io.netty.util.Timer;
 import io.netty.util.concurrent.Promise;
 
 import java.util.HashSet;
@@ -70,11 +70,11 @@ final class MqttPendingSubscription {
         return handlers;
     }
 
-    void startRetransmitTimer(EventLoop eventLoop, Consumer<Object> sendPacket) {
+    void startRetransmitTimer(Timer wheel, Consumer<Object> sendPacket) {
         if(this.sent){ //If the packet is sent, we can start the retransmit timer
             this.retransmissionHandler.setHandle((fixedHeader, originalMessage) ->
                     sendPacket.accept(new MqttSubscribeMessage(fixedHeader, originalMessage.variableHeader(), originalMessage.payload())));
-            this.retransmissionHandler.start(eventLoop);
+            this.retransmissionHandler.start(wheel);
         }
     }
 
@@ -15,8 +15,8 @@
  */
 package org.thingsboard.mqtt;
 
-import io.netty.channel.EventLoop;
 import io.netty.handler.codec.mqtt.MqttUnsubscribeMessage;
+import io.netty.util.Timer;
 import io.netty.util.concurrent.Promise;
 
 import java.util.function.Consumer;
@@ -43,10 +43,10 @@ final class MqttPendingUnsubscription {
         return topic;
     }
 
-    void startRetransmissionTimer(EventLoop eventLoop, Consumer<Object> sendPacket) {
+    void startRetransmissionTimer(Timer wheel, Consumer<Object> sendPacket) {
         this.retransmissionHandler.setHandle((fixedHeader, originalMessage) ->
                 sendPacket.accept(new MqttUnsubscribeMessage(fixedHeader, originalMessage.variableHeader(), originalMessage.payload())));
-        this.retransmissionHandler.start(eventLoop);
+        this.retransmissionHandler.start(wheel);
     }
 
     void onUnsubackReceived(){
@@ -15,36 +15,41 @@
  */
 package org.thingsboard.mqtt;
 
-import io.netty.channel.EventLoop;
 import io.netty.handler.codec.mqtt.MqttFixedHeader;
 import io.netty.handler.codec.mqtt.MqttMessage;
 import io.netty.handler.codec.mqtt.MqttMessageType;
 import io.netty.handler.codec.mqtt.MqttQoS;
-import io.netty.util.concurrent.ScheduledFuture;
+import io.netty.util.Timeout;
+import io.netty.util.Timer;
 
 import java.util.concurrent.TimeUnit;
 import java.util.function.BiConsumer;
 
 final class RetransmissionHandler<T extends MqttMessage> {
 
-    private ScheduledFuture<?> timer;
+    private volatile Timeout timer;
+    private volatile boolean stopped;
     private int timeout = 10;
     private BiConsumer<MqttFixedHeader, T> handler;
     private T originalMessage;
 
-    void start(EventLoop eventLoop){
-        if(eventLoop == null){
-            throw new NullPointerException("eventLoop");
+    void start(Timer wheel){
+        if(wheel == null){
+            throw new NullPointerException("wheel");
         }
         if(this.handler == null){
             throw new NullPointerException("handler");
         }
         this.timeout = 10;
-        this.startTimer(eventLoop);
+        this.stopped = false;
+        this.startTimer(wheel);
     }
 
-    private void startTimer(EventLoop eventLoop){
-        this.timer = eventLoop.schedule(() -> {
+    private void startTimer(Timer wheel){
+        this.timer = wheel.newTimeout(t -> {
+            if(this.stopped){
+                return;
+            }
             this.timeout += 5;
             boolean isDup = this.originalMessage.fixedHeader().isDup();
             if(this.originalMessage.fixedHeader().messageType() == MqttMessageType.PUBLISH && this.originalMessage.fixedHeader().qosLevel() != MqttQoS.AT_MOST_ONCE){
@@ -52,13 +57,15 @@ final class RetransmissionHandler<T extends MqttMessage> {
             }
             MqttFixedHeader fixedHeader = new MqttFixedHeader(this.originalMessage.fixedHeader().messageType(), isDup, this.originalMessage.fixedHeader().qosLevel(), this.originalMessage.fixedHeader().isRetain(), this.originalMessage.fixedHeader().remainingLength());
             handler.accept(fixedHeader, originalMessage);
-            startTimer(eventLoop);
+            startTimer(wheel);
         }, timeout, TimeUnit.SECONDS);
     }
 
     void stop(){
-        if(this.timer != null){
-            this.timer.cancel(true);
+        this.stopped = true;
+        Timeout timer = this.timer;
+        if(timer != null){
+            timer.cancel();
         }
     }
 
@@ -0,0 +1,251 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.mqtt;
+
+import io.netty.bootstrap.ServerBootstrap;
+import io.netty.buffer.ByteBuf;
+import io.netty.buffer.Unpooled;
+import io.netty.channel.Channel;
+import io.netty.channel.ChannelHandlerContext;
+import io.netty.channel.ChannelInitializer;
+import io.netty.channel.SimpleChannelInboundHandler;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.channel.socket.SocketChannel;
+import io.netty.channel.socket.nio.NioServerSocketChannel;
+import io.netty.handler.codec.mqtt.MqttConnAckMessage;
+import io.netty.handler.codec.mqtt.MqttConnAckVariableHeader;
+import io.netty.handler.codec.mqtt.MqttConnectReturnCode;
+import io.netty.handler.codec.mqtt.MqttDecoder;
+import io.netty.handler.codec.mqtt.MqttEncoder;
+import io.netty.handler.codec.mqtt.MqttFixedHeader;
+import io.netty.handler.codec.mqtt.MqttMessage;
+import io.netty.handler.codec.mqtt.MqttMessageIdVariableHeader;
+import io.netty.handler.codec.mqtt.MqttMessageType;
+import io.netty.handler.codec.mqtt.MqttPubAckMessage;
+import io.netty.handler.codec.mqtt.MqttPublishMessage;
+import io.netty.handler.codec.mqtt.MqttPublishVariableHeader;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.util.concurrent.Future;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+public class MqttClientTest {
+
+    private static final long TIMEOUT_MS = 5000;
+
+    private NioEventLoopGroup eventLoop;
+    private Channel serverChannel;
+    private volatile Channel serverConnection;
+    private final BlockingQueue<Integer> receivedPublishes = new LinkedBlockingQueue<>();
+    private MqttClient client;
+
+    @Before
+    public void before() throws Exception {
+        eventLoop = new NioEventLoopGroup(2);
+        serverChannel = new ServerBootstrap()
+                .group(eventLoop)
+                .channel(NioServerSocketChannel.class)
+                .childHandler(new ChannelInitializer<SocketChannel>() {
+                    @Override
+                    protected void initChannel(SocketChannel ch) {
+                        ch.pipeline().addLast(MqttEncoder.INSTANCE, new MqttDecoder(), new TestBrokerHandler());
+                    }
+                })
+                .bind("127.0.0.1", 0).sync().channel();
+    }
+
+    @After
+    public void after() throws Exception {
+        if (client != null) {
+            client.disconnect();
+        }
+        serverChannel.close().sync();
+        eventLoop.shutdownGracefully(0, 1, TimeUnit.SECONDS).sync();
+    }
+
+    @Test
+    public void publishesAboveInflightWindowAreQueuedUntilAcknowledged() throws Exception {
+        connect(2);
+
+        List<Future<Void>> futures = new ArrayList<>();
+        for (int i = 0; i < 5; i++) {
+            futures.add(client.publish("test", payload(), MqttQoS.AT_LEAST_ONCE));
+        }
+
+        int first = takePublish();
+        int second = takePublish();
+        assertNull(receivedPublishes.poll(200, TimeUnit.MILLISECONDS));
+        assertFalse(futures.get(0).isDone());
+
+        ack(first);
+        assertTrue(futures.get(0).await(TIMEOUT_MS));
+        assertTrue(futures.get(0).isSuccess());
+        int third = takePublish();
+        assertNull(receivedPublishes.poll(200, TimeUnit.MILLISECONDS));
+
+        ack(second);
+        ack(third);
+        int fourth = takePublish();
+        int fifth = takePublish();
+        ack(fourth);
+        ack(fifth);
+        for (Future<Void> future : futures) {
+            assertTrue(future.await(TIMEOUT_MS));
+            assertTrue(future.isSuccess());
+        }
+        assertNull(receivedPublishes.poll(200, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void inflightAndQueuedPublishesFailAndReleasePayloadsOnClose() throws Exception {
+        connect(1);
+
+        List<Future<Void>> futures = new ArrayList<>();
+        List<ByteBuf> payloads = new ArrayList<>();
+        for (int i = 0; i < 3; i++) {
+            ByteBuf payload = payload();
+            payloads.add(payload);
+            futures.add(client.publish("test", payload, MqttQoS.AT_LEAST_ONCE));
+        }
+        takePublish();
+
+        serverConnection.close().sync();
+
+        for (Future<Void> future : futures) {
+            assertTrue(future.await(TIMEOUT_MS));
+            assertTrue(future.cause() instanceof ChannelClosedException);
+        }
+        for (ByteBuf payload : payloads) {
+            // the payload is released right after the future is failed on the event loop
+            awaitRefCnt(payload, 0);
+        }
+    }
+
+    @Test
+    public void publishesFailAndReleasePayloadsWhenNotConnected() throws Exception {
+        MqttClientConfig config = new MqttClientConfig();
+        config.setReconnect(false);
+        config.setMaxInflightPublishes(1);
+        client = MqttClient.create(config, (topic, payload) -> {});
+        client.setEventLoop(eventLoop);
+
+        ByteBuf payload = payload();
+        Future<Void> future = client.publish("test", payload, MqttQoS.AT_LEAST_ONCE);
+
+        assertTrue(future.await(TIMEOUT_MS));
+        assertTrue(future.cause() instanceof ChannelClosedException);
+        assertEquals(0, payload.refCnt());
+    }
+
+    @Test
+    public void publishesAndRetransmissionsReleasePayloadsWhenChannelIsInactive() throws Exception {
+        connect(1);
+        serverConnection.close().sync();
+        awaitDisconnected();
+
+        for (MqttQoS qos : new MqttQoS[]{MqttQoS.AT_MOST_ONCE, MqttQoS.AT_LEAST_ONCE}) {
+            ByteBuf payload = payload();
+            Future<Void> future = client.publish("test", payload, qos);
+            assertTrue(future.await(TIMEOUT_MS));
+            assertTrue(future.cause() instanceof ChannelClosedException);
+            assertEquals(0, payload.refCnt());
+        }
+
+        ByteBuf payload = payload();
+        ((MqttClientImpl) client).retransmitPacket(new MqttPublishMessage(
+                new MqttFixedHeader(MqttMessageType.PUBLISH, true, MqttQoS.AT_LEAST_ONCE, false, 0),
+                new MqttPublishVariableHeader("test", 1), payload.retain()));
+        awaitRefCnt(payload, 1);
+        payload.release();
+    }
+
+    private void connect(int maxInflightPublishes) throws Exception {
+        MqttClientConfig config = new MqttClientConfig();
+        config.setReconnect(false);
+        config.setMaxInflightPublishes(maxInflightPublishes);
+        client = MqttClient.create(config, (topic, payload) -> {});
+        client.setEventLoop(eventLoop);
+        InetSocketAddress address = (InetSocketAddress) serverChannel.localAddress();
+        Future<MqttConnectResult> connectFuture = client.connect(address.getHostString(), address.getPort());
+        assertTrue(connectFuture.await(TIMEOUT_MS));
+        assertTrue(connectFuture.getNow().isSuccess());
+    }
+
+    private void awaitDisconnected() throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (client.isConnected() && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertFalse(client.isConnected());
+    }
+
+    private static void awaitRefCnt(ByteBuf payload, int refCnt) throws InterruptedException {
+        long deadline = System.currentTimeMillis() + TIMEOUT_MS;
+        while (payload.refCnt() > refCnt && System.currentTimeMillis() < deadline) {
+            Thread.sleep(10);
+        }
+        assertEquals(refCnt, payload.refCnt());
+    }
+
+    private int takePublish() throws InterruptedException {
+        Integer messageId = receivedPublishes.poll(TIMEOUT_MS, TimeUnit.MILLISECONDS);
+        assertTrue("Publish was not received", messageId != null);
+        return messageId;
+    }
+
+    private void ack(int messageId) {
+        serverConnection.writeAndFlush(new MqttPubAckMessage(
+                new MqttFixedHeader(MqttMessageType.PUBACK, false, MqttQoS.AT_MOST_ONCE, false, 0),
+                MqttMessageIdVariableHeader.from(messageId)));
+    }
+
+    private static ByteBuf payload() {
+        return Unpooled.copiedBuffer(new byte[]{1, 2, 3});
+    }
+
+    private class TestBrokerHandler extends SimpleChannelInboundHandler<MqttMessage> {
+
+        @Override
+        protected void channelRead0(ChannelHandlerContext ctx, MqttMessage msg) {
+            switch (msg.fixedHeader().messageType()) {
+                case CONNECT:
+                    serverConnection = ctx.channel();
+                    ctx.writeAndFlush(new MqttConnAckMessage(
+                            new MqttFixedHeader(MqttMessageType.CONNACK, false, MqttQoS.AT_MOST_ONCE, false, 0),
+                            new MqttConnAckVariableHeader(MqttConnectReturnCode.CONNECTION_ACCEPTED, false)));
+                    break;
+                case PUBLISH:
+                    receivedPublishes.add(((MqttPublishMessage) msg).variableHeader().packetId());
+                    break;
+                default:
+                    break;
+            }
+        }
+    }
+}
@@ -41,6 +41,8 @@ public interface RuleEngineAlarmService {
 
     Alarm createOrUpdateAlarm(Alarm alarm);
 
+    ListenableFuture<Alarm> createOrUpdateAlarmAsync(Alarm alarm);
+
     Boolean deleteAlarm(TenantId tenantId, AlarmId alarmId);
 
     ListenableFuture<Boolean> ackAlarm(TenantId tenantId, AlarmId alarmId, long ackTs);
@@ -236,6 +236,10 @@ public interface TbContext {
 
     ScriptEngine createJsScriptEngine(String script, String... argNames);
 
+    boolean isJsExecEnabled();
+
+    void reportJsExec(CustomerId customerId);
+
     void logJsEvalRequest();
 
     void logJsEvalResponse();
@@ -16,7 +16,9 @@
 package org.thingsboard.rule.engine.credentials;
 
 import com.fasterxml.jackson.annotation.JsonIgnoreProperties;
+import lombok.EqualsAndHashCode;
 
+@EqualsAndHashCode
 @JsonIgnoreProperties(ignoreUnknown = true)
 public class AnonymousCredentials implements ClientCredentials {
     @Override
@@ -0,0 +1,545 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.expression;
+
+import javax.script.ScriptException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.thingsboard.rule.engine.expression.TbExpressionValues.UNDEFINED;
+
+/**
+ * Recursive descent parser of the expression subset of JavaScript, producing a closure tree.
+ * <p>
+ * The script has to consist of a single {@code return <expression>;} statement. Expressions may use literals,
+ * the {@code msg}/{@code metadata}/{@code msgType} arguments, property access, array and object literals,
+ * unary {@code ! - +}, arithmetic, comparison, equality, logical operators and the conditional operator.
+ * Anything else (function calls, assignments, declarations, regular expressions, etc.) is rejected,
+ * so the caller may fall back to the JavaScript engine.
+ */
+class TbExpressionParser {
+
+    private static final Set<String> PUNCTUATORS = new HashSet<>(Arrays.asList(
+            "===", "!==", "==", "!=", "<=", ">=", "&&", "||",
+            "<", ">", "+", "-", "*", "/", "%", "!", "?", ":", ".", ",", "(", ")", "[", "]", "{", "}", ";"));
+    private static final String[] DEFAULT_ARG_NAMES = {"msg", "metadata", "msgType"};
+
+    private enum TokenType {NUMBER, STRING, IDENTIFIER, PUNCTUATOR, EOF}
+
+    private static class Token {
+        private final TokenType type;
+        private final String text;
+        private final Object value;
+        private final boolean newLineBefore;
+
+        private Token(TokenType type, String text, Object value, boolean newLineBefore) {
+            this.type = type;
+            this.text = text;
+            this.value = value;
+            this.newLineBefore = newLineBefore;
+        }
+    }
+
+    private final String src;
+    private final String[] argNames;
+    private int pos;
+    private Token token;
+
+    TbExpressionParser(String script, String... argNames) {
+        this.src = script != null ? script : "";
+        this.argNames = argNames != null && argNames.length == 3 ? argNames : DEFAULT_ARG_NAMES;
+    }
+
+    TbExpression parse() throws TbExpressionParseException {
+        next();
+        if (!isIdentifier("return")) {
+            throw new TbExpressionParseException("Script should start with the return statement");
+        }
+        next();
+        if (token.newLineBefore) {
+            // automatic semicolon insertion would make the script return undefined
+            throw new TbExpressionParseException("Line terminator after the return statement");
+        }
+        TbExpression expression = parseConditional();
+        if (isPunctuator(";")) {
+            next();
+        }
+        if (token.type != TokenType.EOF) {
+            throw new TbExpressionParseException("Unexpected token: " + token.text);
+        }
+        return expression;
+    }
+
+    private TbExpression parseConditional() throws TbExpressionParseException {
+        TbExpression test = parseOr();
+        if (!isPunctuator("?")) {
+            return test;
+        }
+        next();
+        TbExpression consequent = parseConditional();
+        expect(":");
+        TbExpression alternate = parseConditional();
+        return args -> TbExpressionValues.toBoolean(test.evaluate(args)) ? consequent.evaluate(args) : alternate.evaluate(args);
+    }
+
+    private TbExpression parseOr() throws TbExpressionParseException {
+        TbExpression left = parseAnd();
+        while (isPunctuator("||")) {
+            next();
+            TbExpression l = left;
+            TbExpression r = parseAnd();
+            left = args -> {
+                Object value = l.evaluate(args);
+                return TbExpressionValues.toBoolean(value) ? value : r.evaluate(args);
+            };
+        }
+        return left;
+    }
+
+    private TbExpression parseAnd() throws TbExpressionParseException {
+        TbExpression left = parseEquality();
+        while (isPunctuator("&&")) {
+            next();
+            TbExpression l = left;
+            TbExpression r = parseEquality();
+            left = args -> {
+                Object value = l.evaluate(args);
+                return TbExpressionValues.toBoolean(value) ? r.evaluate(args) : value;
+            };
+        }
+        return left;
+    }
+
+    private TbExpression parseEquality() throws TbExpressionParseException {
+        TbExpression left = parseRelational();
+        while (isPunctuator("==") || isPunctuator("!=") || isPunctuator("===") || isPunctuator("!==")) {
+            String op = token.text;
+            next();
+            TbExpression l = left;
+            TbExpression r = parseRelational();
+            switch (op) {
+                case "==":
+                    left = args -> TbExpressionValues.looseEquals(l.evaluate(args), r.evaluate(args));
+                    break;
+                case "!=":
+                    left = args -> !TbExpressionValues.looseEquals(l.evaluate(args), r.evaluate(args));
+                    break;
+                case "===":
+                    left = args -> TbExpressionValues.strictEquals(l.evaluate(args), r.evaluate(args));
+                    break;
+                default:
+                    left = args -> !TbExpressionValues.strictEquals(l.evaluate(args), r.evaluate(args));
+            }
+        }
+        return left;
+    }
+
+    private TbExpression parseRelational() throws TbExpressionParseException {
+        TbExpression left = parseAdditive();
+        while (isPunctuator("<") || isPunctuator(">") || isPunctuator("<=") || isPunctuator(">=")) {
+            String op = token.text;
+            next();
+            TbExpression l = left;
+            TbExpression r = parseAdditive();
+            switch (op) {
+                case "<":
+                    left = args -> {
+                        Integer cmp = TbExpressionValues.compare(l.evaluate(args), r.evaluate(args));
+                        return cmp != null && cmp < 0;
+                    };
+                    break;
+                case ">":
+                    left = args -> {
+                        Integer cmp = TbExpressionValues.compare(l.evaluate(args), r.evaluate(args));
+                        return cmp != null && cmp > 0;
+                    };
+                    break;
+                case "<=":
+                    left = args -> {
+                        Integer cmp = TbExpressionValues.compare(l.evaluate(args), r.evaluate(args));
+                        return cmp != null && cmp <= 0;
+                    };
+                    break;
+                default:
+                    left = args -> {
+                        Integer cmp = TbExpressionValues.compare(l.evaluate(args), r.evaluate(args));
+                        return cmp != null && cmp >= 0;
+                    };
+            }
+        }
+        return left;
+    }
+
+    private TbExpression parseAdditive() throws TbExpressionParseException {
+        TbExpression left = parseMultiplicative();
+        while (isPunctuator("+") || isPunctuator("-")) {
+            String op = token.text;
+            next();
+            TbExpression l = left;
+            TbExpression r = parseMultiplicative();
+            if ("+".equals(op)) {
+                left = args -> TbExpressionValues.add(l.evaluate(args), r.evaluate(args));
+            } else {
+                left = args -> TbExpressionValues.toNumber(l.evaluate(args)) - TbExpressionValues.toNumber(r.evaluate(args));
+            }
+        }
+        return left;
+    }
+
+    private TbExpression parseMultiplicative() throws TbExpressionParseException {
+        TbExpression left = parseUnary();
+        while (isPunctuator("*") || isPunctuator("/") || isPunctuator("%")) {
+            String op = token.text;
+            next();
+            TbExpression l = left;
+            TbExpression r = parseUnary();
+            switch (op) {
+                case "*":
+                    left = args -> TbExpressionValues.toNumber(l.evaluate(args)) * TbExpressionValues.toNumber(r.evaluate(args));
+                    break;
+                case "/":
+                    left = args -> TbExpressionValues.toNumber(l.evaluate(args)) / TbExpressionValues.toNumber(r.evaluate(args));
+                    break;
+                default:
+                    left = args -> TbExpressionValues.toNumber(l.evaluate(args)) % TbExpressionValues.toNumber(r.evaluate(args));
+            }
+        }
+        return left;
+    }
+
+    private TbExpression parseUnary() throws TbExpressionParseException {
+        if (isPunctuator("!")) {
+            next();
+            TbExpression operand = parseUnary();
+            return args -> !TbExpressionValues.toBoolean(operand.evaluate(args));
+        } else if (isPunctuator("-")) {
+            next();
+            TbExpression operand = parseUnary();
+            return args -> -TbExpressionValues.toNumber(operand.evaluate(args));
+        } else if (isPunctuator("+")) {
+            next();
+            TbExpression operand = parseUnary();
+            return args -> TbExpressionValues.toNumber(operand.evaluate(args));
+        }
+        return parseMember();
+    }
+
+    private TbExpression parseMember() throws TbExpressionParseException {
+        TbExpression object = parsePrimary();
+        while (true) {
+            if (isPunctuator(".")) {
+                next();
+                if (token.type != TokenType.IDENTIFIER) {
+                    throw new TbExpressionParseException("Property name expected");
+                }
+                String name = token.text;
+                next();
+                TbExpression o = object;
+                object = args -> TbExpressionValues.getMember(o.evaluate(args), name);
+            } else if (isPunctuator("[")) {
+                next();
+                TbExpression key = parseConditional();
+                expect("]");
+                TbExpression o = object;
+                object = args -> TbExpressionValues.getMember(o.evaluate(args), key.evaluate(args));
+            } else if (isPunctuator("(")) {
+                throw new TbExpressionParseException("Function calls are not supported");
+            } else {
+                return object;
+            }
+        }
+    }
+
+    private TbExpression parsePrimary() throws TbExpressionParseException {
+        Token t = token;
+        switch (t.type) {
+            case NUMBER:
+            case STRING:
+                next();
+                return constant(t.value);
+            case IDENTIFIER:
+                next();
+                for (int i = 0; i < argNames.length; i++) {
+                    if (argNames[i].equals(t.text)) {
+                        int index = i;
+                        return args -> args[index];
+                    }
+                }
+                switch (t.text) {
+                    case "true":
+                        return constant(Boolean.TRUE);
+                    case "false":
+                        return constant(Boolean.FALSE);
+                    case "null":
+                        return constant(null);
+                    case "undefined":
+                        return constant(UNDEFINED);
+                    case "NaN":
+                        return constant(Double.NaN);
+                    case "Infinity":
+                        return constant(Double.POSITIVE_INFINITY);
+                    default:
+                        throw new TbExpressionParseException("Unsupported identifier: " + t.text);
+                }
+            case PUNCTUATOR:
+                if ("(".equals(t.text)) {
+                    next();
+                    TbExpression expression = parseConditional();
+                    expect(")");
+                    return expression;
+                } else if ("[".equals(t.text)) {
+                    next();
+                    return parseArrayLiteral();
+                } else if ("{".equals(t.text)) {
+                    next();
+                    return parseObjectLiteral();
+                }
+                throw new TbExpressionParseException("Unexpected token: " + t.text);
+            default:
+                throw new TbExpressionParseException("Unexpected end of script");
+        }
+    }
+
+    private TbExpression parseArrayLiteral() throws TbExpressionParseException {
+        List<TbExpression> elements = new ArrayList<>();
+        while (!isPunctuator("]")) {
+            elements.add(parseConditional());
+            if (!isPunctuator("]")) {
+                expect(",");
+            }
+        }
+        next();
+        return args -> {
+            List<Object> array = new ArrayList<>(elements.size());
+            for (TbExpression element : elements) {
+                array.add(element.evaluate(args));
+            }
+            return array;
+        };
+    }
+
+    private TbExpression parseObjectLiteral() throws TbExpressionParseException {
+        Map<String, TbExpression> properties = new LinkedHashMap<>();
+        while (!isPunctuator("}")) {
+            String key;
+            if (token.type == TokenType.IDENTIFIER || token.type == TokenType.STRING) {
+                key = token.type == TokenType.STRING ? (String) token.value : token.text;
+            } else if (token.type == TokenType.NUMBER) {
+                key = TbExpressionValues.numberToString((Double) token.value);
+            } else {
+                throw new TbExpressionParseException("Property name expected");
+            }
+            next();
+            expect(":");
+            properties.put(key, parseConditional());
+            if (!isPunctuator("}")) {
+                expect(",");
+            }
+        }
+        next();
+        return args -> {
+            Map<String, Object> object = new LinkedHashMap<>();
+            for (Map.Entry<String, TbExpression> property : properties.entrySet()) {
+                object.put(property.getKey(), property.getValue().evaluate(args));
+            }
+            return object;
+        };
+    }
+
+    private static TbExpression constant(Object value) {
+        return args -> value;
+    }
+
+    private boolean isPunctuator(String text) {
+        return token.type == TokenType.PUNCTUATOR && token.text.equals(text);
+    }
+
+    private boolean isIdentifier(String text) {
+        return token.type == TokenType.IDENTIFIER && token.text.equals(text);
+    }
+
+    private void expect(String punctuator) throws TbExpressionParseException {
+        if (!isPunctuator(punctuator)) {
+            throw new TbExpressionParseException("'" + punctuator + "' expected");
+        }
+        next();
+    }
+
+    private void next() throws TbExpressionParseException {
+        boolean newLine = skipWhitespaceAndComments();
+        if (pos >= src.length()) {
+            token = new Token(TokenType.EOF, "", null, newLine);
+            return;
+        }
+        char c = src.charAt(pos);
+        if (Character.isJavaIdentifierStart(c) && c < 128) {
+            int start = pos;
+            while (pos < src.length() && Character.isJavaIdentifierPart(src.charAt(pos)) && src.charAt(pos) < 128) {
+                pos++;
+            }
+            token = new Token(TokenType.IDENTIFIER, src.substring(start, pos), null, newLine);
+        } else if (isDigit(c) || (c == '.' && pos + 1 < src.length() && isDigit(src.charAt(pos + 1)))) {
+            token = readNumber(newLine);
+        } else if (c == '"' || c == '\'') {
+            token = readString(c, newLine);
+        } else {
+            for (int length = 3; length > 0; length--) {
+                if (pos + length <= src.length()) {
+                    String text = src.substring(pos, pos + length);
+                    if (PUNCTUATORS.contains(text)) {
+                        pos += length;
+                        token = new Token(TokenType.PUNCTUATOR, text, null, newLine);
+                        return;
+                    }
+                }
+            }
+            throw new TbExpressionParseException("Unsupported character: " + c);
+        }
+    }
+
+    private boolean skipWhitespaceAndComments() throws TbExpressionParseException {
+        boolean newLine = false;
+        while (pos < src.length()) {
+            char c = src.charAt(pos);
+            if (c == '\n' || c == '\r' || c == '\u2028' || c == '\u2029') {
+                newLine = true;
+                pos++;
+            } else if (Character.isWhitespace(c) || Character.isSpaceChar(c) || c == '\uFEFF') {
+                pos++;
+            } else if (src.startsWith("//", pos)) {
+                while (pos < src.length() && src.charAt(pos) != '\n' && src.charAt(pos) != '\r') {
+                    pos++;
+                }
+            } else if (src.startsWith("/*", pos)) {
+                int end = src.indexOf("*/", pos + 2);
+                if (end < 0) {
+                    throw new TbExpressionParseException("Unterminated comment");
+                }
+                String comment = src.substring(pos, end);
+                if (comment.indexOf('\n') >= 0 || comment.indexOf('\r') >= 0) {
+                    newLine = true;
+                }
+                pos = end + 2;
+            } else {
+                break;
+            }
+        }
+        return newLine;
+    }
+
+    private Token readNumber(boolean newLine) throws TbExpressionParseException {
+        int start = pos;
+        if (src.charAt(pos) == '0' && pos + 1 < src.length() && (isDigit(src.charAt(pos + 1)) || Character.isLetter(src.charAt(pos + 1)))) {
+            // legacy octal and hex literals
+            throw new TbExpressionParseException("Unsupported number literal");
+        }
+        while (pos < src.length() && isDigit(src.charAt(pos))) {
+            pos++;
+        }
+        if (pos < src.length() && src.charAt(pos) == '.') {
+            pos++;
+            while (pos < src.length() && isDigit(src.charAt(pos))) {
+                pos++;
+            }
+        }
+        if (pos < src.length() && (src.charAt(pos) == 'e' || src.charAt(pos) == 'E')) {
+            pos++;
+            if (pos < src.length() && (src.charAt(pos) == '+' || src.charAt(pos) == '-')) {
+                pos++;
+            }
+            int digitsStart = pos;
+            while (pos < src.length() && isDigit(src.charAt(pos))) {
+                pos++;
+            }
+            if (digitsStart == pos) {
+                throw new TbExpressionParseException("Invalid number literal");
+            }
+        }
+        if (pos < src.length() && (Character.isJavaIdentifierPart(src.charAt(pos)))) {
+            throw new TbExpressionParseException("Invalid number literal");
+        }
+        String text = src.substring(start, pos);
+        return new Token(TokenType.NUMBER, text, Double.parseDouble(text), newLine);
+    }
+
+    private Token readString(char quote, boolean newLine) throws TbExpressionParseException {
+        int start = pos++;
+        StringBuilder sb = new StringBuilder();
+        while (true) {
+            if (pos >= src.length()) {
+                throw new TbExpressionParseException("Unterminated string literal");
+            }
+            char c = src.charAt(pos++);
+            if (c == quote) {
+                break;
+            } else if (c == '\n' || c == '\r') {
+                throw new TbExpressionParseException("Unterminated string literal");
+            } else if (c == '\\') {
+                if (pos >= src.length()) {
+                    throw new TbExpressionParseException("Unterminated string literal");
+                }
+                char e = src.charAt(pos++);
+                switch (e) {
+                    case 'n':
+                        sb.append('\n');
+                        break;
+                    case 't':
+                        sb.append('\t');
+                        break;
+                    case 'r':
+                        sb.append('\r');
+                        break;
+                    case 'b':
+                        sb.append('\b');
+                        break;
+                    case 'f':
+                        sb.append('\f');
+                        break;
+                    case '\\':
+                    case '\'':
+                    case '"':
+                        sb.append(e);
+                        break;
+                    case 'u':
+                        if (pos + 4 > src.length()) {
+                            throw new TbExpressionParseException("Invalid unicode escape");
+                        }
+                        try {
+                            sb.append((char) Integer.parseInt(src.substring(pos, pos + 4), 16));
+                        } catch (NumberFormatException ex) {
+                            throw new TbExpressionParseException("Invalid unicode escape");
+                        }
+                        pos += 4;
+                        break;
+                    default:
+                        throw new TbExpressionParseException("Unsupported escape sequence: \\" + e);
+                }
+            } else {
+                sb.append(c);
+            }
+        }
+        return new Token(TokenType.STRING, src.substring(start, pos), sb.toString(), newLine);
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+}
@@ -0,0 +1,225 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.expression;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.google.common.util.concurrent.Futures;
+import com.google.common.util.concurrent.ListenableFuture;
+import lombok.extern.slf4j.Slf4j;
+import org.apache.commons.lang3.StringUtils;
+import org.thingsboard.rule.engine.api.ScriptEngine;
+import org.thingsboard.rule.engine.api.TbContext;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+
+import javax.script.ScriptException;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Optional;
+import java.util.Set;
+
+/**
+ * {@link ScriptEngine} that evaluates scripts consisting of a single {@code return <expression>;} statement
+ * without a JavaScript engine. The expression is compiled to a closure tree once and evaluated
+ * synchronously against the parsed message payload, metadata and message type.
+ * <p>
+ * Used by the script filter, switch and transform nodes only when their {@code useExpressionEngine} option is enabled.
+ *
+ * @see TbExpressionParser for the supported subset
+ */
+@Slf4j
+public class TbExpressionScriptEngine implements ScriptEngine {
+
+    private static final ObjectMapper mapper = new ObjectMapper();
+    private static final String MSG = "msg";
+    private static final String METADATA = "metadata";
+    private static final String MSG_TYPE = "msgType";
+
+    private final TbContext ctx;
+    private final TbExpression expression;
+
+    private TbExpressionScriptEngine(TbContext ctx, TbExpression expression) {
+        this.ctx = ctx;
+        this.expression = expression;
+    }
+
+    /**
+     * Compiles the script if it fits the supported expression subset, otherwise creates a JS script engine.
+     */
+    public static ScriptEngine create(TbContext ctx, String script, String... argNames) {
+        Optional<ScriptEngine> compiled = compile(ctx, script, argNames);
+        if (compiled.isPresent()) {
+            log.debug("Script compiled to expression: {}", script);
+            return compiled.get();
+        }
+        return ctx.createJsScriptEngine(script, argNames);
+    }
+
+    /**
+     * Compiles the script if it fits the supported expression subset. Evaluations are subject to the same
+     * JS execution API limits and usage statistics as the JS script engine.
+     */
+    public static Optional<ScriptEngine> compile(TbContext ctx, String script, String... argNames) {
+        try {
+            return Optional.of(new TbExpressionScriptEngine(ctx, new TbExpressionParser(script, argNames).parse()));
+        } catch (TbExpressionParseException e) {
+            log.trace("Script is not a supported expression: {}", e.getMessage());
+            return Optional.empty();
+        }
+    }
+
+    @Override
+    public ListenableFuture<List<TbMsg>> executeUpdateAsync(TbMsg msg) {
+        try {
+            JsonNode json = evaluate(msg);
+            if (json.isObject()) {
+                return Futures.immediateFuture(Collections.singletonList(unbindMsg(json, msg)));
+            } else if (json.isArray()) {
+                List<TbMsg> res = new ArrayList<>(json.size());
+                for (JsonNode jsonObject : json) {
+                    res.add(unbindMsg(jsonObject, msg));
+                }
+                return Futures.immediateFuture(res);
+            }
+            return wrongResultType(json);
+        } catch (Exception e) {
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+
+    @Override
+    public ListenableFuture<TbMsg> executeGenerateAsync(TbMsg prevMsg) {
+        try {
+            JsonNode json = evaluate(prevMsg);
+            if (!json.isObject()) {
+                return wrongResultType(json);
+            }
+            return Futures.immediateFuture(unbindMsg(json, prevMsg));
+        } catch (Exception e) {
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+
+    @Override
+    public ListenableFuture<Boolean> executeFilterAsync(TbMsg msg) {
+        try {
+            JsonNode json = evaluate(msg);
+            if (json.isBoolean()) {
+                return Futures.immediateFuture(json.asBoolean());
+            }
+            return wrongResultType(json);
+        } catch (Exception e) {
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+
+    @Override
+    public ListenableFuture<Set<String>> executeSwitchAsync(TbMsg msg) {
+        try {
+            JsonNode json = evaluate(msg);
+            if (json.isTextual()) {
+                return Futures.immediateFuture(Collections.singleton(json.asText()));
+            } else if (json.isArray()) {
+                Set<String> nextStates = new HashSet<>();
+                for (JsonNode val : json) {
+                    if (!val.isTextual()) {
+                        return wrongResultType(val);
+                    }
+                    nextStates.add(val.asText());
+                }
+                return Futures.immediateFuture(nextStates);
+            }
+            return wrongResultType(json);
+        } catch (Exception e) {
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+
+    @Override
+    public ListenableFuture<JsonNode> executeJsonAsync(TbMsg msg) {
+        try {
+            return Futures.immediateFuture(evaluate(msg));
+        } catch (Exception e) {
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+
+    @Override
+    public ListenableFuture<String> executeToStringAsync(TbMsg msg) {
+        try {
+            JsonNode json = evaluate(msg);
+            if (json.isTextual()) {
+                return Futures.immediateFuture(json.asText());
+            }
+            return wrongResultType(json);
+        } catch (Exception e) {
+            return Futures.immediateFailedFuture(e);
+        }
+    }
+
+    @Override
+    public void destroy() {
+    }
+
+    JsonNode evaluate(TbMsg msg) throws ScriptException {
+        if (!ctx.isJsExecEnabled()) {
+            throw new RuntimeException("JS Execution is disabled due to API limits!");
+        }
+        ctx.reportJsExec(msg.getCustomerId());
+        JsonNode data;
+        try {
+            data = mapper.readTree(msg.getData() != null ? msg.getData() : "");
+        } catch (IOException e) {
+            throw new ScriptException("SyntaxError: " + e.getMessage());
+        }
+        if (data == null || data.isMissingNode()) {
+            throw new ScriptException("SyntaxError: Unexpected end of JSON input");
+        }
+        Object[] args = {TbExpressionValues.fromJson(data), msg.getMetaData().getData(), msg.getType()};
+        return TbExpressionValues.toJson(expression.evaluate(args));
+    }
+
+    private static <T> ListenableFuture<T> wrongResultType(JsonNode json) {
+        log.warn("Wrong result type: {}", json.getNodeType());
+        return Futures.immediateFailedFuture(new ScriptException("Wrong result type: " + json.getNodeType()));
+    }
+
+    private static TbMsg unbindMsg(JsonNode msgData, TbMsg msg) throws IOException {
+        String data = null;
+        Map<String, String> metadata = null;
+        String messageType = null;
+        if (msgData.has(MSG)) {
+            data = mapper.writeValueAsString(msgData.get(MSG));
+        }
+        if (msgData.has(METADATA)) {
+            metadata = mapper.convertValue(msgData.get(METADATA), new TypeReference<Map<String, String>>() {
+            });
+        }
+        if (msgData.has(MSG_TYPE)) {
+            messageType = msgData.get(MSG_TYPE).asText();
+        }
+        String newData = data != null ? data : msg.getData();
+        TbMsgMetaData newMetadata = metadata != null ? new TbMsgMetaData(metadata) : msg.getMetaData().copy();
+        String newMessageType = !StringUtils.isEmpty(messageType) ? messageType : msg.getType();
+        return TbMsg.transformMsg(msg, newMessageType, msg.getOriginator(), newMetadata, newData);
+    }
+}
@@ -0,0 +1,345 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.expression;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.node.ArrayNode;
+import com.fasterxml.jackson.databind.node.JsonNodeFactory;
+import com.fasterxml.jackson.databind.node.MissingNode;
+import com.fasterxml.jackson.databind.node.ObjectNode;
+
+import javax.script.ScriptException;
+import java.math.BigDecimal;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * JavaScript (ES5) value semantics for the expression engine.
+ * <p>
+ * Values are represented as {@code null}, {@link #UNDEFINED}, {@link Boolean}, {@link Double}, {@link String}
+ * and objects: Jackson container nodes (message payload), maps (metadata and object literals) and lists (array literals).
+ */
+final class TbExpressionValues {
+
+    static final Object UNDEFINED = new Object() {
+        @Override
+        public String toString() {
+            return "undefined";
+        }
+    };
+
+    private static final JsonNodeFactory JSON = JsonNodeFactory.instance;
+    private static final double MAX_SAFE_INTEGER = 9007199254740991d;
+
+    private TbExpressionValues() {
+    }
+
+    static Object fromJson(JsonNode node) {
+        if (node == null || node.isMissingNode()) {
+            return UNDEFINED;
+        } else if (node.isNull()) {
+            return null;
+        } else if (node.isTextual()) {
+            return node.textValue();
+        } else if (node.isNumber()) {
+            return node.doubleValue();
+        } else if (node.isBoolean()) {
+            return node.booleanValue();
+        } else if (node.isContainerNode()) {
+            return node;
+        } else {
+            return node.asText();
+        }
+    }
+
+    static JsonNode toJson(Object value) {
+        if (value == UNDEFINED) {
+            return MissingNode.getInstance();
+        } else if (value == null) {
+            return JSON.nullNode();
+        } else if (value instanceof Boolean) {
+            return JSON.booleanNode((Boolean) value);
+        } else if (value instanceof Double) {
+            double d = (Double) value;
+            if (Double.isNaN(d) || Double.isInfinite(d)) {
+                return JSON.nullNode();
+            } else if (d == Math.rint(d) && Math.abs(d) <= MAX_SAFE_INTEGER) {
+                long l = (long) d;
+                return l == (int) l ? JSON.numberNode((int) l) : JSON.numberNode(l);
+            } else {
+                return JSON.numberNode(d);
+            }
+        } else if (value instanceof String) {
+            return JSON.textNode((String) value);
+        } else if (value instanceof JsonNode) {
+            return (JsonNode) value;
+        } else if (value instanceof Map) {
+            ObjectNode objectNode = JSON.objectNode();
+            ((Map<?, ?>) value).forEach((key, val) -> {
+                if (val != UNDEFINED) {
+                    objectNode.set(key.toString(), toJson(val));
+                }
+            });
+            return objectNode;
+        } else if (value instanceof List) {
+            ArrayNode arrayNode = JSON.arrayNode();
+            for (Object element : (List<?>) value) {
+                arrayNode.add(element == UNDEFINED ? JSON.nullNode() : toJson(element));
+            }
+            return arrayNode;
+        } else {
+            return JSON.textNode(value.toString());
+        }
+    }
+
+    static Object getMember(Object object, Object key) throws ScriptException {
+        if (object == null || object == UNDEFINED) {
+            throw new ScriptException("TypeError: Cannot read property '" + toJsString(key) + "' of " + toJsString(object));
+        }
+        String name = toJsString(key);
+        if (object instanceof JsonNode) {
+            JsonNode node = (JsonNode) object;
+            if (node.isArray()) {
+                if ("length".equals(name)) {
+                    return (double) node.size();
+                }
+                int index = toArrayIndex(name);
+                return index >= 0 ? fromJson(node.get(index)) : UNDEFINED;
+            }
+            return node.isObject() ? fromJson(node.get(name)) : UNDEFINED;
+        } else if (object instanceof Map) {
+            Map<?, ?> map = (Map<?, ?>) object;
+            Object value = map.get(name);
+            return value != null || map.containsKey(name) ? value : UNDEFINED;
+        } else if (object instanceof List) {
+            List<?> list = (List<?>) object;
+            if ("length".equals(name)) {
+                return (double) list.size();
+            }
+            int index = toArrayIndex(name);
+            return index >= 0 && index < list.size() ? list.get(index) : UNDEFINED;
+        } else if (object instanceof String) {
+            String str = (String) object;
+            if ("length".equals(name)) {
+                return (double) str.length();
+            }
+            int index = toArrayIndex(name);
+            return index >= 0 && index < str.length() ? String.valueOf(str.charAt(index)) : UNDEFINED;
+        }
+        return UNDEFINED;
+    }
+
+    static boolean toBoolean(Object value) {
+        if (value == null || value == UNDEFINED) {
+            return false;
+        } else if (value instanceof Boolean) {
+            return (Boolean) value;
+        } else if (value instanceof Double) {
+            double d = (Double) value;
+            return d != 0 && !Double.isNaN(d);
+        } else if (value instanceof String) {
+            return !((String) value).isEmpty();
+        }
+        return true;
+    }
+
+    static double toNumber(Object value) {
+        if (value == null) {
+            return 0;
+        } else if (value == UNDEFINED) {
+            return Double.NaN;
+        } else if (value instanceof Double) {
+            return (Double) value;
+        } else if (value instanceof Boolean) {
+            return (Boolean) value ? 1 : 0;
+        } else if (value instanceof String) {
+            return stringToNumber((String) value);
+        }
+        return stringToNumber(toJsString(value));
+    }
+
+    static String toJsString(Object value) {
+        if (value == null) {
+            return "null";
+        } else if (value == UNDEFINED) {
+            return "undefined";
+        } else if (value instanceof String) {
+            return (String) value;
+        } else if (value instanceof Double) {
+            return numberToString((Double) value);
+        } else if (value instanceof Boolean) {
+            return value.toString();
+        } else if (isArray(value)) {
+            StringBuilder sb = new StringBuilder();
+            Iterable<?> elements = (Iterable<?>) value;
+            boolean first = true;
+            for (Object element : elements) {
+                if (!first) {
+                    sb.append(',');
+                }
+                first = false;
+                Object jsElement = element instanceof JsonNode ? fromJson((JsonNode) element) : element;
+                if (jsElement != null && jsElement != UNDEFINED) {
+                    sb.append(toJsString(jsElement));
+                }
+            }
+            return sb.toString();
+        }
+        return "[object Object]";
+    }
+
+    static Object toPrimitive(Object value) {
+        return isObject(value) ? toJsString(value) : value;
+    }
+
+    static Object add(Object left, Object right) {
+        Object l = toPrimitive(left);
+        Object r = toPrimitive(right);
+        if (l instanceof String || r instanceof String) {
+            return toJsString(l) + toJsString(r);
+        }
+        return toNumber(l) + toNumber(r);
+    }
+
+    /**
+     * Abstract relational comparison, returns {@code null} when the result is undefined (one of the operands is NaN).
+     */
+    static Integer compare(Object left, Object right) {
+        Object l = toPrimitive(left);
+        Object r = toPrimitive(right);
+        if (l instanceof String && r instanceof String) {
+            return Integer.signum(((String) l).compareTo((String) r));
+        }
+        double ln = toNumber(l);
+        double rn = toNumber(r);
+        if (Double.isNaN(ln) || Double.isNaN(rn)) {
+            return null;
+        }
+        return ln < rn ? -1 : (ln == rn ? 0 : 1);
+    }
+
+    static boolean strictEquals(Object left, Object right) {
+        if (left == null || left == UNDEFINED || right == null || right == UNDEFINED) {
+            return left == right;
+        } else if (left instanceof Double && right instanceof Double) {
+            return ((Double) left).doubleValue() == ((Double) right).doubleValue();
+        } else if (left instanceof String && right instanceof String || left instanceof Boolean && right instanceof Boolean) {
+            return left.equals(right);
+        }
+        return left == right;
+    }
+
+    static boolean looseEquals(Object left, Object right) {
+        if (typeOf(left).equals(typeOf(right))) {
+            return strictEquals(left, right);
+        } else if ((left == null || left == UNDEFINED) && (right == null || right == UNDEFINED)) {
+            return true;
+        } else if (left == null || left == UNDEFINED || right == null || right == UNDEFINED) {
+            return false;
+        } else if (left instanceof Double && right instanceof String || left instanceof String && right instanceof Double
+                || left instanceof Boolean || right instanceof Boolean) {
+            return toNumber(left) == toNumber(right);
+        } else if (isObject(left) != isObject(right)) {
+            return looseEquals(toPrimitive(left), toPrimitive(right));
+        }
+        return false;
+    }
+
+    static String numberToString(double d) {
+        if (Double.isNaN(d)) {
+            return "NaN";
+        } else if (Double.isInfinite(d)) {
+            return d > 0 ? "Infinity" : "-Infinity";
+        } else if (d == 0) {
+            return "0";
+        }
+        double abs = Math.abs(d);
+        BigDecimal decimal = BigDecimal.valueOf(d).stripTrailingZeros();
+        if (abs >= 1e-6 && abs < 1e21) {
+            return decimal.toPlainString();
+        }
+        String digits = decimal.unscaledValue().abs().toString();
+        int exponent = digits.length() - 1 - decimal.scale();
+        StringBuilder sb = new StringBuilder();
+        if (d < 0) {
+            sb.append('-');
+        }
+        sb.append(digits.charAt(0));
+        if (digits.length() > 1) {
+            sb.append('.').append(digits, 1, digits.length());
+        }
+        return sb.append('e').append(exponent >= 0 ? '+' : '-').append(Math.abs(exponent)).toString();
+    }
+
+    private static double stringToNumber(String str) {
+        String s = str.trim();
+        if (s.isEmpty()) {
+            return 0;
+        }
+        if (s.startsWith("0x") || s.startsWith("0X")) {
+            try {
+                return Long.parseLong(s.substring(2), 16);
+            } catch (NumberFormatException e) {
+                return Double.NaN;
+            }
+        }
+        char last = s.charAt(s.length() - 1);
+        if (last == 'd' || last == 'D' || last == 'f' || last == 'F') {
+            return Double.NaN;
+        }
+        try {
+            return Double.parseDouble(s);
+        } catch (NumberFormatException e) {
+            return Double.NaN;
+        }
+    }
+
+    private static int toArrayIndex(String name) {
+        if (name.isEmpty() || name.length() > 9 || (name.length() > 1 && name.charAt(0) == '0')) {
+            return -1;
+        }
+        for (int i = 0; i < name.length(); i++) {
+            char c = name.charAt(i);
+            if (c < '0' || c > '9') {
+                return -1;
+            }
+        }
+        return Integer.parseInt(name);
+    }
+
+    private static boolean isArray(Object value) {
+        return value instanceof List || (value instanceof JsonNode && ((JsonNode) value).isArray());
+    }
+
+    private static boolean isObject(Object value) {
+        return value instanceof JsonNode || value instanceof Map || value instanceof List;
+    }
+
+    private static String typeOf(Object value) {
+        if (value == null) {
+            return "null";
+        } else if (value == UNDEFINED) {
+            return "undefined";
+        } else if (value instanceof Double) {
+            return "number";
+        } else if (value instanceof String) {
+            return "string";
+        } else if (value instanceof Boolean) {
+            return "boolean";
+        }
+        return "object";
+    }
+}
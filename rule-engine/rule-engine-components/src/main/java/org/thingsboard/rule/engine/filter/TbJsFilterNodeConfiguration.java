@@ -22,6 +22,7 @@ import org.thingsboard.rule.engine.api.NodeConfiguration;
 public class TbJsFilterNodeConfiguration implements NodeConfiguration<TbJsFilterNodeConfiguration> {
 
     private String jsScript;
+    private boolean useExpressionEngine;
 
     @Override
     public TbJsFilterNodeConfiguration defaultConfiguration() {
@@ -28,6 +28,7 @@ import org.thingsboard.rule.engine.api.TbNode;
 import org.thingsboard.rule.engine.api.TbNodeConfiguration;
 import org.thingsboard.rule.engine.api.TbNodeException;
 import org.thingsboard.rule.engine.api.util.TbNodeUtils;
+import org.thingsboard.rule.engine.expression.TbExpressionScriptEngine;
 import org.thingsboard.server.common.data.plugin.ComponentType;
 import org.thingsboard.server.common.msg.TbMsg;
 
@@ -55,7 +56,11 @@ public class TbJsSwitchNode implements TbNode {
     @Override
     public void init(TbContext ctx, TbNodeConfiguration configuration) throws TbNodeException {
         this.config = TbNodeUtils.convert(configuration, TbJsSwitchNodeConfiguration.class);
-        this.jsEngine = ctx.createJsScriptEngine(config.getJsScript());
+        if (config.isUseExpressionEngine()) {
+            this.jsEngine = TbExpressionScriptEngine.create(ctx, config.getJsScript());
+        } else {
+            this.jsEngine = ctx.createJsScriptEngine(config.getJsScript());
+        }
     }
 
     @Override
@@ -25,6 +25,7 @@ import java.util.Set;
 public class TbJsSwitchNodeConfiguration implements NodeConfiguration<TbJsSwitchNodeConfiguration> {
 
     private String jsScript;
+    private boolean useExpressionEngine;
 
     @Override
     public TbJsSwitchNodeConfiguration defaultConfiguration() {
@@ -34,6 +34,8 @@ import org.thingsboard.rule.engine.api.TbNodeConfiguration;
 import org.thingsboard.rule.engine.api.TbNodeException;
 import org.thingsboard.rule.engine.api.TbRelationTypes;
 import org.thingsboard.rule.engine.api.util.TbNodeUtils;
+import org.thingsboard.rule.engine.util.TbSharedClientPool;
+import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.plugin.ComponentType;
 import org.thingsboard.server.common.msg.TbMsg;
 import org.thingsboard.server.common.msg.TbMsgMetaData;
@@ -63,17 +65,20 @@ public class TbKafkaNode implements TbNode {
     private static final String ERROR = "error";
     public static final String TB_MSG_MD_PREFIX = "tb_msg_md_";
 
+    private static final TbSharedClientPool<Properties, Producer<?, String>> PRODUCERS = new TbSharedClientPool<>(Producer::close);
+
     private TbKafkaNodeConfiguration config;
     private boolean addMetadataKeyValuesAsKafkaHeaders;
     private Charset toBytesCharset;
 
-    private Producer<?, String> producer;
+    private TenantId tenantId;
+    private Properties properties;
+    private volatile Producer<?, String> producer;
 
     @Override
     public void init(TbContext ctx, TbNodeConfiguration configuration) throws TbNodeException {
         this.config = TbNodeUtils.convert(configuration, TbKafkaNodeConfiguration.class);
         Properties properties = new Properties();
-        properties.put(ProducerConfig.CLIENT_ID_CONFIG, "producer-tb-kafka-node-" + ctx.getSelfId().getId().toString() + "-" + ctx.getServiceId());
         properties.put(ProducerConfig.BOOTSTRAP_SERVERS_CONFIG, config.getBootstrapServers());
         properties.put(ProducerConfig.VALUE_SERIALIZER_CLASS_CONFIG, getKafkaSerializerClass(config.getValueSerializer()));
         properties.put(ProducerConfig.KEY_SERIALIZER_CLASS_CONFIG, getKafkaSerializerClass(config.getKeySerializer()));
@@ -88,15 +93,27 @@ public class TbKafkaNode implements TbNode {
         addMetadataKeyValuesAsKafkaHeaders = BooleanUtils.toBooleanDefaultIfNull(config.isAddMetadataKeyValuesAsKafkaHeaders(), false);
         toBytesCharset = config.getKafkaHeadersCharset() != null ? Charset.forName(config.getKafkaHeadersCharset()) : StandardCharsets.UTF_8;
         try {
-            // Ugly workaround to fix org.apache.kafka.common.KafkaException: javax.security.auth.login.LoginException: unable to find LoginModule class
-            // details: https://stackoverflow.com/questions/57574901/kafka-java-client-classloader-doesnt-find-sasl-scram-login-class
-            Thread.currentThread().setContextClassLoader(this.getClass().getClassLoader());
-            this.producer = new KafkaProducer<>(properties);
+            // Nodes of the same tenant with identical producer settings share one producer (and its record batches).
+            this.producer = PRODUCERS.acquire(ctx.getTenantId(), properties, () -> createProducer(ctx, properties));
+            this.tenantId = ctx.getTenantId();
+            this.properties = properties;
         } catch (Exception e) {
             throw new TbNodeException(e);
         }
     }
 
+    private Producer<?, String> createProducer(TbContext ctx, Properties settings) {
+        Properties properties = new Properties();
+        properties.putAll(settings);
+        // The producer is shared by the nodes with the same settings, so the client id must not depend on the node that creates it
+        properties.put(ProducerConfig.CLIENT_ID_CONFIG, "producer-tb-kafka-node-" + ctx.getTenantId().getId().toString()
+                + "-" + Integer.toHexString(settings.hashCode()) + "-" + ctx.getServiceId());
+        // Ugly workaround to fix org.apache.kafka.common.KafkaException: javax.security.auth.login.LoginException: unable to find LoginModule class
+        // details: https://stackoverflow.com/questions/57574901/kafka-java-client-classloader-doesnt-find-sasl-scram-login-class
+        Thread.currentThread().setContextClassLoader(this.getClass().getClassLoader());
+        return new KafkaProducer<>(properties);
+    }
+
     private Class<?> getKafkaSerializerClass(String serializerClassName) {
         Class<?> serializerClass = null;
         if (!StringUtils.isEmpty(serializerClassName)) {
@@ -124,38 +141,62 @@ public class TbKafkaNode implements TbNode {
     }
 
     protected void publish(TbContext ctx, TbMsg msg, String topic) {
+        Producer<?, String> producer = this.producer;
         try {
             if (!addMetadataKeyValuesAsKafkaHeaders) {
                 //TODO: external system executor
                 producer.send(new ProducerRecord<>(topic, msg.getData()),
-                        (metadata, e) -> processRecord(ctx, msg, metadata, e));
+                        (metadata, e) -> processRecord(ctx, msg, producer, metadata, e));
             } else {
                 Headers headers = new RecordHeaders();
                 msg.getMetaData().values().forEach((key, value) -> headers.add(new RecordHeader(TB_MSG_MD_PREFIX + key, value.getBytes(toBytesCharset))));
                 producer.send(new ProducerRecord<>(topic, null, null, null, msg.getData(), headers),
-                        (metadata, e) -> processRecord(ctx, msg, metadata, e));
+                        (metadata, e) -> processRecord(ctx, msg, producer, metadata, e));
             }
+        } catch (IllegalStateException e) {
+            log.warn("[{}] Shared producer is closed, replacing it", ctx.getSelfId(), e);
+            replaceProducer(ctx, producer);
+            ctx.tellFailure(processException(ctx, msg, e), e);
         } catch (Exception e) {
             log.debug("[{}] Failed to process message: {}", ctx.getSelfId(), msg, e);
         }
     }
 
+    /**
+     * Replaces a shared producer that can no longer be used. Only the nodes that run into the failure replace it,
+     * the producer is created again by the first of them.
+     */
+    private synchronized void replaceProducer(TbContext ctx, Producer<?, String> failedProducer) {
+        if (this.producer != failedProducer) {
+            return;
+        }
+        PRODUCERS.invalidate(tenantId, properties, failedProducer);
+        try {
+            this.producer = PRODUCERS.acquire(tenantId, properties, () -> createProducer(ctx, properties));
+        } catch (Exception e) {
+            log.warn("[{}] Failed to create producer, will retry with the next message", ctx.getSelfId(), e);
+        }
+    }
+
     @Override
     public void destroy() {
         if (this.producer != null) {
             try {
-                this.producer.close();
+                PRODUCERS.release(this.tenantId, this.properties, this.producer);
             } catch (Exception e) {
                 log.error("Failed to close producer during destroy()", e);
             }
         }
     }
 
-    private void processRecord(TbContext ctx, TbMsg msg, RecordMetadata metadata, Exception e) {
+    private void processRecord(TbContext ctx, TbMsg msg, Producer<?, String> producer, RecordMetadata metadata, Exception e) {
         if (metadata != null) {
             TbMsg next = processResponse(ctx, msg, metadata);
             ctx.tellNext(next, TbRelationTypes.SUCCESS);
         } else {
+            if (e instanceof IllegalStateException) {
+                replaceProducer(ctx, producer);
+            }
             TbMsg next = processException(ctx, msg, e);
             ctx.tellFailure(next, e);
         }
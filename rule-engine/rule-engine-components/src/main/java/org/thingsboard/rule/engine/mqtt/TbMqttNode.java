@@ -21,6 +21,7 @@ import io.netty.handler.ssl.SslContext;
 import io.netty.util.concurrent.Future;
 import lombok.extern.slf4j.Slf4j;
 import org.springframework.util.StringUtils;
+import org.thingsboard.common.util.JacksonUtil;
 import org.thingsboard.mqtt.MqttClient;
 import org.thingsboard.mqtt.MqttClientConfig;
 import org.thingsboard.mqtt.MqttConnectResult;
@@ -33,12 +34,16 @@ import org.thingsboard.rule.engine.api.util.TbNodeUtils;
 import org.thingsboard.rule.engine.credentials.BasicCredentials;
 import org.thingsboard.rule.engine.credentials.ClientCredentials;
 import org.thingsboard.rule.engine.credentials.CredentialsType;
+import org.thingsboard.rule.engine.util.TbSharedClientPool;
+import org.thingsboard.server.common.data.id.TenantId;
 import org.thingsboard.server.common.data.plugin.ComponentType;
 import org.thingsboard.server.common.msg.TbMsg;
 import org.thingsboard.server.common.msg.TbMsgMetaData;
 
 import javax.net.ssl.SSLException;
 import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
 import java.util.concurrent.TimeUnit;
 import java.util.concurrent.TimeoutException;
 
@@ -59,15 +64,20 @@ public class TbMqttNode implements TbNode {
 
     private static final String ERROR = "error";
 
+    private static final TbSharedClientPool<List<Object>, MqttClient> CLIENTS = new TbSharedClientPool<>(MqttClient::disconnect);
+
     protected TbMqttNodeConfiguration mqttNodeConfiguration;
 
     protected MqttClient mqttClient;
 
+    private TenantId tenantId;
+    private List<Object> clientKey;
+
     @Override
     public void init(TbContext ctx, TbNodeConfiguration configuration) throws TbNodeException {
         try {
             this.mqttNodeConfiguration = TbNodeUtils.convert(configuration, TbMqttNodeConfiguration.class);
-            this.mqttClient = initClient(ctx);
+            this.mqttClient = acquireClient(ctx);
         } catch (Exception e) {
             throw new TbNodeException(e);
         }
@@ -97,10 +107,25 @@ public class TbMqttNode implements TbNode {
     @Override
     public void destroy() {
         if (this.mqttClient != null) {
-            this.mqttClient.disconnect();
+            CLIENTS.release(this.tenantId, this.clientKey, this.mqttClient);
         }
     }
 
+    /**
+     * Nodes of the same tenant and type with the same configuration, apart from the topic pattern,
+     * publish through one shared connection instead of opening a connection per node.
+     * The shared client reconnects by itself when the connection is lost.
+     */
+    protected MqttClient acquireClient(TbContext ctx) throws Exception {
+        TbMqttNodeConfiguration clientSettings = JacksonUtil.clone(this.mqttNodeConfiguration);
+        clientSettings.setTopicPattern(null);
+        List<Object> clientKey = Arrays.asList(getClass(), clientSettings);
+        MqttClient client = CLIENTS.acquire(ctx.getTenantId(), clientKey, () -> initClient(ctx));
+        this.tenantId = ctx.getTenantId();
+        this.clientKey = clientKey;
+        return client;
+    }
+
     protected MqttClient initClient(TbContext ctx) throws Exception {
         MqttClientConfig config = new MqttClientConfig(getSslContext());
         if (!StringUtils.isEmpty(this.mqttNodeConfiguration.getClientId())) {
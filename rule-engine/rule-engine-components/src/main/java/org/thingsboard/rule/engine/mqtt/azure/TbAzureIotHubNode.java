@@ -60,7 +60,7 @@ public class TbAzureIotHubNode extends TbMqttNode {
                     pemCredentials.setCaCert(AzureIotHubUtil.getDefaultCaCert());
                 }
             }
-            this.mqttClient = initClient(ctx);
+            this.mqttClient = acquireClient(ctx);
         } catch (Exception e) {
             throw new TbNodeException(e);
         }
@@ -16,7 +16,6 @@
 package org.thingsboard.rule.engine.rest;
 
 import io.netty.channel.EventLoopGroup;
-import io.netty.channel.nio.NioEventLoopGroup;
 import lombok.Data;
 import lombok.extern.slf4j.Slf4j;
 import org.apache.commons.codec.binary.Base64;
@@ -56,7 +55,12 @@ import java.net.Authenticator;
 import java.net.PasswordAuthentication;
 import java.nio.charset.StandardCharsets;
 import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
 import java.util.Deque;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 import java.util.concurrent.ConcurrentLinkedDeque;
 import java.util.concurrent.TimeUnit;
 
@@ -74,11 +78,12 @@ public class TbHttpClient {
 
     private final TbRestApiCallNodeConfiguration config;
 
-    private EventLoopGroup eventLoopGroup;
     private AsyncRestTemplate httpClient;
     private Deque<ListenableFuture<ResponseEntity<String>>> pendingFutures;
+    // accessed from the rule node actor only
+    private final Map<BatchKey, List<TbMsg>> pendingBatches = new LinkedHashMap<>();
 
-    TbHttpClient(TbRestApiCallNodeConfiguration config) throws TbNodeException {
+    TbHttpClient(TbRestApiCallNodeConfiguration config, EventLoopGroup eventLoopGroup) throws TbNodeException {
         try {
             this.config = config;
             if (config.getMaxParallelRequestsCount() > 0) {
@@ -139,8 +144,7 @@ public class TbHttpClient {
                 }
                 httpClient = new AsyncRestTemplate();
             } else {
-                this.eventLoopGroup = new NioEventLoopGroup();
-                Netty4ClientHttpRequestFactory nettyFactory = new Netty4ClientHttpRequestFactory(this.eventLoopGroup);
+                Netty4ClientHttpRequestFactory nettyFactory = new Netty4ClientHttpRequestFactory(eventLoopGroup);
                 nettyFactory.setSslContext(config.getCredentials().initSslContext());
                 nettyFactory.setReadTimeout(config.getReadTimeoutMs());
                 httpClient = new AsyncRestTemplate(nettyFactory);
@@ -164,41 +168,88 @@ public class TbHttpClient {
         return !StringUtils.isEmpty(proxyUser) && !StringUtils.isEmpty(proxyPassword);
     }
 
-    void destroy() {
-        if (this.eventLoopGroup != null) {
-            this.eventLoopGroup.shutdownGracefully(0, 5, TimeUnit.SECONDS);
-        }
-    }
-
     public void processMessage(TbContext ctx, TbMsg msg) {
         String endpointUrl = TbNodeUtils.processPattern(config.getRestEndpointUrlPattern(), msg);
         HttpHeaders headers = prepareHeaders(msg);
         HttpMethod method = HttpMethod.valueOf(config.getRequestMethod());
         HttpEntity<String> entity;
-        if(HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method) ||
-            HttpMethod.OPTIONS.equals(method) || HttpMethod.TRACE.equals(method)) {
+        if (!hasBody(method)) {
             entity = new HttpEntity<>(headers);
+        } else if (config.getBatchSize() > 1) {
+            addToBatch(ctx, new BatchKey(endpointUrl, method, headers), msg);
+            return;
         } else {
             entity = new HttpEntity<>(msg.getData(), headers);
         }
+        sendRequest(ctx, endpointUrl, method, entity, Collections.singletonList(msg));
+    }
+
+    boolean hasPendingBatches() {
+        return !pendingBatches.isEmpty();
+    }
+
+    /**
+     * Sends all batches collected so far, regardless of their size
+     */
+    void flushBatches(TbContext ctx) {
+        pendingBatches.forEach((key, msgs) -> sendBatch(ctx, key, msgs));
+        pendingBatches.clear();
+    }
+
+    /**
+     * Fails the messages of the batches that were not sent yet, without sending them
+     */
+    void failBatches(TbContext ctx, Throwable cause) {
+        pendingBatches.values().forEach(msgs -> msgs.forEach(msg -> ctx.tellFailure(processException(ctx, msg, cause), cause)));
+        pendingBatches.clear();
+    }
+
+    private void addToBatch(TbContext ctx, BatchKey key, TbMsg msg) {
+        List<TbMsg> msgs = pendingBatches.computeIfAbsent(key, k -> new ArrayList<>(config.getBatchSize()));
+        msgs.add(msg);
+        if (msgs.size() >= config.getBatchSize()) {
+            pendingBatches.remove(key);
+            sendBatch(ctx, key, msgs);
+        }
+    }
+
+    /**
+     * Sends the payloads of the messages as a single JSON array; the response is applied to each of the messages
+     */
+    private void sendBatch(TbContext ctx, BatchKey key, List<TbMsg> msgs) {
+        StringBuilder body = new StringBuilder("[");
+        for (TbMsg msg : msgs) {
+            if (body.length() > 1) {
+                body.append(',');
+            }
+            body.append(msg.getData());
+        }
+        body.append(']');
+        sendRequest(ctx, key.getEndpointUrl(), key.getMethod(), new HttpEntity<>(body.toString(), key.getHeaders()), msgs);
+    }
 
+    private void sendRequest(TbContext ctx, String endpointUrl, HttpMethod method, HttpEntity<String> entity, List<TbMsg> msgs) {
         ListenableFuture<ResponseEntity<String>> future = httpClient.exchange(
                 endpointUrl, method, entity, String.class);
         future.addCallback(new ListenableFutureCallback<ResponseEntity<String>>() {
             @Override
             public void onFailure(Throwable throwable) {
-                TbMsg next = processException(ctx, msg, throwable);
-                ctx.tellFailure(next, throwable);
+                for (TbMsg msg : msgs) {
+                    TbMsg next = processException(ctx, msg, throwable);
+                    ctx.tellFailure(next, throwable);
+                }
             }
 
             @Override
             public void onSuccess(ResponseEntity<String> responseEntity) {
-                if (responseEntity.getStatusCode().is2xxSuccessful()) {
-                    TbMsg next = processResponse(ctx, msg, responseEntity);
-                    ctx.tellSuccess(next);
-                } else {
-                    TbMsg next = processFailureResponse(ctx, msg, responseEntity);
-                    ctx.tellNext(next, TbRelationTypes.FAILURE);
+                for (TbMsg msg : msgs) {
+                    if (responseEntity.getStatusCode().is2xxSuccessful()) {
+                        TbMsg next = processResponse(ctx, msg, responseEntity);
+                        ctx.tellSuccess(next);
+                    } else {
+                        TbMsg next = processFailureResponse(ctx, msg, responseEntity);
+                        ctx.tellNext(next, TbRelationTypes.FAILURE);
+                    }
                 }
             }
         });
@@ -207,6 +258,11 @@ public class TbHttpClient {
         }
     }
 
+    private static boolean hasBody(HttpMethod method) {
+        return !(HttpMethod.GET.equals(method) || HttpMethod.HEAD.equals(method) ||
+                HttpMethod.OPTIONS.equals(method) || HttpMethod.TRACE.equals(method));
+    }
+
     private TbMsg processResponse(TbContext ctx, TbMsg origMsg, ResponseEntity<String> response) {
         TbMsgMetaData metaData = origMsg.getMetaData();
         metaData.putValue(STATUS, response.getStatusCode().name());
@@ -270,6 +326,13 @@ public class TbHttpClient {
         }
     }
 
+    @Data
+    private static class BatchKey {
+        private final String endpointUrl;
+        private final HttpMethod method;
+        private final HttpHeaders headers;
+    }
+
     private static void checkProxyHost(String proxyHost) throws TbNodeException {
         if (StringUtils.isEmpty(proxyHost)) {
             throw new TbNodeException("Proxy host can't be empty");
@@ -24,6 +24,10 @@ import org.thingsboard.rule.engine.api.TbNodeException;
 import org.thingsboard.rule.engine.api.util.TbNodeUtils;
 import org.thingsboard.server.common.data.plugin.ComponentType;
 import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+import org.thingsboard.server.common.msg.queue.ServiceQueue;
+
+import java.util.UUID;
 
 @Slf4j
 @RuleNode(
@@ -36,6 +40,8 @@ import org.thingsboard.server.common.msg.TbMsg;
                 " Outbound message will contain response fields " +
                 "(<code>status</code>, <code>statusCode</code>, <code>statusReason</code> and response <code>headers</code>) in the Message Metadata." +
                 " Response body saved in outbound Message payload. " +
+                "If batching is enabled, payloads of up to <b>batchSize</b> messages collected within <b>batchLingerMs</b> are sent as one JSON array " +
+                "and the response is applied to each of the messages. " +
                 "For example <b>statusCode</b> field can be accessed with <code>metadata.statusCode</code>." +
                 "<br/><b>Note-</b> if you use system proxy properties, the next system proxy properties should be added: \"http.proxyHost\" and \"http.proxyPort\" or  \"https.proxyHost\" and \"https.proxyPort\" or \"socksProxyHost\" and \"socksProxyPort\"," +
                 "and if your proxy with auth, the next ones  should be added: \"tb.proxy.user\" and \"tb.proxy.password\" to the thingsboard.conf file.",
@@ -45,13 +51,20 @@ import org.thingsboard.server.common.msg.TbMsg;
 )
 public class TbRestApiCallNode implements TbNode {
 
+    private static final String TB_REST_API_CALL_FLUSH_MSG = "TbRestApiCallNodeFlushMsg";
+
     private boolean useRedisQueueForMsgPersistence;
     protected TbHttpClient httpClient;
+    private TbContext ctx;
+    private long batchLingerMs;
+    private UUID nextFlushId;
 
     @Override
     public void init(TbContext ctx, TbNodeConfiguration configuration) throws TbNodeException {
         TbRestApiCallNodeConfiguration config = TbNodeUtils.convert(configuration, TbRestApiCallNodeConfiguration.class);
-        httpClient = new TbHttpClient(config);
+        this.ctx = ctx;
+        this.batchLingerMs = config.getBatchLingerMs();
+        httpClient = new TbHttpClient(config, ctx.getSharedEventLoop());
         useRedisQueueForMsgPersistence = config.isUseRedisQueueForMsgPersistence();
         if (useRedisQueueForMsgPersistence) {
             log.warn("[{}][{}] Usage of Redis Template is deprecated starting 2.5 and will have no affect", ctx.getTenantId(), ctx.getSelfId());
@@ -60,13 +73,30 @@ public class TbRestApiCallNode implements TbNode {
 
     @Override
     public void onMsg(TbContext ctx, TbMsg msg) {
+        if (TB_REST_API_CALL_FLUSH_MSG.equals(msg.getType())) {
+            if (msg.getId().equals(nextFlushId)) {
+                nextFlushId = null;
+                httpClient.flushBatches(ctx);
+            }
+            return;
+        }
         httpClient.processMessage(ctx, msg);
+        if (nextFlushId == null && httpClient.hasPendingBatches()) {
+            scheduleFlushMsg(ctx);
+        }
+    }
+
+    private void scheduleFlushMsg(TbContext ctx) {
+        TbMsg flushMsg = ctx.newMsg(ServiceQueue.MAIN, TB_REST_API_CALL_FLUSH_MSG, ctx.getSelfId(), new TbMsgMetaData(), "");
+        nextFlushId = flushMsg.getId();
+        ctx.tellSelf(flushMsg, batchLingerMs);
     }
 
     @Override
     public void destroy() {
-        if (this.httpClient != null) {
-            this.httpClient.destroy();
+        // Batches are not sent from destroy(): their responses would arrive after the node is stopped
+        if (this.httpClient != null && this.httpClient.hasPendingBatches()) {
+            this.httpClient.failBatches(ctx, new RuntimeException("Rule node was stopped before the batch was sent!"));
         }
     }
 
@@ -47,6 +47,8 @@ public class TbRestApiCallNodeConfiguration implements NodeConfiguration<TbRestA
     private String proxyPassword;
     private String proxyScheme;
     private ClientCredentials credentials;
+    private int batchSize;
+    private int batchLingerMs;
 
     @Override
     public TbRestApiCallNodeConfiguration defaultConfiguration() {
@@ -61,6 +63,8 @@ public class TbRestApiCallNodeConfiguration implements NodeConfiguration<TbRestA
         configuration.setTrimQueue(false);
         configuration.setEnableProxy(false);
         configuration.setCredentials(new AnonymousCredentials());
+        configuration.setBatchSize(0);
+        configuration.setBatchLingerMs(100);
         return configuration;
     }
 
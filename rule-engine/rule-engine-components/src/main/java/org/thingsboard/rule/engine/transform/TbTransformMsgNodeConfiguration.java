@@ -22,6 +22,7 @@ import org.thingsboard.rule.engine.api.NodeConfiguration;
 public class TbTransformMsgNodeConfiguration extends TbTransformNodeConfiguration implements NodeConfiguration {
 
     private String jsScript;
+    private boolean useExpressionEngine;
 
     @Override
     public TbTransformMsgNodeConfiguration defaultConfiguration() {
@@ -0,0 +1,128 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.util;
+
+import lombok.Data;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.server.common.data.id.TenantId;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.function.Consumer;
+
+/**
+ * Reference counted pool of thread-safe clients (producers, connections) shared by the rule nodes of one tenant
+ * that are configured with the same connection settings. The client is created by the first node that acquires it
+ * and closed when the last node releases it.
+ */
+@Slf4j
+public class TbSharedClientPool<K, C> {
+
+    private final ConcurrentMap<PoolKey<K>, PoolEntry<C>> entries = new ConcurrentHashMap<>();
+    private final Consumer<C> closer;
+
+    public TbSharedClientPool(Consumer<C> closer) {
+        this.closer = closer;
+    }
+
+    public C acquire(TenantId tenantId, K settings, Callable<C> factory) throws Exception {
+        PoolKey<K> key = new PoolKey<>(tenantId, settings);
+        while (true) {
+            PoolEntry<C> entry = entries.computeIfAbsent(key, k -> new PoolEntry<>());
+            synchronized (entry) {
+                if (entry.closed) {
+                    // released by the last owner in the meantime, retry with a fresh entry
+                    continue;
+                }
+                if (entry.client == null) {
+                    try {
+                        entry.client = factory.call();
+                    } catch (Exception e) {
+                        entry.closed = true;
+                        entries.remove(key, entry);
+                        throw e;
+                    }
+                }
+                entry.refCount++;
+                return entry.client;
+            }
+        }
+    }
+
+    /**
+     * Releases the client acquired by a node. The release of a client that was invalidated in the meantime is ignored.
+     */
+    public void release(TenantId tenantId, K settings, C client) {
+        PoolKey<K> key = new PoolKey<>(tenantId, settings);
+        PoolEntry<C> entry = entries.get(key);
+        if (entry == null) {
+            return;
+        }
+        synchronized (entry) {
+            if (entry.closed || entry.client != client || --entry.refCount > 0) {
+                return;
+            }
+            close(key, entry);
+        }
+    }
+
+    /**
+     * Closes a client that can no longer be used, so that the next acquire for the same settings creates a new one.
+     * Only the nodes that run into the failure re-acquire; the others keep working until they hit it as well.
+     */
+    public void invalidate(TenantId tenantId, K settings, C client) {
+        PoolKey<K> key = new PoolKey<>(tenantId, settings);
+        PoolEntry<C> entry = entries.get(key);
+        if (entry == null) {
+            return;
+        }
+        synchronized (entry) {
+            if (entry.closed || entry.client != client) {
+                return;
+            }
+            log.debug("[{}] Invalidating shared client", tenantId);
+            close(key, entry);
+        }
+    }
+
+    private void close(PoolKey<K> key, PoolEntry<C> entry) {
+        entry.closed = true;
+        entries.remove(key, entry);
+        try {
+            closer.accept(entry.client);
+        } catch (Exception e) {
+            log.warn("[{}] Failed to close shared client", key.getTenantId(), e);
+        }
+    }
+
+    int size() {
+        return entries.size();
+    }
+
+    @Data
+    private static class PoolKey<K> {
+        private final TenantId tenantId;
+        private final K settings;
+    }
+
+    private static class PoolEntry<C> {
+        private C client;
+        private int refCount;
+        private boolean closed;
+    }
+
+}
@@ -0,0 +1,192 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.expression;
+
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.thingsboard.rule.engine.api.ScriptEngine;
+import org.thingsboard.rule.engine.api.TbContext;
+import org.thingsboard.server.common.data.id.CustomerId;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+
+import javax.script.ScriptException;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.Future;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.verify;
+import static org.mockito.Mockito.verifyNoInteractions;
+import static org.mockito.Mockito.when;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TbExpressionScriptEngineTest {
+
+    @Mock
+    private TbContext ctx;
+    @Mock
+    private ScriptEngine jsEngine;
+
+    @Test
+    public void simpleScriptIsCompiledWithoutJsEngine() {
+        ScriptEngine engine = TbExpressionScriptEngine.create(ctx, "return msg.temperature > 20;");
+        assertTrue(engine instanceof TbExpressionScriptEngine);
+        verifyNoInteractions(ctx);
+    }
+
+    @Test
+    public void unsupportedScriptFallsBackToJsEngine() {
+        when(ctx.createJsScriptEngine("var t = msg.temperature; return t > 20;")).thenReturn(jsEngine);
+        ScriptEngine engine = TbExpressionScriptEngine.create(ctx, "var t = msg.temperature; return t > 20;");
+        assertSame(jsEngine, engine);
+        verify(ctx).createJsScriptEngine("var t = msg.temperature; return t > 20;");
+    }
+
+    @Test
+    public void scriptsOutsideOfSubsetAreNotCompiled() {
+        assertFalse(TbExpressionScriptEngine.compile(ctx, "return msg.temperature.toFixed(2);").isPresent());
+        assertFalse(TbExpressionScriptEngine.compile(ctx, "return\nmsg.temperature > 20;").isPresent());
+        assertFalse(TbExpressionScriptEngine.compile(ctx, "return msg.temperature > 20; return false;").isPresent());
+        assertFalse(TbExpressionScriptEngine.compile(ctx, "return temperature > 20;").isPresent());
+        assertFalse(TbExpressionScriptEngine.compile(ctx, "return msg.t = 1;").isPresent());
+        assertTrue(TbExpressionScriptEngine.compile(ctx, "// check type\nreturn msgType === 'POST_TELEMETRY_REQUEST'").isPresent());
+    }
+
+    @Test
+    public void filterEvaluatesMsgAndMetadata() throws Exception {
+        ScriptEngine engine = compile("return msg.temperature > 20 && metadata.deviceType == 'sensor';");
+        TbMsgMetaData metaData = new TbMsgMetaData();
+        metaData.putValue("deviceType", "sensor");
+        assertTrue(engine.executeFilterAsync(newMsg("{\"temperature\":25}", metaData)).get());
+        assertFalse(engine.executeFilterAsync(newMsg("{\"temperature\":15}", metaData)).get());
+    }
+
+    @Test
+    public void filterFollowsJsComparisonSemantics() throws Exception {
+        TbMsg msg = newMsg("{\"value\":10,\"text\":\"abc\"}", new TbMsgMetaData());
+        assertTrue(compile("return msg.value == '10';").executeFilterAsync(msg).get());
+        assertFalse(compile("return msg.value === '10';").executeFilterAsync(msg).get());
+        assertFalse(compile("return msg.missing < 5;").executeFilterAsync(msg).get());
+        assertTrue(compile("return !(msg.missing >= 5);").executeFilterAsync(msg).get());
+        assertFalse(compile("return msg.text > 5 || msg.text <= 5;").executeFilterAsync(msg).get());
+        assertTrue(compile("return msg.missing == null && msg.missing !== null;").executeFilterAsync(msg).get());
+    }
+
+    @Test
+    public void filterFailsOnWrongResultType() throws Exception {
+        assertScriptException(compile("return msg.text;").executeFilterAsync(newMsg("{\"text\":\"abc\"}", new TbMsgMetaData())),
+                "Wrong result type: STRING");
+    }
+
+    @Test
+    public void filterFailsOnMemberOfUndefined() throws Exception {
+        ScriptEngine engine = compile("return msg.a.b > 1;");
+        try {
+            engine.executeFilterAsync(newMsg("{}", new TbMsgMetaData())).get();
+            fail("Should throw ScriptException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ScriptException);
+        }
+    }
+
+    @Test
+    public void evaluationIsReportedAsJsExecution() throws Exception {
+        ScriptEngine engine = compile("return msg.temperature > 20;");
+        CustomerId customerId = new CustomerId(UUID.randomUUID());
+        TbMsg msg = TbMsg.newMsg("POST_TELEMETRY_REQUEST", new DeviceId(UUID.randomUUID()), customerId, new TbMsgMetaData(), "{\"temperature\":25}");
+        assertTrue(engine.executeFilterAsync(msg).get());
+        verify(ctx).reportJsExec(customerId);
+    }
+
+    @Test
+    public void evaluationFailsWhenJsExecIsDisabled() throws Exception {
+        ScriptEngine engine = TbExpressionScriptEngine.create(ctx, "return msg.temperature > 20;");
+        when(ctx.isJsExecEnabled()).thenReturn(false);
+        try {
+            engine.executeFilterAsync(newMsg("{\"temperature\":25}", new TbMsgMetaData())).get();
+            fail("Should fail when JS execution is disabled");
+        } catch (ExecutionException e) {
+            assertEquals("JS Execution is disabled due to API limits!", e.getCause().getMessage());
+        }
+        verify(ctx, never()).reportJsExec(any());
+    }
+
+    @Test
+    public void switchReturnsRelationNames() throws Exception {
+        ScriptEngine engine = compile("return msg.temperature > 20 ? ['High', 'Alarm'] : 'Normal';");
+        assertEquals(new HashSet<>(Arrays.asList("High", "Alarm")),
+                engine.executeSwitchAsync(newMsg("{\"temperature\":25}", new TbMsgMetaData())).get());
+        assertEquals(new HashSet<>(Arrays.asList("Normal")),
+                engine.executeSwitchAsync(newMsg("{\"temperature\":15}", new TbMsgMetaData())).get());
+    }
+
+    @Test
+    public void transformBuildsNewMsg() throws Exception {
+        ScriptEngine engine = compile("return {msg: {t: msg.temperature * 2, name: 'dev-' + msg.id, half: msg.temperature / 2}, " +
+                "metadata: metadata, msgType: 'CUSTOM'};");
+        TbMsgMetaData metaData = new TbMsgMetaData();
+        metaData.putValue("deviceName", "d1");
+        List<TbMsg> result = engine.executeUpdateAsync(newMsg("{\"temperature\":25,\"id\":7}", metaData)).get();
+        assertEquals(1, result.size());
+        TbMsg transformed = result.get(0);
+        assertEquals("{\"t\":50,\"name\":\"dev-7\",\"half\":12.5}", transformed.getData());
+        assertEquals("d1", transformed.getMetaData().getValue("deviceName"));
+        assertEquals("CUSTOM", transformed.getType());
+    }
+
+    @Test
+    public void transformKeepsMissingParts() throws Exception {
+        ScriptEngine engine = compile("return {msg: {value: msg.values[1]}};");
+        TbMsgMetaData metaData = new TbMsgMetaData();
+        metaData.putValue("deviceName", "d1");
+        TbMsg transformed = engine.executeUpdateAsync(newMsg("{\"values\":[1,2,3]}", metaData)).get().get(0);
+        assertEquals("{\"value\":2}", transformed.getData());
+        assertEquals("d1", transformed.getMetaData().getValue("deviceName"));
+        assertEquals("POST_TELEMETRY_REQUEST", transformed.getType());
+    }
+
+    private ScriptEngine compile(String script) {
+        when(ctx.isJsExecEnabled()).thenReturn(true);
+        return TbExpressionScriptEngine.compile(ctx, script).orElseThrow(() -> new AssertionError("Script was not compiled: " + script));
+    }
+
+    private static TbMsg newMsg(String data, TbMsgMetaData metaData) {
+        return TbMsg.newMsg("POST_TELEMETRY_REQUEST", null, metaData, data);
+    }
+
+    private static void assertScriptException(Future<?> future, String message) throws InterruptedException {
+        try {
+            future.get();
+            fail("Should throw ScriptException");
+        } catch (ExecutionException e) {
+            assertTrue(e.getCause() instanceof ScriptException);
+            assertEquals(message, e.getCause().getMessage());
+        }
+    }
+}
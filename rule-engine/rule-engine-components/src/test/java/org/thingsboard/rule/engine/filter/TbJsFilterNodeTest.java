@@ -41,7 +41,9 @@ import javax.script.ScriptException;
 import java.util.concurrent.Callable;
 
 import static org.junit.Assert.assertEquals;
+import static org.mockito.ArgumentMatchers.any;
 import static org.mockito.Mockito.doAnswer;
+import static org.mockito.Mockito.never;
 import static org.mockito.Mockito.same;
 import static org.mockito.Mockito.verify;
 import static org.mockito.Mockito.when;
@@ -96,13 +98,37 @@ public class TbJsFilterNodeTest {
         verify(ctx).tellNext(msg, "True");
     }
 
+    @Test
+    public void simpleScriptIsExecutedByJsEngineByDefault() throws TbNodeException {
+        initWithScript("return msg.temperature > 20;", false);
+        verify(ctx).createJsScriptEngine("return msg.temperature > 20;");
+    }
+
+    @Test
+    public void simpleScriptIsEvaluatedWithoutJsEngineWhenExpressionEngineIsEnabled() throws TbNodeException {
+        initWithScript("return msg.temperature > 20;", true);
+        when(ctx.isJsExecEnabled()).thenReturn(true);
+        TbMsg msg = TbMsg.newMsg("USER", null, new TbMsgMetaData(), TbMsgDataType.JSON, "{\"temperature\": 25}", ruleChainId, ruleNodeId);
+
+        node.onMsg(ctx, msg);
+        verify(ctx, never()).createJsScriptEngine(any());
+        verify(ctx).tellNext(msg, "True");
+    }
+
     private void initWithScript() throws TbNodeException {
+        initWithScript("scr", false);
+    }
+
+    private void initWithScript(String script, boolean useExpressionEngine) throws TbNodeException {
         TbJsFilterNodeConfiguration config = new TbJsFilterNodeConfiguration();
-        config.setJsScript("scr");
+        config.setJsScript(script);
+        config.setUseExpressionEngine(useExpressionEngine);
         ObjectMapper mapper = new ObjectMapper();
         TbNodeConfiguration nodeConfiguration = new TbNodeConfiguration(mapper.valueToTree(config));
 
-        when(ctx.createJsScriptEngine("scr")).thenReturn(scriptEngine);
+        if (!useExpressionEngine) {
+            when(ctx.createJsScriptEngine(script)).thenReturn(scriptEngine);
+        }
 
         node = new TbJsFilterNode();
         node.init(ctx, nodeConfiguration);
@@ -0,0 +1,188 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.rest;
+
+import com.datastax.oss.driver.api.core.uuid.Uuids;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.junit.runner.RunWith;
+import org.mockito.ArgumentCaptor;
+import org.mockito.Mock;
+import org.mockito.junit.MockitoJUnitRunner;
+import org.thingsboard.rule.engine.api.TbContext;
+import org.thingsboard.rule.engine.api.TbNodeConfiguration;
+import org.thingsboard.server.common.data.id.DeviceId;
+import org.thingsboard.server.common.data.id.EntityId;
+import org.thingsboard.server.common.msg.TbMsg;
+import org.thingsboard.server.common.msg.TbMsgMetaData;
+
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.Collections;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.mockito.ArgumentMatchers.any;
+import static org.mockito.ArgumentMatchers.anyString;
+import static org.mockito.ArgumentMatchers.eq;
+import static org.mockito.Mockito.lenient;
+import static org.mockito.Mockito.never;
+import static org.mockito.Mockito.timeout;
+import static org.mockito.Mockito.times;
+import static org.mockito.Mockito.verify;
+
+@RunWith(MockitoJUnitRunner.class)
+public class TbRestApiCallNodeTest {
+
+    private static final String FLUSH_MSG_TYPE = "TbRestApiCallNodeFlushMsg";
+    private static final long BATCH_LINGER_MS = 1000;
+
+    @Mock
+    private TbContext ctx;
+
+    private final EntityId originator = new DeviceId(Uuids.timeBased());
+    private final BlockingQueue<String> requests = new LinkedBlockingQueue<>();
+    private HttpServer server;
+    private TbRestApiCallNode node;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", exchange -> {
+            String body = new String(exchange.getRequestBody().readAllBytes(), StandardCharsets.UTF_8);
+            requests.add(exchange.getRequestURI().getPath() + " " + body);
+            byte[] response = "{}".getBytes(StandardCharsets.UTF_8);
+            exchange.sendResponseHeaders(200, response.length);
+            try (OutputStream os = exchange.getResponseBody()) {
+                os.write(response);
+            }
+        });
+        server.start();
+
+        lenient().when(ctx.newMsg(anyString(), anyString(), any(), any(TbMsgMetaData.class), anyString()))
+                .thenAnswer(invocation -> TbMsg.newMsg((String) invocation.getArgument(0), (String) invocation.getArgument(1),
+                        originator, (TbMsgMetaData) invocation.getArgument(3), (String) invocation.getArgument(4)));
+        lenient().when(ctx.transformMsg(any(), anyString(), any(), any(), anyString()))
+                .thenAnswer(invocation -> TbMsg.transformMsg((TbMsg) invocation.getArgument(0), (String) invocation.getArgument(1),
+                        (EntityId) invocation.getArgument(2), (TbMsgMetaData) invocation.getArgument(3), (String) invocation.getArgument(4)));
+    }
+
+    @After
+    public void tearDown() {
+        if (node != null) {
+            node.destroy();
+        }
+        server.stop(0);
+    }
+
+    @Test
+    public void givenBatchSizeReached_whenOnMsg_thenPayloadsAreSentAsOneArray() throws Exception {
+        initNode(3);
+
+        node.onMsg(ctx, newMsg("a", "{\"v\":1}"));
+        node.onMsg(ctx, newMsg("a", "{\"v\":2}"));
+        node.onMsg(ctx, newMsg("a", "{\"v\":3}"));
+
+        assertEquals("/a [{\"v\":1},{\"v\":2},{\"v\":3}]", requests.poll(5, TimeUnit.SECONDS));
+        verify(ctx, timeout(5000).times(3)).tellSuccess(any());
+        verify(ctx, times(1)).tellSelf(any(), eq(BATCH_LINGER_MS));
+        assertNull(requests.poll(100, TimeUnit.MILLISECONDS));
+    }
+
+    @Test
+    public void givenIncompleteBatch_whenFlushMsgArrives_thenBatchIsSent() throws Exception {
+        initNode(3);
+
+        node.onMsg(ctx, newMsg("a", "{\"v\":1}"));
+        node.onMsg(ctx, newMsg("a", "{\"v\":2}"));
+        assertNull(requests.poll(200, TimeUnit.MILLISECONDS));
+
+        ArgumentCaptor<TbMsg> flushMsg = ArgumentCaptor.forClass(TbMsg.class);
+        verify(ctx).tellSelf(flushMsg.capture(), eq(BATCH_LINGER_MS));
+        assertEquals(FLUSH_MSG_TYPE, flushMsg.getValue().getType());
+        node.onMsg(ctx, flushMsg.getValue());
+
+        assertEquals("/a [{\"v\":1},{\"v\":2}]", requests.poll(5, TimeUnit.SECONDS));
+        verify(ctx, timeout(5000).times(2)).tellSuccess(any());
+    }
+
+    @Test
+    public void givenStaleFlushMsg_whenOnMsg_thenItIsIgnored() throws Exception {
+        initNode(3);
+
+        node.onMsg(ctx, newMsg("a", "{\"v\":1}"));
+        node.onMsg(ctx, TbMsg.newMsg(FLUSH_MSG_TYPE, originator, new TbMsgMetaData(), ""));
+
+        assertNull(requests.poll(200, TimeUnit.MILLISECONDS));
+        verify(ctx, never()).tellSuccess(any());
+    }
+
+    @Test
+    public void givenDifferentEndpoints_whenOnMsg_thenMessagesAreBatchedPerEndpoint() throws Exception {
+        initNode(2);
+
+        node.onMsg(ctx, newMsg("a", "{\"v\":1}"));
+        node.onMsg(ctx, newMsg("b", "{\"v\":2}"));
+        node.onMsg(ctx, newMsg("a", "{\"v\":3}"));
+
+        assertEquals("/a [{\"v\":1},{\"v\":3}]", requests.poll(5, TimeUnit.SECONDS));
+        assertNull(requests.poll(200, TimeUnit.MILLISECONDS));
+
+        ArgumentCaptor<TbMsg> flushMsg = ArgumentCaptor.forClass(TbMsg.class);
+        verify(ctx).tellSelf(flushMsg.capture(), eq(BATCH_LINGER_MS));
+        node.onMsg(ctx, flushMsg.getValue());
+
+        assertEquals("/b [{\"v\":2}]", requests.poll(5, TimeUnit.SECONDS));
+        verify(ctx, timeout(5000).times(3)).tellSuccess(any());
+    }
+
+    @Test
+    public void givenPendingBatch_whenDestroy_thenMessagesFailWithoutRequest() throws Exception {
+        initNode(3);
+
+        node.onMsg(ctx, newMsg("a", "{\"v\":1}"));
+        node.onMsg(ctx, newMsg("b", "{\"v\":2}"));
+        node.destroy();
+
+        verify(ctx, times(2)).tellFailure(any(), any(RuntimeException.class));
+        assertNull(requests.poll(200, TimeUnit.MILLISECONDS));
+        verify(ctx, never()).tellSuccess(any());
+    }
+
+    private void initNode(int batchSize) throws Exception {
+        TbRestApiCallNodeConfiguration config = new TbRestApiCallNodeConfiguration().defaultConfiguration();
+        config.setRestEndpointUrlPattern("http://localhost:" + server.getAddress().getPort() + "/${path}");
+        config.setHeaders(Collections.emptyMap());
+        config.setUseSimpleClientHttpFactory(true);
+        config.setBatchSize(batchSize);
+        config.setBatchLingerMs((int) BATCH_LINGER_MS);
+        node = new TbRestApiCallNode();
+        node.init(ctx, new TbNodeConfiguration(new ObjectMapper().valueToTree(config)));
+    }
+
+    private TbMsg newMsg(String path, String data) {
+        TbMsgMetaData metaData = new TbMsgMetaData();
+        metaData.putValue("path", path);
+        return TbMsg.newMsg("POST_TELEMETRY_REQUEST", originator, metaData, data);
+    }
+}
@@ -0,0 +1,118 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.rule.engine.util;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.thingsboard.server.common.data.id.TenantId;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.UUID;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNotSame;
+import static org.junit.Assert.assertSame;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+public class TbSharedClientPoolTest {
+
+    private final TenantId tenantId = new TenantId(UUID.randomUUID());
+    private final AtomicInteger created = new AtomicInteger();
+    private final List<Object> closed = new ArrayList<>();
+    private TbSharedClientPool<String, Object> pool;
+
+    @Before
+    public void setUp() {
+        pool = new TbSharedClientPool<>(closed::add);
+    }
+
+    @Test
+    public void testClientIsSharedByTenantAndSettings() throws Exception {
+        Object first = pool.acquire(tenantId, "localhost:9092", this::newClient);
+        Object second = pool.acquire(tenantId, "localhost:9092", this::newClient);
+        Object otherSettings = pool.acquire(tenantId, "localhost:9093", this::newClient);
+        Object otherTenant = pool.acquire(new TenantId(UUID.randomUUID()), "localhost:9092", this::newClient);
+
+        assertSame(first, second);
+        assertNotSame(first, otherSettings);
+        assertNotSame(first, otherTenant);
+        assertEquals(3, created.get());
+        assertEquals(3, pool.size());
+    }
+
+    @Test
+    public void testClientIsClosedByLastRelease() throws Exception {
+        Object client = pool.acquire(tenantId, "localhost:9092", this::newClient);
+        pool.acquire(tenantId, "localhost:9092", this::newClient);
+
+        pool.release(tenantId, "localhost:9092", client);
+        assertTrue(closed.isEmpty());
+
+        pool.release(tenantId, "localhost:9092", client);
+        assertEquals(1, closed.size());
+        assertSame(client, closed.get(0));
+        assertEquals(0, pool.size());
+
+        Object recreated = pool.acquire(tenantId, "localhost:9092", this::newClient);
+        assertNotSame(client, recreated);
+    }
+
+    @Test
+    public void testFailedFactoryDoesNotLeaveEntry() throws Exception {
+        try {
+            pool.acquire(tenantId, "localhost:9092", () -> {
+                throw new IllegalStateException("Connection refused");
+            });
+            fail("Exception expected");
+        } catch (IllegalStateException e) {
+            assertEquals(0, pool.size());
+        }
+        pool.acquire(tenantId, "localhost:9092", this::newClient);
+        assertEquals(1, created.get());
+    }
+
+    @Test
+    public void testInvalidatedClientIsReplaced() throws Exception {
+        Object broken = pool.acquire(tenantId, "localhost:9092", this::newClient);
+        pool.acquire(tenantId, "localhost:9092", this::newClient);
+
+        pool.invalidate(tenantId, "localhost:9092", broken);
+        assertEquals(1, closed.size());
+        assertSame(broken, closed.get(0));
+
+        Object replacement = pool.acquire(tenantId, "localhost:9092", this::newClient);
+        assertNotSame(broken, replacement);
+
+        // the second owner of the broken client invalidates and releases it as well, the replacement is not affected
+        pool.invalidate(tenantId, "localhost:9092", broken);
+        pool.release(tenantId, "localhost:9092", broken);
+        assertEquals(1, closed.size());
+        assertEquals(1, pool.size());
+
+        pool.release(tenantId, "localhost:9092", replacement);
+        assertEquals(2, closed.size());
+        assertEquals(0, pool.size());
+    }
+
+    private Object newClient() {
+        created.incrementAndGet();
+        return new Object();
+    }
+
+}
@@ -0,0 +1,130 @@
+/**
+ * Copyright © 2016-2021 The Thingsboard Authors
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+package org.thingsboard.client.tools;
+
+import io.netty.buffer.Unpooled;
+import io.netty.channel.EventLoopGroup;
+import io.netty.channel.nio.NioEventLoopGroup;
+import io.netty.handler.codec.mqtt.MqttQoS;
+import io.netty.util.concurrent.Future;
+import lombok.extern.slf4j.Slf4j;
+import org.thingsboard.mqtt.MqttClient;
+import org.thingsboard.mqtt.MqttClientConfig;
+import org.thingsboard.mqtt.MqttConnectResult;
+
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Connection-scale benchmark for the MQTT transport, intended for manual runs.
+ * Opens the given number of device connections, publishes QoS 1 telemetry from each of them
+ * and prints the connection count together with publish latency percentiles.
+ * Devices have to be provisioned in advance with access tokens "{tokenPrefix}{index}".
+ * <p>
+ * Usage: MqttConnectionBenchmark [host] [port] [tokenPrefix] [connections] [messagesPerConnection]
+ */
+@Slf4j
+public class MqttConnectionBenchmark {
+
+    private static final String TELEMETRY_TOPIC = "v1/devices/me/telemetry";
+
+    public static void main(String[] args) throws Exception {
+        String host = args.length > 0 ? args[0] : "localhost";
+        int port = args.length > 1 ? Integer.parseInt(args[1]) : 1883;
+        String tokenPrefix = args.length > 2 ? args[2] : "BENCHMARK_TOKEN_";
+        int connections = args.length > 3 ? Integer.parseInt(args[3]) : 1000;
+        int messagesPerConnection = args.length > 4 ? Integer.parseInt(args[4]) : 10;
+
+        EventLoopGroup eventLoopGroup = new NioEventLoopGroup();
+        List<MqttClient> clients = new ArrayList<>(connections);
+        try {
+            long connectStartTs = System.currentTimeMillis();
+            CountDownLatch connectLatch = new CountDownLatch(connections);
+            AtomicInteger connected = new AtomicInteger();
+            for (int i = 0; i < connections; i++) {
+                MqttClientConfig config = new MqttClientConfig();
+                config.setUsername(tokenPrefix + i);
+                config.setReconnect(false);
+                MqttClient client = MqttClient.create(config, null);
+                client.setEventLoop(eventLoopGroup);
+                clients.add(client);
+                client.connect(host, port).addListener(future -> {
+                    if (future.isSuccess() && ((MqttConnectResult) future.getNow()).isSuccess()) {
+                        connected.incrementAndGet();
+                    }
+                    connectLatch.countDown();
+                });
+            }
+            connectLatch.await(5, TimeUnit.MINUTES);
+            log.info("Connected {} of {} clients in {} ms", connected.get(), connections, System.currentTimeMillis() - connectStartTs);
+
+            List<MqttClient> connectedClients = new ArrayList<>(connected.get());
+            for (MqttClient client : clients) {
+                if (client.isConnected()) {
+                    connectedClients.add(client);
+                }
+            }
+            int total = connectedClients.size() * messagesPerConnection;
+            long[] latencies = new long[total];
+            AtomicInteger completed = new AtomicInteger();
+            AtomicInteger failed = new AtomicInteger();
+            CountDownLatch publishLatch = new CountDownLatch(total);
+            long publishStartTs = System.currentTimeMillis();
+            for (int m = 0; m < messagesPerConnection; m++) {
+                for (MqttClient client : connectedClients) {
+                    byte[] payload = ("{\"temperature\":" + m + "}").getBytes(StandardCharsets.UTF_8);
+                    long startNs = System.nanoTime();
+                    Future<Void> future = client.publish(TELEMETRY_TOPIC, Unpooled.wrappedBuffer(payload), MqttQoS.AT_LEAST_ONCE);
+                    future.addListener(f -> {
+                        if (f.isSuccess()) {
+                            latencies[completed.getAndIncrement()] = System.nanoTime() - startNs;
+                        } else {
+                            failed.incrementAndGet();
+                        }
+                        publishLatch.countDown();
+                    });
+                }
+            }
+            publishLatch.await(5, TimeUnit.MINUTES);
+            long publishTime = System.currentTimeMillis() - publishStartTs;
+
+            long[] sorted = Arrays.copyOf(latencies, completed.get());
+            Arrays.sort(sorted);
+            log.info("Published {} messages ({} failed) in {} ms", sorted.length, failed.get(), publishTime);
+            if (sorted.length > 0) {
+                log.info("Publish latency p50: {} ms, p99: {} ms, max: {} ms",
+                        toMillis(percentile(sorted, 0.5)), toMillis(percentile(sorted, 0.99)), toMillis(sorted[sorted.length - 1]));
+            }
+        } finally {
+            clients.forEach(MqttClient::disconnect);
+            eventLoopGroup.shutdownGracefully();
+        }
+    }
+
+    private static long percentile(long[] sorted, double percentile) {
+        int idx = (int) Math.ceil(percentile * sorted.length) - 1;
+        return sorted[Math.max(0, Math.min(idx, sorted.length - 1))];
+    }
+
+    private static double toMillis(long nanos) {
+        return nanos / 1_000_000.0;
+    }
+}